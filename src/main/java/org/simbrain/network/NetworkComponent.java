@@ -124,7 +124,7 @@ public final class NetworkComponent extends WorkspaceComponent {
      * @return the new network component
      */
     public NetworkComponent copy() {
-        NetworkComponent ret = new NetworkComponent("Copy of " + network.getName(), network.copy());
+        NetworkComponent ret = new NetworkComponent("Copy of " + network.getName(), network.deepCopy());
         return ret;
     }
 
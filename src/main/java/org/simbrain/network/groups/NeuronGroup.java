@@ -133,7 +133,7 @@ public class NeuronGroup extends AbstractNeuronCollection {
      * @param toCopy the neuron group this will become a (deep) copy of.
      */
     public NeuronGroup(final Network net, final NeuronGroup toCopy) {
-        this(net, toCopy.getNeuronList().stream().map(Neuron::deepCopy).collect(Collectors.toList()));
+        this(net, toCopy.getNeuronList().stream().map(n -> new Neuron(net, n)).collect(Collectors.toList()));
         setPrototypeRule(toCopy.prototypeRule);
         setLabel(net.getIdManager().getProposedId(this.getClass()));
         this.setLayout(toCopy.getLayout());
@@ -1,10 +1,14 @@
 package org.simbrain.network.gui.nodes;
 
+import org.piccolo2d.PCamera;
+import org.piccolo2d.util.PBounds;
 import org.simbrain.network.NetworkModel;
+import org.simbrain.network.core.Neuron;
 import org.simbrain.network.events.NeuronCollectionEvents;
 import org.simbrain.network.events.NeuronEvents;
 import org.simbrain.network.groups.AbstractNeuronCollection;
 import org.simbrain.network.gui.NetworkPanel;
+import org.simbrain.network.util.BinaryActivationWriter;
 import org.simbrain.util.SFileChooser;
 import org.simbrain.util.Utils;
 import org.simbrain.util.piccolo.Outline;
@@ -12,9 +16,7 @@ import org.simbrain.util.piccolo.Outline;
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 public abstract class AbstractNeuronCollectionNode extends ScreenElement {
 
@@ -43,6 +45,23 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
      */
     private AbstractNeuronCollection nc;
 
+    /**
+     * Image of all the neurons, used in place of a node per neuron for large collections. Null if every neuron has a
+     * node.
+     */
+    private NeuronCollectionImageNode imageNode;
+
+    /**
+     * Nodes created for neurons of an aggregated collection, whether currently on the canvas or not. Kept so that
+     * zooming in and out does not create a new node each time.
+     */
+    private final Map<Neuron, NeuronNode> materializedNodes = new HashMap<>();
+
+    /**
+     * Neurons whose nodes stay on the canvas however far the view zooms out.
+     */
+    private final Set<Neuron> pinnedNeurons = new HashSet<>();
+
     public AbstractNeuronCollectionNode(NetworkPanel networkPanel, AbstractNeuronCollection group) {
         super(networkPanel);
         this.networkPanel = networkPanel;
@@ -54,6 +73,10 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
         NeuronCollectionEvents events = nc.getEvents();
         events.onDeleted(n ->  {
             removeFromParent();
+            if (imageNode != null) {
+                // Stops the image listening to the network
+                imageNode.removeFromParent();
+            }
         });
         events.onLabelChange((o,n) -> {
             updateText();
@@ -72,6 +95,9 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
      * Select the neurons in this group.
      */
     public void selectNeurons() {
+        if (isAggregated()) {
+            nc.getNeuronList().forEach(n -> materialize(n, false));
+        }
         getNeuronNodes().stream().map(NeuronNode::getNeuron).forEach(NetworkModel::select);
     }
 
@@ -94,7 +120,21 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
         for (NeuronNode neuronNode : neuronNodes) {
             neuronNode.pullViewPositionFromModel();
         }
-        outlinedObjects.resetOutlinedNodes(neuronNodes);
+        if (isAggregated()) {
+            imageNode.invalidatePixelLayout();
+        }
+        outlineChanged();
+    }
+
+    /**
+     * Fit the outline to the neuron nodes, or to the image of the neurons if the collection is aggregated.
+     */
+    public void outlineChanged() {
+        if (isAggregated()) {
+            outlinedObjects.resetOutlinedNodes(Collections.singletonList(imageNode));
+        } else {
+            outlinedObjects.resetOutlinedNodes(neuronNodes);
+        }
     }
 
     @Override
@@ -102,6 +142,11 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
         if (networkPanel.isRunning()) {
             return;
         }
+        if (isAggregated()) {
+            // Most neurons have no node to move, so move the model and let the nodes follow
+            nc.offset(dx, dy);
+            return;
+        }
         for (NeuronNode neuronNode : neuronNodes) {
             neuronNode.offset(dx, dy);
         }
@@ -129,6 +174,90 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
         neuronNodes.remove(neuronNode);
     }
 
+    /**
+     * Draw the neurons as a single image rather than a node per neuron. Nodes for individual neurons are then created
+     * only when the view is zoomed in on them (see {@link #updateMaterializedNodes()}), when they are selected, or when
+     * another node needs them.
+     */
+    public void aggregate() {
+        if (isAggregated()) {
+            return;
+        }
+        imageNode = new NeuronCollectionImageNode(this);
+        addChild(imageNode);
+        imageNode.lowerToBottom();
+        imageNode.invalidatePixelLayout();
+        outlineChanged();
+    }
+
+    /**
+     * Returns true if the neurons are drawn as an image.
+     */
+    public boolean isAggregated() {
+        return imageNode != null;
+    }
+
+    /**
+     * Returns a node for a neuron of an aggregated collection, adding it to the canvas if it is not there.
+     *
+     * @param neuron the neuron, which must belong to this collection
+     * @param pin    if true the node is kept on the canvas when the view zooms out, e.g. because synapse nodes or a
+     *               neuron collection refer to it
+     * @return the neuron's node
+     */
+    public NeuronNode materialize(Neuron neuron, boolean pin) {
+        if (pin) {
+            pinnedNeurons.add(neuron);
+        }
+        NeuronNode node = materializedNodes.get(neuron);
+        if (node == null) {
+            node = networkPanel.createMaterializedNode(neuron);
+            materializedNodes.put(neuron, node);
+            NeuronNode created = node;
+            neuron.getEvents().onDeleted(n -> {
+                materializedNodes.remove(neuron);
+                pinnedNeurons.remove(neuron);
+                neuronNodes.remove(created);
+            });
+        } else if (node.getParent() == null) {
+            networkPanel.showMaterializedNode(node);
+        }
+        neuronNodes.add(node);
+        return node;
+    }
+
+    /**
+     * Add nodes for the neurons of an aggregated collection that are in view, if the view is zoomed in past the
+     * network panel's materialize scale, and take nodes that are out of view off the canvas. Nodes that are selected
+     * or pinned are left alone.
+     */
+    public void updateMaterializedNodes() {
+        if (!isAggregated()) {
+            return;
+        }
+        PCamera camera = networkPanel.getCanvas().getCamera();
+        boolean zoomedIn = camera.getViewScale() >= networkPanel.getMaterializeScale();
+        PBounds view = camera.getViewBounds();
+        if (zoomedIn && view.intersects(imageNode.getGlobalFullBounds())) {
+            for (Neuron neuron : nc.getNeuronList()) {
+                if (view.contains(neuron.getX(), neuron.getY())) {
+                    materialize(neuron, false);
+                }
+            }
+        }
+        Iterator<NeuronNode> iterator = neuronNodes.iterator();
+        while (iterator.hasNext()) {
+            NeuronNode node = iterator.next();
+            Neuron neuron = node.getNeuron();
+            boolean inView = zoomedIn && view.contains(neuron.getX(), neuron.getY());
+            if (!inView && !pinnedNeurons.contains(neuron)
+                    && !networkPanel.getSelectionManager().isSelected(node)) {
+                networkPanel.hideMaterializedNode(node);
+                iterator.remove();
+            }
+        }
+    }
+
     public abstract AbstractNeuronCollection getModel();
 
     public InteractionBox getInteractionBox() {
@@ -191,9 +320,11 @@ public abstract class AbstractNeuronCollectionNode extends ScreenElement {
                     nc.getActivationRecorder().stopRecording();
                 } else {
                     SFileChooser chooser = new SFileChooser(".", "comma-separated-values (csv)", "csv");
+                    chooser.addExtension("binary recording", BinaryActivationWriter.FILE_EXTENSION);
                         File theFile = chooser.showSaveDialog("Recording_" + Utils.getTimeString() + ".csv");
                     if (theFile != null) {
-                        nc.getActivationRecorder().startRecording(theFile);
+                        boolean binary = theFile.getName().endsWith("." + BinaryActivationWriter.FILE_EXTENSION);
+                        nc.getActivationRecorder().startRecording(theFile, binary, false);
                     }
                 }
         }
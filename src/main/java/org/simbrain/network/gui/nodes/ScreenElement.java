@@ -109,6 +109,12 @@ public abstract class ScreenElement extends PPath.Float {
      */
     public void resetToDefault() {};
 
+    /**
+     * Bring the appearance of this element up to date with its model. Called on the Swing thread by the network
+     * panel's {@link org.simbrain.network.gui.RenderLoop} for elements that have been marked dirty.
+     */
+    public void render() {}
+
     public final NetworkPanel getNetworkPanel() {
         return networkPanel;
     }
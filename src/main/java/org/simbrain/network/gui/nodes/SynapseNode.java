@@ -18,11 +18,13 @@
  */
 package org.simbrain.network.gui.nodes;
 
+import org.piccolo2d.PNode;
 import org.piccolo2d.nodes.PPath;
 import org.piccolo2d.util.PBounds;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.events.SynapseEvents;
 import org.simbrain.network.gui.NetworkPanel;
+import org.simbrain.network.gui.RenderLoop;
 
 import javax.swing.*;
 import java.awt.*;
@@ -30,6 +32,7 @@ import java.awt.geom.Arc2D;
 import java.awt.geom.Area;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
+import java.beans.PropertyChangeListener;
 
 import static org.simbrain.network.gui.NetworkDialogsKt.getSynapseDialog;
 import static org.simbrain.network.gui.NetworkPanelMenusKt.getSynapseContextMenu;
@@ -75,6 +78,12 @@ public final class SynapseNode extends ScreenElement {
      */
     private NeuronNode source;
 
+    /**
+     * Listeners that mark this node for rendering when the strength changes or the source neuron spikes. Only
+     * registered while the node is on the canvas.
+     */
+    private PropertyChangeListener strengthListener, spikeListener;
+
     /**
      * Reference to target neuron.
      */
@@ -151,17 +160,39 @@ public final class SynapseNode extends ScreenElement {
         SynapseEvents events = synapse.getEvents();
 
         events.onDeleted(s -> removeFromParent());
-        events.onStrengthUpdate(() -> {
-            updateColor();
-            updateDiameter();
-        });
         events.onVisibilityChanged((oldVisibility, newVisibility) -> setVisible(newVisibility));
         setVisible(synapse.isVisible());
         events.onClampChanged(this::updateClampStatus);
 
-        // Respond to spiking events
-        source.getNeuron().getEvents().onSpiked(s -> updateSpikeColor());
+    }
 
+    @Override
+    public void setParent(PNode newParent) {
+        super.setParent(newParent);
+        RenderLoop<ScreenElement> renderLoop = getNetworkPanel().getRenderLoop();
+        if (strengthListener != null) {
+            synapse.getEvents().removeListener(strengthListener);
+            synapse.getSource().getEvents().removeListener(spikeListener);
+            strengthListener = null;
+            spikeListener = null;
+        }
+        if (newParent == null) {
+            renderLoop.forget(this);
+        } else {
+            strengthListener = synapse.getEvents().onStrengthUpdate(() -> renderLoop.markDirty(this));
+            spikeListener = synapse.getSource().getEvents().onSpikeUpdate(() -> renderLoop.markDirty(this));
+            renderLoop.markDirty(this);
+        }
+    }
+
+    /**
+     * Update color, size, and line color to the synapse's current strength and the source neuron's spike state.
+     */
+    @Override
+    public void render() {
+        updateColor();
+        updateDiameter();
+        updateSpikeColor();
     }
 
     /**
@@ -74,8 +74,8 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
         NeuronArray copy = new NeuronArray(newParent, this.outputSize());
         copy.setLocation(this.getLocation());
         copy.setGridMode(this.gridMode);
-        copy.setActivations(this.getActivations());
-        copy.setUpdateRule(this.getUpdateRule());
+        copy.setActivations(this.getActivations().clone());
+        copy.setUpdateRule(this.getUpdateRule().deepCopy());
         copy.setDataHolder(this.getDataHolder().copy());
         return copy;
     }
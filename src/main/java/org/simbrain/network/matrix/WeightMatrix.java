@@ -101,6 +101,28 @@ public class WeightMatrix extends Connector {
         updateInhibitoryMask();
     }
 
+    /**
+     * Make a deep copy of this weight matrix connecting a new source and target layer. The weights are bulk copied.
+     *
+     * @param newParent the new parent network
+     * @param newSource the new source layer
+     * @param newTarget the new target layer
+     * @return the deep copy
+     */
+    public WeightMatrix deepCopy(Network newParent, Layer newSource, Layer newTarget) {
+        WeightMatrix copy = new WeightMatrix(newParent, newSource, newTarget);
+        copy.increment = increment;
+        copy.setPrototypeRule(prototypeRule.deepCopy());
+        copy.dataHolder = dataHolder.copy();
+        copy.setSpikeResponder(spikeResponder.deepCopy());
+        copy.spikeResponseData = spikeResponseData.copy();
+        copy.weightMatrix = weightMatrix.clone();
+        copy.psrMatrix = psrMatrix.clone();
+        copy.updateExcitatoryMask();
+        copy.updateInhibitoryMask();
+        return copy;
+    }
+
     public Matrix getWeightMatrix() {
         return weightMatrix;
     }
@@ -18,10 +18,15 @@
  */
 package org.simbrain.network.neuron_update_rules;
 
+import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.util.BiasedMatrixData;
+import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.network.util.ScalarDataHolder;
 import org.simbrain.util.math.SquashingFunctionEnum;
+import smile.math.matrix.Matrix;
 
 /**
  * <b>SigmoidalRule</b> provides various implementations of a standard sigmoidal
@@ -69,6 +74,30 @@ public class SigmoidalRule extends AbstractSigmoidalRule {
         neuron.setActivation(val);
     }
 
+    /**
+     * Each array node adds its own bias (see {@link BiasedMatrixData}) to the rule's bias.
+     */
+    @Override
+    public void apply(Layer arr, MatrixDataHolder data) {
+        var array = (NeuronArray) arr;
+        double[] inputs = array.getInputs().col(0);
+        double[] biases = ((BiasedMatrixData) data).getBiases();
+        double[] vals = new double[array.size()];
+        for (int i = 0; i < vals.length; i++) {
+            double val = inputs[i] + bias + biases[i];
+            if (addNoise) {
+                val += noiseGenerator.sampleDouble();
+            }
+            vals[i] = sFunction.valueOf(val, getUpperBound(), getLowerBound(), getSlope());
+        }
+        array.setActivations(new Matrix(vals));
+    }
+
+    @Override
+    public MatrixDataHolder createMatrixData(int size) {
+        return new BiasedMatrixData(size);
+    }
+
     @Override
     public final SigmoidalRule deepCopy() {
         SigmoidalRule sr = new SigmoidalRule();
@@ -166,6 +166,11 @@ public class SOMGroup extends NeuronGroup {
         return new SOMGroup(this.getParentNetwork(), this);
     }
 
+    @Override
+    public SOMGroup deepCopy(Network newParent) {
+        return new SOMGroup(newParent, this);
+    }
+
     @Override
     public String getTypeDescription() {
         return "Self Organizing Map";
@@ -18,8 +18,10 @@
  */
 package org.simbrain.network.synapse_update_rules;
 
+import org.simbrain.network.core.BatchedSynapseRule;
 import org.simbrain.network.core.Connector;
 import org.simbrain.network.core.Synapse;
+import org.simbrain.network.core.SynapseBatch;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.matrix.NeuronArray;
 import org.simbrain.network.matrix.WeightMatrix;
@@ -32,7 +34,7 @@ import smile.math.matrix.Matrix;
 /**
  * <b>Hebbian</b> implements a standard Hebbian learning rule.
  */
-public class HebbianRule extends SynapseUpdateRule {
+public class HebbianRule extends SynapseUpdateRule implements BatchedSynapseRule {
 
     @UserParameter(label = "Learning rate", description = "Learning rate for Hebb rule",
         preferenceKey = "hebbLearningRate",  increment = .1,  order = 1)
@@ -73,6 +75,33 @@ public class HebbianRule extends SynapseUpdateRule {
         synapse.setStrength(strength);
     }
 
+    @Override
+    public Object getBatchKey() {
+        return learningRate;
+    }
+
+    @Override
+    public void apply(SynapseBatch batch) {
+        double[] weights = batch.getWeights();
+        double[] pre = batch.getPreActivations();
+        double[] post = batch.getPostActivations();
+        int[] starts = batch.getPostStarts();
+        int[] synapses = batch.getPostSynapses();
+        // Only synapses onto active neurons change
+        for (int i = 0; i < post.length; i++) {
+            if (post[i] == 0) {
+                continue;
+            }
+            for (int c = starts[i]; c < starts[i + 1]; c++) {
+                int k = synapses[c];
+                double input = pre[batch.getPre()[k]];
+                if (input != 0) {
+                    batch.setWeight(k, weights[k] + learningRate * input * post[i]);
+                }
+            }
+        }
+    }
+
     public double getLearningRate() {
         return learningRate;
     }
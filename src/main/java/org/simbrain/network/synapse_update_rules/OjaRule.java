@@ -18,16 +18,20 @@
  */
 package org.simbrain.network.synapse_update_rules;
 
+import org.simbrain.network.core.BatchedSynapseRule;
 import org.simbrain.network.core.Synapse;
+import org.simbrain.network.core.SynapseBatch;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.util.ScalarDataHolder;
 import org.simbrain.util.UserParameter;
 
+import java.util.List;
+
 /**
  * <b>OjaSynapse</b> is a synapse which asymptotically normalizes the sum of
  * squares of the weights attaching to a neuron to a user-defined value.
  */
-public class OjaRule extends SynapseUpdateRule {
+public class OjaRule extends SynapseUpdateRule implements BatchedSynapseRule {
 
     /**
      * Learning rate.
@@ -69,6 +73,33 @@ public class OjaRule extends SynapseUpdateRule {
         synapse.setStrength(synapse.clip(strength));
     }
 
+    @Override
+    public Object getBatchKey() {
+        return List.of(learningRate, normalizationFactor);
+    }
+
+    @Override
+    public void apply(SynapseBatch batch) {
+        double[] weights = batch.getWeights();
+        double[] pre = batch.getPreActivations();
+        double[] post = batch.getPostActivations();
+        int[] starts = batch.getPostStarts();
+        int[] synapses = batch.getPostSynapses();
+        // Only synapses onto active neurons change
+        for (int i = 0; i < post.length; i++) {
+            double output = post[i];
+            if (output == 0) {
+                continue;
+            }
+            double decay = output * output / normalizationFactor;
+            for (int c = starts[i]; c < starts[i + 1]; c++) {
+                int k = synapses[c];
+                double input = pre[batch.getPre()[k]];
+                batch.setWeight(k, weights[k] + learningRate * ((input * output) - (decay * weights[k])));
+            }
+        }
+    }
+
     public double getLearningRate() {
         return learningRate;
     }
@@ -18,11 +18,16 @@
  */
 package org.simbrain.network.synapse_update_rules;
 
+import org.simbrain.network.core.BatchedSynapseRule;
+import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
+import org.simbrain.network.core.SynapseBatch;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.util.ScalarDataHolder;
 import org.simbrain.util.UserParameter;
 
+import java.util.List;
+
 /**
  * <b>STDPSynapse</b> models spike time dependent plasticity.
  * <p>
@@ -32,7 +37,7 @@ import org.simbrain.util.UserParameter;
  * Neuroscience. Nonperiodic Synchronization in Heterogeneous Networks of
  * Spiking Neurons. Also drew on the Scholarpedia article.
  */
-public class STDPRule extends SynapseUpdateRule {
+public class STDPRule extends SynapseUpdateRule implements BatchedSynapseRule {
 
     // TODO: check description
     /**
@@ -148,6 +153,128 @@ public class STDPRule extends SynapseUpdateRule {
         }
     }
 
+    @Override
+    public Object getBatchKey() {
+        return List.of(tau_minus, tau_plus, W_plus, W_minus, learningRate, continuous, hebbian);
+    }
+
+    /**
+     * Exponentially decaying traces of the last spike of each pre and post neuron in a batch, so that a spike only
+     * requires updating the synapses of the neuron that spiked, and no exponentials are computed per synapse.
+     */
+    private static class Traces {
+
+        final double[] pre;
+
+        final double[] post;
+
+        /**
+         * Last weight change of each synapse, for continuous STDP.
+         */
+        final double[] rates;
+
+        Traces(SynapseBatch batch) {
+            pre = new double[batch.getPreNeurons().size()];
+            post = new double[batch.getPostNeurons().size()];
+            rates = new double[batch.getSize()];
+        }
+    }
+
+    @Override
+    public Object createBatchState(SynapseBatch batch) {
+        Traces traces = new Traces(batch);
+        // Start from the neurons' last spike times, as the per synapse rule does
+        for (int j = 0; j < traces.pre.length; j++) {
+            Neuron n = batch.getPreNeurons().get(j);
+            traces.pre[j] = Math.exp(-(batch.getTime() - batch.lastSpikeTime(n)) / preTau());
+        }
+        for (int i = 0; i < traces.post.length; i++) {
+            Neuron n = batch.getPostNeurons().get(i);
+            traces.post[i] = Math.exp(-(batch.getTime() - batch.lastSpikeTime(n)) / postTau());
+        }
+        return traces;
+    }
+
+    /**
+     * Time constant of the pre synaptic trace, which determines the change when the post synaptic neuron spikes.
+     */
+    private double preTau() {
+        return hebbian ? tau_plus : tau_minus;
+    }
+
+    private double postTau() {
+        return hebbian ? tau_minus : tau_plus;
+    }
+
+    @Override
+    public void apply(SynapseBatch batch) {
+        Traces traces = (Traces) batch.getState();
+        double dt = batch.getTimeStep();
+        double[] weights = batch.getWeights();
+
+        // Change on a post synaptic spike, times the pre synaptic trace, and vice versa
+        double postSpikeChange = (hebbian ? W_plus : -W_minus) * learningRate;
+        double preSpikeChange = (hebbian ? -W_minus : W_plus) * learningRate;
+
+        double preDecay = Math.exp(-dt / preTau());
+        double postDecay = Math.exp(-dt / postTau());
+        for (int j = 0; j < traces.pre.length; j++) {
+            traces.pre[j] *= preDecay;
+        }
+        for (int i = 0; i < traces.post.length; i++) {
+            traces.post[i] *= postDecay;
+        }
+
+        boolean[] preSpikes = batch.getPreSpikes();
+        boolean[] postSpikes = batch.getPostSpikes();
+        for (int j = 0; j < preSpikes.length; j++) {
+            if (preSpikes[j]) {
+                for (int c = batch.getPreStarts()[j]; c < batch.getPreStarts()[j + 1]; c++) {
+                    int k = batch.getPreSynapses()[c];
+                    double delta = preSpikeChange * traces.post[batch.getPost()[k]];
+                    traces.rates[k] = delta;
+                    applyChange(batch, k, weights[k], delta * dt);
+                }
+            }
+        }
+        for (int i = 0; i < postSpikes.length; i++) {
+            if (postSpikes[i]) {
+                for (int c = batch.getPostStarts()[i]; c < batch.getPostStarts()[i + 1]; c++) {
+                    int k = batch.getPostSynapses()[c];
+                    double delta = postSpikeChange * traces.pre[batch.getPre()[k]];
+                    traces.rates[k] = delta;
+                    applyChange(batch, k, weights[k], delta * dt);
+                }
+            }
+        }
+        if (continuous) {
+            // The last change persists as a rate of change
+            for (int k = 0; k < weights.length; k++) {
+                if (traces.rates[k] != 0 && !(preSpikes[batch.getPre()[k]] || postSpikes[batch.getPost()[k]])) {
+                    applyChange(batch, k, weights[k], traces.rates[k] * dt);
+                }
+            }
+        }
+
+        for (int j = 0; j < preSpikes.length; j++) {
+            if (preSpikes[j]) {
+                traces.pre[j] = 1;
+            }
+        }
+        for (int i = 0; i < postSpikes.length; i++) {
+            if (postSpikes[i]) {
+                traces.post[i] = 1;
+            }
+        }
+    }
+
+    /**
+     * Change the magnitude of a weight, so that potentiation makes inhibitory weights more negative.
+     */
+    private static void applyChange(SynapseBatch batch, int k, double weight, double change) {
+        batch.setWeight(k, Math.signum(weight) == -1 ? weight - change : weight + change);
+    }
+
     public double getTau_plus() {
         return tau_plus;
     }
@@ -18,16 +18,20 @@
  */
 package org.simbrain.network.synapse_update_rules;
 
+import org.simbrain.network.core.BatchedSynapseRule;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.core.Synapse;
+import org.simbrain.network.core.SynapseBatch;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.util.ScalarDataHolder;
 import org.simbrain.util.UserParameter;
 
+import java.util.List;
+
 /**
  * <b>ShortTermPlasticitySynapse</b>.
  */
-public class ShortTermPlasticityRule extends SynapseUpdateRule {
+public class ShortTermPlasticityRule extends SynapseUpdateRule implements BatchedSynapseRule {
 
     // TODO: Enum
 
@@ -164,6 +168,42 @@ public class ShortTermPlasticityRule extends SynapseUpdateRule {
         synapse.setStrength(synapse.clip(strength));
     }
 
+    @Override
+    public Object getBatchKey() {
+        return List.of(plasticityType, firingThreshold, baseLineStrength, inputThreshold, bumpRate, decayRate);
+    }
+
+    @Override
+    public void apply(SynapseBatch batch) {
+        double[] weights = batch.getWeights();
+        double[] lowerBounds = batch.getLowerBounds();
+        double[] upperBounds = batch.getUpperBounds();
+        double[] pre = batch.getPreActivations();
+        boolean[] spikes = batch.getPreSpikes();
+        boolean[] spiking = batch.getPreSpiking();
+        int[] starts = batch.getPreStarts();
+        int[] synapses = batch.getPreSynapses();
+        for (int j = 0; j < pre.length; j++) {
+            boolean active = spiking[j] ? spikes[j] : pre[j] > firingThreshold;
+            for (int c = starts[j]; c < starts[j + 1]; c++) {
+                int k = synapses[c];
+                double strength = weights[k];
+                if (active) {
+                    if (plasticityType == STD) {
+                        strength -= (bumpRate * (strength - lowerBounds[k]));
+                    } else {
+                        strength += (bumpRate * (upperBounds[k] - strength));
+                    }
+                } else if (strength != baseLineStrength) {
+                    strength -= (decayRate * (strength - baseLineStrength));
+                } else {
+                    continue;
+                }
+                batch.setWeight(k, strength);
+            }
+        }
+    }
+
     public double getBaseLineStrength() {
         return baseLineStrength;
     }
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.stream.Collectors;
 
 /**
  * Manages recording activations or spike histories.
@@ -30,6 +31,12 @@ public class ActivationRecorder {
      */
     private PrintWriter valueWriter;
 
+    /**
+     * Writes activations to a binary file on a background thread. Used instead of {@link #valueWriter} when recording
+     * in binary mode.
+     */
+    private BinaryActivationWriter binaryWriter;
+
     /**
      * Whether or not this group is in a state that allows recording.
      */
@@ -68,6 +75,18 @@ public class ActivationRecorder {
      * @param outputFile the file to write the activations to
      */
     public void startRecording(final File outputFile) {
+        startRecording(outputFile, false, false);
+    }
+
+    /**
+     * Start recording, optionally in binary format. See {@link #startRecording(File)}. Binary recordings are written
+     * by a {@link BinaryActivationWriter} and can be loaded with {@link ActivationRecordingReader}.
+     *
+     * @param outputFile the file to write the activations to
+     * @param binary     whether to write a binary recording rather than text
+     * @param compress   whether to gzip a binary recording
+     */
+    public void startRecording(final File outputFile, boolean binary, boolean compress) {
         boolean spikeRecord = true;
         for (Neuron n : nc.getNeuronList()) {
             if (!n.getUpdateRule().isSpikingRule()) {
@@ -78,11 +97,16 @@ public class ActivationRecorder {
         recordAsSpikes = spikeRecord;
         recording = true;
         try {
-            if (valueWriter != null) {
-                valueWriter.close();
+            closeWriters();
+            if (binary) {
+                binaryWriter = new BinaryActivationWriter(outputFile, recordAsSpikes,
+                        nc.getParentNetwork().getTimeStep(),
+                        nc.getNeuronList().stream().map(Neuron::getId).collect(Collectors.toList()),
+                        compress);
+            } else {
+                FileWriter fw = new FileWriter(outputFile);
+                valueWriter = new PrintWriter(fw);
             }
-            FileWriter fw = new FileWriter(outputFile);
-            valueWriter = new PrintWriter(fw);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -94,12 +118,27 @@ public class ActivationRecorder {
      * Halts recording of activations. Closes all involved output streams.
      */
     public void stopRecording() {
+        closeWriters();
+        recording = false;
+        nc.getEvents().fireRecordingStopped();
+    }
+
+    /**
+     * Close the text or binary writer, if open.
+     */
+    private void closeWriters() {
         if (valueWriter != null) {
             valueWriter.close();
             valueWriter = null;
         }
-        recording = false;
-        nc.getEvents().fireRecordingStopped();
+        if (binaryWriter != null) {
+            try {
+                binaryWriter.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            binaryWriter = null;
+        }
     }
 
     /**
@@ -112,6 +151,10 @@ public class ActivationRecorder {
      * {@link #FLUSH_FREQUENCY} invocations.
      */
     public void writeActsToFile() {
+        if (binaryWriter != null) {
+            writeActsToBinaryFile();
+            return;
+        }
         try {
             if (writeCounter >= FLUSH_FREQUENCY) {
                 valueWriter.flush();
@@ -141,7 +184,8 @@ public class ActivationRecorder {
                 }
             } else {
                 for (int i = 0, n = nc.size() - 1; i < n; i++) {
-                    valueWriter.print(nc.getNeuron(i).getActivation() + ", ");
+                    valueWriter.print(nc.getNeuron(i).getActivation());
+                    valueWriter.print(", ");
                 }
                 valueWriter.print(nc.getNeuron(nc.size() - 1).getActivation());
                 valueWriter.println();
@@ -152,6 +196,26 @@ public class ActivationRecorder {
         }
     }
 
+    /**
+     * Binary version of {@link #writeActsToFile()}. Frames are copied into an off-heap buffer and written to disk on
+     * a background thread.
+     */
+    private void writeActsToBinaryFile() {
+        binaryWriter.beginFrame(nc.getParentNetwork().getTime());
+        if (recordAsSpikes) {
+            for (int i = 0, n = nc.size(); i < n; i++) {
+                if (nc.getNeuron(i).isSpike()) {
+                    binaryWriter.putSpike(i);
+                }
+            }
+        } else {
+            for (int i = 0, n = nc.size(); i < n; i++) {
+                binaryWriter.putActivation(nc.getNeuron(i).getActivation());
+            }
+        }
+        binaryWriter.endFrame();
+    }
+
     public boolean isRecording() {
         return recording;
     }
@@ -0,0 +1,212 @@
+package org.simbrain.network.util;
+
+import org.simbrain.util.table.DataFrameWrapper;
+import org.simbrain.util.table.NumericTable;
+import smile.data.DataFrame;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads recordings written by {@link BinaryActivationWriter} so they can be analyzed in tables.
+ * <p>
+ * Activation recordings become one row per frame, with a time column followed by one column per neuron. Spike
+ * recordings become one row per spike, with a time column and a neuron index column.
+ */
+public class ActivationRecordingReader {
+
+    /**
+     * True if the recording holds spikes.
+     */
+    private final boolean spikes;
+
+    /**
+     * Time step of the recorded network.
+     */
+    private final double timeStep;
+
+    /**
+     * Ids of the recorded neurons.
+     */
+    private final List<String> neuronIds;
+
+    /**
+     * Recorded times; one per frame for activations, one per spike for spikes.
+     */
+    private double[] times;
+
+    /**
+     * Activations, one row per frame. Null for spike recordings.
+     */
+    private double[][] activations;
+
+    /**
+     * Spiking neuron indices, parallel to {@link #times}. Null for activation recordings.
+     */
+    private int[] spikeIndices;
+
+    /**
+     * Read a recording from a file.
+     *
+     * @param file the recording
+     * @throws IOException if the file cannot be read or is not a binary recording
+     */
+    public ActivationRecordingReader(File file) throws IOException {
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            DataInputStream preamble = new DataInputStream(raw);
+            if (preamble.readInt() != BinaryActivationWriter.MAGIC) {
+                throw new IOException(file + " is not a binary activation recording");
+            }
+            int version = preamble.readInt();
+            if (version != BinaryActivationWriter.VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+            spikes = preamble.readByte() == 1;
+            boolean compressed = preamble.readByte() == 1;
+            DataInputStream in = new DataInputStream(compressed ?
+                    new BufferedInputStream(new GZIPInputStream(raw, 1 << 16), 1 << 16) : raw);
+            timeStep = in.readDouble();
+            int numNeurons = in.readInt();
+            neuronIds = new ArrayList<>(numNeurons);
+            for (int i = 0; i < numNeurons; i++) {
+                neuronIds.add(in.readUTF());
+            }
+            if (spikes) {
+                readSpikes(in);
+            } else {
+                readActivations(in, numNeurons);
+            }
+        }
+    }
+
+    private void readActivations(DataInputStream in, int numNeurons) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        double[] frameTimes = new double[64];
+        while (true) {
+            double time;
+            try {
+                time = in.readDouble();
+            } catch (EOFException e) {
+                break;
+            }
+            double[] row = new double[numNeurons];
+            for (int i = 0; i < numNeurons; i++) {
+                row[i] = in.readDouble();
+            }
+            if (rows.size() == frameTimes.length) {
+                frameTimes = Arrays.copyOf(frameTimes, frameTimes.length * 2);
+            }
+            frameTimes[rows.size()] = time;
+            rows.add(row);
+        }
+        times = Arrays.copyOf(frameTimes, rows.size());
+        activations = rows.toArray(new double[0][]);
+    }
+
+    private void readSpikes(DataInputStream in) throws IOException {
+        double[] spikeTimes = new double[64];
+        int[] indices = new int[64];
+        int n = 0;
+        while (true) {
+            double time;
+            try {
+                time = in.readDouble();
+            } catch (EOFException e) {
+                break;
+            }
+            int count = in.readInt();
+            if (n + count > indices.length) {
+                int newLength = Math.max(indices.length * 2, n + count);
+                spikeTimes = Arrays.copyOf(spikeTimes, newLength);
+                indices = Arrays.copyOf(indices, newLength);
+            }
+            for (int i = 0; i < count; i++) {
+                spikeTimes[n] = time;
+                indices[n] = in.readInt();
+                n++;
+            }
+        }
+        times = Arrays.copyOf(spikeTimes, n);
+        spikeIndices = Arrays.copyOf(indices, n);
+    }
+
+    /**
+     * Returns the recording as a 2-d array, with time in the first column.
+     */
+    public double[][] toArray() {
+        double[][] ret = new double[times.length][];
+        for (int i = 0; i < times.length; i++) {
+            if (spikes) {
+                ret[i] = new double[]{times[i], spikeIndices[i]};
+            } else {
+                double[] row = new double[activations[i].length + 1];
+                row[0] = times[i];
+                System.arraycopy(activations[i], 0, row, 1, activations[i].length);
+                ret[i] = row;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the names of the columns of {@link #toArray()}.
+     */
+    public String[] getColumnNames() {
+        if (spikes) {
+            return new String[]{"Time", "Neuron"};
+        }
+        String[] names = new String[neuronIds.size() + 1];
+        names[0] = "Time";
+        for (int i = 0; i < neuronIds.size(); i++) {
+            names[i + 1] = neuronIds.get(i).isEmpty() ? "Neuron " + i : neuronIds.get(i);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the recording as a numeric table.
+     */
+    public NumericTable toNumericTable() {
+        return new NumericTable(toArray());
+    }
+
+    /**
+     * Returns the recording as a Smile data frame wrapper.
+     */
+    public DataFrameWrapper toDataFrame() {
+        return new DataFrameWrapper(DataFrame.of(toArray(), getColumnNames()));
+    }
+
+    public boolean isSpikes() {
+        return spikes;
+    }
+
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    public List<String> getNeuronIds() {
+        return neuronIds;
+    }
+
+    public double[] getTimes() {
+        return times;
+    }
+
+    /**
+     * Activations, one row per frame. Null for spike recordings.
+     */
+    public double[][] getActivations() {
+        return activations;
+    }
+
+    /**
+     * Spiking neuron indices, parallel to {@link #getTimes()}. Null for activation recordings.
+     */
+    public int[] getSpikeIndices() {
+        return spikeIndices;
+    }
+}
@@ -0,0 +1,279 @@
+package org.simbrain.network.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes activation or spike recordings to a binary file. The simulation thread fills preallocated direct (off-heap)
+ * buffers which are handed to a background thread that writes them to disk, so that recording large neuron collections
+ * does not stall the simulation.
+ * <p>
+ * File format (big-endian):
+ * <ul>
+ *     <li>Uncompressed preamble: magic int, version int, mode byte (0 = activations, 1 = spikes), compressed byte</li>
+ *     <li>Header, gzipped if the compressed flag is set: time step double, neuron count int, neuron ids as
+ *     modified UTF-8 strings</li>
+ *     <li>Frames until end of file. Activation frames are a time double followed by one double per neuron. Spike frames
+ *     are a time double, a spike count int, and that many neuron index ints.</li>
+ * </ul>
+ * Use {@link ActivationRecordingReader} to load recordings back.
+ */
+public class BinaryActivationWriter implements Closeable {
+
+    /**
+     * Identifies a binary Simbrain recording ("SBRC").
+     */
+    public static final int MAGIC = 0x53425243;
+
+    /**
+     * Version of the file format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * File extension for binary recordings.
+     */
+    public static final String FILE_EXTENSION = "sbrec";
+
+    /**
+     * Minimum size in bytes of each buffer handed to the writer thread.
+     */
+    private static final int MIN_BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Number of buffers in rotation. The simulation thread only blocks if the writer falls this many buffers behind.
+     */
+    private static final int NUM_BUFFERS = 4;
+
+    /**
+     * Marker placed on the queue to tell the writer thread to finish.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /**
+     * True if spike indices are recorded, false if activations are.
+     */
+    private final boolean spikes;
+
+    /**
+     * Number of neurons being recorded.
+     */
+    private final int numNeurons;
+
+    /**
+     * Largest possible frame size in bytes.
+     */
+    private final int maxFrameBytes;
+
+    /**
+     * Buffers that are free to be filled.
+     */
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(NUM_BUFFERS);
+
+    /**
+     * Filled buffers waiting to be written.
+     */
+    private final BlockingQueue<ByteBuffer> fullBuffers = new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+
+    /**
+     * Buffer currently being filled by the simulation thread.
+     */
+    private ByteBuffer current;
+
+    /**
+     * Position of the spike count in the current spike frame.
+     */
+    private int spikeCountPosition;
+
+    /**
+     * Number of spikes in the current spike frame.
+     */
+    private int spikeCount;
+
+    /**
+     * Where frames are written.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Background thread that drains {@link #fullBuffers}.
+     */
+    private final Thread writerThread;
+
+    /**
+     * First exception encountered by the writer thread, if any.
+     */
+    private volatile IOException writeException;
+
+    private boolean closed = false;
+
+    /**
+     * Create the writer, write the header, and start the writer thread.
+     *
+     * @param file      file to write to
+     * @param spikes    true to record spike indices, false to record activations
+     * @param timeStep  time step of the network being recorded
+     * @param neuronIds ids of the recorded neurons, in recording order
+     * @param compress  whether to gzip the recording
+     * @throws IOException if the file cannot be opened or the header cannot be written
+     */
+    public BinaryActivationWriter(File file, boolean spikes, double timeStep, List<String> neuronIds,
+                                  boolean compress) throws IOException {
+        this.spikes = spikes;
+        this.numNeurons = neuronIds.size();
+        // Activation frames: time + one double per neuron. Spike frames: time + count + one int per neuron.
+        maxFrameBytes = spikes ? 12 + 4 * numNeurons : 8 + 8 * numNeurons;
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        DataOutputStream preamble = new DataOutputStream(out);
+        preamble.writeInt(MAGIC);
+        preamble.writeInt(VERSION);
+        preamble.writeByte(spikes ? 1 : 0);
+        preamble.writeByte(compress ? 1 : 0);
+        preamble.flush();
+        if (compress) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeDouble(timeStep);
+        header.writeInt(numNeurons);
+        for (String id : neuronIds) {
+            header.writeUTF(id == null ? "" : id);
+        }
+        header.flush();
+        channel = Channels.newChannel(out);
+
+        int bufferSize = Math.max(MIN_BUFFER_BYTES, maxFrameBytes);
+        for (int i = 0; i < NUM_BUFFERS; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+        current = freeBuffers.poll();
+
+        writerThread = new Thread(this::drain, "Activation recorder writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Writer thread loop.
+     */
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buffer = fullBuffers.take();
+                if (buffer == END) {
+                    break;
+                }
+                if (writeException == null) {
+                    try {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    } catch (IOException e) {
+                        writeException = e;
+                    }
+                }
+                buffer.clear();
+                freeBuffers.put(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Start a new frame. Must be followed by {@link #putActivation(double)} once per neuron, or by any number of
+     * {@link #putSpike(int)} calls, and then by {@link #endFrame()}.
+     *
+     * @param time network time of the frame
+     */
+    public void beginFrame(double time) {
+        if (current.remaining() < maxFrameBytes) {
+            handOff();
+        }
+        current.putDouble(time);
+        if (spikes) {
+            spikeCountPosition = current.position();
+            spikeCount = 0;
+            current.putInt(0);
+        }
+    }
+
+    /**
+     * Add an activation to the current frame.
+     */
+    public void putActivation(double activation) {
+        current.putDouble(activation);
+    }
+
+    /**
+     * Add the index of a spiking neuron to the current frame.
+     */
+    public void putSpike(int index) {
+        current.putInt(index);
+        spikeCount++;
+    }
+
+    /**
+     * Finish the current frame.
+     */
+    public void endFrame() {
+        if (spikes) {
+            current.putInt(spikeCountPosition, spikeCount);
+        }
+    }
+
+    /**
+     * Queue the current buffer for writing and take a free one.
+     */
+    private void handOff() {
+        try {
+            fullBuffers.put(current);
+            current = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the recording writer", e);
+        }
+    }
+
+    /**
+     * Write any remaining frames, stop the writer thread, and close the file.
+     *
+     * @throws IOException if any write failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current.position() > 0) {
+                fullBuffers.put(current);
+            }
+            fullBuffers.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (writeException != null) {
+            throw writeException;
+        }
+    }
+
+    public boolean isSpikes() {
+        return spikes;
+    }
+
+    public int getNumNeurons() {
+        return numNeurons;
+    }
+}
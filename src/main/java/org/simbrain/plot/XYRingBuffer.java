@@ -0,0 +1,227 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.plot;
+
+/**
+ * A series of (x, y) points held in two primitive circular arrays, used in
+ * place of a JFreeChart XYSeries for plots that receive a point per series on
+ * every workspace update.
+ * <p>
+ * Points are kept in the order they are added, which for plots is time order.
+ * Once {@link #getMaximumItemCount()} points are held each new point
+ * overwrites the oldest one, so a fixed width plot neither allocates nor
+ * shifts memory as it runs. Below the maximum the arrays grow by doubling.
+ * Missing y values are stored as NaN.
+ * <p>
+ * Items are indexed from the oldest (0) to the newest (getItemCount() - 1).
+ * Changes are synchronized on the buffer. A reader on another thread, such as
+ * a chart, should hold the buffer's lock while it reads a consistent set of
+ * points, as {@link XYRingBufferDataset} does when it copies them.
+ */
+public class XYRingBuffer {
+
+    /**
+     * Initial capacity of the arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Description of the series, also used as its key in a chart.
+     */
+    private String description;
+
+    private double[] xs;
+
+    private double[] ys;
+
+    /**
+     * Array position of the oldest point.
+     */
+    private int start;
+
+    /**
+     * Number of points held.
+     */
+    private int size;
+
+    /**
+     * Largest number of points held before the oldest are overwritten.
+     */
+    private int maximumItemCount = Integer.MAX_VALUE;
+
+    /**
+     * Incremented on every change, so that views of the buffer know when they
+     * are stale.
+     */
+    private transient int modCount;
+
+    /**
+     * Construct an empty buffer.
+     *
+     * @param description description of the series
+     */
+    public XYRingBuffer(String description) {
+        this.description = description;
+        xs = new double[INITIAL_CAPACITY];
+        ys = new double[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Add a point, overwriting the oldest point if the buffer is full.
+     *
+     * @param x x value, usually the time
+     * @param y y value, or NaN for a missing value
+     */
+    public synchronized void add(double x, double y) {
+        if (size == maximumItemCount) {
+            xs[start] = x;
+            ys[start] = y;
+            start = (start + 1) % xs.length;
+        } else {
+            if (size == xs.length) {
+                resize(Math.min(maximumItemCount, xs.length * 2));
+            }
+            int index = (start + size) % xs.length;
+            xs[index] = x;
+            ys[index] = y;
+            size++;
+        }
+        modCount++;
+    }
+
+    /**
+     * Remove points from the start of the buffer whose x value is less than
+     * the given value. Assumes x values do not decrease.
+     *
+     * @param x smallest x value to keep
+     */
+    public synchronized void removeBefore(double x) {
+        int removed = 0;
+        while (size > 0 && xs[start] < x) {
+            start = (start + 1) % xs.length;
+            size--;
+            removed++;
+        }
+        if (removed > 0) {
+            modCount++;
+        }
+    }
+
+    /**
+     * Remove all points.
+     */
+    public synchronized void clear() {
+        start = 0;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Copy the points in order into arrays of the given capacity.
+     */
+    private void resize(int capacity) {
+        double[] newXs = new double[capacity];
+        double[] newYs = new double[capacity];
+        int n = Math.min(size, capacity);
+        int first = start + size - n;
+        for (int i = 0; i < n; i++) {
+            int index = (first + i) % xs.length;
+            newXs[i] = xs[index];
+            newYs[i] = ys[index];
+        }
+        xs = newXs;
+        ys = newYs;
+        start = 0;
+        size = n;
+    }
+
+    public int getItemCount() {
+        return size;
+    }
+
+    public double getX(int item) {
+        return xs[(start + item) % xs.length];
+    }
+
+    public double getY(int item) {
+        return ys[(start + item) % ys.length];
+    }
+
+    public int getMaximumItemCount() {
+        return maximumItemCount;
+    }
+
+    /**
+     * Set the largest number of points held. If more are held the oldest are
+     * dropped.
+     *
+     * @param maximumItemCount the new maximum, at least 1
+     */
+    public synchronized void setMaximumItemCount(int maximumItemCount) {
+        this.maximumItemCount = Math.max(1, maximumItemCount);
+        if (xs.length > this.maximumItemCount) {
+            resize(this.maximumItemCount);
+        }
+        modCount++;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Returns a number that changes whenever the points change.
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Returns the points as an array of x values and an array of y values,
+     * oldest first.
+     */
+    public synchronized double[][] toArray() {
+        double[][] ret = new double[2][size];
+        for (int i = 0; i < size; i++) {
+            ret[0][i] = getX(i);
+            ret[1][i] = getY(i);
+        }
+        return ret;
+    }
+
+    /**
+     * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
+     */
+    private Object readResolve() {
+        if (xs == null || xs.length == 0) {
+            xs = new double[INITIAL_CAPACITY];
+            ys = new double[INITIAL_CAPACITY];
+            start = 0;
+            size = 0;
+        }
+        if (maximumItemCount <= 0) {
+            maximumItemCount = Integer.MAX_VALUE;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.plot;
+
+import org.jfree.data.DomainInfo;
+import org.jfree.data.Range;
+import org.jfree.data.RangeInfo;
+import org.jfree.data.xy.AbstractXYDataset;
+import org.simbrain.util.CoalescedNotifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A JFreeChart dataset that reads its points directly from
+ * {@link XYRingBuffer}s.
+ * <p>
+ * Two things keep the cost of a chart independent of how fast the simulation
+ * runs. First, adding points does not notify the chart: the model calls
+ * {@link #seriesChanged()} and the chart is notified at most once per
+ * notification interval. Second, if a decimation width is set (normally the
+ * width of the chart in pixels) and a series has more than two points per
+ * pixel, the chart is shown the smallest and largest y value of each of
+ * decimationWidth buckets instead of every point. Lines drawn through those
+ * points look the same as lines drawn through all of them.
+ * <p>
+ * The domain and range of each series are computed once per change, so the
+ * chart's auto range does not rescan the data on every repaint. The points
+ * shown are copied out of the buffer at the same time, under its lock, so the
+ * chart paints a consistent snapshot while the simulation keeps adding points.
+ */
+public class XYRingBufferDataset extends AbstractXYDataset implements DomainInfo, RangeInfo {
+
+    private final List<View> views = new ArrayList<>();
+
+    /**
+     * Number of buckets series are decimated to. Series with at most twice
+     * this many points are shown as they are.
+     */
+    private int decimationWidth = Integer.MAX_VALUE;
+
+    /**
+     * Notifies the chart of points added since it was last notified.
+     */
+    private final transient CoalescedNotifier notifier;
+
+    /**
+     * Construct a dataset with the default notification interval.
+     */
+    public XYRingBufferDataset() {
+        this(CoalescedNotifier.DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Construct a dataset.
+     *
+     * @param notificationInterval minimum time between change notifications
+     *                             in milliseconds
+     */
+    public XYRingBufferDataset(int notificationInterval) {
+        notifier = new CoalescedNotifier(notificationInterval, this::fireDatasetChanged);
+    }
+
+    /**
+     * Add a series and notify listeners immediately.
+     */
+    public void addSeries(XYRingBuffer series) {
+        views.add(new View(series));
+        fireDatasetChanged();
+    }
+
+    /**
+     * Remove a series and notify listeners immediately.
+     */
+    public void removeSeries(XYRingBuffer series) {
+        if (views.removeIf(v -> v.series == series)) {
+            fireDatasetChanged();
+        }
+    }
+
+    /**
+     * Remove the series at the given index and notify listeners immediately.
+     */
+    public void removeSeries(int index) {
+        views.remove(index);
+        fireDatasetChanged();
+    }
+
+    /**
+     * Remove all series and notify listeners immediately.
+     */
+    public void removeAllSeries() {
+        views.clear();
+        fireDatasetChanged();
+    }
+
+    public XYRingBuffer getSeries(int series) {
+        return views.get(series).series;
+    }
+
+    /**
+     * Returns the series, in order.
+     */
+    public List<XYRingBuffer> getSeries() {
+        List<XYRingBuffer> ret = new ArrayList<>(views.size());
+        views.forEach(v -> ret.add(v.series));
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * Record that points have been added or removed. Listeners are notified
+     * when the notification interval has passed.
+     */
+    public void seriesChanged() {
+        notifier.request();
+    }
+
+    /**
+     * Notify listeners now if there are unreported changes.
+     */
+    public void flush() {
+        notifier.flush();
+    }
+
+    public int getNotificationInterval() {
+        return notifier.getInterval();
+    }
+
+    public void setNotificationInterval(int milliseconds) {
+        notifier.setInterval(milliseconds);
+    }
+
+    public int getDecimationWidth() {
+        return decimationWidth;
+    }
+
+    /**
+     * Set the number of buckets series are decimated to, usually the width of
+     * the plot in pixels.
+     *
+     * @param decimationWidth number of buckets, or Integer.MAX_VALUE to show
+     *                        every point
+     */
+    public void setDecimationWidth(int decimationWidth) {
+        decimationWidth = Math.max(1, decimationWidth);
+        if (this.decimationWidth != decimationWidth) {
+            this.decimationWidth = decimationWidth;
+            views.forEach(v -> v.modCount = -1);
+            seriesChanged();
+        }
+    }
+
+    /**
+     * Returns the view of a series, brought up to date.
+     */
+    private View view(int series) {
+        View view = views.get(series);
+        view.update(decimationWidth);
+        return view;
+    }
+
+    @Override
+    public int getSeriesCount() {
+        return views.size();
+    }
+
+    @Override
+    public Comparable getSeriesKey(int series) {
+        return views.get(series).series.getDescription();
+    }
+
+    @Override
+    public int getItemCount(int series) {
+        return view(series).getItemCount();
+    }
+
+    /**
+     * Reads the copy made when the item count was last asked for, so items
+     * stay consistent with that count while the chart iterates over them.
+     */
+    @Override
+    public double getXValue(int series, int item) {
+        return views.get(series).getX(item);
+    }
+
+    @Override
+    public double getYValue(int series, int item) {
+        return views.get(series).getY(item);
+    }
+
+    @Override
+    public Number getX(int series, int item) {
+        return getXValue(series, item);
+    }
+
+    @Override
+    public Number getY(int series, int item) {
+        double y = getYValue(series, item);
+        return Double.isNaN(y) ? null : y;
+    }
+
+    @Override
+    public double getDomainLowerBound(boolean includeInterval) {
+        Range range = getDomainBounds(includeInterval);
+        return range == null ? Double.NaN : range.getLowerBound();
+    }
+
+    @Override
+    public double getDomainUpperBound(boolean includeInterval) {
+        Range range = getDomainBounds(includeInterval);
+        return range == null ? Double.NaN : range.getUpperBound();
+    }
+
+    @Override
+    public Range getDomainBounds(boolean includeInterval) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < views.size(); i++) {
+            View view = view(i);
+            min = Math.min(min, view.minX);
+            max = Math.max(max, view.maxX);
+        }
+        return min <= max ? new Range(min, max) : null;
+    }
+
+    @Override
+    public double getRangeLowerBound(boolean includeInterval) {
+        Range range = getRangeBounds(includeInterval);
+        return range == null ? Double.NaN : range.getLowerBound();
+    }
+
+    @Override
+    public double getRangeUpperBound(boolean includeInterval) {
+        Range range = getRangeBounds(includeInterval);
+        return range == null ? Double.NaN : range.getUpperBound();
+    }
+
+    @Override
+    public Range getRangeBounds(boolean includeInterval) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < views.size(); i++) {
+            View view = view(i);
+            min = Math.min(min, view.minY);
+            max = Math.max(max, view.maxY);
+        }
+        return min <= max ? new Range(min, max) : null;
+    }
+
+    /**
+     * What the chart sees of one series: a copy of the buffer's points, or of
+     * its min/max decimation. Also caches the bounds of the series.
+     */
+    private static final class View {
+
+        final XYRingBuffer series;
+
+        /**
+         * Mod count of the series when the view was last updated.
+         */
+        int modCount = -1;
+
+        /**
+         * The points shown, copied from the series.
+         */
+        double[] xs = new double[0];
+        double[] ys = new double[0];
+
+        int count;
+
+        double minX;
+        double maxX;
+        double minY;
+        double maxY;
+
+        View(XYRingBuffer series) {
+            this.series = series;
+        }
+
+        void update(int width) {
+            synchronized (series) {
+                int currentModCount = series.getModCount();
+                if (currentModCount == modCount) {
+                    return;
+                }
+                modCount = currentModCount;
+                int n = series.getItemCount();
+                minX = Double.POSITIVE_INFINITY;
+                maxX = Double.NEGATIVE_INFINITY;
+                minY = Double.POSITIVE_INFINITY;
+                maxY = Double.NEGATIVE_INFINITY;
+                boolean decimate = width < Integer.MAX_VALUE / 2 && n > 2 * width;
+                int capacity = decimate ? 2 * width : n;
+                if (xs.length < capacity) {
+                    xs = new double[capacity];
+                    ys = new double[capacity];
+                }
+                count = 0;
+                int bucketSize = decimate ? (n + width - 1) / width : n;
+                for (int bucketStart = 0; bucketStart < n; bucketStart += bucketSize) {
+                    int bucketEnd = Math.min(n, bucketStart + bucketSize);
+                    int argMin = -1;
+                    int argMax = -1;
+                    double bucketMin = Double.POSITIVE_INFINITY;
+                    double bucketMax = Double.NEGATIVE_INFINITY;
+                    for (int i = bucketStart; i < bucketEnd; i++) {
+                        double x = series.getX(i);
+                        minX = Math.min(minX, x);
+                        maxX = Math.max(maxX, x);
+                        double y = series.getY(i);
+                        if (y < bucketMin) {
+                            bucketMin = y;
+                            argMin = i;
+                        }
+                        if (y > bucketMax) {
+                            bucketMax = y;
+                            argMax = i;
+                        }
+                        if (!decimate) {
+                            xs[count] = x;
+                            ys[count++] = y;
+                        }
+                    }
+                    if (argMin >= 0) {
+                        minY = Math.min(minY, bucketMin);
+                        maxY = Math.max(maxY, bucketMax);
+                    }
+                    if (decimate) {
+                        if (argMin < 0) {
+                            // Only missing values; keep one so the gap is drawn
+                            keep(bucketStart);
+                        } else if (argMin == argMax) {
+                            keep(argMin);
+                        } else {
+                            keep(Math.min(argMin, argMax));
+                            keep(Math.max(argMin, argMax));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Copy a point of the series to the end of the points shown.
+         */
+        private void keep(int item) {
+            xs[count] = series.getX(item);
+            ys[count++] = series.getY(item);
+        }
+
+        int getItemCount() {
+            return count;
+        }
+
+        double getX(int item) {
+            return xs[item];
+        }
+
+        double getY(int item) {
+            return ys[item];
+        }
+    }
+}
@@ -72,7 +72,12 @@ class HistogramModel(
             data.removeAt(index)
         }
         data.add(index, histData)
-        applyCurrentData()
+        if (index < dataNames.size) {
+            // Only this series changed, so only its counts need updating
+            dataSet.addSeries(dataNames[index], histData, bins)
+        } else {
+            applyCurrentData()
+        }
     }
 
     /**
@@ -97,7 +102,6 @@ class HistogramModel(
     fun resetData(data: MutableList<DoubleArray>, names: MutableList<String>) {
         this.data = data
         dataNames = names
-        dataSet.resetData(dataNames, data, bins)
         applyCurrentData()
     }
 
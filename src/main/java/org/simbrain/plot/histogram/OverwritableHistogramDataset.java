@@ -13,12 +13,12 @@
 package org.simbrain.plot.histogram;
 
 import org.jfree.data.general.DatasetChangeEvent;
-import org.jfree.data.statistics.HistogramBin;
 import org.jfree.data.statistics.HistogramDataset;
 import org.jfree.data.statistics.HistogramType;
 import org.jfree.data.statistics.SimpleHistogramDataset;
 import org.jfree.data.xy.AbstractIntervalXYDataset;
 import org.jfree.data.xy.IntervalXYDataset;
+import org.simbrain.util.CoalescedNotifier;
 
 import java.awt.*;
 import java.io.Serializable;
@@ -26,12 +26,22 @@ import java.util.List;
 import java.util.*;
 import java.util.Map.Entry;
 
-// TODO: See if this code has been updated in the latest JFreechart
 /**
  * A modification of the JFreeChart class HistogramDataset that allows data to
  * be overridden. The main change is the addition of the method overwrriteSeries
  * I would have extended HistogramDataset but needed access to the internal
  * list.
+ * <p>
+ * All series share the same bin edges, which stay fixed while the data stays
+ * inside them. Overwriting a series then only moves the values that changed
+ * from their old bin to their new one. The edges are recomputed from all the
+ * data (a rebin) when a value falls outside them, when the data comes to
+ * occupy less than a quarter of them, or when the number of bins changes.
+ * A rebin leaves some room beyond the data on either side, so that noisy or
+ * drifting data does not rebin on every update.
+ * <p>
+ * Listeners are notified of overwritten or rebinned data at most once per
+ * repaint interval; see {@link #flush()}.
  *
  * @author Jeff Yoshimi
  * @author Zoë Tosi
@@ -45,6 +55,17 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
      */
     private static final long serialVersionUID = -6341668077370231153L;
 
+    /**
+     * Rebin when the data occupies less than this fraction of the bin range.
+     */
+    private static final double MIN_OCCUPIED_FRACTION = 0.25;
+
+    /**
+     * Room left below and above the data when rebinning, as a fraction of the
+     * range of the data.
+     */
+    private static final double HEADROOM = 0.1;
+
     /**
      * A mapping from the names of data series to the data themselves.
      */
@@ -56,9 +77,25 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
     private HistogramType type;
 
     /**
-     * A value representing the largest value range among datasets.
+     * Number of bins in every series.
+     */
+    private int bins;
+
+    /**
+     * Start of the first bin.
+     */
+    private double lowerEdge;
+
+    /**
+     * Width of each bin.
      */
-    private double maxRangeValue = Double.MIN_VALUE;
+    private double binWidth;
+
+    /**
+     * Notifies listeners of overwritten data. Created when first needed, since
+     * deserialization does not run initializers.
+     */
+    private transient CoalescedNotifier notifier;
 
     /**
      * Creates a new (empty) dataset with a default type of
@@ -92,8 +129,7 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
     }
 
     /**
-     * Add new values to an existing series. Overwrites the old data. The value
-     * set will be sorted after this method completes.
+     * Add new values to an existing series. Overwrites the old data.
      *
      * @param key    the series key (<code>null</code> not permitted).
      * @param values the raw observations.
@@ -103,15 +139,12 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
         addSeries(key, values, bins);
     }
 
-    // NOTE: This is where the bins and ths mins and maxes are computed. It happens with calls to getRange.
-
     /**
-     * Adds a series to the dataset. Any data value less than minimum will be
-     * assigned to the first bin, and any data value greater than maximum will
-     * be assigned to the last bin. Values falling on the boundary of adjacent
-     * bins will be assigned to the higher indexed bin.
+     * Adds a series to the dataset, or overwrites the values of an existing
+     * series. Values falling on the boundary of adjacent bins are assigned to
+     * the higher indexed bin. NaN and infinite values are not counted.
      * <p>
-     * The values array passed to this method will be sorted upon completion.
+     * The values are copied; the array passed in is not modified.
      *
      * @param key    the series key (<code>null</code> not permitted).
      * @param values the raw observations.
@@ -129,82 +162,95 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
         if (values.length == 0) {
             return;
         }
-
-        if (dataMap.get(key) != null) {
-            HistogramBin[] original = dataMap.get(key).data;
-            double range = getRange(original);
-            if (range >= maxRangeValue - maxRangeValue / 10 && range <= maxRangeValue + maxRangeValue / 10) {
-                double newMax = Double.MIN_VALUE;
-                for (ColoredDataSeries data : dataMap.values()) {
-                    if (data.equals(dataMap.get(key))) {
-                        continue;
-                    }
-                    range = getRange(data.data);
-                    if (range > newMax) {
-                        newMax = range;
-                    }
-                }
-                maxRangeValue = newMax;
-            }
-        }
-        Arrays.sort(values);
-        double range = Math.abs(values[values.length - 1] - values[0]);
-        if (range > maxRangeValue) {
-            maxRangeValue = range;
+        ColoredDataSeries series = dataMap.get(key);
+        if (series == null) {
+            series = new ColoredDataSeries();
+            dataMap.put(key, series);
         }
-        HistogramBin[] histBins = new HistogramBin[0];
-        double binWidth = 0;
-        if (values.length != 0) {
-            binWidth = (maxRangeValue) / bins;
-            histBins = new HistogramBin[bins];
-            int index = 0;
-            HistogramBin bin;
-            double endVal = 0;
-            double startVal = values[0];
-            for (int i = 0; i < bins; i++) {
-                if (index < values.length) {
-                    endVal = startVal + binWidth;
-                    bin = new HistogramBin(startVal, endVal);
-                    while (index < values.length && values[index] <= endVal) {
-                        bin.incrementCount();
-                        index++;
-                    }
-                    startVal = endVal;
-                } else {
-                    bin = new HistogramBin(0, 0); // Empty bin
-                }
-                histBins[i] = bin;
-            }
+        if (bins == this.bins && series.overwrite(values, this)) {
+            getNotifier().request();
+            return;
         }
+        // The new values do not fit the current edges
+        series.setValues(values);
+        rebin(bins);
+        getNotifier().request();
+    }
 
-        ColoredDataSeries packet = new ColoredDataSeries(histBins);
+    /**
+     * Returns the bin a value falls in, or -1 for values that are not
+     * counted.
+     */
+    private int binOf(double value) {
+        if (!Double.isFinite(value)) {
+            return -1;
+        }
+        int bin = (int) Math.floor((value - lowerEdge) / binWidth);
+        return Math.max(0, Math.min(bins - 1, bin));
+    }
 
-        dataMap.put(key, packet);
-        this.fireDatasetChanged();
+    /**
+     * Returns true if finite values from min to max fit the current bins
+     * without being lost in a few of them.
+     */
+    private boolean fits(double min, double max) {
+        if (bins == 0) {
+            return false;
+        }
+        if (min > max) {
+            return true;
+        }
+        double upperEdge = lowerEdge + bins * binWidth;
+        if (min < lowerEdge || max > upperEdge) {
+            return false;
+        }
+        double span = max - min;
+        double range = upperEdge - lowerEdge;
+        // A single repeated value keeps the unit range a rebin gives it
+        return span >= MIN_OCCUPIED_FRACTION * range || (span == 0 && range <= 1);
     }
 
     /**
-     * Contingent on the histogram bins being sorted.
-     *
-     * @param histSet
-     * @return
-     */
-    private double getRange(HistogramBin[] histSet) {
-        int cap1 = -1;
-        int cap2 = -1;
-        for (int i = 0; i < histSet.length; i++) {
-            if (histSet[i].getCount() > 0) {
-                cap1 = i;
-                break;
-            }
+     * Recompute the bin edges from the range of all series, and recount every
+     * series.
+     */
+    private void rebin(int bins) {
+        this.bins = bins;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (ColoredDataSeries series : dataMap.values()) {
+            min = Math.min(min, series.min);
+            max = Math.max(max, series.max);
         }
-        for (int i = histSet.length - 1; i >= 0; i--) {
-            if (histSet[i].getCount() > 0) {
-                cap2 = i;
-                break;
-            }
+        if (min > max) {
+            lowerEdge = 0;
+            binWidth = 1.0 / bins;
+        } else if (min == max) {
+            lowerEdge = min - 0.5;
+            binWidth = 1.0 / bins;
+        } else {
+            double headroom = HEADROOM * (max - min);
+            lowerEdge = min - headroom;
+            binWidth = (max - min + 2 * headroom) / bins;
+        }
+        for (ColoredDataSeries series : dataMap.values()) {
+            series.recount(this);
+        }
+    }
+
+    /**
+     * Notify listeners now of any overwritten or rebinned data they have not
+     * been told about.
+     */
+    public void flush() {
+        getNotifier().flush();
+    }
+
+    private CoalescedNotifier getNotifier() {
+        if (notifier == null) {
+            notifier = new CoalescedNotifier(this::fireDatasetChanged);
         }
-        return Math.abs(histSet[cap2].getEndBoundary() - histSet[cap1].getStartBoundary());
+        return notifier;
     }
 
     /**
@@ -220,12 +266,27 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
                 names.size() + ") does not equal the number of data series (" +
                 data.size() + ")");
         }
+        if (dataMap.keySet().retainAll(names)) {
+            // Dropped series may have set the edges
+            rebin(bins);
+        }
         Iterator<double[]> dataIterator = data.iterator();
         for (String str : names) {
-            dataMap.remove(str); // NOTE: Added to code to ensure old bin counts are erased
             addSeries(str, dataIterator.next(), bins);
         }
-        dataMap.keySet().retainAll(names);
+    }
+
+    /**
+     * Returns the series at an index.
+     */
+    private ColoredDataSeries getSeries(int series) {
+        int i = 0;
+        for (ColoredDataSeries data : dataMap.values()) {
+            if (i++ == series) {
+                return data;
+            }
+        }
+        throw new IndexOutOfBoundsException("No series " + series);
     }
 
     @Override
@@ -240,19 +301,6 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
         return null;
     }
 
-    /**
-     * Returns the bins for a series.
-     *
-     * @param series the series index (in the range <code>0</code> to
-     *               <code>getSeriesCount() - 1</code>).
-     * @return A list of bins.
-     * @throws IndexOutOfBoundsException if <code>series</code> is outside the
-     *                                   specified range.
-     */
-    List<HistogramBin> getBins(int series) {
-        return Arrays.asList(dataMap.get(getSeriesKey(series)).data);
-    }
-
     /**
      * Returns the number of series in the dataset.
      *
@@ -272,7 +320,7 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
      *                                   specified range.
      */
     public int getItemCount(int series) {
-        return getBins(series).size();
+        return getSeries(series).counts.length;
     }
 
     /**
@@ -288,10 +336,7 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
      *                                   specified range.
      */
     public Number getX(int series, int item) {
-        List<HistogramBin> bins = getBins(series);
-        HistogramBin bin = bins.get(item);
-        double x = (bin.getStartBoundary() + bin.getEndBoundary()) / 2.0;
-        return x;
+        return lowerEdge + (item + 0.5) * binWidth;
     }
 
     /**
@@ -306,14 +351,14 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
      *                                   specified range.
      */
     public Number getY(int series, int item) {
-        List<HistogramBin> bins = getBins(series);
-        HistogramBin bin = bins.get(item);
+        ColoredDataSeries data = getSeries(series);
+        int count = data.counts[item];
         if (this.type == HistogramType.FREQUENCY) {
-            return bin.getCount();
+            return count;
         } else if (this.type == HistogramType.RELATIVE_FREQUENCY) {
-            return bin.getCount() / bins.size();
+            return data.total == 0 ? 0.0 : (double) count / data.total;
         } else if (this.type == HistogramType.SCALE_AREA_TO_1) {
-            return bin.getCount() / bin.getBinWidth();
+            return count / binWidth;
         } else { // pretty sure this shouldn't ever happen
             throw new IllegalStateException();
         }
@@ -330,9 +375,7 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
      *                                   specified range.
      */
     public Number getStartX(int series, int item) {
-        List<HistogramBin> bins = getBins(series);
-        HistogramBin bin = bins.get(item);
-        return bin.getStartBoundary();
+        return lowerEdge + item * binWidth;
     }
 
     /**
@@ -346,9 +389,7 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
      *                                   specified range.
      */
     public Number getEndX(int series, int item) {
-        List<HistogramBin> bins = getBins(series);
-        HistogramBin bin = bins.get(item);
-        return bin.getEndBoundary();
+        return lowerEdge + (item + 1) * binWidth;
     }
 
     /**
@@ -440,23 +481,163 @@ public class OverwritableHistogramDataset extends AbstractIntervalXYDataset impl
     public static class ColoredDataSeries {
 
         /**
-         * The data in a data series.
+         * The color of a given data series.
          */
-        public final HistogramBin[] data;
+        public Color color;
 
         /**
-         * The color of a given data series.
+         * The values currently counted.
          */
-        public Color color;
+        private double[] values = new double[0];
+
+        /**
+         * Number of values in each bin.
+         */
+        private int[] counts = new int[0];
+
+        /**
+         * Number of values counted (the finite ones).
+         */
+        private int total;
+
+        /**
+         * Smallest and largest finite value.
+         */
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        /**
+         * Returns the number of values in a bin.
+         */
+        public int getCount(int bin) {
+            return counts[bin];
+        }
+
+        /**
+         * Returns the number of bins.
+         */
+        public int getBinCount() {
+            return counts.length;
+        }
+
+        /**
+         * Copy in new values and find their range, without counting them.
+         */
+        void setValues(double[] newValues) {
+            if (values.length != newValues.length) {
+                values = new double[newValues.length];
+            }
+            System.arraycopy(newValues, 0, values, 0, newValues.length);
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            for (double value : values) {
+                if (Double.isFinite(value)) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+        }
 
         /**
-         * Create the data series.
+         * Count all values into the dataset's bins.
+         */
+        void recount(OverwritableHistogramDataset dataset) {
+            int[] newCounts = new int[dataset.bins];
+            total = 0;
+            for (double value : values) {
+                int bin = dataset.binOf(value);
+                if (bin >= 0) {
+                    newCounts[bin]++;
+                    total++;
+                }
+            }
+            counts = newCounts;
+        }
+
+        /**
+         * Move each changed value from its old bin to its new one.
          *
-         * @param bins the data
+         * @return false, leaving the series unchanged, if the new values do
+         * not fit the dataset's bins and a rebin is needed
          */
-        public ColoredDataSeries(final HistogramBin[] bins) {
-            this.data = bins;
+        boolean overwrite(double[] newValues, OverwritableHistogramDataset dataset) {
+            if (newValues.length != values.length || counts.length != dataset.bins) {
+                return false;
+            }
+            double newMin = Double.POSITIVE_INFINITY;
+            double newMax = Double.NEGATIVE_INFINITY;
+            for (double value : newValues) {
+                if (Double.isFinite(value)) {
+                    newMin = Math.min(newMin, value);
+                    newMax = Math.max(newMax, value);
+                }
+            }
+            if (!dataset.fits(Math.min(newMin, dataset.dataMin(this)), Math.max(newMax, dataset.dataMax(this)))) {
+                return false;
+            }
+            for (int i = 0; i < newValues.length; i++) {
+                double value = newValues[i];
+                if (Double.doubleToLongBits(value) == Double.doubleToLongBits(values[i])) {
+                    continue;
+                }
+                int oldBin = dataset.binOf(values[i]);
+                int newBin = dataset.binOf(value);
+                if (oldBin != newBin) {
+                    if (oldBin >= 0) {
+                        counts[oldBin]--;
+                        total--;
+                    }
+                    if (newBin >= 0) {
+                        counts[newBin]++;
+                        total++;
+                    }
+                }
+                values[i] = value;
+            }
+            min = newMin;
+            max = newMax;
+            return true;
+        }
+
+        /**
+         * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
+         */
+        private Object readResolve() {
+            if (values == null) {
+                values = new double[0];
+            }
+            if (counts == null) {
+                counts = new int[0];
+            }
+            setValues(values);
+            return this;
+        }
+    }
+
+    /**
+     * Smallest finite value of the series other than the given one.
+     */
+    private double dataMin(ColoredDataSeries except) {
+        double min = Double.POSITIVE_INFINITY;
+        for (ColoredDataSeries series : dataMap.values()) {
+            if (series != except) {
+                min = Math.min(min, series.min);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Largest finite value of the series other than the given one.
+     */
+    private double dataMax(ColoredDataSeries except) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (ColoredDataSeries series : dataMap.values()) {
+            if (series != except) {
+                max = Math.max(max, series.max);
+            }
         }
+        return max;
     }
 
 }
@@ -6,7 +6,9 @@ import org.simbrain.workspace.Consumable;
 import org.simbrain.world.imageworld.events.ImageEvents;
 import org.simbrain.world.imageworld.filters.Filter;
 
+import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.Arrays;
 
 /**
@@ -18,6 +20,11 @@ import java.util.Arrays;
  * An emitter matrix is a kind of countepart to a {@link Filter}. Rather
  * than sensing visual locations emitters are like pixels that an "organism" can emit
  * cf. a squid's iridiphores.
+ * <p>
+ * Emitting writes colors straight into the image's pixel array and records
+ * the rectangle of pixels that changed, so that a view can repaint only that
+ * region; see {@link #takeDirtyRegion()}. No event is fired if no pixel
+ * changed.
  *
  * @author Tim Shea
  * @author Jeff Yoshimi
@@ -51,6 +58,11 @@ public class EmitterMatrix implements AttributeContainer {
      */
     private transient ImageEvents events = new ImageEvents(this);
 
+    /**
+     * Pixels changed since a view last asked, or null if none have.
+     */
+    private transient Rectangle dirtyRegion;
+
     /**
      * Construct an empty emitter matrix.
      */
@@ -66,6 +78,7 @@ public class EmitterMatrix implements AttributeContainer {
      * @param currentImage
      */
     public EmitterMatrix(BufferedImage currentImage) {
+        image = toIntRGB(currentImage);
         channels = new double[3][image.getWidth() * image.getHeight()];
         rgbColors = new int[image.getWidth() * image.getHeight()];
     }
@@ -126,6 +139,7 @@ public class EmitterMatrix implements AttributeContainer {
         image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         channels = new double[3][image.getWidth() * image.getHeight()];
         rgbColors = new int[image.getWidth() * image.getHeight()];
+        markDirty(new Rectangle(0, 0, width, height));
         emitImage();
     }
 
@@ -150,28 +164,80 @@ public class EmitterMatrix implements AttributeContainer {
      * to integers (0 to 255) and assigned to the corresponding pixels.
      */
     public void emitImage() {
-        if (usingRGBColor) {
-            for (int y = 0; y < image.getHeight(); ++y) {
-                for (int x = 0; x < image.getWidth(); ++x) {
-                    int rgb = rgbColors[y * image.getWidth() + x];
-                    image.setRGB(x, y, rgb);
-                }
-            }
-        } else {
-            for (int y = 0; y < image.getHeight(); ++y) {
-                for (int x = 0; x < image.getWidth(); ++x) {
-                    int red = (int) (channels[0][y * image.getWidth() + x] * 255.0);
+        image = toIntRGB(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                int k = y * width + x;
+                int color;
+                if (usingRGBColor) {
+                    color = rgbColors[k] & 0xFFFFFF;
+                } else {
+                    int red = (int) (channels[0][k] * 255.0);
                     red = Math.max(Math.min(red, 255), 0) << 16;
-                    int blue = (int) (channels[1][y * image.getWidth() + x] * 255.0);
+                    int blue = (int) (channels[1][k] * 255.0);
                     blue = Math.max(Math.min(blue, 255), 0) << 8;
-                    int green = (int) (channels[2][y * image.getWidth() + x] * 255.0);
+                    int green = (int) (channels[2][k] * 255.0);
                     green = Math.max(Math.min(green, 255), 0);
-                    int color = red + blue + green;
-                    image.setRGB(x, y, color);
+                    color = red + blue + green;
+                }
+                if (pixels[k] != color) {
+                    pixels[k] = color;
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
                 }
             }
         }
-        events.fireImageUpdate();
+        if (maxX >= 0) {
+            markDirty(new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1));
+        }
+        if (dirtyRegion != null) {
+            events.fireImageUpdate();
+        }
+    }
+
+    /**
+     * Add a region to the pixels that need repainting.
+     */
+    private synchronized void markDirty(Rectangle region) {
+        if (dirtyRegion == null) {
+            dirtyRegion = region;
+        } else {
+            dirtyRegion.add(region);
+        }
+    }
+
+    /**
+     * Returns the pixels changed since this was last called, in image
+     * coordinates, or null if none have changed.
+     */
+    public synchronized Rectangle takeDirtyRegion() {
+        Rectangle region = dirtyRegion;
+        dirtyRegion = null;
+        return region;
+    }
+
+    /**
+     * Returns the image, or a copy of it with int RGB pixels if it has another
+     * type.
+     */
+    private static BufferedImage toIntRGB(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = copy.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return copy;
     }
 
     public BufferedImage getImage() {
@@ -197,6 +263,9 @@ public class EmitterMatrix implements AttributeContainer {
      */
     public Object readResolve() {
         events = new ImageEvents(this);
+        if (image != null) {
+            image = toIntRGB(image);
+        }
         return this;
     }
 }
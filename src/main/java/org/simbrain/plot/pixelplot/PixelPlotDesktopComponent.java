@@ -1,5 +1,6 @@
 package org.simbrain.plot.pixelplot;
 
+import org.simbrain.util.CoalescedNotifier;
 import org.simbrain.util.ResourceManager;
 import org.simbrain.util.genericframe.GenericFrame;
 import org.simbrain.workspace.gui.DesktopComponent;
@@ -20,6 +21,12 @@ public class PixelPlotDesktopComponent extends DesktopComponent<PixelPlotCompone
      */
     private EmitterPanel emitterPanel = new EmitterPanel();
 
+    /**
+     * Repaints the pixels the emitter has changed, at most once per repaint
+     * interval however often the emitter is updated.
+     */
+    private CoalescedNotifier repainter = new CoalescedNotifier(this::repaintDirtyRegion);
+
     /**
      * Construct a new PixelDisplayDesktopComponent GUI.
      *
@@ -31,7 +38,28 @@ public class PixelPlotDesktopComponent extends DesktopComponent<PixelPlotCompone
         setLayout(new BorderLayout());
         add(BorderLayout.NORTH, getPixelDisplayToolbar());
         add(BorderLayout.CENTER, emitterPanel);
-        getWorkspaceComponent().getEmitter().getEvents().onImageUpdate(this::repaint);
+        getWorkspaceComponent().getEmitter().getEvents().onImageUpdate(repainter::request);
+    }
+
+    /**
+     * Repaint the part of the panel covering the pixels changed since the last
+     * repaint.
+     */
+    private void repaintDirtyRegion() {
+        EmitterMatrix emitter = getWorkspaceComponent().getEmitter();
+        Rectangle region = emitter.takeDirtyRegion();
+        BufferedImage image = emitter.getImage();
+        if (region == null || image == null) {
+            return;
+        }
+        double scaleX = (double) emitterPanel.getWidth() / image.getWidth();
+        double scaleY = (double) emitterPanel.getHeight() / image.getHeight();
+        int x = (int) Math.floor(region.x * scaleX);
+        int y = (int) Math.floor(region.y * scaleY);
+        // One pixel margin for rounding and grid lines
+        emitterPanel.repaint(x - 1, y - 1,
+                (int) Math.ceil((region.x + region.width) * scaleX) - x + 2,
+                (int) Math.ceil((region.y + region.height) * scaleY) - y + 2);
     }
 
     private class EmitterPanel extends JPanel {
@@ -19,8 +19,12 @@
 package org.simbrain.plot.rasterchart;
 
 import com.thoughtworks.xstream.XStream;
+import org.jfree.data.general.Series;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
+import org.simbrain.plot.XYRingBuffer;
+import org.simbrain.plot.XYRingBufferDataset;
+import org.simbrain.plot.XYSeriesConverter;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.XStreamUtils;
 import org.simbrain.util.propertyeditor.EditableObject;
@@ -32,7 +36,8 @@ import java.util.List;
 import java.util.function.Supplier;
 
 /**
- * Data model for a raster plot.
+ * Data model for a raster plot. Spikes are held in {@link XYRingBuffer}s; with
+ * a fixed width, spikes older than the window are dropped as new ones arrive.
  */
 public class RasterModel implements AttributeContainer, EditableObject {
 
@@ -52,9 +57,21 @@ public class RasterModel implements AttributeContainer, EditableObject {
     private transient Supplier<Integer> timeSupplier;
 
     /**
-     * Raster Data.
+     * Raster data, one buffer per raster consumer.
      */
-    private XYSeriesCollection dataset = new XYSeriesCollection();
+    private List<XYRingBuffer> seriesList = new ArrayList<>();
+
+    /**
+     * Chart view of the raster data.
+     */
+    private transient XYRingBufferDataset dataset = new XYRingBufferDataset();
+
+    /**
+     * Raster data of plots saved before ring buffers were used, read from the
+     * old dataset element and converted to {@link #seriesList} in
+     * {@link #readResolve()}.
+     */
+    private XYSeriesCollection legacyDataset;
 
     /**
      * Should the range automatically change to reflect the data.
@@ -116,9 +133,10 @@ public class RasterModel implements AttributeContainer, EditableObject {
      * Removes a data source from the chart.
      */
     public void removeDataSource() {
-        Integer lastSeriesIndex = dataset.getSeriesCount() - 1;
+        int lastSeriesIndex = dataset.getSeriesCount() - 1;
         if (lastSeriesIndex > 0) {
             dataset.removeSeries(lastSeriesIndex);
+            seriesList.remove(lastSeriesIndex);
             rasterConsumerList.remove(lastSeriesIndex);
         }
 
@@ -129,7 +147,9 @@ public class RasterModel implements AttributeContainer, EditableObject {
      */
     public void addDataSource() {
         Integer currentSize = dataset.getSeriesCount();
-        dataset.addSeries(new XYSeries(currentSize + 1));
+        XYRingBuffer series = new XYRingBuffer(String.valueOf(currentSize + 1));
+        seriesList.add(series);
+        dataset.addSeries(series);
         rasterConsumerList.add(new RasterConsumer(currentSize));
     }
 
@@ -141,9 +161,10 @@ public class RasterModel implements AttributeContainer, EditableObject {
         for (int i = 0; seriesCount > i; ++i) {
             dataset.getSeries(i).clear();
         }
+        dataset.seriesChanged();
     }
 
-    public XYSeriesCollection getDataset() {
+    public XYRingBufferDataset getDataset() {
         return dataset;
     }
 
@@ -154,6 +175,13 @@ public class RasterModel implements AttributeContainer, EditableObject {
      */
     public static XStream getXStream() {
         XStream xstream = XStreamUtils.getSimbrainXStream();
+        // Raster plots saved XYSeries field by field, so only ring buffers are converted. Their listeners are
+        // skipped since they are rebuilt anyway and the Swing and beans classes involved cannot be read reflectively.
+        xstream.registerConverter(new XYSeriesConverter(false));
+        xstream.aliasField("dataset", RasterModel.class, "legacyDataset");
+        xstream.omitField(Series.class, "listeners");
+        xstream.omitField(Series.class, "propertyChangeSupport");
+        xstream.omitField(Series.class, "vetoableChangeSupport");
         return xstream;
     }
 
@@ -161,6 +189,26 @@ public class RasterModel implements AttributeContainer, EditableObject {
      * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
      */
     private Object readResolve() {
+        if (seriesList == null) {
+            seriesList = new ArrayList<>();
+        }
+        if (legacyDataset != null) {
+            for (int i = 0; i < legacyDataset.getSeriesCount(); i++) {
+                XYSeries series = legacyDataset.getSeries(i);
+                XYRingBuffer buffer = new XYRingBuffer(String.valueOf(series.getKey()));
+                for (int j = 0; j < series.getItemCount(); j++) {
+                    Number y = series.getY(j);
+                    buffer.add(series.getX(j).doubleValue(), y == null ? Double.NaN : y.doubleValue());
+                }
+                seriesList.add(buffer);
+            }
+            legacyDataset = null;
+        }
+        while (seriesList.size() < rasterConsumerList.size()) {
+            seriesList.add(new XYRingBuffer(String.valueOf(seriesList.size() + 1)));
+        }
+        dataset = new XYRingBufferDataset();
+        seriesList.forEach(dataset::addSeries);
         return this;
     }
 
@@ -224,7 +272,7 @@ public class RasterModel implements AttributeContainer, EditableObject {
     public class RasterConsumer implements AttributeContainer {
 
         /**
-         * Index of this consumer in an {@link XYSeriesCollection}
+         * Index of this consumer in the dataset.
          */
         int index = 0;
 
@@ -234,13 +282,18 @@ public class RasterModel implements AttributeContainer, EditableObject {
 
         @Consumable()
         public void setValues(final double[] values) {
+            XYRingBuffer series = seriesList.get(index);
+            double time = timeSupplier.get();
             if (values.length == 0) {
-                getDataset().getSeries(index).add(timeSupplier.get(), null);
-                return;
+                series.add(time, Double.NaN);
             }
             for (int i = 0, n = values.length; i < n; i++) {
-                getDataset().getSeries(index).add(timeSupplier.get(), (Double) values[i]);
+                series.add(time, values[i]);
+            }
+            if (fixedWidth) {
+                series.removeBefore(time - windowSize);
             }
+            dataset.seriesChanged();
         }
 
         @Override
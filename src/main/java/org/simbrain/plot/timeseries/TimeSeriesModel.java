@@ -18,8 +18,8 @@
  */
 package org.simbrain.plot.timeseries;
 
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
+import org.simbrain.plot.XYRingBuffer;
+import org.simbrain.plot.XYRingBufferDataset;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.propertyeditor.EditableObject;
 import org.simbrain.workspace.AttributeContainer;
@@ -36,13 +36,17 @@ import java.util.function.Supplier;
  * doubles, with one component for each member of the time series. There is no
  * support currently for representing separate scalar values in a single time
  * series.
+ * <p>
+ * Each series is held in an {@link XYRingBuffer}, so with a fixed width adding
+ * a point overwrites the oldest one in place. Charts are notified of new points
+ * at most once per repaint interval, not once per point.
  */
 public class TimeSeriesModel implements AttributeContainer, EditableObject {
 
     /**
      * Time Series Data.
      */
-    private transient XYSeriesCollection dataset = new XYSeriesCollection();
+    private transient XYRingBufferDataset dataset = new XYRingBufferDataset();
 
     /**
      * Lambda to supply time to the time series model.
@@ -135,6 +139,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
         for (int i = 0; seriesCount > i; ++i) {
             dataset.getSeries(i).clear();
         }
+        dataset.seriesChanged();
     }
 
     /**
@@ -148,6 +153,7 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
     public void addData(int seriesIndex, double time, double value) {
         if (seriesIndex < dataset.getSeriesCount()) {
             dataset.getSeries(seriesIndex).add(time, value);
+            dataset.seriesChanged();
         }
     }
 
@@ -199,9 +205,11 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
         }
 
         // Write the data
+        double time = timeSupplier.get();
         for (int i = 0; i < vector.length; i++) {
-            dataset.getSeries(i).add(timeSupplier.get(), (Double) vector[i]);
+            dataset.getSeries(i).add(time, vector[i]);
         }
+        dataset.seriesChanged();
     }
 
     /**
@@ -245,10 +253,9 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
     /**
      * Adds an xy series to the chart with the specified description.
      */
-    private XYSeries addXYSeries(String description) {
-        XYSeries xy = new XYSeries(description);
-        xy.setMaximumItemCount(windowSize);
-        xy.setDescription(description);
+    private XYRingBuffer addXYSeries(String description) {
+        XYRingBuffer xy = new XYRingBuffer(description);
+        xy.setMaximumItemCount(fixedWidth ? windowSize : Integer.MAX_VALUE);
         dataset.addSeries(xy);
         return xy;
     }
@@ -290,9 +297,12 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     public void setWindowSize(int value) {
         windowSize = value;
+        if (fixedWidth) {
+            setFixedWidth(true);
+        }
     }
 
-    public XYSeriesCollection getDataset() {
+    public XYRingBufferDataset getDataset() {
         return dataset;
     }
 
@@ -334,15 +344,10 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
 
     public void setFixedWidth(boolean fixedWidth) {
         this.fixedWidth = fixedWidth;
-        if(fixedWidth) {
-            for (Object s : dataset.getSeries()) {
-                ((XYSeries) s).setMaximumItemCount(windowSize);
-            }
-        } else {
-            for (Object s : dataset.getSeries()) {
-                ((XYSeries) s).setMaximumItemCount(Integer.MAX_VALUE);
-            }
+        for (XYRingBuffer s : dataset.getSeries()) {
+            s.setMaximumItemCount(fixedWidth ? windowSize : Integer.MAX_VALUE);
         }
+        dataset.seriesChanged();
     }
 
     /**
@@ -357,8 +362,9 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
      */
     private Object readResolve() {
         changeSupport = new PropertyChangeSupport(this);
-        dataset = new XYSeriesCollection();
+        dataset = new XYRingBufferDataset();
         timeSeriesList.forEach(ts -> dataset.addSeries(ts.series));
+        setFixedWidth(fixedWidth);
         return this;
     }
 
@@ -378,16 +384,16 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
         /**
          * The represented time series
          */
-        XYSeries series;
+        XYRingBuffer series;
 
         /**
          * Construct the time series.
          */
-        public ScalarTimeSeries(XYSeries xy) {
+        public ScalarTimeSeries(XYRingBuffer xy) {
             series = xy;
         }
 
-        public XYSeries getSeries() {
+        public XYRingBuffer getSeries() {
             return series;
         }
 
@@ -400,7 +406,8 @@ public class TimeSeriesModel implements AttributeContainer, EditableObject {
 
         @Consumable()
         public void setValue(double value) {
-            series.add(timeSupplier.get(), (Number) value);
+            series.add(timeSupplier.get(), value);
+            dataset.seriesChanged();
         }
 
         @Override
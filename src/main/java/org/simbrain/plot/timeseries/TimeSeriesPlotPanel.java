@@ -27,6 +27,8 @@ import org.simbrain.util.propertyeditor.AnnotatedPropertyEditor;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 
 /**
  * Display a TimeSeriesPlot. This component can be used independently of the
@@ -138,6 +140,13 @@ public class TimeSeriesPlotPanel extends JPanel {
         chartPanel.setChart(chart);
         chart.setBackgroundPaint(null);
 
+        // Long series are reduced to about two points per pixel before rendering
+        chartPanel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                model.getDataset().setDecimationWidth(Math.max(1, chartPanel.getWidth()));
+            }
+        });
     }
 
     private void updateChartSettings() {
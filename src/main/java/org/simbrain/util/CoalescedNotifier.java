@@ -0,0 +1,100 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util;
+
+import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs an action on the Swing event thread at most once per interval, however
+ * often it is requested. Used to tie GUI updates to a repaint rate rather than
+ * to the rate at which a simulation produces data.
+ * <p>
+ * A request made while no run is pending schedules one for the end of the
+ * interval; requests made before then are folded into it. Requests may be made
+ * from any thread.
+ */
+public class CoalescedNotifier {
+
+    /**
+     * Default interval in milliseconds (25 updates per second).
+     */
+    public static final int DEFAULT_INTERVAL = 40;
+
+    private final Runnable action;
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final Timer timer;
+
+    /**
+     * Construct a notifier with the default interval.
+     *
+     * @param action the action to run
+     */
+    public CoalescedNotifier(Runnable action) {
+        this(DEFAULT_INTERVAL, action);
+    }
+
+    /**
+     * Construct a notifier.
+     *
+     * @param interval minimum time between runs in milliseconds
+     * @param action   the action to run
+     */
+    public CoalescedNotifier(int interval, Runnable action) {
+        this.action = action;
+        timer = new Timer(interval, e -> flush());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Ask for the action to be run once the interval has passed.
+     */
+    public void request() {
+        if (pending.compareAndSet(false, true)) {
+            timer.restart();
+        }
+    }
+
+    /**
+     * Run the action now, on the calling thread, if a request is pending.
+     */
+    public void flush() {
+        if (pending.compareAndSet(true, false)) {
+            action.run();
+        }
+    }
+
+    /**
+     * Returns true if a request has not yet been acted on.
+     */
+    public boolean isPending() {
+        return pending.get();
+    }
+
+    public int getInterval() {
+        return timer.getDelay();
+    }
+
+    public void setInterval(int interval) {
+        timer.setDelay(interval);
+        timer.setInitialDelay(interval);
+    }
+}
@@ -35,6 +35,11 @@ public class DataPoint {
      */
     private String label = "";
 
+    /**
+     * Incremented whenever the data changes, so that cached distances to this point can be recomputed.
+     */
+    private transient int version;
+
     /**
      * Initialize a datapoint.
      *
@@ -64,6 +69,18 @@ public class DataPoint {
     // TODO: Dangerous to have this public...?
     public void setData(double[] data) {
         this.data = data;
+        version++;
+    }
+
+    /**
+     * Record that the data array was changed in place.
+     */
+    void markChanged() {
+        version++;
+    }
+
+    int getVersion() {
+        return version;
     }
 
     public double[] getData() {
@@ -20,12 +20,12 @@ package org.simbrain.util.projection;
 
 import com.Ostermiller.util.CSVPrinter;
 import org.pmw.tinylog.Logger;
+import org.simbrain.util.math.SimbrainMath;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -42,7 +42,22 @@ public class Dataset {
     /**
      * The data.
      */
-    private transient NTree ntree;
+    private transient List<DataPoint> points;
+
+    /**
+     * Datasets with at least this many dimensions are indexed with an approximate {@link HnswIndex} once they have
+     * {@link #APPROXIMATE_INDEX_POINTS} points, since in high dimensions a {@link KdTree} visits most of its nodes.
+     */
+    private static final int APPROXIMATE_INDEX_DIMENSIONS = 16;
+
+    private static final int APPROXIMATE_INDEX_POINTS = 1000;
+
+    /**
+     * Nearest neighbor index over the data, built when first queried and kept up to date as points are added. Changing
+     * a point's coordinates in place is not seen by the index, so datasets that are searched (the upstairs data) should
+     * only be changed using {@link #setPoint(int, DataPoint)}.
+     */
+    private transient NearestNeighborIndex index;
 
     /**
      * Number of dimensions in the dataset.
@@ -50,9 +65,9 @@ public class Dataset {
     private int dimensions;
 
     /**
-     * Matrix of interpoint distances.
+     * Cache of interpoint distances.
      */
-    private transient double[] distances = new double[10240];
+    private transient DistanceCache distanceCache = new DistanceCache(this);
 
     /**
      * Persistent form of data, which is read back in to the dataset to recreate all necessary structures.
@@ -84,7 +99,7 @@ public class Dataset {
      */
     public Dataset(final int dimensions) {
         this.dimensions = dimensions;
-        ntree = new NTree(dimensions);
+        points = new ArrayList<>();
     }
 
     /**
@@ -109,33 +124,9 @@ public class Dataset {
      * @return the n-dimensional datapoint
      */
     public DataPoint getPoint(final int i) {
-        return ntree.get(i);
-    }
-
-    /**
-     * Returns the logical end of the distance array
-     *
-     * @return the logical end of the distance array
-     */
-    private int getDistanceEnd() {
-        int lastPoint = getNumPoints() - 1;
-        return getDistanceIndex(lastPoint) + lastPoint;
-    }
-
-    /**
-     * Makes sure there is enough space in the distances array
-     */
-    private void ensureDistances() {
-        if (getDistanceEnd() > distances.length) {
-            int newLength = distances.length * 4;
-            double[] newDistances = new double[newLength];
-            System.arraycopy(distances, 0, newDistances, 0, distances.length);
-            Arrays.fill(newDistances, distances.length, newLength, -1);
-            distances = newDistances;
-        }
+        return points.get(i);
     }
 
-
     /**
      * Add a new datapoint to the dataset.
      *
@@ -163,15 +154,13 @@ public class Dataset {
      * @return null if point added, overlapping point otherwise
      */
     private DataPoint _addPoint(DataPoint point) {
-        DataPoint existingPoint = ntree.add(point);
-        // TODO: This is called by addPoint which already does a uniqueness
-        // check, which makes this redundant. Another API oddity.  All this
-        // needs a cleanup pass
-        if (existingPoint != null) {
-            setCurrentPoint(existingPoint);
-            return existingPoint;
+        points.add(point);
+        if (index instanceof KdTree && usesApproximateIndex()) {
+            // Rebuilt as an approximate index when next queried
+            index = null;
+        } else if (index != null) {
+            index.add(point.getVector());
         }
-        ensureDistances();
         lastAddedPoint = point;
         setCurrentPoint(point);
         return null;
@@ -208,8 +197,10 @@ public class Dataset {
      * @param point the new point
      */
     private void _setPoint(int index, DataPoint point) {
-        ntree.set(index, point);
-        ensureDistances();
+        points.set(index, point);
+        if (this.index != null) {
+            this.index.set(index, point.getVector());
+        }
     }
 
     /**
@@ -234,7 +225,7 @@ public class Dataset {
      * @return the number of points in the dataset
      */
     public int getNumPoints() {
-        return ntree.size();
+        return points.size();
     }
 
     /**
@@ -244,77 +235,12 @@ public class Dataset {
         lastPoint = null;
         currentPoint = null;
         lastAddedPoint = null;
-        ntree = new NTree(dimensions);
-        if (distances == null) {
-            distances = new double[10240];
-        }
-        Arrays.fill(distances, -1);
-    }
-
-    /**
-     * calculates the index of the start index for distances from the given point
-     *
-     * @param point the point to find the start index for
-     * @return the index to the distances array for the given point
-     */
-    private int getDistanceIndex(int point) {
-        switch (point) {
-            case 0:
-                return -1; /* no start for point 0 */
-            case 1:
-                return 0;
-            default:
-                int n = point - 1;
-                return ((n * n) + n) / 2;
-        }
-    }
-
-    /**
-     * Calculates the distances between pointA and pointB. A must be greater than B
-     *
-     * @param pointA the first point
-     * @param pointB the second point
-     */
-    private double calculateDistance(int pointA, int pointB) {
-        if (pointA <= pointB) {
-            throw new IllegalArgumentException("pointA must be greater than pointB - A: " + pointA + " B: " + pointB);
-        }
-
-        int start = getDistanceIndex(pointA);
-
-        double distance = getDistance(ntree.get(pointA), ntree.get(pointB));
-        distances[start + pointB] = distance;
-
-        return distance;
-    }
-
-    /**
-     * Calculates and stores all the distances to all other points with the given point
-     *
-     * @param point the point to calculate distances for
-     */
-    private void calculateDistances(int point) {
-        int start = getDistanceIndex(point);
-
-        for (int i = 0; i < point; i++) {
-            distances[start + i] = getDistance(ntree.get(point), ntree.get(i));
-        }
-
-        int numPoints = getNumPoints();
-
-        for (int i = point + 1; i < numPoints; i++) {
-            start = getDistanceIndex(i);
-            distances[start + point] = getDistance(ntree.get(point), ntree.get(i));
-        }
-    }
-
-    /**
-     * calculates all distances for the current set of points
-     */
-    private void calculateDistances() {
-        for (int point = 0; point < ntree.size(); point++) {
-            calculateDistances(point);
+        points = new ArrayList<>();
+        index = null;
+        if (distanceCache == null) {
+            distanceCache = new DistanceCache(this);
         }
+        distanceCache.clear();
     }
 
     /**
@@ -331,10 +257,7 @@ public class Dataset {
             }
             getPoint(i).setData(data);
         }
-
-        Arrays.fill(distances, -1);
-
-        calculateDistances();
+        index = null;
     }
 
     /**
@@ -343,16 +266,7 @@ public class Dataset {
      * @return minimum distance between any two points in the low-d dataset
      */
     public double getMinimumDistance() {
-        double l = Double.POSITIVE_INFINITY;
-        int stop = getDistanceEnd();
-
-        calculateDistances();
-
-        for (int i = 0; i < stop; i++) {
-            l = Math.min(l, distances[i]);
-        }
-
-        return l;
+        return distanceCache.getMin();
     }
 
     /**
@@ -361,16 +275,7 @@ public class Dataset {
      * @return maximum distance between any two points in the low-d dataset
      */
     public double getMaximumDistance() {
-        double l = 0;
-        int stop = getDistanceEnd();
-
-        calculateDistances();
-
-        for (int i = 0; i < stop; i++) {
-            l = Math.max(l, distances[i]);
-        }
-
-        return l;
+        return distanceCache.getMax();
     }
 
     /**
@@ -435,6 +340,7 @@ public class Dataset {
                     newPoint[k] = getComponent(i, k) + ((Math.random() - 0.5) * factor);
                     getPoint(i).setData(newPoint);
                 }
+                index = null;
             } else {
                 continue;
             }
@@ -501,7 +407,33 @@ public class Dataset {
         if (toCheck.getDimension() != dimensions) {
             throw new IllegalArgumentException("point to check has " + toCheck.getDimension() + " dimensions.  This dataset requires " + dimensions);
         }
-        return ntree.isUnique(toCheck, tolerance);
+        int i = getIndex().findWithin(toCheck.getVector(), tolerance);
+        return i < 0 ? null : points.get(i);
+    }
+
+    /**
+     * Returns the nearest neighbor index, building it if needed.
+     */
+    private NearestNeighborIndex getIndex() {
+        if (index == null) {
+            if (usesApproximateIndex()) {
+                index = new HnswIndex(dimensions);
+                for (DataPoint point : points) {
+                    index.add(point.getVector());
+                }
+            } else {
+                double[][] data = new double[points.size()][];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = points.get(i).getVector();
+                }
+                index = new KdTree(dimensions, data);
+            }
+        }
+        return index;
+    }
+
+    private boolean usesApproximateIndex() {
+        return dimensions >= APPROXIMATE_INDEX_DIMENSIONS && points.size() >= APPROXIMATE_INDEX_POINTS;
     }
 
     /**
@@ -511,12 +443,12 @@ public class Dataset {
      * @return the index of the point closest to this one in the dataset
      */
     public int getClosestIndex(final DataPoint point) {
-        DataPoint closest = ntree.getClosestPoint(point);
-        return ntree.getIndex(closest);
+        return getIndex().nearest(point.getVector());
     }
 
     /**
-     * returns k neighbors where the 0th item is the closest and the 1st item is the second closest etc.
+     * returns k neighbors where the 0th item is the closest and the 1st item is the second closest etc. If the point
+     * is itself in the dataset it is not counted as one of its own neighbors.
      *
      * @param k     the number of points to retrieve
      * @param point the point to find neighbors for
@@ -527,13 +459,20 @@ public class Dataset {
             return null;
         }
 
-        int[] nearest = new int[k];
-        List<DataPoint> neighbors = ntree.getClosestPoints(k, point);
-        for (int i = 0; i < k; i++) {
-            nearest[i] = ntree.getIndex(neighbors.get(i));
-        }
+        return getIndex().nearest(point.getVector(), k, indexOf(point));
+    }
 
-        return nearest;
+    /**
+     * Returns the index of a point object in the dataset, or -1 if it is not in the dataset. Searches from the end,
+     * since the point queried is usually the last one added.
+     */
+    private int indexOf(final DataPoint point) {
+        for (int i = points.size() - 1; i >= 0; i--) {
+            if (points.get(i) == point) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -566,13 +505,7 @@ public class Dataset {
             index1 = swap;
         }
 
-        double d = distances[getDistanceIndex(index1) + index2];
-
-        if (d < 0) {
-            return calculateDistance(index1, index2);
-        } else {
-            return d;
-        }
+        return distanceCache.get(index1, index2);
     }
 
     /**
@@ -583,7 +516,7 @@ public class Dataset {
      * @return the Euclidean distance between points 1 and 2
      */
     public double getDistance(final DataPoint point1, final DataPoint point2) {
-        return NTree.getDistance(point1, point2);
+        return SimbrainMath.distance(point1.getVector(), point2.getVector());
     }
 
     /**
@@ -595,39 +528,71 @@ public class Dataset {
 
     /**
      * Returns a matrix of interpoint distances, between the points in the dataset. Note that the lower triangular
-     * duplicates the upper triangular
+     * duplicates the upper triangular. For large datasets prefer {@link #getPackedDistances(double[])}, which holds
+     * each distance once.
      *
      * @return a matrix of interpoint distances
      */
     public double[][] getDistances() {
-        calculateDistances();
-
         int numPoints = getNumPoints();
+        double[] packed = getPackedDistances(null);
         double[][] temp = new double[numPoints][numPoints];
 
         for (int i = 0; i < numPoints; i++) {
-            for (int j = 0; j < numPoints; j++) {
-                temp[i][j] = getDistance(i, j);
+            for (int j = 0; j < i; j++) {
+                double d = packed[getPackedIndex(i, j)];
+                temp[i][j] = d;
+                temp[j][i] = d;
             }
         }
 
         return temp;
     }
 
+    /**
+     * Returns the interpoint distances as a packed lower triangle; the distance between points i and j, i &gt; j, is
+     * at {@link #getPackedIndex(int, int)}.
+     *
+     * @param dest array to fill; it is reused if it holds at least n * (n - 1) / 2 values, otherwise a new array is
+     *             returned
+     * @return the packed distances
+     */
+    public double[] getPackedDistances(double[] dest) {
+        return distanceCache.copyPacked(dest);
+    }
+
+    /**
+     * Returns the position of the distance between points i and j in a packed lower triangle.
+     */
+    public static int getPackedIndex(int i, int j) {
+        if (i < j) {
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+        return (int) ((long) i * (i - 1) / 2) + j;
+    }
+
     /**
      * @return the sum of the distances between points in the dataset
      */
     public double getSumDistances() {
-        double sum = 0;
-        int stop = getDistanceEnd();
-
-        calculateDistances();
+        return distanceCache.getSum();
+    }
 
-        for (int i = 0; i < stop; i++) {
-            sum += distances[i];
-        }
+    /**
+     * Store cached distances as floats rather than doubles, halving their memory use.
+     */
+    public void setSinglePrecisionDistances(boolean singlePrecision) {
+        distanceCache.setSinglePrecision(singlePrecision);
+    }
 
-        return sum;
+    /**
+     * Set the largest number of bytes used to cache interpoint distances. Larger datasets compute distances when
+     * they are needed.
+     */
+    public void setDistanceMemoryCap(long bytes) {
+        distanceCache.setMemoryCap(bytes);
     }
 
     /**
@@ -726,7 +691,7 @@ public class Dataset {
      * @return a reference to the dataset
      */
     public ArrayList<DataPoint> asArrayList() {
-        return ntree.asArrayList();
+        return new ArrayList<>(points);
     }
 
     /**
@@ -734,7 +699,9 @@ public class Dataset {
      */
     public void mirror(Dataset other) {
         clear();
-        this.ntree.addAll(other.ntree);
+        for (DataPoint point : other.points) {
+            _addPoint(point);
+        }
     }
 
     /**
@@ -788,7 +755,7 @@ public class Dataset {
     public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("(Dimensions: " + getDimensions() + ")\n");
-        for (DataPoint point : ntree) {
+        for (DataPoint point : points) {
             builder.append(point);
             builder.append('\n');
         }
@@ -0,0 +1,413 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import java.util.Arrays;
+
+/**
+ * Cache of the interpoint distances of a {@link Dataset}, stored as a packed
+ * lower triangle: row i holds the distances from point i to points 0..i-1,
+ * starting at i * (i - 1) / 2.
+ * <p>
+ * Rows are computed lazily, so appending a point only costs its own row the
+ * next time distances are needed. Each cached row remembers which point and
+ * which {@link DataPoint} version it was computed for; a point that has been
+ * replaced or changed has its row and column recomputed. The sum, minimum and
+ * maximum distance are maintained as rows are computed, and only rescanned
+ * when a changed distance was the minimum or maximum.
+ * <p>
+ * If the triangle would exceed the memory cap nothing is stored. Distances are
+ * then computed when asked for, and the statistics are computed block by
+ * block and kept until the dataset changes.
+ */
+final class DistanceCache {
+
+    /**
+     * Rows and columns per tile when computing distances without a cache.
+     */
+    private static final int BLOCK_SIZE = 256;
+
+    /**
+     * The points whose distances are cached.
+     */
+    private final Dataset dataset;
+
+    /**
+     * If true distances are stored as floats, halving the memory used.
+     */
+    private boolean singlePrecision = false;
+
+    /**
+     * Largest number of bytes the triangle may use.
+     */
+    private long memoryCap = 256L << 20;
+
+    private double[] doubles;
+
+    private float[] floats;
+
+    /**
+     * Number of rows held by the triangle.
+     */
+    private int rows;
+
+    /**
+     * Point each cached row was computed for.
+     */
+    private DataPoint[] rowPoints = new DataPoint[0];
+
+    /**
+     * Version of each point when its row was computed.
+     */
+    private int[] rowVersions = new int[0];
+
+    private double sum;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max;
+
+    /**
+     * False if the min or max must be found by rescanning the triangle.
+     */
+    private boolean extremaValid = true;
+
+    /**
+     * Identifies the dataset state the statistics were computed for when
+     * nothing is cached.
+     */
+    private long uncachedSignature = Long.MIN_VALUE;
+
+    DistanceCache(Dataset dataset) {
+        this.dataset = dataset;
+    }
+
+    /**
+     * Forget all cached distances.
+     */
+    void clear() {
+        doubles = null;
+        floats = null;
+        rows = 0;
+        rowPoints = new DataPoint[0];
+        rowVersions = new int[0];
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = 0;
+        extremaValid = true;
+        uncachedSignature = Long.MIN_VALUE;
+    }
+
+    private static long entries(long numRows) {
+        return numRows * (numRows - 1) / 2;
+    }
+
+    private static int offset(int i, int j) {
+        return (int) (entries(i) + j);
+    }
+
+    /**
+     * Returns true if a triangle with this many rows fits under the cap.
+     */
+    private boolean fits(int numRows) {
+        long entries = entries(numRows);
+        return entries < Integer.MAX_VALUE - 8 && entries * (singlePrecision ? 4 : 8) <= memoryCap;
+    }
+
+    /**
+     * Returns true if distances of the whole dataset are stored. Drops the
+     * triangle if the dataset has outgrown the cap.
+     */
+    private boolean cached() {
+        if (fits(dataset.getNumPoints())) {
+            return true;
+        }
+        if (rows > 0) {
+            clear();
+        }
+        return false;
+    }
+
+    private double stored(int i, int j) {
+        int k = offset(i, j);
+        return singlePrecision ? floats[k] : doubles[k];
+    }
+
+    private void store(int i, int j, double d) {
+        int k = offset(i, j);
+        if (singlePrecision) {
+            floats[k] = (float) d;
+        } else {
+            doubles[k] = d;
+        }
+    }
+
+    private double compute(int i, int j) {
+        double[] a = dataset.getPoint(i).getVector();
+        double[] b = dataset.getPoint(j).getVector();
+        double sum = 0;
+        for (int k = 0; k < a.length; k++) {
+            double diff = a[k] - b[k];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Returns the distance between points i and j.
+     */
+    double get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        if (i < j) {
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+        if (!cached()) {
+            return compute(i, j);
+        }
+        ensureRows(i + 1);
+        refresh(i);
+        refresh(j);
+        return stored(i, j);
+    }
+
+    /**
+     * Compute any rows that are not yet cached, up to numRows.
+     */
+    private void ensureRows(int numRows) {
+        if (numRows <= rows) {
+            return;
+        }
+        int capacity = rowPoints.length;
+        if (numRows > capacity) {
+            // Grow geometrically, but never past the dataset or the cap
+            int newCapacity = Math.max(numRows, Math.min(dataset.getNumPoints(), capacity + capacity / 2 + 16));
+            while (newCapacity > numRows && !fits(newCapacity)) {
+                newCapacity = numRows;
+            }
+            int entries = (int) entries(newCapacity);
+            if (singlePrecision) {
+                floats = floats == null ? new float[entries] : Arrays.copyOf(floats, entries);
+            } else {
+                doubles = doubles == null ? new double[entries] : Arrays.copyOf(doubles, entries);
+            }
+            rowPoints = Arrays.copyOf(rowPoints, newCapacity);
+            rowVersions = Arrays.copyOf(rowVersions, newCapacity);
+        }
+        for (int i = rows; i < numRows; i++) {
+            for (int j = 0; j < i; j++) {
+                store(i, j, compute(i, j));
+                include(stored(i, j));
+            }
+            snapshot(i);
+        }
+        rows = numRows;
+    }
+
+    private void snapshot(int i) {
+        DataPoint point = dataset.getPoint(i);
+        rowPoints[i] = point;
+        rowVersions[i] = point.getVersion();
+    }
+
+    private void include(double d) {
+        sum += d;
+        min = Math.min(min, d);
+        max = Math.max(max, d);
+    }
+
+    private void exclude(double d) {
+        sum -= d;
+        if (d <= min || d >= max) {
+            extremaValid = false;
+        }
+    }
+
+    /**
+     * Recompute the row and column of point i if it changed since they were
+     * cached.
+     */
+    private void refresh(int i) {
+        if (i >= rows) {
+            return;
+        }
+        DataPoint point = dataset.getPoint(i);
+        if (rowPoints[i] == point && rowVersions[i] == point.getVersion()) {
+            return;
+        }
+        for (int j = 0; j < rows; j++) {
+            if (j == i) {
+                continue;
+            }
+            int row = Math.max(i, j);
+            int col = Math.min(i, j);
+            exclude(stored(row, col));
+            store(row, col, compute(row, col));
+            include(stored(row, col));
+        }
+        snapshot(i);
+    }
+
+    /**
+     * Bring the whole triangle up to date.
+     */
+    private void refreshAll() {
+        ensureRows(dataset.getNumPoints());
+        for (int i = 0; i < rows; i++) {
+            refresh(i);
+        }
+        if (!extremaValid) {
+            min = Double.POSITIVE_INFINITY;
+            max = 0;
+            int entries = (int) entries(rows);
+            for (int k = 0; k < entries; k++) {
+                double d = singlePrecision ? floats[k] : doubles[k];
+                min = Math.min(min, d);
+                max = Math.max(max, d);
+            }
+            extremaValid = true;
+        }
+    }
+
+    /**
+     * Returns a value that changes whenever the dataset's points change.
+     */
+    private long signature() {
+        int n = dataset.getNumPoints();
+        long signature = n;
+        for (int i = 0; i < n; i++) {
+            DataPoint point = dataset.getPoint(i);
+            signature = signature * 31 + System.identityHashCode(point);
+            signature = signature * 31 + point.getVersion();
+        }
+        return signature;
+    }
+
+    /**
+     * Compute the statistics tile by tile without storing distances.
+     */
+    private void computeUncachedStatistics() {
+        long signature = signature();
+        if (signature == uncachedSignature) {
+            return;
+        }
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = 0;
+        forEachBlock((i, j, d) -> include(d));
+        uncachedSignature = signature;
+    }
+
+    private interface DistanceConsumer {
+        void accept(int i, int j, double d);
+    }
+
+    /**
+     * Visit every pair i > j in square tiles, so that the points of a tile
+     * stay in the processor cache while their distances are computed.
+     */
+    private void forEachBlock(DistanceConsumer consumer) {
+        int n = dataset.getNumPoints();
+        for (int rowStart = 0; rowStart < n; rowStart += BLOCK_SIZE) {
+            int rowEnd = Math.min(n, rowStart + BLOCK_SIZE);
+            for (int colStart = 0; colStart < rowEnd; colStart += BLOCK_SIZE) {
+                int colEnd = Math.min(rowEnd, colStart + BLOCK_SIZE);
+                for (int i = rowStart; i < rowEnd; i++) {
+                    for (int j = colStart; j < Math.min(i, colEnd); j++) {
+                        consumer.accept(i, j, compute(i, j));
+                    }
+                }
+            }
+        }
+    }
+
+    double getSum() {
+        if (cached()) {
+            refreshAll();
+        } else {
+            computeUncachedStatistics();
+        }
+        return sum;
+    }
+
+    double getMin() {
+        if (cached()) {
+            refreshAll();
+        } else {
+            computeUncachedStatistics();
+        }
+        return min;
+    }
+
+    double getMax() {
+        if (cached()) {
+            refreshAll();
+        } else {
+            computeUncachedStatistics();
+        }
+        return max;
+    }
+
+    /**
+     * Copy all distances into a packed lower triangle.
+     *
+     * @param dest array to copy into; reused if it is large enough
+     * @return the packed distances
+     */
+    double[] copyPacked(double[] dest) {
+        int n = dataset.getNumPoints();
+        int entries = (int) entries(n);
+        if (dest == null || dest.length < entries) {
+            dest = new double[entries];
+        }
+        if (cached()) {
+            refreshAll();
+            for (int k = 0; k < entries; k++) {
+                dest[k] = singlePrecision ? floats[k] : doubles[k];
+            }
+        } else {
+            double[] ret = dest;
+            forEachBlock((i, j, d) -> ret[offset(i, j)] = d);
+        }
+        return dest;
+    }
+
+    boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    void setSinglePrecision(boolean singlePrecision) {
+        if (this.singlePrecision != singlePrecision) {
+            this.singlePrecision = singlePrecision;
+            clear();
+        }
+    }
+
+    long getMemoryCap() {
+        return memoryCap;
+    }
+
+    void setMemoryCap(long memoryCap) {
+        this.memoryCap = memoryCap;
+        clear();
+    }
+}
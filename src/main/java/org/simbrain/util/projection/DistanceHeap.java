@@ -0,0 +1,144 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (distance, point index) pairs held in primitive arrays, used
+ * by the nearest neighbor indices. A max heap keeps its farthest entry on top,
+ * which makes it a bounded "k best so far" set; a min heap keeps its closest
+ * entry on top, which makes it a search frontier.
+ */
+final class DistanceHeap {
+
+    private double[] distances;
+
+    private int[] indices;
+
+    private int size;
+
+    /**
+     * True if the largest distance is on top.
+     */
+    private final boolean max;
+
+    DistanceHeap(int capacity, boolean max) {
+        distances = new double[Math.max(1, capacity)];
+        indices = new int[Math.max(1, capacity)];
+        this.max = max;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    double topDistance() {
+        return distances[0];
+    }
+
+    int topIndex() {
+        return indices[0];
+    }
+
+    /**
+     * Returns true if a should be above b.
+     */
+    private boolean above(double a, double b) {
+        return max ? a > b : a < b;
+    }
+
+    void push(double distance, int index) {
+        if (size == distances.length) {
+            distances = Arrays.copyOf(distances, size * 2);
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!above(distance, distances[parent])) {
+                break;
+            }
+            distances[i] = distances[parent];
+            indices[i] = indices[parent];
+            i = parent;
+        }
+        distances[i] = distance;
+        indices[i] = index;
+    }
+
+    /**
+     * Remove the top entry.
+     */
+    void pop() {
+        size--;
+        if (size == 0) {
+            return;
+        }
+        double distance = distances[size];
+        int index = indices[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && above(distances[child + 1], distances[child])) {
+                child++;
+            }
+            if (!above(distances[child], distance)) {
+                break;
+            }
+            distances[i] = distances[child];
+            indices[i] = indices[child];
+            i = child;
+        }
+        distances[i] = distance;
+        indices[i] = index;
+    }
+
+    /**
+     * Offer an entry to a max heap holding at most k entries, replacing the
+     * farthest entry if the new one is closer.
+     */
+    void offer(double distance, int index, int k) {
+        if (size < k) {
+            push(distance, index);
+        } else if (distance < distances[0]) {
+            pop();
+            push(distance, index);
+        }
+    }
+
+    /**
+     * Empty a max heap into an array of indices sorted closest first.
+     */
+    int[] drainSorted() {
+        int[] ret = new int[size];
+        for (int i = ret.length - 1; i >= 0; i--) {
+            ret[i] = indices[0];
+            pop();
+        }
+        return ret;
+    }
+}
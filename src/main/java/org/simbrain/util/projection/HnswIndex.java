@@ -0,0 +1,444 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * <b>HnswIndex</b> is an approximate nearest neighbor index using a
+ * hierarchical navigable small world graph (Malkov and Yashunin, 2018). It is
+ * meant for high-dimensional data such as word embeddings, where a {@link
+ * KdTree} has to visit most of its nodes.
+ * <p>
+ * Each point is linked to up to {@link #getMaxConnections()} near points on
+ * each layer it belongs to (twice that on the bottom layer); higher layers
+ * hold exponentially fewer points. A search descends greedily through the
+ * upper layers and then explores the bottom layer keeping the best {@link
+ * #getEfSearch()} candidates. Larger values of efSearch are slower but more
+ * accurate.
+ * <p>
+ * Moving a point with {@link #set(int, double[])} unlinks it, reconnecting
+ * its former neighbors to each other, and inserts it again at its new
+ * location. This visits every point, so it is much slower than adding one.
+ */
+public class HnswIndex implements NearestNeighborIndex {
+
+    private final int dimensions;
+
+    /**
+     * Maximum links per point on the upper layers; twice this on layer 0.
+     */
+    private final int maxConnections;
+
+    /**
+     * Size of the candidate list used while adding points.
+     */
+    private final int efConstruction;
+
+    /**
+     * Size of the candidate list used while searching.
+     */
+    private int efSearch = 50;
+
+    /**
+     * Normalization for the random layer assignment.
+     */
+    private final double levelMultiplier;
+
+    private final Random random;
+
+    /**
+     * Coordinates, row-major.
+     */
+    private double[] coordinates;
+
+    private int size;
+
+    /**
+     * Top layer of each point.
+     */
+    private int[] levels;
+
+    /**
+     * Links of each point, one block per layer. Each block starts with the
+     * number of links followed by room for the maximum number of links.
+     */
+    private int[][] links;
+
+    private int entryPoint = -1;
+
+    private int topLevel = -1;
+
+    /**
+     * Visit marks for searches; a node is visited if its mark equals the
+     * current search's stamp.
+     */
+    private int[] visited;
+
+    private int visitStamp;
+
+    /**
+     * Construct an empty index with default parameters.
+     *
+     * @param dimensions dimension of the points
+     */
+    public HnswIndex(int dimensions) {
+        this(dimensions, 16, 100, 42);
+    }
+
+    /**
+     * Construct an empty index.
+     *
+     * @param dimensions     dimension of the points
+     * @param maxConnections links per point on the upper layers
+     * @param efConstruction candidate list size used while adding points
+     * @param seed           seed for the random layer assignment
+     */
+    public HnswIndex(int dimensions, int maxConnections, int efConstruction, long seed) {
+        this.dimensions = dimensions;
+        this.maxConnections = Math.max(2, maxConnections);
+        this.efConstruction = Math.max(this.maxConnections, efConstruction);
+        this.levelMultiplier = 1 / Math.log(this.maxConnections);
+        this.random = new Random(seed);
+        coordinates = new double[16 * dimensions];
+        levels = new int[16];
+        links = new int[16][];
+        visited = new int[16];
+    }
+
+    /**
+     * Build an index over an array of points. Point i of the index is row i
+     * of the array.
+     *
+     * @param points the points, one per row
+     */
+    public HnswIndex(double[][] points) {
+        this(points.length == 0 ? 0 : points[0].length);
+        for (double[] point : points) {
+            add(point);
+        }
+    }
+
+    @Override
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int index, int dimension) {
+        return coordinates[index * dimensions + dimension];
+    }
+
+    @Override
+    public void set(int index, double[] point) {
+        checkDimensions(point);
+        unlink(index);
+        System.arraycopy(point, 0, coordinates, index * dimensions, dimensions);
+        insert(index, point);
+    }
+
+    private void checkDimensions(double[] point) {
+        if (point.length != dimensions) {
+            throw new IllegalArgumentException("point has " + point.length + " dimensions. This index requires " +
+                    dimensions);
+        }
+    }
+
+    private int capacity(int level) {
+        return level == 0 ? 2 * maxConnections : maxConnections;
+    }
+
+    private int blockStart(int level) {
+        return level == 0 ? 0 : 2 * maxConnections + 1 + (level - 1) * (maxConnections + 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > levels.length) {
+            int newCapacity = Math.max(capacity, levels.length * 2);
+            coordinates = Arrays.copyOf(coordinates, newCapacity * dimensions);
+            levels = Arrays.copyOf(levels, newCapacity);
+            links = Arrays.copyOf(links, newCapacity);
+            visited = Arrays.copyOf(visited, newCapacity);
+        }
+    }
+
+    @Override
+    public int add(double[] point) {
+        checkDimensions(point);
+        ensureCapacity(size + 1);
+        int node = size++;
+        System.arraycopy(point, 0, coordinates, node * dimensions, dimensions);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        levels[node] = level;
+        links[node] = new int[blockStart(level + 1)];
+        insert(node, point);
+        return node;
+    }
+
+    /**
+     * Link a node into the graph. The node has its coordinates and level but
+     * no links, and no other node links to it.
+     */
+    private void insert(int node, double[] point) {
+        int level = levels[node];
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int l = topLevel; l > level; l--) {
+            current = greedyClosest(point, current, l);
+        }
+        DistanceHeap candidates = new DistanceHeap(efConstruction, true);
+        for (int l = Math.min(level, topLevel); l >= 0; l--) {
+            searchLayer(point, current, efConstruction, l, candidates);
+            int[] neighbors = candidates.drainSorted();
+            current = neighbors[0];
+            int count = Math.min(capacity(l), neighbors.length);
+            for (int i = 0; i < count; i++) {
+                addLink(node, neighbors[i], l, false);
+                // The closest neighbor always links back, so that a point far from the rest can still be reached
+                addLink(neighbors[i], node, l, i == 0);
+            }
+        }
+        if (level > topLevel) {
+            topLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Remove every link to and from a node. Each node that loses its link is
+     * offered the removed node's neighbors in its place, so that the graph
+     * stays connected. If the node was the entry point, the highest other
+     * node takes over.
+     */
+    private void unlink(int node) {
+        for (int l = 0; l <= levels[node]; l++) {
+            int start = blockStart(l);
+            int[] former = Arrays.copyOfRange(links[node], start + 1, start + 1 + links[node][start]);
+            links[node][start] = 0;
+            for (int other = 0; other < size; other++) {
+                if (other == node || levels[other] < l || !removeLink(other, node, l)) {
+                    continue;
+                }
+                for (int neighbor : former) {
+                    if (neighbor != other && !hasLink(other, neighbor, l)) {
+                        addLink(other, neighbor, l, false);
+                    }
+                }
+            }
+        }
+        if (node == entryPoint) {
+            entryPoint = -1;
+            topLevel = -1;
+            for (int other = 0; other < size; other++) {
+                if (other != node && levels[other] > topLevel) {
+                    entryPoint = other;
+                    topLevel = levels[other];
+                }
+            }
+        }
+    }
+
+    private boolean hasLink(int from, int to, int level) {
+        int[] block = links[from];
+        int start = blockStart(level);
+        for (int i = 0; i < block[start]; i++) {
+            if (block[start + 1 + i] == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove a link, moving the last link of the block into its place.
+     *
+     * @return true if there was a link to remove
+     */
+    private boolean removeLink(int from, int to, int level) {
+        int[] block = links[from];
+        int start = blockStart(level);
+        int count = block[start];
+        for (int i = 0; i < count; i++) {
+            if (block[start + 1 + i] == to) {
+                block[start + 1 + i] = block[start + count];
+                block[start] = count - 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Link from one node to another on a layer. If the node is already at
+     * capacity, its farthest link is dropped in favor of the new one when the
+     * new one is closer, or always if force is true.
+     */
+    private void addLink(int from, int to, int level, boolean force) {
+        int[] block = links[from];
+        int start = blockStart(level);
+        int count = block[start];
+        if (count < capacity(level)) {
+            block[start + 1 + count] = to;
+            block[start] = count + 1;
+            return;
+        }
+        int farthest = -1;
+        double farthestDistance = force ? -1 : squaredDistance(from, to);
+        for (int i = 0; i < count; i++) {
+            double d = squaredDistance(from, block[start + 1 + i]);
+            if (d > farthestDistance) {
+                farthestDistance = d;
+                farthest = i;
+            }
+        }
+        if (farthest >= 0) {
+            block[start + 1 + farthest] = to;
+        }
+    }
+
+    /**
+     * Walk to ever closer neighbors on one layer until none is closer.
+     */
+    private int greedyClosest(double[] query, int start, int level) {
+        int current = start;
+        double currentDistance = squaredDistance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] block = links[current];
+            int offset = blockStart(level);
+            for (int i = 0; i < block[offset]; i++) {
+                int neighbor = block[offset + 1 + i];
+                double d = squaredDistance(query, neighbor);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer from an entry node, leaving the ef
+     * closest nodes found in results.
+     */
+    private void searchLayer(double[] query, int entry, int ef, int level, DistanceHeap results) {
+        if (++visitStamp == 0) {
+            Arrays.fill(visited, 0);
+            visitStamp = 1;
+        }
+        results.clear();
+        DistanceHeap frontier = new DistanceHeap(ef, false);
+        double entryDistance = squaredDistance(query, entry);
+        visited[entry] = visitStamp;
+        frontier.push(entryDistance, entry);
+        results.push(entryDistance, entry);
+        while (frontier.size() > 0) {
+            double distance = frontier.topDistance();
+            int node = frontier.topIndex();
+            frontier.pop();
+            if (results.size() >= ef && distance > results.topDistance()) {
+                break;
+            }
+            int[] block = links[node];
+            int offset = blockStart(level);
+            for (int i = 0; i < block[offset]; i++) {
+                int neighbor = block[offset + 1 + i];
+                if (visited[neighbor] == visitStamp) {
+                    continue;
+                }
+                visited[neighbor] = visitStamp;
+                double d = squaredDistance(query, neighbor);
+                if (results.size() < ef || d < results.topDistance()) {
+                    frontier.push(d, neighbor);
+                    results.offer(d, neighbor, ef);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int[] nearest(double[] query, int k, int excluded) {
+        if (k <= 0 || size == 0) {
+            return new int[0];
+        }
+        int current = entryPoint;
+        for (int l = topLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        int ef = Math.max(efSearch, excluded >= 0 ? k + 1 : k);
+        DistanceHeap results = new DistanceHeap(ef, true);
+        searchLayer(query, current, ef, 0, results);
+        int[] sorted = results.drainSorted();
+        int[] ret = new int[Math.min(k, sorted.length)];
+        int n = 0;
+        for (int i = 0; i < sorted.length && n < ret.length; i++) {
+            if (sorted[i] != excluded) {
+                ret[n++] = sorted[i];
+            }
+        }
+        return n == ret.length ? ret : Arrays.copyOf(ret, n);
+    }
+
+    private double squaredDistance(double[] query, int index) {
+        double sum = 0;
+        int offset = index * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            double diff = query[i] - coordinates[offset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private double squaredDistance(int a, int b) {
+        double sum = 0;
+        int offsetA = a * dimensions;
+        int offsetB = b * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            double diff = coordinates[offsetA + i] - coordinates[offsetB + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+}
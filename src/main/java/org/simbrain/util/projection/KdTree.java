@@ -0,0 +1,361 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import java.util.Arrays;
+
+/**
+ * <b>KdTree</b> is an exact nearest neighbor index. Each point is a node that
+ * splits space along one dimension. Coordinates and tree links are held in
+ * flat primitive arrays indexed by point.
+ * <p>
+ * Bulk builds split each subtree at the median of its widest dimension, which
+ * gives a balanced tree. Points added later are inserted below the existing
+ * nodes; if that makes the tree much deeper than a balanced one, or if points
+ * are moved with {@link #set(int, double[])}, the tree is rebuilt before the
+ * next query.
+ * <p>
+ * k nearest neighbor queries keep the best k points found so far in a bounded
+ * max heap and skip any subtree that cannot hold a closer point.
+ */
+public class KdTree implements NearestNeighborIndex {
+
+    private final int dimensions;
+
+    /**
+     * Coordinates, row-major. Only the first size * dimensions are valid.
+     */
+    private double[] coordinates;
+
+    private int size;
+
+    /**
+     * Child links and split dimension of each node; -1 for no child.
+     */
+    private int[] left;
+
+    private int[] right;
+
+    private int[] splitDimension;
+
+    private int root = -1;
+
+    /**
+     * Depth of the deepest node.
+     */
+    private int depth;
+
+    /**
+     * True if the tree must be rebuilt before it is searched.
+     */
+    private boolean needsRebuild;
+
+    /**
+     * Construct an empty tree.
+     *
+     * @param dimensions dimension of the points
+     */
+    public KdTree(int dimensions) {
+        this.dimensions = dimensions;
+        allocate(16);
+    }
+
+    /**
+     * Build a balanced tree from an array of points. Point i of the tree is
+     * row i of the array.
+     *
+     * @param points the points, one per row
+     */
+    public KdTree(double[][] points) {
+        this(points.length == 0 ? 0 : points[0].length, points);
+    }
+
+    /**
+     * Build a balanced tree from an array of points.
+     *
+     * @param dimensions dimension of the points
+     * @param points     the points, one per row
+     */
+    public KdTree(int dimensions, double[][] points) {
+        this.dimensions = dimensions;
+        allocate(Math.max(16, points.length));
+        for (double[] point : points) {
+            checkDimension(point);
+            System.arraycopy(point, 0, coordinates, size * dimensions, dimensions);
+            size++;
+        }
+        rebuild();
+    }
+
+    private void allocate(int capacity) {
+        coordinates = new double[capacity * dimensions];
+        left = new int[capacity];
+        right = new int[capacity];
+        splitDimension = new int[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > left.length) {
+            int newCapacity = Math.max(capacity, left.length * 2);
+            coordinates = Arrays.copyOf(coordinates, newCapacity * dimensions);
+            left = Arrays.copyOf(left, newCapacity);
+            right = Arrays.copyOf(right, newCapacity);
+            splitDimension = Arrays.copyOf(splitDimension, newCapacity);
+        }
+    }
+
+    private void checkDimension(double[] point) {
+        if (point.length != dimensions) {
+            throw new IllegalArgumentException("point has " + point.length + " dimensions. This index requires " +
+                    dimensions);
+        }
+    }
+
+    @Override
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int add(double[] point) {
+        checkDimension(point);
+        ensureCapacity(size + 1);
+        int index = size++;
+        System.arraycopy(point, 0, coordinates, index * dimensions, dimensions);
+        left[index] = -1;
+        right[index] = -1;
+        if (!needsRebuild) {
+            insert(index);
+        }
+        return index;
+    }
+
+    @Override
+    public void set(int index, double[] point) {
+        checkDimension(point);
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for index with " + size + " points");
+        }
+        System.arraycopy(point, 0, coordinates, index * dimensions, dimensions);
+        needsRebuild = true;
+    }
+
+    @Override
+    public double get(int index, int dimension) {
+        return coordinates[index * dimensions + dimension];
+    }
+
+    /**
+     * Returns a copy of a point's coordinates.
+     */
+    public double[] get(int index) {
+        return Arrays.copyOfRange(coordinates, index * dimensions, (index + 1) * dimensions);
+    }
+
+    /**
+     * Hang a new point below the existing nodes, cycling through dimensions.
+     */
+    private void insert(int index) {
+        if (root < 0) {
+            root = index;
+            splitDimension[index] = 0;
+            depth = 1;
+            return;
+        }
+        int node = root;
+        int nodeDepth = 1;
+        while (true) {
+            int dim = splitDimension[node];
+            boolean goLeft = coordinates[index * dimensions + dim] < coordinates[node * dimensions + dim];
+            int child = goLeft ? left[node] : right[node];
+            nodeDepth++;
+            if (child < 0) {
+                if (goLeft) {
+                    left[node] = index;
+                } else {
+                    right[node] = index;
+                }
+                splitDimension[index] = dimensions == 0 ? 0 : (dim + 1) % dimensions;
+                break;
+            }
+            node = child;
+        }
+        depth = Math.max(depth, nodeDepth);
+        // Rebuild once the tree is far deeper than a balanced one would be
+        if (depth > 3 * (32 - Integer.numberOfLeadingZeros(size)) + 8) {
+            needsRebuild = true;
+        }
+    }
+
+    /**
+     * Rebuild a balanced tree over all points.
+     */
+    private void rebuild() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        depth = 0;
+        root = build(order, 0, size, 1);
+        needsRebuild = false;
+    }
+
+    /**
+     * Build a subtree over order[from, to) and return its root.
+     */
+    private int build(int[] order, int from, int to, int nodeDepth) {
+        if (from >= to) {
+            return -1;
+        }
+        depth = Math.max(depth, nodeDepth);
+        int dim = widestDimension(order, from, to);
+        int mid = (from + to) >>> 1;
+        select(order, from, to - 1, mid, dim);
+        int node = order[mid];
+        splitDimension[node] = dim;
+        left[node] = build(order, from, mid, nodeDepth + 1);
+        right[node] = build(order, mid + 1, to, nodeDepth + 1);
+        return node;
+    }
+
+    private int widestDimension(int[] order, int from, int to) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int d = 0; d < dimensions; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                double v = coordinates[order[i] * dimensions + d];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                widest = d;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Quickselect: partially sort order[lo, hi] along a dimension so that the
+     * k-th entry is in place, with no larger entries before it and no smaller
+     * ones after it.
+     */
+    private void select(int[] order, int lo, int hi, int k, int dim) {
+        while (hi > lo) {
+            double pivot = coordinates[order[(lo + hi) >>> 1] * dimensions + dim];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (coordinates[order[i] * dimensions + dim] < pivot) {
+                    i++;
+                }
+                while (coordinates[order[j] * dimensions + dim] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int[] nearest(double[] query, int k, int excluded) {
+        checkDimension(query);
+        if (k <= 0 || size == 0) {
+            return new int[0];
+        }
+        if (needsRebuild) {
+            rebuild();
+        }
+        DistanceHeap best = new DistanceHeap(k, true);
+        search(root, query, k, excluded, best);
+        return best.drainSorted();
+    }
+
+    private void search(int node, double[] query, int k, int excluded, DistanceHeap best) {
+        if (node < 0) {
+            return;
+        }
+        if (node != excluded) {
+            best.offer(squaredDistance(query, node), node, k);
+        }
+        int dim = splitDimension[node];
+        double diff = query[dim] - coordinates[node * dimensions + dim];
+        search(diff < 0 ? left[node] : right[node], query, k, excluded, best);
+        // Points equal to the split can be on either side, so ties search both
+        if (best.size() < k || diff * diff <= best.topDistance()) {
+            search(diff < 0 ? right[node] : left[node], query, k, excluded, best);
+        }
+    }
+
+    private double squaredDistance(double[] query, int index) {
+        double sum = 0;
+        int offset = index * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            double diff = query[i] - coordinates[offset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the index of a point closer than tolerance to the query point,
+     * or -1 if there is none.
+     */
+    @Override
+    public int findWithin(double[] query, double tolerance) {
+        if (tolerance <= 0) {
+            return -1;
+        }
+        int[] closest = nearest(query, 1, -1);
+        if (closest.length == 1 && squaredDistance(query, closest[0]) < tolerance * tolerance) {
+            return closest[0];
+        }
+        return -1;
+    }
+
+    /**
+     * Remove all points.
+     */
+    public void clear() {
+        size = 0;
+        root = -1;
+        depth = 0;
+        needsRebuild = false;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+/**
+ * <b>NearestNeighborIndex</b> stores a growing set of points, identified by
+ * the order in which they were added, and finds the points closest (in
+ * Euclidean distance) to a query point.
+ * <p>
+ * Implementations copy coordinates into their own storage, so changing an
+ * array after adding it does not change the index; use {@link #set(int,
+ * double[])} instead. Implementations are not thread safe.
+ *
+ * @see KdTree
+ * @see HnswIndex
+ */
+public interface NearestNeighborIndex {
+
+    /**
+     * @return the dimension of the indexed points
+     */
+    int getDimensions();
+
+    /**
+     * @return the number of indexed points
+     */
+    int size();
+
+    /**
+     * Add a point.
+     *
+     * @param point coordinates of the point
+     * @return the index of the new point
+     */
+    int add(double[] point);
+
+    /**
+     * Change the coordinates of a point.
+     *
+     * @param index index of the point
+     * @param point new coordinates
+     */
+    void set(int index, double[] point);
+
+    /**
+     * Returns the coordinate of a point along a dimension.
+     */
+    double get(int index, int dimension);
+
+    /**
+     * Find the k points closest to a query point.
+     *
+     * @param query    the query point
+     * @param k        the number of points to find
+     * @param excluded index of a point to leave out of the results, or -1
+     * @return indices of the closest points, closest first. Fewer than k are
+     * returned if the index holds fewer points.
+     */
+    int[] nearest(double[] query, int k, int excluded);
+
+    /**
+     * Find the k points closest to a query point.
+     */
+    default int[] nearest(double[] query, int k) {
+        return nearest(query, k, -1);
+    }
+
+    /**
+     * Returns the index of the point closest to a query point, or -1 if the
+     * index is empty.
+     */
+    default int nearest(double[] query) {
+        int[] ret = nearest(query, 1, -1);
+        return ret.length == 0 ? -1 : ret[0];
+    }
+
+    /**
+     * Returns the index of a point closer than tolerance to the query point,
+     * or -1 if there is none.
+     */
+    default int findWithin(double[] query, double tolerance) {
+        int closest = nearest(query);
+        if (closest >= 0 && distance(query, closest) < tolerance) {
+            return closest;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the Euclidean distance from a query point to an indexed point.
+     */
+    default double distance(double[] query, int index) {
+        double sum = 0;
+        for (int i = 0; i < query.length; i++) {
+            double diff = query[i] - get(index, i);
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+}
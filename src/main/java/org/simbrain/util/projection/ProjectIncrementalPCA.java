@@ -0,0 +1,309 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import smile.math.matrix.Matrix;
+import smile.projection.PCA;
+
+/**
+ * <B>ProjectIncrementalPCA</B> projects the high-dimensional dataset along
+ * its two principal components, updating the components as points are added
+ * rather than refitting on the whole dataset each time.
+ * <p>
+ * Small datasets are fit exactly, as in {@link ProjectPCA}. Once the dataset
+ * has more than {@link #getExactFitPoints()} points, each new point updates a
+ * running mean and the component estimates using candid covariance-free
+ * incremental PCA (Weng, Zhang and Hwang, 2003), and is projected on its own
+ * in O(d) time per component. Every {@link #getReprojectionInterval()} points
+ * the components are re-orthogonalized and the whole low-d dataset is
+ * re-projected so that older points agree with the current components.
+ */
+public class ProjectIncrementalPCA extends ProjectionMethod {
+
+    /**
+     * Number of components; the low-d dataset is 2 dimensional.
+     */
+    private static final int NUM_COMPONENTS = 2;
+
+    /**
+     * Datasets up to this size are fit exactly.
+     */
+    private int exactFitPoints = 50;
+
+    /**
+     * Number of incremental updates between full re-projections.
+     */
+    private int reprojectionInterval = 1000;
+
+    /**
+     * Amnesic parameter. Larger values weight recent points more heavily,
+     * which lets the components follow data whose distribution drifts.
+     */
+    private double amnesia = 2.0;
+
+    /**
+     * Running mean of the upstairs data.
+     */
+    private double[] mean;
+
+    /**
+     * Component estimates, one per row. Each row points along a principal
+     * direction and its length estimates the variance along it.
+     */
+    private double[][] components;
+
+    /**
+     * Number of upstairs points the mean and components account for.
+     */
+    private int numPointsSeen;
+
+    /**
+     * Incremental updates since the last full re-projection.
+     */
+    private int updatesSinceReprojection;
+
+    /**
+     * Scratch copy of the centered point being processed.
+     */
+    private transient double[] residual;
+
+    /**
+     * Default incremental PCA projection.
+     *
+     * @param projector parent projector
+     */
+    public ProjectIncrementalPCA(Projector projector) {
+        super(projector);
+    }
+
+    @Override
+    public void init() {
+        numPointsSeen = 0;
+        updatesSinceReprojection = 0;
+    }
+
+    /**
+     * Re-project all points. If the components do not account for the current
+     * upstairs dataset (e.g. the method was just selected or data was
+     * imported) they are first fit exactly.
+     */
+    @Override
+    public void project() {
+        Dataset upstairs = projector.getUpstairs();
+        if (upstairs == null || upstairs.getNumPoints() < 1) {
+            return;
+        }
+        if (upstairs.getNumPoints() < 3 || upstairs.getDimensions() < NUM_COMPONENTS) {
+            // Too little data for PCA, use the first coordinates
+            numPointsSeen = 0;
+            for (int i = 0; i < upstairs.getNumPoints(); i++) {
+                DataPoint point = upstairs.getPoint(i);
+                projector.getDownstairs().getPoint(i).setData(new double[]{point.get(0),
+                        point.getDimension() > 1 ? point.get(1) : 0});
+            }
+            return;
+        }
+        if (numPointsSeen != upstairs.getNumPoints()) {
+            fit(upstairs);
+        }
+        double[][] lowD = new double[upstairs.getNumPoints()][];
+        for (int i = 0; i < lowD.length; i++) {
+            lowD[i] = projectPoint(upstairs.getPoint(i).getVector());
+        }
+        projector.getDownstairs().setData(lowD);
+        updatesSinceReprojection = 0;
+    }
+
+    /**
+     * Update the components with the new point and return its projection.
+     * Returns null while the dataset is small enough to fit exactly, and when
+     * a periodic full re-projection is due.
+     */
+    @Override
+    public double[] projectNewPoint(DataPoint point) {
+        int numPoints = projector.getUpstairs().getNumPoints();
+        if (numPoints <= exactFitPoints || numPointsSeen != numPoints - 1) {
+            return null;
+        }
+        update(point.getVector());
+        if (++updatesSinceReprojection >= reprojectionInterval) {
+            orthogonalize();
+            return null;
+        }
+        return projectPoint(point.getVector());
+    }
+
+    /**
+     * Fit the mean and components exactly.
+     */
+    private void fit(Dataset upstairs) {
+        PCA pca = PCA.fit(upstairs.getDoubleArray());
+        Matrix loadings = pca.getLoadings();
+        double[] variance = pca.getVariance();
+        int dims = upstairs.getDimensions();
+        mean = pca.getCenter().clone();
+        components = new double[NUM_COMPONENTS][dims];
+        for (int i = 0; i < NUM_COMPONENTS; i++) {
+            for (int j = 0; j < dims; j++) {
+                components[i][j] = loadings.get(j, i) * variance[i];
+            }
+        }
+        numPointsSeen = upstairs.getNumPoints();
+    }
+
+    /**
+     * Fold one point into the running mean and the component estimates.
+     */
+    private void update(double[] x) {
+        int dims = x.length;
+        numPointsSeen++;
+        int n = numPointsSeen;
+        if (residual == null || residual.length != dims) {
+            residual = new double[dims];
+        }
+        for (int j = 0; j < dims; j++) {
+            mean[j] += (x[j] - mean[j]) / n;
+            residual[j] = x[j] - mean[j];
+        }
+        double oldWeight = (n - 1 - amnesia) / n;
+        double newWeight = (1 + amnesia) / n;
+        for (double[] v : components) {
+            double norm = norm(v);
+            if (norm == 0) {
+                System.arraycopy(residual, 0, v, 0, dims);
+                continue;
+            }
+            double scale = newWeight * dot(residual, v) / norm;
+            for (int j = 0; j < dims; j++) {
+                v[j] = oldWeight * v[j] + scale * residual[j];
+            }
+            // Remove this component from the residual before updating the next one
+            norm = norm(v);
+            if (norm > 0) {
+                double along = dot(residual, v) / (norm * norm);
+                for (int j = 0; j < dims; j++) {
+                    residual[j] -= along * v[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gram-Schmidt the component directions, keeping their lengths, to undo
+     * drift accumulated by the incremental updates.
+     */
+    private void orthogonalize() {
+        for (int i = 1; i < components.length; i++) {
+            double[] v = components[i];
+            double length = norm(v);
+            for (int k = 0; k < i; k++) {
+                double[] u = components[k];
+                double uNorm = norm(u);
+                if (uNorm == 0) {
+                    continue;
+                }
+                double along = dot(v, u) / (uNorm * uNorm);
+                for (int j = 0; j < v.length; j++) {
+                    v[j] -= along * u[j];
+                }
+            }
+            double newLength = norm(v);
+            if (newLength > 0) {
+                for (int j = 0; j < v.length; j++) {
+                    v[j] *= length / newLength;
+                }
+            }
+        }
+    }
+
+    /**
+     * Project a point onto the current unit component directions.
+     */
+    private double[] projectPoint(double[] x) {
+        double[] ret = new double[NUM_COMPONENTS];
+        for (int i = 0; i < NUM_COMPONENTS; i++) {
+            double[] v = components[i];
+            double norm = norm(v);
+            if (norm == 0) {
+                continue;
+            }
+            double sum = 0;
+            for (int j = 0; j < x.length; j++) {
+                sum += (x[j] - mean[j]) * v[j];
+            }
+            ret[i] = sum / norm;
+        }
+        return ret;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double norm(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    /**
+     * Returns the current unit direction of a principal component.
+     *
+     * @param i index of the component, 0 for the first
+     * @return a copy of the direction, or null if the components are not fit
+     */
+    public double[] getComponent(int i) {
+        if (components == null) {
+            return null;
+        }
+        double norm = norm(components[i]);
+        double[] ret = components[i].clone();
+        for (int j = 0; j < ret.length; j++) {
+            ret[j] /= norm;
+        }
+        return ret;
+    }
+
+    public int getExactFitPoints() {
+        return exactFitPoints;
+    }
+
+    public void setExactFitPoints(int exactFitPoints) {
+        this.exactFitPoints = Math.max(3, exactFitPoints);
+    }
+
+    public int getReprojectionInterval() {
+        return reprojectionInterval;
+    }
+
+    public void setReprojectionInterval(int reprojectionInterval) {
+        this.reprojectionInterval = Math.max(1, reprojectionInterval);
+    }
+
+    public double getAmnesia() {
+        return amnesia;
+    }
+
+    public void setAmnesia(double amnesia) {
+        this.amnesia = amnesia;
+    }
+
+}
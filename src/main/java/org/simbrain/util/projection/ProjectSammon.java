@@ -82,14 +82,14 @@ public class ProjectSammon extends IterableProjectionMethod {
     private double[] yNew;
 
     /**
-     * Matrix of "upstairs" interpoint distances.
+     * Packed lower triangle of "upstairs" interpoint distances.
      */
-    private double[][] dstar;
+    private double[] dstar;
 
     /**
-     * Matrix of "downstairs" interpoint distances.
+     * Packed lower triangle of "downstairs" interpoint distances, reused across iterations.
      */
-    private double[][] d;
+    private double[] d;
 
     /**
      * Sum distances.
@@ -122,14 +122,21 @@ public class ProjectSammon extends IterableProjectionMethod {
 
     @Override
     public void init() {
-        perturbationAmount = SimbrainPreferences.getDouble("projectorSammonPerturbationAmount");
-        epsilon = SimbrainPreferences.getDouble("projectorSammonEpsilon");
-        dstar = projector.getUpstairs().getDistances();
+        loadPreferences();
+        dstar = projector.getUpstairs().getPackedDistances(dstar);
         dstarSum = projector.getUpstairs().getSumDistances();
         projector.getDownstairs().perturbOverlappingPoints(perturbationAmount);
         setNeedsReInit(false);
     }
 
+    /**
+     * Read the perturbation amount and epsilon from the user preferences.
+     */
+    protected void loadPreferences() {
+        perturbationAmount = SimbrainPreferences.getDouble("projectorSammonPerturbationAmount");
+        epsilon = SimbrainPreferences.getDouble("projectorSammonEpsilon");
+    }
+
     @Override
     public void project() {
     }
@@ -147,7 +154,7 @@ public class ProjectSammon extends IterableProjectionMethod {
         }
 
         yArray = projector.getDownstairs().asArrayList();
-        d = projector.getDownstairs().getDistances();
+        d = projector.getDownstairs().getPackedDistances(d);
 
         // Computes partials
         for (int m = 0; m < projector.getNumPoints(); m++) {
@@ -162,7 +169,8 @@ public class ProjectSammon extends IterableProjectionMethod {
                         continue;
                     }
                     yI = yArray.get(i).getVector();
-                    partialSum += (((dstar[i][m] - d[i][m]) * (yI[n] - yM[n])) / dstar[i][m] / d[i][m]);
+                    int k = Dataset.getPackedIndex(i, m);
+                    partialSum += (((dstar[k] - d[k]) * (yI[n] - yM[n])) / dstar[k] / d[k]);
                 }
 
                 yNew[n] = yM[n] - ((epsilon * 2 * partialSum) / dstarSum);
@@ -173,10 +181,9 @@ public class ProjectSammon extends IterableProjectionMethod {
 
         // Computes Closeness
         e = 0;
-        for (int i = 0; i < projector.getNumPoints(); i++) {
-            for (int j = i + 1; j < projector.getNumPoints(); j++) {
-                e += ((dstar[i][j] - d[i][j]) * (dstar[i][j] - d[i][j])) / dstar[i][j];
-            }
+        int numPairs = projector.getNumPoints() * (projector.getNumPoints() - 1) / 2;
+        for (int k = 0; k < numPairs; k++) {
+            e += ((dstar[k] - d[k]) * (dstar[k] - d[k])) / dstar[k];
         }
 
         currentCloseness = e / dstarSum;
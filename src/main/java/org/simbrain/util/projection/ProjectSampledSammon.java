@@ -0,0 +1,361 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <B>ProjectSampledSammon</B> approximates the Sammon map for large datasets.
+ * Rather than comparing every pair of points on each iteration, each point is
+ * compared with a small set of its nearest upstairs neighbors found so far
+ * plus a few randomly sampled points (Chalmers, 1996). Any sampled point that
+ * is closer than the farthest current neighbor replaces it, so the neighbor
+ * sets converge towards the true nearest neighbors as the map iterates.
+ * <p>
+ * An iteration costs O(n * (neighbors + samples) * d), with coordinates held
+ * in flat arrays and points updated in parallel on the common fork-join pool.
+ * The reported error is the Sammon stress over the pairs visited in the
+ * iteration.
+ */
+public class ProjectSampledSammon extends ProjectSammon {
+
+    /**
+     * Number of points each fork-join task updates directly.
+     */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * Number of nearest neighbors kept for each point.
+     */
+    private int numNeighbors = 10;
+
+    /**
+     * Number of random points compared with each point per iteration.
+     */
+    private int numSamples = 10;
+
+    /**
+     * Number of points in the flat arrays.
+     */
+    private transient int numPoints;
+
+    /**
+     * Upstairs dimension.
+     */
+    private transient int hiDims;
+
+    /**
+     * Downstairs dimension.
+     */
+    private transient int loDims;
+
+    /**
+     * Upstairs coordinates, row-major.
+     */
+    private transient double[] hi;
+
+    /**
+     * Downstairs coordinates at the start of the iteration, row-major.
+     */
+    private transient double[] lo;
+
+    /**
+     * Downstairs coordinates computed by the iteration, row-major.
+     */
+    private transient double[] loNext;
+
+    /**
+     * Neighbor indices, {@link #numNeighbors} per point. -1 marks an empty slot.
+     */
+    private transient int[] neighbors;
+
+    /**
+     * Upstairs distances to the neighbors, parallel to {@link #neighbors}.
+     */
+    private transient double[] neighborDistances;
+
+    /**
+     * Per-point stress numerators and denominators for the current iteration.
+     */
+    private transient double[] stress;
+
+    private transient double[] stressNormalizer;
+
+    /**
+     * Construct the sampled Sammon projection.
+     *
+     * @param projector parent projector
+     */
+    public ProjectSampledSammon(Projector projector) {
+        super(projector);
+    }
+
+    /**
+     * Copy the upstairs data into flat arrays. Neighbor sets are kept only if
+     * the points from the last call are still there unchanged, i.e. points
+     * were only appended; otherwise they are found again from scratch.
+     */
+    @Override
+    public void init() {
+        loadPreferences();
+        Dataset upstairs = projector.getUpstairs();
+        int oldNumPoints = neighbors == null ? 0 : numPoints;
+        int oldHiDims = hiDims;
+        double[] oldHi = hi;
+        numPoints = upstairs.getNumPoints();
+        hiDims = upstairs.getDimensions();
+        loDims = projector.getDownstairs().getDimensions();
+        hi = new double[numPoints * hiDims];
+        for (int i = 0; i < numPoints; i++) {
+            System.arraycopy(upstairs.getPoint(i).getVector(), 0, hi, i * hiDims, hiDims);
+        }
+        lo = new double[numPoints * loDims];
+        loNext = new double[numPoints * loDims];
+        stress = new double[numPoints];
+        stressNormalizer = new double[numPoints];
+
+        int[] oldNeighbors = neighbors;
+        double[] oldDistances = neighborDistances;
+        neighbors = new int[numPoints * numNeighbors];
+        neighborDistances = new double[numPoints * numNeighbors];
+        Arrays.fill(neighbors, -1);
+        Arrays.fill(neighborDistances, Double.POSITIVE_INFINITY);
+        boolean pointsAppended = oldNeighbors != null && oldHi != null
+                && oldHiDims == hiDims && oldNumPoints <= numPoints
+                && oldNeighbors.length == oldNumPoints * numNeighbors
+                && Arrays.equals(oldHi, 0, oldNumPoints * hiDims, hi, 0, oldNumPoints * hiDims);
+        if (pointsAppended) {
+            System.arraycopy(oldNeighbors, 0, neighbors, 0, oldNeighbors.length);
+            System.arraycopy(oldDistances, 0, neighborDistances, 0, oldDistances.length);
+        }
+
+        projector.getDownstairs().perturbOverlappingPoints(perturbationAmount);
+        setNeedsReInit(false);
+    }
+
+    @Override
+    public void iterate() {
+        if (projector.getUpstairs().getNumPoints() < 2) {
+            return;
+        }
+        if (needsReInit() || hi == null || numPoints != projector.getUpstairs().getNumPoints()) {
+            init();
+        }
+
+        Dataset downstairs = projector.getDownstairs();
+        for (int i = 0; i < numPoints; i++) {
+            double[] point = downstairs.getPoint(i).getVector();
+            System.arraycopy(point, 0, lo, i * loDims, loDims);
+        }
+
+        ForkJoinPool.commonPool().invoke(new UpdateTask(0, numPoints));
+
+        double totalStress = 0;
+        double totalNormalizer = 0;
+        for (int i = 0; i < numPoints; i++) {
+            DataPoint point = downstairs.getPoint(i);
+            System.arraycopy(loNext, i * loDims, point.getVector(), 0, loDims);
+            point.markChanged();
+            totalStress += stress[i];
+            totalNormalizer += stressNormalizer[i];
+        }
+        setError(totalNormalizer == 0 ? 0 : totalStress / totalNormalizer);
+        projector.getEvents().fireDataChanged();
+    }
+
+    /**
+     * Updates a range of points, splitting it in half until it is small.
+     */
+    private class UpdateTask extends RecursiveAction {
+
+        private final int start;
+
+        private final int end;
+
+        UpdateTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= CHUNK_SIZE) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                double[] force = new double[loDims];
+                for (int i = start; i < end; i++) {
+                    updatePoint(i, random, force);
+                }
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new UpdateTask(start, mid), new UpdateTask(mid, end));
+            }
+        }
+    }
+
+    /**
+     * Refine the neighbor set of point i with random samples, then move it
+     * to reduce the stress over its neighbors and samples. Only state owned by
+     * point i is written, so points can be updated concurrently.
+     */
+    private void updatePoint(int i, ThreadLocalRandom random, double[] force) {
+        Arrays.fill(force, 0);
+        double pointStress = 0;
+        double normalizer = 0;
+        double weightSum = 0;
+        int numPairs = 0;
+        int neighborOffset = i * numNeighbors;
+
+        for (int s = 0; s < numSamples; s++) {
+            int j = random.nextInt(numPoints - 1);
+            if (j >= i) {
+                j++;
+            }
+            double dStar = hiDistance(i, j);
+            tryAddNeighbor(i, j, dStar);
+            double w = accumulate(i, j, dStar, force);
+            if (w > 0) {
+                weightSum += w;
+                numPairs++;
+                double d = loDistance(i, j);
+                pointStress += (dStar - d) * (dStar - d) / dStar;
+                normalizer += dStar;
+            }
+        }
+        for (int k = 0; k < numNeighbors; k++) {
+            int j = neighbors[neighborOffset + k];
+            if (j < 0) {
+                continue;
+            }
+            double dStar = neighborDistances[neighborOffset + k];
+            double w = accumulate(i, j, dStar, force);
+            if (w > 0) {
+                weightSum += w;
+                numPairs++;
+                double d = loDistance(i, j);
+                pointStress += (dStar - d) * (dStar - d) / dStar;
+                normalizer += dStar;
+            }
+        }
+
+        // Sammon weights (1 / dStar) are normalized to average one, so that
+        // epsilon is the fraction of the mean distance error corrected per step
+        double scale = weightSum == 0 ? 0 : getEpsilon() / weightSum;
+        for (int k = 0; k < loDims; k++) {
+            loNext[i * loDims + k] = lo[i * loDims + k] + scale * force[k];
+        }
+        stress[i] = pointStress;
+        stressNormalizer[i] = normalizer;
+    }
+
+    /**
+     * Add the Sammon-weighted correction for the pair (i, j) to force.
+     *
+     * @return the pair's weight, or 0 if it was skipped
+     */
+    private double accumulate(int i, int j, double dStar, double[] force) {
+        if (dStar == 0) {
+            return 0;
+        }
+        double d = loDistance(i, j);
+        if (d == 0) {
+            return 0;
+        }
+        double w = 1 / dStar;
+        double c = w * (dStar - d) / d;
+        for (int k = 0; k < loDims; k++) {
+            force[k] += c * (lo[i * loDims + k] - lo[j * loDims + k]);
+        }
+        return w;
+    }
+
+    /**
+     * Replace the farthest neighbor of i with j if j is closer and not
+     * already a neighbor.
+     */
+    private void tryAddNeighbor(int i, int j, double dStar) {
+        int offset = i * numNeighbors;
+        int farthest = offset;
+        for (int k = offset; k < offset + numNeighbors; k++) {
+            if (neighbors[k] == j) {
+                return;
+            }
+            if (neighborDistances[k] > neighborDistances[farthest]) {
+                farthest = k;
+            }
+        }
+        if (dStar < neighborDistances[farthest]) {
+            neighbors[farthest] = j;
+            neighborDistances[farthest] = dStar;
+        }
+    }
+
+    private double hiDistance(int i, int j) {
+        double sum = 0;
+        int a = i * hiDims;
+        int b = j * hiDims;
+        for (int k = 0; k < hiDims; k++) {
+            double diff = hi[a + k] - hi[b + k];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private double loDistance(int i, int j) {
+        double sum = 0;
+        int a = i * loDims;
+        int b = j * loDims;
+        for (int k = 0; k < loDims; k++) {
+            double diff = lo[a + k] - lo[b + k];
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Returns the current neighbors of a point, -1 marking empty slots.
+     *
+     * @param i index of the point
+     * @return a copy of the point's neighbor indices
+     */
+    public int[] getNeighbors(int i) {
+        return Arrays.copyOfRange(neighbors, i * numNeighbors, (i + 1) * numNeighbors);
+    }
+
+    public int getNumNeighbors() {
+        return numNeighbors;
+    }
+
+    public void setNumNeighbors(int numNeighbors) {
+        this.numNeighbors = Math.max(1, numNeighbors);
+        neighbors = null;
+        setNeedsReInit(true);
+    }
+
+    public int getNumSamples() {
+        return numSamples;
+    }
+
+    public void setNumSamples(int numSamples) {
+        this.numSamples = Math.max(1, numSamples);
+    }
+
+}
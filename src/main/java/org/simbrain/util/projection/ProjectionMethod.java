@@ -50,6 +50,20 @@ public abstract class ProjectionMethod {
      */
     public abstract void project();
 
+    /**
+     * Called after a new point has been added to the upstairs dataset, before
+     * its low-d counterpart is added. Methods that can place a single point
+     * cheaply return its low-d coordinates. By default this returns null, in
+     * which case the point is added at its first coordinates and {@link
+     * #project()} is called on the whole dataset.
+     *
+     * @param point the new upstairs point
+     * @return the low-d coordinates of the point, or null to re-project
+     */
+    public double[] projectNewPoint(DataPoint point) {
+        return null;
+    }
+
     /**
      * Convenience method to determine if instances of this are instances of
      * IterableProjectionMethod.
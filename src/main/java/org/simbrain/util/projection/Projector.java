@@ -158,8 +158,10 @@ public class Projector implements AttributeContainer {
         projectionMethods.put(ProjectCoordinate.class, "Coordinate Projection");
         projectionMethods.put(ProjectNNSubspace.class, "NN Subspace");
         projectionMethods.put(ProjectPCA.class, "PCA");
+        projectionMethods.put(ProjectIncrementalPCA.class, "Incremental PCA");
         projectionMethods.put(ProjectTriangulate.class, "Triangulation");
         projectionMethods.put(ProjectSammon.class, "Sammon Map");
+        projectionMethods.put(ProjectSampledSammon.class, "Sampled Sammon Map");
     }
 
     /**
@@ -202,15 +204,20 @@ public class Projector implements AttributeContainer {
         } else {
             // It's a new point
             currentPoint = point;
-            DataPoint newPoint;
-            if (point.getDimension() == 1) {
-                // For 1-d datasets plot points on a horizontal line
-                newPoint = new DataPoint(new double[]{point.get(0), 0});
+            double[] projected = projectionMethod.projectNewPoint(point);
+            if (projected != null) {
+                downstairs.addPoint(new DataPoint(projected));
             } else {
-                newPoint = new DataPoint(new double[]{point.get(0), point.get(1)});
+                DataPoint newPoint;
+                if (point.getDimension() == 1) {
+                    // For 1-d datasets plot points on a horizontal line
+                    newPoint = new DataPoint(new double[]{point.get(0), 0});
+                } else {
+                    newPoint = new DataPoint(new double[]{point.get(0), point.get(1)});
+                }
+                downstairs.addPoint(newPoint);
+                projectionMethod.project();
             }
-            downstairs.addPoint(newPoint);
-            projectionMethod.project();
             events.fireDataChanged();
         }
 
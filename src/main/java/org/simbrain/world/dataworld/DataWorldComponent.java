@@ -18,6 +18,7 @@
  */
 package org.simbrain.world.dataworld;
 
+import org.simbrain.network.trainers.MappedDataset;
 import org.simbrain.util.table.NumericTable;
 import org.simbrain.workspace.*;
 
@@ -47,6 +48,22 @@ public class DataWorldComponent extends WorkspaceComponent implements AttributeC
      */
     private List<TableColumn> tableColumns = new ArrayList<>();
 
+    /**
+     * Optional memory-mapped dataset whose input rows are streamed one per update instead of the rows of
+     * {@link #dataTable}. Not serialized.
+     */
+    private transient MappedDataset mappedDataset;
+
+    /**
+     * Current row of {@link #mappedDataset}.
+     */
+    private transient int mappedRow;
+
+    /**
+     * Reused buffer holding the current row of {@link #mappedDataset}.
+     */
+    private transient double[] mappedRowValues;
+
     /**
      * Recreates an instance of this class from a saved component.
      *
@@ -159,10 +176,36 @@ public class DataWorldComponent extends WorkspaceComponent implements AttributeC
 
     @Override
     public void update() {
-        dataTable.updateCurrentRow();
+        if (mappedDataset != null) {
+            if (mappedDataset.getNumRows() > 0) {
+                mappedRow = (mappedRow + 1) % mappedDataset.getNumRows();
+                mappedDataset.readInputs(mappedRow, mappedRowValues, 0);
+            }
+        } else {
+            dataTable.updateCurrentRow();
+        }
         this.getEvents().fireComponentUpdated();
     }
 
+    /**
+     * Stream the input rows of a memory-mapped dataset, one row per update, in place of the table rows. Useful for
+     * datasets too large to load into a table. Pass null to go back to the table.
+     */
+    public void setMappedDataset(MappedDataset dataset) {
+        mappedDataset = dataset;
+        mappedRow = 0;
+        if (dataset != null) {
+            mappedRowValues = new double[dataset.getNumInputs()];
+            if (dataset.getNumRows() > 0) {
+                dataset.readInputs(0, mappedRowValues, 0);
+            }
+        }
+    }
+
+    public MappedDataset getMappedDataset() {
+        return mappedDataset;
+    }
+
     @Override
     public String getXML() {
         return NumericTable.getXStream().toXML(dataTable);
@@ -175,6 +218,9 @@ public class DataWorldComponent extends WorkspaceComponent implements AttributeC
 
     @Producible()
     public double[] getRow() {
+        if (mappedDataset != null) {
+            return mappedRowValues;
+        }
         return dataTable.getVectorCurrentRow();
     }
 
@@ -0,0 +1,122 @@
+package org.simbrain.world.imageworld;
+
+import org.pmw.tinylog.Logger;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bounded least-recently-used cache of images decoded from files, used by
+ * {@link ImageAlbum} so that only the frames in use are held in memory.
+ * <p>
+ * Frames are decoded when first asked for, or ahead of time on a background
+ * thread when prefetched. A frame that is being prefetched when it is asked
+ * for is waited on rather than decoded twice.
+ */
+final class FrameCache {
+
+    /**
+     * Shared daemon threads that decode prefetched frames.
+     */
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "Image album prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<String> paths;
+
+    private final int capacity;
+
+    /**
+     * Decoded or decoding frames by index, least recently used first.
+     */
+    private final LinkedHashMap<Integer, CompletableFuture<BufferedImage>> frames;
+
+    /**
+     * @param paths    paths of the image files
+     * @param capacity maximum number of decoded frames to keep
+     */
+    FrameCache(List<String> paths, int capacity) {
+        this.paths = paths;
+        this.capacity = Math.max(1, capacity);
+        frames = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CompletableFuture<BufferedImage>> eldest) {
+                return size() > FrameCache.this.capacity;
+            }
+        };
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns a frame, decoding it on this thread if it is not cached.
+     */
+    BufferedImage get(int index) {
+        CompletableFuture<BufferedImage> frame;
+        boolean decodeHere = false;
+        synchronized (this) {
+            frame = frames.get(index);
+            if (frame == null) {
+                frame = new CompletableFuture<>();
+                frames.put(index, frame);
+                decodeHere = true;
+            }
+        }
+        if (decodeHere) {
+            frame.complete(decode(index));
+        }
+        return frame.join();
+    }
+
+    /**
+     * Start decoding a frame in the background if it is not cached.
+     */
+    void prefetch(int index) {
+        CompletableFuture<BufferedImage> frame;
+        synchronized (this) {
+            if (frames.containsKey(index)) {
+                return;
+            }
+            frame = new CompletableFuture<>();
+            frames.put(index, frame);
+        }
+        DECODER.execute(() -> frame.complete(decode(index)));
+    }
+
+    /**
+     * Returns true if a frame is cached or being decoded.
+     */
+    synchronized boolean contains(int index) {
+        return frames.containsKey(index);
+    }
+
+    /**
+     * Read a frame from its file. Frames that cannot be read are replaced by a
+     * small blank image.
+     */
+    private BufferedImage decode(int index) {
+        String path = paths.get(index);
+        try {
+            BufferedImage image = ImageIO.read(new File(path));
+            if (image != null) {
+                return image;
+            }
+            Logger.warn("Could not parse " + path);
+        } catch (IOException e) {
+            Logger.warn(e, "Could not read " + path);
+        }
+        return new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+    }
+}
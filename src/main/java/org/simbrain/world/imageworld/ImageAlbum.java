@@ -1,11 +1,12 @@
 package org.simbrain.world.imageworld;
 
+import org.simbrain.util.UserParameter;
 import org.simbrain.util.propertyeditor.EditableObject;
 import org.simbrain.workspace.AttributeContainer;
 import org.simbrain.workspace.Consumable;
 
 import javax.imageio.ImageIO;
-import javax.swing.*;
+import javax.swing.ImageIcon;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -15,6 +16,11 @@ import java.util.List;
 
 /**
  * ImageAlbum stores a list of static images and lets you load, advance through them etc.
+ * <p>
+ * Images loaded from files are stored by reference: only their paths are kept and saved, and frames are decoded when
+ * they are shown, with a bounded cache of recently used frames. While the album is stepped through, the next few
+ * frames are decoded in the background. Images added directly are held in memory and saved with the album. Frames
+ * from files come first, followed by images added directly.
  *
  * @author Tim Shea
  */
@@ -25,11 +31,37 @@ public class ImageAlbum extends ImageSource implements AttributeContainer, Edita
      */
     private List<BufferedImage> frames = new ArrayList<>();
 
+    /**
+     * Paths of image files that can be stepped through, before the in-memory frames.
+     */
+    private List<String> framePaths = new ArrayList<>();
+
     /**
      * Current frame being shown.
      */
     private int frameIndex = 0;
 
+    @UserParameter(
+            label = "Cached frames",
+            description = "Number of frames loaded from files that are kept in memory",
+            minimumValue = 1,
+            order = 1
+    )
+    private int cacheSize = 32;
+
+    @UserParameter(
+            label = "Prefetched frames",
+            description = "Number of frames after the current one that are loaded in the background",
+            minimumValue = 0,
+            order = 2
+    )
+    private int prefetchCount = 4;
+
+    /**
+     * Decoded frames from files.
+     */
+    private transient FrameCache frameCache;
+
     /**
      * Construct a new StaticImageSource.
      */
@@ -41,6 +73,16 @@ public class ImageAlbum extends ImageSource implements AttributeContainer, Edita
         super(currentImage);
     }
 
+    @Override
+    public Object readResolve() {
+        super.readResolve();
+        // Albums saved before frames could be loaded by reference
+        if (cacheSize == 0) {
+            cacheSize = 32;
+        }
+        return this;
+    }
+
     /**
      * Load an image from a file and update the current image.
      *
@@ -50,6 +92,8 @@ public class ImageAlbum extends ImageSource implements AttributeContainer, Edita
     @Consumable
     public void loadImage(String filename) throws IOException {
         frames = null;
+        framePaths = null;
+        frameCache = null;
         if (filename == null || filename.isEmpty()) {
             setCurrentImage(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
         } else {
@@ -59,34 +103,30 @@ public class ImageAlbum extends ImageSource implements AttributeContainer, Edita
     }
 
     /**
-     * Load a set of image.
+     * Load a set of images. The images are stored by reference and decoded as they are shown.
      *
      * @param files the images to load
      */
     public void loadImages(File[] files) {
-        List<BufferedImage> list = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
         for (File file : files) {
-            try {
-                BufferedImage read = ImageIO.read(file);
-                if (read != null) {
-                    list.add(read);
-                } else {
-                    JOptionPane.showMessageDialog(null, String.format("Could not parse %s", file.getName()));
-                    System.err.printf("Could not parse %s", file.getName());
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            paths.add(file.getAbsolutePath());
         }
-        frames = list;
-        setCurrentImage(frames.get(0));
+        framePaths = paths;
+        frames = new ArrayList<>();
+        frameCache = null;
+        setFrame(0);
     }
 
     /**
      * Add a new image to the album and set the current frame to it.
      */
     public void addImage(BufferedImage image) {
+        if (frames == null) {
+            frames = new ArrayList<>();
+        }
         frames.add(image);
+        frameIndex = getNumFrames() - 1;
         setCurrentImage(image);
     }
 
@@ -104,13 +144,52 @@ public class ImageAlbum extends ImageSource implements AttributeContainer, Edita
         getEvents().fireImageUpdate();
     }
 
+    /**
+     * Returns the cache of frames decoded from files, creating it if needed.
+     */
+    private FrameCache getFrameCache() {
+        int capacity = Math.max(cacheSize, prefetchCount + 1);
+        if (frameCache == null || frameCache.getCapacity() != capacity) {
+            frameCache = new FrameCache(framePaths, capacity);
+        }
+        return frameCache;
+    }
+
+    private int getNumFileFrames() {
+        return framePaths == null ? 0 : framePaths.size();
+    }
+
+    /**
+     * Returns the image of a frame, decoding it if it comes from a file.
+     */
+    public BufferedImage getFrame(int index) {
+        int numFileFrames = getNumFileFrames();
+        if (index < numFileFrames) {
+            return getFrameCache().get(index);
+        }
+        return frames.get(index - numFileFrames);
+    }
+
+    /**
+     * Start decoding the frames after the current one.
+     */
+    private void prefetch() {
+        int numFileFrames = getNumFileFrames();
+        int numFrames = getNumFrames();
+        for (int i = 1; i <= Math.min(prefetchCount, numFrames - 1); i++) {
+            int index = (frameIndex + i) % numFrames;
+            if (index < numFileFrames) {
+                getFrameCache().prefetch(index);
+            }
+        }
+    }
+
     /**
      * Update the current image to the next image in the frame list.
      */
     public void nextFrame() {
-        if (frames != null) {
-            frameIndex = (frameIndex + 1) % frames.size();
-            setCurrentImage(frames.get(frameIndex));
+        if (getNumFrames() > 0) {
+            setFrame((frameIndex + 1) % getNumFrames());
         }
     }
 
@@ -118,9 +197,8 @@ public class ImageAlbum extends ImageSource implements AttributeContainer, Edita
      * Update the current image to the previous image in the frame list.
      */
     public void previousFrame() {
-        if (frames != null) {
-            frameIndex = (frameIndex + frames.size() - 1) % frames.size();
-            setCurrentImage(frames.get(frameIndex));
+        if (getNumFrames() > 0) {
+            setFrame((frameIndex + getNumFrames() - 1) % getNumFrames());
         }
     }
 
@@ -128,19 +206,38 @@ public class ImageAlbum extends ImageSource implements AttributeContainer, Edita
      * Returns number of frames in the album
      */
     public int getNumFrames() {
-        if (frames == null) {
-            return 0;
-        }
-        return frames.size();
+        return getNumFileFrames() + (frames == null ? 0 : frames.size());
     }
 
     /**
      * Set album to frame aat provided index.
      */
     public void setFrame(int frameIndex) {
-        if (frameIndex >= 0 && frameIndex < frames.size()) {
-            setCurrentImage(frames.get(frameIndex));
+        if (frameIndex >= 0 && frameIndex < getNumFrames()) {
+            this.frameIndex = frameIndex;
+            setCurrentImage(getFrame(frameIndex));
+            prefetch();
         }
     }
 
+    public int getFrameIndex() {
+        return frameIndex;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = Math.max(1, cacheSize);
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public void setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = Math.max(0, prefetchCount);
+    }
+
 }
@@ -10,6 +10,10 @@ import org.simbrain.world.imageworld.ImageSource;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Wraps an {@link ImageOperation} in a structure that allows for coupling, event handling etc.
@@ -18,6 +22,11 @@ import java.awt.image.BufferedImageOp;
  * brightness, red, green, and blue separately are maintained and can serve
  * as producers for couplings.
  * <br>
+ * Updates reuse the scaled and filtered images and read their pixels directly
+ * from the backing int arrays. Brightness and color channels are only computed
+ * when they are asked for after an update, so channels that are not coupled
+ * cost nothing. Large images are processed by rows in parallel.
+ * <br>
  * The actual filtering happens in the {@link org.simbrain.world.imageworld.filters}
  * package. Filters do the work of allowing the filtered images to
  * couple to something else. This makes sense biologically: retinal patterns
@@ -69,10 +78,21 @@ public class Filter implements AttributeContainer, EditableObject {
     private ImageSource source;
 
     /**
-     * The filtered image that can be displayed in the desktop.
+     * The filtered image that can be displayed in the desktop. A new image is
+     * made on each update, since views may still be painting the last one.
      */
     private BufferedImage filteredImage;
 
+    /**
+     * The source image scaled to the filter size, reused across updates.
+     */
+    private transient BufferedImage scaledImage;
+
+    /**
+     * Int rgb copy of a source image of another type, reused across updates.
+     */
+    private transient BufferedImage sourceCopy;
+
     /**
      * The values this matrix produces for floating point channel couplings.
      * Four copies of the (flattened) matrix are stored for brightness (0),
@@ -80,6 +100,16 @@ public class Filter implements AttributeContainer, EditableObject {
      */
     private transient double[][] channels;
 
+    /**
+     * Whether each channel has been computed since the last update.
+     */
+    private transient boolean[] channelsValid;
+
+    /**
+     * Images with at least this many pixels are processed by rows in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
     /**
      * Array of ints representing rgb colors. See
      * {@link BufferedImage#getRGB(int, int)}
@@ -130,27 +160,68 @@ public class Filter implements AttributeContainer, EditableObject {
 
     @Producible()
     public double[] getBrightness() {
-        return channels[0];
+        return getChannel(0);
     }
 
     @Producible()
     public double[] getFlattenedRGB() {
+        for (int i = 0; i < channels.length; i++) {
+            getChannel(i);
+        }
         return CollectionsKt.flattenArray(channels);
     }
 
     @Producible( defaultVisibility = false)
     public double[] getRed() {
-        return channels[1];
+        return getChannel(1);
     }
 
     @Producible( defaultVisibility = false)
     public double[] getGreen() {
-        return channels[2];
+        return getChannel(2);
     }
 
     @Producible( defaultVisibility = false)
     public double[] getBlue() {
-        return channels[3];
+        return getChannel(3);
+    }
+
+    /**
+     * Returns a channel, computing it from the rgb colors if it is out of date.
+     */
+    private double[] getChannel(int channel) {
+        if (!channelsValid[channel]) {
+            double[] values = channels[channel];
+            forEachRow(y -> {
+                for (int i = y * width; i < (y + 1) * width; i++) {
+                    int color = rgbColors[i];
+                    // Cf https://stackoverflow.com/questions/2534116/how-to-convert-get-rgbx-y-integer-pixel-to-colorr-g-b-a-in-java
+                    double red = ((color >>> 16) & 0xFF) / 255.0;
+                    double green = ((color >>> 8) & 0xFF) / 255.0;
+                    double blue = (color & 0xFF) / 255.0;
+                    switch (channel) {
+                        // Cf. https://en.wikipedia.org/wiki/Luma_(video)
+                        case 0 -> values[i] = red * 0.2126 + green * 0.7152 + blue * 0.0722;
+                        case 1 -> values[i] = red;
+                        case 2 -> values[i] = green;
+                        default -> values[i] = blue;
+                    }
+                }
+            });
+            channelsValid[channel] = true;
+        }
+        return channels[channel];
+    }
+
+    /**
+     * Run an action for each row of the filter, in parallel for large images.
+     */
+    private void forEachRow(IntConsumer action) {
+        IntStream rows = IntStream.range(0, height);
+        if (width * height >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        rows.forEach(action);
     }
 
     @Producible()
@@ -165,14 +236,42 @@ public class Filter implements AttributeContainer, EditableObject {
 
     void initChannels() {
         channels = new double[4][width * height];
+        channelsValid = new boolean[4];
         rgbColors = new int[width * height];
+        scaledImage = null;
+    }
+
+    /**
+     * Returns image if it is an int rgb image of the given size, otherwise a
+     * new one.
+     */
+    private static BufferedImage reuse(BufferedImage image, int width, int height) {
+        if (image != null && image.getType() == BufferedImage.TYPE_INT_RGB
+                && image.getWidth() == width && image.getHeight() == height) {
+            return image;
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
     }
 
     BufferedImage applyFilter() {
         BufferedImage image = source.getCurrentImage();
-        image = scaleOp.filter(image, null);
-        image = imageOp.getOp().filter(image, null);
-        return image;
+        if (image.getType() != BufferedImage.TYPE_INT_RGB && image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            // Scaling between other image types into a given destination is not supported, so copy the source first
+            sourceCopy = reuse(sourceCopy, image.getWidth(), image.getHeight());
+            Graphics2D graphics = sourceCopy.createGraphics();
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+            image = sourceCopy;
+        }
+        // The returned image is handed out by getFilteredImage, so it is always new; only intermediates are reused
+        if (imageOp instanceof IdentityOp) {
+            BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            scaleOp.filter(image, scaled);
+            return scaled;
+        }
+        scaledImage = reuse(scaledImage, width, height);
+        scaleOp.filter(image, scaledImage);
+        return imageOp.getOp().filter(scaledImage, null);
     }
 
     void initScaleOp() {
@@ -193,26 +292,20 @@ public class Filter implements AttributeContainer, EditableObject {
             throw new AssertionError("Filtered image size not equal to filter size");
         }
 
-        // Set values of channels
-        for (int y = 0; y < filteredImage.getHeight(); ++y) {
-            for (int x = 0; x < filteredImage.getWidth(); ++x) {
-
-                // Update rgb colors
-                int color = filteredImage.getRGB(x, y);
-                rgbColors[y * width + x] = color;
-
-                // Update other color channels
-                // Cf https://stackoverflow.com/questions/2534116/how-to-convert-get-rgbx-y-integer-pixel-to-colorr-g-b-a-in-java
-                double red = ((color >>> 16) & 0xFF) / 255.0;
-                double green = ((color >>> 8) & 0xFF) / 255.0;
-                double blue = (color & 0xFF) / 255.0;
-                // Cf. https://en.wikipedia.org/wiki/Luma_(video)
-                channels[0][y * width + x] = (red * 0.2126 + green * 0.7152 + blue * 0.0722);
-                channels[1][y * width + x] = red;
-                channels[2][y * width + x] = green;
-                channels[3][y * width + x] = blue;
-            }
+        // Copy the colors, reading the pixel array directly when possible
+        if (filteredImage.getType() == BufferedImage.TYPE_INT_RGB
+                && filteredImage.getRaster().getDataBuffer() instanceof DataBufferInt) {
+            int[] pixels = ((DataBufferInt) filteredImage.getRaster().getDataBuffer()).getData();
+            forEachRow(y -> {
+                for (int i = y * width; i < (y + 1) * width; i++) {
+                    // Int rgb pixels have no alpha, which getRGB reports as opaque
+                    rgbColors[i] = 0xFF000000 | pixels[i];
+                }
+            });
+        } else {
+            filteredImage.getRGB(0, 0, width, height, rgbColors, 0, width);
         }
+        Arrays.fill(channelsValid, false);
     }
 
     @Override
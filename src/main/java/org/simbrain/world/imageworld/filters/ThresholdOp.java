@@ -8,6 +8,7 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
 
 /**
  * ThresholdOp is a BufferedImageOp for converting an RGB image to a binary
@@ -58,10 +59,23 @@ public class ThresholdOp extends ImageOperation<ThresholdOp> implements Buffered
         if (destination == null) {
             destination = createCompatibleDestImage(source, null);
         }
-        for (int y = 0; y < source.getHeight(); ++y) {
-            for (int x = 0; x < source.getWidth(); ++x) {
-                double luminance = getLuminance(source.getRGB(x, y));
-                destination.setRGB(x, y, luminance >= threshold ? white : black);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (source.getType() == BufferedImage.TYPE_INT_RGB && destination.getType() == BufferedImage.TYPE_INT_RGB) {
+            // Work on the pixel arrays directly
+            int[] in = ((DataBufferInt) source.getRaster().getDataBuffer()).getData();
+            int[] out = ((DataBufferInt) destination.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < width * height; i++) {
+                out[i] = getLuminance(in[i]) >= threshold ? white : black;
+            }
+        } else {
+            int[] row = new int[width];
+            for (int y = 0; y < height; ++y) {
+                source.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; ++x) {
+                    row[x] = getLuminance(row[x]) >= threshold ? white : black;
+                }
+                destination.setRGB(0, y, width, 1, row, 0, width);
             }
         }
         return destination;
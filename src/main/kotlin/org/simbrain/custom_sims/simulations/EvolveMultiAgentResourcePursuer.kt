@@ -99,7 +99,7 @@ val evolveMultiAgentResourcePursuer = newSim {
             val networkItems1 = NetworkGenotype()
             val networkItems2 = NetworkGenotype()
 
-            val evolutionWorkspace = EvolutionWorkspace()
+            val evolutionWorkspace = reusableWorkspace()
 
             fun makeNetwork(name: String) = evolutionWorkspace { addNetworkComponent(name) }.network
 
@@ -96,7 +96,7 @@ val evolveResourcePursuer = newSim {
                 connectionGene(hiddens[2], outputs[1])
             )
 
-            val evolutionWorkspace = EvolutionWorkspace()
+            val evolutionWorkspace = reusableWorkspace()
 
             val networkComponent = evolutionWorkspace { addNetworkComponent("Avoider") }
 
@@ -311,8 +311,14 @@ val evolveResourcePursuer = newSim {
                     thirst.activation += (outputsActivations + allActivations) * (1 / iterationsPerRun)
                 }
 
-                evolutionWorkspace.apply {
-                    iterateSuspend(iterationsPerRun)
+                // Run in chunks so that hopeless agents can be stopped early. At most 10 / iterationsPerRun is
+                // gained per iteration.
+                var remaining = iterationsPerRun
+                while (remaining > 0) {
+                    val chunk = minOf(iterationsPerRun / 10, remaining)
+                    evolutionWorkspace.iterateSuspend(chunk)
+                    remaining -= chunk
+                    reportPartialFitness(fitness + remaining * (10.0 / iterationsPerRun))
                 }
 
                 fitness
@@ -337,6 +343,9 @@ val evolveResourcePursuer = newSim {
             populationSize = 100
             eliminationRatio = 0.5
             optimizationMethod = Evaluator.OptimizationMethod.MAXIMIZE_FITNESS
+            // Water is placed randomly, so refresh the fitness of long-lived survivors
+            cacheFitness = true
+            reevaluationInterval = 3
             runUntil { generation == maxGenerations || fitness > 12 }
         }
     }
@@ -24,6 +24,9 @@ val evolveXor = newSim {
         // Set up the basic simulation
         val network = Network()
 
+        // Headless builds are expressed into arrays rather than the network
+        var compact: CompactNetwork? = null
+
         val inputChromosome = chromosome(2) { index ->
             nodeGene {
                 isClamped = true
@@ -83,11 +86,17 @@ val evolveXor = newSim {
             val inputData = listOf(listOf(0.0, 0.0), listOf(1.0, 0.0), listOf(0.0, 1.0), listOf(1.0, 1.0))
             val tarData = listOf(listOf(0.0), listOf(1.0), listOf(1.0), listOf(0.0))
             inputData.zip(tarData).map { (i, t) ->
-                inputChromosome.getProducts().activations = i
-                network.apply {
-                    repeat(20) { bufferedUpdate() }
+                compact?.let { compact ->
+                    inputChromosome.zip(i).forEach { (node, activation) -> compact[node] = activation }
+                    repeat(20) { compact.update() }
+                    t sse compact.activations(outputChromosome)
+                } ?: run {
+                    inputChromosome.getProducts().activations = i
+                    network.apply {
+                        repeat(20) { bufferedUpdate() }
+                    }
+                    t sse outputChromosome.getProducts().activations
                 }
-                t sse outputChromosome.getProducts().activations
             }.sum()
         }
 
@@ -98,8 +107,9 @@ val evolveXor = newSim {
 
         // How to lay out the winning network
         onBuild { visible ->
-            network {
-                if (visible) {
+            if (visible) {
+                compact = null
+                network {
                     +inputChromosome.asGroup {
                         label = "Input"
                         location = point(0, 100)
@@ -111,12 +121,15 @@ val evolveXor = newSim {
                         label = "Output"
                         location = point(0, -100)
                     }
-                } else {
+                    +connectionChromosome
+                }
+            } else {
+                compact = compactNetwork {
                     +inputChromosome
                     +hiddenNodeChromosome
                     +outputChromosome
+                    +connectionChromosome
                 }
-                +connectionChromosome
             }
         }
 
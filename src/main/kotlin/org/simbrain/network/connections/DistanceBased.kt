@@ -20,12 +20,12 @@ package org.simbrain.network.connections
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
-import org.simbrain.network.util.SimnetUtils.getEuclideanDist
 import org.simbrain.util.UserParameter
-import org.simbrain.util.cartesianProduct
 import org.simbrain.util.decayfunctions.DecayFunction
 import org.simbrain.util.decayfunctions.ExponentialDecayFunction
 import org.simbrain.util.propertyeditor.EditableObject
+import java.util.*
+import kotlin.math.sqrt
 
 class DistanceBased (
 
@@ -75,19 +75,33 @@ class DistanceBased (
     }
 }
 
-fun connectRadial (
+/**
+ * Connect each source neuron to each target neuron other than itself with a probability given by [decay] applied to
+ * the distance between them.
+ *
+ * @param epsilon pairs further apart than the distance at which the probability drops below this are not considered
+ */
+fun connectRadial(
     source: List<Neuron>,
     target: List<Neuron>,
-    decay: DecayFunction
+    decay: DecayFunction,
+    epsilon: Double = DEFAULT_PROBABILITY_CUTOFF,
+    random: SplittableRandom = SplittableRandom()
 ): List<Synapse> {
-    val syns = ArrayList<Synapse>()
-    (source cartesianProduct target).forEach{ (src, tar) ->
-        if (src != tar) {
-            val p = decay.getScalingFactor(getEuclideanDist(src, tar))
-            if (Math.random() < p) {
-                syns.add(Synapse(src, tar))
-            }
-        }
+    return radialEdges(source, target, decay, epsilon, random).toSynapses(source, target)
+}
+
+/**
+ * Make the connections of [connectRadial] as an [EdgeList].
+ */
+fun radialEdges(
+    source: List<Neuron>,
+    target: List<Neuron>,
+    decay: DecayFunction,
+    epsilon: Double = DEFAULT_PROBABILITY_CUTOFF,
+    random: SplittableRandom = SplittableRandom()
+): EdgeList {
+    return connectWithinRadius(source, target, decay.getCutoffDistance(epsilon), random) { i, j, d2 ->
+        if (source[i] != target[j]) decay.getScalingFactor(sqrt(d2)) else 0.0
     }
-    return syns
 }
@@ -21,9 +21,11 @@ import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
 import org.simbrain.util.UserParameter
+import org.simbrain.util.sampleIndices
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.NormalDistribution
+import java.util.*
 
 /**
  * For each source neuron, create a fixed number of connections to or from target neurons (fixed indegree vs. fixed
@@ -116,22 +118,34 @@ class FixedDegree(
 }
 
 /**
- * For each neuron in [src] connect to or from at most a fixed number [degree] of neurons in [tar].
+ * For each neuron in [src] connect to or from at most a fixed number [degree] of neurons in [tar]. The neurons are
+ * chosen by sampling their indices, in parallel chunks of [src], rather than by shuffling [tar] for each neuron.
  */
 fun connectFixedDegree(
     src: List<Neuron>,
     tar: List<Neuron>,
     degree: Int,
     direction: Direction = Direction.IN,
-    allowSelfConnection: Boolean = false
+    allowSelfConnection: Boolean = false,
+    random: SplittableRandom = SplittableRandom()
 ): List<Synapse> {
-    val syns = ArrayList<Synapse>()
-    src.forEach { n -> syns.addAll(n.connectToN(tar, degree, direction, allowSelfConnection)) }
-    return syns
+    val selfIndices = selfIndices(src, tar, allowSelfConnection)
+    val edges = connectRows(src.size, random) { rows, rowRandom ->
+        for (i in rows) {
+            val self = selfIndices[i]
+            val available = tar.size - if (self >= 0) 1 else 0
+            rowRandom.sampleIndices(available.toLong(), minOf(degree, available)).forEach {
+                val j = it.toInt()
+                add(i, if (self in 0..j) j + 1 else j)
+            }
+        }
+    }
+    return fixedDegreeSynapses(src, tar, edges, direction)
 }
 
 /**
- * Check in a radius and within it make fixed degree connections as using [Neuron.connectToN]
+ * Check in a radius and within it make fixed degree connections as in [connectFixedDegree]. Neurons in the radius are
+ * found using a [SpatialIndex].
  */
 fun connectFixedDegreeInRadius(
     src: List<Neuron>,
@@ -139,13 +153,64 @@ fun connectFixedDegreeInRadius(
     degree: Int,
     radius: Double,
     direction: Direction = Direction.IN,
-    allowSelfConnection: Boolean = false
+    allowSelfConnection: Boolean = false,
+    random: SplittableRandom = SplittableRandom()
+): List<Synapse> {
+    val selfIndices = selfIndices(src, tar, allowSelfConnection)
+    val index = SpatialIndex(tar, radius)
+    val radiusSquared = radius * radius
+    val edges = connectRows(src.size, random) { rows, rowRandom ->
+        var candidates = IntArray(16)
+        for (i in rows) {
+            var count = 0
+            index.forEachWithin(src[i].x, src[i].y, radius) { j, d2 ->
+                if (d2 < radiusSquared && j != selfIndices[i]) {
+                    if (count == candidates.size) {
+                        candidates = candidates.copyOf(count * 2)
+                    }
+                    candidates[count++] = j
+                }
+            }
+            // Sort so that the choice depends only on the random stream and not on the layout of the index
+            candidates.sort(0, count)
+            rowRandom.sampleIndices(count.toLong(), minOf(degree, count)).forEach { add(i, candidates[it.toInt()]) }
+        }
+    }
+    return fixedDegreeSynapses(src, tar, edges, direction)
+}
+
+/**
+ * Index in [tar] of each neuron in [src], or -1 if it is not there or self connections are allowed.
+ */
+private fun selfIndices(src: List<Neuron>, tar: List<Neuron>, allowSelfConnection: Boolean): IntArray {
+    if (allowSelfConnection) {
+        return IntArray(src.size) { -1 }
+    }
+    val targetIndices = HashMap<Neuron, Int>(tar.size * 2)
+    tar.forEachIndexed { j, n -> targetIndices.putIfAbsent(n, j) }
+    return IntArray(src.size) { targetIndices[src[it]] ?: -1 }
+}
+
+/**
+ * Create synapses for edges from [src] to [tar], reversed for [Direction.IN], with strengths given the polarity of the
+ * neuron the connection comes from, as in [Neuron.connectToN].
+ */
+private fun fixedDegreeSynapses(
+    src: List<Neuron>,
+    tar: List<Neuron>,
+    edges: EdgeList,
+    direction: Direction,
+    randomizer: ProbabilityDistribution = NormalDistribution(0.0, 1.0)
 ): List<Synapse> {
-    val syns = ArrayList<Synapse>()
-    src.forEach { n -> syns.addAll(n.connectToN(n.getNeuronsInRadius(tar, radius),
-        degree, direction,
-        allowSelfConnection)) }
-    return syns
+    return (0 until edges.size).map {
+        val n = src[edges.source(it)]
+        val otherNeuron = tar[edges.target(it)]
+        if (direction == Direction.IN) {
+            Synapse(otherNeuron, n, otherNeuron.polarity.value(randomizer.sampleDouble()))
+        } else {
+            Synapse(n, otherNeuron, n.polarity.value(randomizer.sampleDouble()))
+        }
+    }
 }
 
 /**
@@ -23,8 +23,7 @@ import org.simbrain.network.core.Synapse
 import org.simbrain.util.SimbrainConstants.Polarity
 import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
-import org.simbrain.util.stats.distributions.UniformRealDistribution
-import java.util.concurrent.Callable
+import java.util.*
 
 const val DEFAULT_DIST_CONST: Double = 0.25
 
@@ -157,54 +156,6 @@ class RadialGaussian(
         }
     }
 
-    private inner class ConnectorService constructor(
-        private val srcColl: Collection<Neuron>,
-        private val targColl: Collection<Neuron>?,
-        private val loose: Boolean,
-    ) : Callable<Collection<Synapse>> {
-        var rand: UniformRealDistribution = UniformRealDistribution(0.0, 1.0);
-        @Throws(Exception::class)
-        public override fun call(): Collection<Synapse> {
-            // Attempting to pre-allocate... assumes that connection density
-            // will be less than #src * #tar * 0.2 or 20% connectivity
-            val synapses: MutableList<Synapse> =
-                ArrayList(Math.ceil(srcColl.size * targColl!!.size * 0.2 * 0.75).toInt())
-            for (src: Neuron in srcColl) {
-                for (tar: Neuron in targColl) {
-                    val randVal: Double = rand.sampleDouble()
-                    var probability: Double
-                    if (src.getPolarity() === Polarity.EXCITATORY) {
-                        if (tar.getPolarity() === Polarity.EXCITATORY) {
-                            probability = calcConnectProb(src, tar, eeDistConst, lambda)
-                        } else if (tar.getPolarity() === Polarity.INHIBITORY) {
-                            probability = calcConnectProb(src, tar, eiDistConst, lambda)
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst, lambda)
-                        }
-                    } else if (src.getPolarity() === Polarity.INHIBITORY) {
-                        if (tar.getPolarity() === Polarity.EXCITATORY) {
-                            probability = calcConnectProb(src, tar, ieDistConst, lambda)
-                        } else if (tar.getPolarity() === Polarity.INHIBITORY) {
-                            probability = calcConnectProb(src, tar, iiDistConst, lambda)
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst, lambda)
-                        }
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst, lambda)
-                    }
-                    if (randVal < probability) {
-                        val s: Synapse = Synapse(src, tar)
-                        synapses.add(s)
-                        if (loose) {
-                            src.getNetwork().addNetworkModel(s)
-                        }
-                    }
-                }
-            }
-            return synapses
-        }
-    }
-
     // inner class DensityEstimator constructor() : Runnable {
     //     var densityEsitmate: Double = 0.0
     //         private set
@@ -269,106 +220,110 @@ fun connectRadialPolarized(
     ieDistConst: Double = DEFAULT_IE_CONST,
     iiDistConst: Double = DEFAULT_II_CONST,
     distConst: Double = DEFAULT_DIST_CONST,
-    lambda: Double = DEFAULT_LAMBDA
+    lambda: Double = DEFAULT_LAMBDA,
+    epsilon: Double = DEFAULT_PROBABILITY_CUTOFF,
+    random: SplittableRandom = SplittableRandom()
 ): List<Synapse> {
-    // Pre-allocating assuming that if one is using this as a connector
-    // then they are probably not going to have greater than 25%
-    // connectivity
-    val synapses: MutableList<Synapse> = ArrayList(source!!.size * target!!.size / 4)
-    for (src: Neuron in source) {
-        for (tar: Neuron in target) {
-            val randVal: Double = Math.random()
-            var probability: Double
-            if (src.getPolarity() === Polarity.EXCITATORY) {
-                if (tar.getPolarity() === Polarity.EXCITATORY) {
-                    probability = calcConnectProb(src, tar, eeDistConst, lambda)
-                } else if (tar.getPolarity() === Polarity.INHIBITORY) {
-                    probability = calcConnectProb(src, tar, eiDistConst, lambda)
-                } else {
-                    probability = calcConnectProb(src, tar, distConst, lambda)
-                }
-            } else if (src.getPolarity() === Polarity.INHIBITORY) {
-                if (tar.getPolarity() === Polarity.EXCITATORY) {
-                    probability = calcConnectProb(src, tar, ieDistConst, lambda)
-                } else if (tar.getPolarity() === Polarity.INHIBITORY) {
-                    probability = calcConnectProb(src, tar, iiDistConst, lambda)
-                } else {
-                    probability = calcConnectProb(src, tar, distConst, lambda)
-                }
-            } else {
-                probability = calcConnectProb(src, tar, distConst, lambda)
-            }
-            if (randVal < probability) {
-                val s = Synapse(src, tar)
-                if (src.polarity === Polarity.INHIBITORY) {
-                    s.forceSetStrength(-1.0)
-                } else {
-                    s.forceSetStrength(1.0)
-                }
-                synapses.add(s)
-            }
-        }
+    val edges = radialPolarizedEdges(
+        source, target, eeDistConst, eiDistConst, ieDistConst, iiDistConst, distConst, lambda, epsilon, random
+    )
+    return edges.toSynapses(source, target)
+}
+
+/**
+ * Make the connections of [connectRadialPolarized] as an [EdgeList]. Pairs further apart than the distance at which
+ * the connection probability drops below [epsilon] are not considered. Connections from inhibitory neurons have
+ * strength -1, others 1.
+ */
+fun radialPolarizedEdges(
+    source: List<Neuron>,
+    target: List<Neuron>,
+    eeDistConst: Double = DEFAULT_EI_CONST,
+    eiDistConst: Double = DEFAULT_EI_CONST,
+    ieDistConst: Double = DEFAULT_IE_CONST,
+    iiDistConst: Double = DEFAULT_II_CONST,
+    distConst: Double = DEFAULT_DIST_CONST,
+    lambda: Double = DEFAULT_LAMBDA,
+    epsilon: Double = DEFAULT_PROBABILITY_CUTOFF,
+    random: SplittableRandom = SplittableRandom()
+): EdgeList {
+    // Connection constants indexed by source and target polarity
+    val constants = Array(3) { DoubleArray(3) { distConst } }
+    val exc = polarityIndex(Polarity.EXCITATORY)
+    val inh = polarityIndex(Polarity.INHIBITORY)
+    constants[exc][exc] = eeDistConst
+    constants[exc][inh] = eiDistConst
+    constants[inh][exc] = ieDistConst
+    constants[inh][inh] = iiDistConst
+    val sourcePolarities = IntArray(source.size) { polarityIndex(source[it].polarity) }
+    val targetPolarities = IntArray(target.size) { polarityIndex(target[it].polarity) }
+    val sourceZ = DoubleArray(source.size) { source[it].z }
+    val targetZ = DoubleArray(target.size) { target[it].z }
+    val cutoff = gaussianCutoff(constants.maxOf { it.max() }, lambda, epsilon)
+    val edges = connectWithinRadius(source, target, cutoff, random) { i, j, d2 ->
+        val dz = sourceZ[i] - targetZ[j]
+        gaussianProbability(d2 + dz * dz, constants[sourcePolarities[i]][targetPolarities[j]], lambda)
     }
-    return synapses
+    edges.setStrengths {
+        if (sourcePolarities[edges.source(it)] == inh) DEFAULT_INHIBITORY_STRENGTH else DEFAULT_EXCITATORY_STRENGTH
+    }
+    return edges
+}
+
+private fun polarityIndex(polarity: Polarity) = when (polarity) {
+    Polarity.EXCITATORY -> 0
+    Polarity.INHIBITORY -> 1
+    else -> 2
 }
 
 /**
  * @param distConst the connection constant for general connections. Used in cases where neurons have no explicit
  * polarity.
  * @param lambda average connection distance.
+ * @param epsilon pairs whose connection probability is below this are not considered
  */
 fun connectRadialNoPolarity(
     source: List<Neuron>,
     target: List<Neuron>,
     distConst: Double,
-    lambda: Double
+    lambda: Double,
+    epsilon: Double = DEFAULT_PROBABILITY_CUTOFF,
+    random: SplittableRandom = SplittableRandom()
 ): List<Synapse> {
-    // Pre-allocating assuming that if one is using this as a connector
-    // then they are probably not going to have greater than 25%
-    // connectivity
-    val synapses: MutableList<Synapse> = ArrayList(source.size * target.size / 4)
-    for (src: Neuron in source) {
-        for (tar: Neuron in target) {
-            val randVal: Double = Math.random()
-            val probability: Double = calcConnectProb(src, tar, distConst, lambda)
-            if (randVal < probability) {
-                val s = Synapse(src, tar)
-                synapses.add(s)
-            }
-        }
+    return radialNoPolarityEdges(source, target, distConst, lambda, epsilon, random).toSynapses(source, target)
+}
+
+/**
+ * Make the connections of [connectRadialNoPolarity] as an [EdgeList].
+ */
+fun radialNoPolarityEdges(
+    source: List<Neuron>,
+    target: List<Neuron>,
+    distConst: Double,
+    lambda: Double,
+    epsilon: Double = DEFAULT_PROBABILITY_CUTOFF,
+    random: SplittableRandom = SplittableRandom()
+): EdgeList {
+    val sourceZ = DoubleArray(source.size) { source[it].z }
+    val targetZ = DoubleArray(target.size) { target[it].z }
+    return connectWithinRadius(source, target, gaussianCutoff(distConst, lambda, epsilon), random) { i, j, d2 ->
+        val dz = sourceZ[i] - targetZ[j]
+        gaussianProbability(d2 + dz * dz, distConst, lambda)
     }
-    return synapses
 }
 
 /**
- * @param src       the source neuron.
- * @param tar       the target neuron.
+ * @param squaredDistance the squared distance between the source and target neuron.
  * @param distConst the connection constant for general connections. Used in cases where neurons have no explicit
  * polarity.
  * @param lambda    average connection distance.
  * @return
  */
-private fun calcConnectProb(src: Neuron, tar: Neuron, distConst: Double, lambda: Double): Double {
-    val dist: Double = -getRawDist(src, tar)
-    var exp: Double = Math.exp(dist / (lambda * lambda))
+private fun gaussianProbability(squaredDistance: Double, distConst: Double, lambda: Double): Double {
+    var exp: Double = Math.exp(-squaredDistance / (lambda * lambda))
     if (exp == 1.0) { // Same location == same neuron: cheapest way to
         // prevent self connections
         exp = 0.0
     }
     return distConst * exp
 }
-
-/**
- * @param n1 neuron one
- * @param n2 neuron two
- * @return
- */
-private fun getRawDist(n1: Neuron, n2: Neuron): Double {
-    var x2: Double = (n1.getX() - n2.getX())
-    x2 *= x2
-    var y2: Double = (n1.getY() - n2.getY())
-    y2 *= y2
-    var z2: Double = (n1.getZ() - n2.getZ())
-    z2 *= z2
-    return x2 + y2 + z2
-}
@@ -25,6 +25,7 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.NormalDistribution
+import java.util.*
 
 /**
  * For each neuron, consider every neuron in a radius and make excitatory and inhibitory synapses with them according to
@@ -150,17 +151,40 @@ class RadialProbabilistic(
 
 }
 
+/**
+ * Connect each source neuron to target neurons within [radius] of it with probability [prob]. Strengths are sampled
+ * from [randomizer] and given the polarity of the target neuron.
+ */
 fun connectProbabilistically(
     src: List<Neuron>,
     tar: List<Neuron>,
     prob: Double,
     radius: Double,
     allowSelfConnection: Boolean = false,
-    randomizer: ProbabilityDistribution = NormalDistribution(0.0, 1.0)
+    randomizer: ProbabilityDistribution = NormalDistribution(0.0, 1.0),
+    random: SplittableRandom = SplittableRandom()
 ): List<Synapse> {
-    val syns = ArrayList<Synapse>()
-    src.forEach { n -> syns.addAll(n.connectProbabilistically(tar, prob, radius)) }
-    return syns
+    val edges = probabilisticEdges(src, tar, prob, radius, allowSelfConnection, random)
+    // Sampled here rather than while connecting, since distributions are not thread safe
+    edges.setStrengths { tar[edges.target(it)].polarity.value(randomizer.sampleDouble()) }
+    return edges.toSynapses(src, tar)
+}
+
+/**
+ * Make the connections of [connectProbabilistically] as an [EdgeList], with the default strength.
+ */
+fun probabilisticEdges(
+    src: List<Neuron>,
+    tar: List<Neuron>,
+    prob: Double,
+    radius: Double,
+    allowSelfConnection: Boolean = false,
+    random: SplittableRandom = SplittableRandom()
+): EdgeList {
+    val radiusSquared = radius * radius
+    return connectWithinRadius(src, tar, radius, random) { i, j, d2 ->
+        if (d2 >= radiusSquared || (!allowSelfConnection && src[i] == tar[j])) 0.0 else prob
+    }
 }
 
 /**
@@ -20,10 +20,11 @@ package org.simbrain.network.connections
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
-import org.simbrain.util.cartesianProduct
 import org.simbrain.util.propertyeditor.EditableObject
-import org.simbrain.util.sampleWithoutReplacement
+import org.simbrain.util.sampleIndices
+import java.util.*
 import kotlin.math.roundToInt
+import kotlin.math.roundToLong
 
 /**
  * Connect some percent of possible source-target links. Sparsity or density is between 0 (no connections) and 1 (all
@@ -105,6 +106,14 @@ class Sparse @JvmOverloads constructor(
                 result.connectionsToRemove.forEach { it.delete() }
                 listOf()
             }
+            is ConnectionsResult.Update -> {
+                result.connectionsToRemove.forEach { it.delete() }
+                polarizeSynapses(result.connectionsToAdd, percentExcitatory)
+                if (addToNetwork) {
+                    network.addNetworkModels(result.connectionsToAdd)
+                }
+                result.connectionsToAdd
+            }
         }
     }
 
@@ -127,73 +136,170 @@ class Sparse @JvmOverloads constructor(
 
 }
 
+/**
+ * Connect each source neuron to the fraction [connectionDensity] of the target neurons it can connect to, so that
+ * every source has the same number of efferent synapses. Only the connections needed to get there from the existing
+ * connections between source and target are added or removed.
+ *
+ * Targets of new connections are sampled directly in parallel chunks of source neurons, so the time taken is
+ * proportional to the number of connections rather than the number of possible connections.
+ */
 fun connectEqualized(
     sourceNeurons: List<Neuron>,
     targetNeurons: List<Neuron>,
     connectionDensity: Double,
     selfConnectionAllowed: Boolean = false,
-    random: kotlin.random.Random = kotlin.random.Random(kotlin.random.Random.nextLong())
-): ConnectionsResult.Reset {
+    random: SplittableRandom = SplittableRandom()
+): ConnectionsResult {
 
     if (sourceNeurons.isEmpty() || targetNeurons.isEmpty()) {
-        return ConnectionsResult.Reset(listOf())
+        return ConnectionsResult.Add(listOf())
     }
 
-    val connectionCount = sourceNeurons.size * targetNeurons.size * connectionDensity
+    val rows = SparseRows(sourceNeurons, targetNeurons, selfConnectionAllowed)
+    val degrees = IntArray(sourceNeurons.size) { (connectionDensity * rows.possible(it)).roundToInt() }
 
-    val sources = sourceNeurons.sampleWithoutReplacement(random = random, restartIfExhausted = true)
-        .take(connectionCount.roundToInt())
-
-    val targets = targetNeurons.sampleWithoutReplacement(random = random, restartIfExhausted = true)
-        .take(connectionCount.roundToInt())
-
-    val connections = (sources zip targets).let {
-        if (selfConnectionAllowed) {
-            it
+    val removalRandom = random.split()
+    val connectionsToRemove = sourceNeurons.indices.flatMap { s ->
+        val existing = rows.existing[s]
+        val excess = existing.size - degrees[s]
+        if (excess > 0) {
+            removalRandom.sampleIndices(existing.size.toLong(), excess).map { existing[it.toInt()] }
         } else {
-            it.filter { (source, target) -> source != target }
+            listOf()
         }
     }
 
-    return ConnectionsResult.Reset(connections.map { (source, target) -> Synapse(source, target) }.toList())
+    val connectionsToAdd = connectRows(sourceNeurons.size, random) { chunk, chunkRandom ->
+        for (s in chunk) {
+            val missing = degrees[s] - rows.existing[s].size
+            if (missing > 0) {
+                rows.addNew(this, s, chunkRandom.sampleIndices(rows.available(s).toLong(), missing))
+            }
+        }
+    }.toSynapses(sourceNeurons, targetNeurons)
+
+    return if (connectionsToRemove.isEmpty()) {
+        ConnectionsResult.Add(connectionsToAdd)
+    } else {
+        ConnectionsResult.Update(connectionsToAdd, connectionsToRemove)
+    }
 }
 
+/**
+ * Change the number of connections between source and target neurons to the fraction [sparsity] of the possible
+ * connections, by adding connections between randomly chosen unconnected pairs or removing randomly chosen existing
+ * connections.
+ *
+ * New pairs are sampled directly by their position among the unconnected pairs, so the time taken is proportional to
+ * the number of connections rather than the number of possible connections.
+ */
 fun connectSparse(
     sourceNeurons: List<Neuron>,
     targetNeurons: List<Neuron>,
     sparsity: Double,
-    selfConnectionAllowed: Boolean = false
+    selfConnectionAllowed: Boolean = false,
+    random: SplittableRandom = SplittableRandom()
 ): ConnectionsResult {
     if (sourceNeurons.isEmpty() || targetNeurons.isEmpty()) {
         return ConnectionsResult.Add(listOf())
     }
-    val existingSynapses = sourceNeurons.flatMap { it.fanOut.values.filter{it.target in targetNeurons} }
-    val possibleConnections = (sourceNeurons.asSequence() cartesianProduct targetNeurons.asSequence()).toSet().let {
-        if (!selfConnectionAllowed) {
-            it.filter { (source, target) -> source != target }
-        } else {
-            it
-        }
-    }
-    val connectionDensity = existingSynapses.size.toDouble() / possibleConnections.size
+    val rows = SparseRows(sourceNeurons, targetNeurons, selfConnectionAllowed)
+    val existingCount = rows.existing.sumOf { it.size }
+    val possibleCount = sourceNeurons.indices.sumOf { rows.possible(it).toLong() }
+    val connectionDensity = existingCount.toDouble() / possibleCount
     val sparsityDelta = sparsity - connectionDensity
 
     if (sparsityDelta >= 0) {
-        val existingConnections = existingSynapses.map { it.source to it.target }.toSet()
-        val newConnectionCount = (sparsityDelta * possibleConnections.size).roundToInt()
-        val availableConnections = possibleConnections - existingConnections
-        val connectionsToAdd = availableConnections
-            .shuffled()
-            .take(newConnectionCount)
-            .map { (source, target) -> Synapse(source, target) }
-        return ConnectionsResult.Add(connectionsToAdd)
+        // Index of the first unconnected pair in each row, when unconnected pairs are numbered row by row
+        val rowStarts = LongArray(sourceNeurons.size + 1)
+        for (s in sourceNeurons.indices) {
+            rowStarts[s + 1] = rowStarts[s] + rows.available(s)
+        }
+        val newConnectionCount = minOf((sparsityDelta * possibleCount).roundToLong(), rowStarts.last()).toInt()
+        val chosen = random.sampleIndices(rowStarts.last(), newConnectionCount)
+        val connectionsToAdd = connectRows(sourceNeurons.size, random) { chunk, _ ->
+            var k = chosen.binarySearchStart(rowStarts[chunk.first])
+            for (s in chunk) {
+                val end = chosen.binarySearchStart(rowStarts[s + 1])
+                rows.addNew(this, s, LongArray(end - k) { chosen[k + it] - rowStarts[s] })
+                k = end
+            }
+        }
+        return ConnectionsResult.Add(connectionsToAdd.toSynapses(sourceNeurons, targetNeurons))
     } else {
-        val numbersOfConnectionToRemove = -(sparsityDelta * possibleConnections.size).roundToInt()
-        val connectionsToRemove = existingSynapses.shuffled().take(numbersOfConnectionToRemove)
+        val existingSynapses = rows.existing.flatten()
+        val numbersOfConnectionToRemove = minOf(-(sparsityDelta * possibleCount).roundToInt(), existingSynapses.size)
+        val connectionsToRemove = random.sampleIndices(existingSynapses.size.toLong(), numbersOfConnectionToRemove)
+            .map { existingSynapses[it.toInt()] }
         return ConnectionsResult.Remove(connectionsToRemove)
     }
 }
 
+/**
+ * Position of the first element of a sorted array that is at least [value].
+ */
+private fun LongArray.binarySearchStart(value: Long): Int {
+    val i = binarySearch(value)
+    return if (i < 0) -i - 1 else i
+}
+
+/**
+ * Existing connections from each source neuron to the target neurons, used to sample new connections without
+ * enumerating all pairs. Targets that a source cannot be newly connected to (existing targets, and itself unless self
+ * connections are allowed) are kept sorted, so that the n-th available target can be found by skipping over them.
+ */
+private class SparseRows(sourceNeurons: List<Neuron>, targetNeurons: List<Neuron>, selfConnectionAllowed: Boolean) {
+
+    private val targetCount = targetNeurons.size
+
+    private val selfConnected = BooleanArray(sourceNeurons.size)
+
+    /**
+     * Synapses from each source neuron to a target neuron.
+     */
+    val existing: List<List<Synapse>>
+
+    private val excluded: List<IntArray>
+
+    init {
+        val targetIndices = HashMap<Neuron, Int>(targetNeurons.size * 2)
+        targetNeurons.forEachIndexed { i, n -> targetIndices.putIfAbsent(n, i) }
+        existing = sourceNeurons.map { source -> source.fanOut.values.filter { it.target in targetIndices } }
+        excluded = sourceNeurons.mapIndexed { s, source ->
+            val self = if (selfConnectionAllowed) null else targetIndices[source]
+            selfConnected[s] = self != null
+            (existing[s].map { targetIndices[it.target]!! } + listOfNotNull(self)).distinct().toIntArray().apply { sort() }
+        }
+    }
+
+    /**
+     * Number of targets a source could be connected to.
+     */
+    fun possible(source: Int) = targetCount - if (selfConnected[source]) 1 else 0
+
+    /**
+     * Number of targets a source is not yet connected to.
+     */
+    fun available(source: Int) = targetCount - excluded[source].size
+
+    /**
+     * Add edges from a source to the targets at the given sorted positions among its available targets.
+     */
+    fun addNew(edges: EdgeList, source: Int, positions: LongArray) {
+        val skipped = excluded[source]
+        var e = 0
+        for (position in positions) {
+            var target = position.toInt() + e
+            while (e < skipped.size && skipped[e] <= target) {
+                e++
+                target++
+            }
+            edges.add(source, target)
+        }
+    }
+}
+
 fun connectSparse(
     sourceNeurons: List<Neuron>,
     targetNeurons: List<Neuron>,
@@ -203,11 +309,12 @@ fun connectSparse(
 ): ConnectionsResult = if (equalizeEfferents) {
     connectEqualized(sourceNeurons, targetNeurons, sparsity, selfConnectionAllowed)
 } else {
-    connectSparse(sourceNeurons, targetNeurons, sparsity, selfConnectionAllowed)
+    connectSparse(sourceNeurons, targetNeurons, sparsity, selfConnectionAllowed, random = SplittableRandom())
 }
 
 sealed interface ConnectionsResult {
     data class Add(val connectionsToAdd: List<Synapse>) : ConnectionsResult
     data class Remove(val connectionsToRemove: List<Synapse>): ConnectionsResult
     data class Reset(val resultConnections: List<Synapse>): ConnectionsResult
-}
\ No newline at end of file
+    data class Update(val connectionsToAdd: List<Synapse>, val connectionsToRemove: List<Synapse>): ConnectionsResult
+}
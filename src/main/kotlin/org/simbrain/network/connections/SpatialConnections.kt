@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.connections
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import smile.math.matrix.SparseMatrix
+import java.util.*
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.sqrt
+
+/**
+ * Connection probabilities below this are treated as zero by the distance based strategies, which lets them skip
+ * neurons beyond the distance where the probability falls below it.
+ */
+const val DEFAULT_PROBABILITY_CUTOFF = 1e-6
+
+/**
+ * Number of rows (source neurons) connected by each parallel task.
+ */
+private const val SOURCE_CHUNK_SIZE = 256
+
+/**
+ * Connections stored as parallel arrays of source index, target index and strength, so that large numbers of them can
+ * be generated without creating objects and then converted to [Synapse]s ([toSynapses]) or a weight matrix
+ * ([toSparseMatrix]) in one pass. Indices refer to positions in the source and target lists the edges were made from.
+ */
+class EdgeList(initialCapacity: Int = 16) {
+
+    private var sources = IntArray(initialCapacity)
+
+    private var targets = IntArray(initialCapacity)
+
+    private var strengths = DoubleArray(initialCapacity)
+
+    /**
+     * Number of edges.
+     */
+    var size = 0
+        private set
+
+    fun add(source: Int, target: Int, strength: Double = DEFAULT_EXCITATORY_STRENGTH) {
+        if (size == sources.size) {
+            grow(size + 1)
+        }
+        sources[size] = source
+        targets[size] = target
+        strengths[size] = strength
+        size++
+    }
+
+    fun addAll(other: EdgeList) {
+        grow(size + other.size)
+        other.sources.copyInto(sources, size, 0, other.size)
+        other.targets.copyInto(targets, size, 0, other.size)
+        other.strengths.copyInto(strengths, size, 0, other.size)
+        size += other.size
+    }
+
+    private fun grow(capacity: Int) {
+        if (capacity > sources.size) {
+            val newCapacity = maxOf(capacity, sources.size * 2, 16)
+            sources = sources.copyOf(newCapacity)
+            targets = targets.copyOf(newCapacity)
+            strengths = strengths.copyOf(newCapacity)
+        }
+    }
+
+    fun source(edge: Int) = sources[edge]
+
+    fun target(edge: Int) = targets[edge]
+
+    fun strength(edge: Int) = strengths[edge]
+
+    fun setStrength(edge: Int, strength: Double) {
+        strengths[edge] = strength
+    }
+
+    /**
+     * Set the strength of every edge.
+     */
+    inline fun setStrengths(strength: (edge: Int) -> Double) {
+        for (edge in 0 until size) {
+            setStrength(edge, strength(edge))
+        }
+    }
+
+    /**
+     * Create a synapse for each edge. As when synapses are added to a neuron one at a time, a later edge between the
+     * same two neurons replaces an earlier one.
+     */
+    fun toSynapses(source: List<Neuron>, target: List<Neuron>): List<Synapse> {
+        val synapses = ArrayList<Synapse>(size)
+        for (edge in 0 until size) {
+            synapses.add(Synapse(source[sources[edge]], target[targets[edge]], strengths[edge]))
+        }
+        return synapses
+    }
+
+    /**
+     * Return the edges as a matrix with a row for each target and a column for each source, the orientation used by
+     * [WeightMatrix][org.simbrain.network.matrix.WeightMatrix]. A later edge between the same two neurons replaces an
+     * earlier one.
+     */
+    fun toSparseMatrix(targetCount: Int, sourceCount: Int): SparseMatrix {
+        // Group edges by column, keeping their order within each column
+        val columnStarts = IntArray(sourceCount + 1)
+        for (edge in 0 until size) {
+            columnStarts[sources[edge] + 1]++
+        }
+        for (j in 0 until sourceCount) {
+            columnStarts[j + 1] += columnStarts[j]
+        }
+        val next = columnStarts.copyOf(sourceCount)
+        val byColumn = IntArray(size)
+        for (edge in 0 until size) {
+            byColumn[next[sources[edge]]++] = edge
+        }
+
+        // Sort each column by row, then by edge order so that the last duplicate can be kept
+        val keys = LongArray(size) { (targets[byColumn[it]].toLong() shl 32) or byColumn[it].toLong() }
+        val rowIndex = IntArray(size)
+        val nonzeros = DoubleArray(size)
+        val colIndex = IntArray(sourceCount + 1)
+        var count = 0
+        for (j in 0 until sourceCount) {
+            Arrays.sort(keys, columnStarts[j], columnStarts[j + 1])
+            for (k in columnStarts[j] until columnStarts[j + 1]) {
+                val row = (keys[k] ushr 32).toInt()
+                val edge = keys[k].toInt()
+                if (count > colIndex[j] && rowIndex[count - 1] == row) {
+                    nonzeros[count - 1] = strengths[edge]
+                } else {
+                    rowIndex[count] = row
+                    nonzeros[count] = strengths[edge]
+                    count++
+                }
+            }
+            colIndex[j + 1] = count
+        }
+        return SparseMatrix(targetCount, sourceCount, nonzeros.copyOf(count), rowIndex.copyOf(count), colIndex)
+    }
+
+    companion object {
+
+        /**
+         * Concatenate edge lists in order.
+         */
+        fun concat(parts: List<EdgeList>) = EdgeList(parts.sumOf { it.size }).apply {
+            parts.forEach { addAll(it) }
+        }
+    }
+}
+
+/**
+ * Receives the neurons found by [SpatialIndex.forEachWithin].
+ */
+fun interface NeighborVisitor {
+    /**
+     * @param index position of the neuron in the indexed list
+     * @param squaredDistance squared distance from the query point in the x-y plane
+     */
+    fun visit(index: Int, squaredDistance: Double)
+}
+
+/**
+ * Buckets neurons into a grid of square cells in the x-y plane so that the neurons near a point can be found without
+ * checking every neuron. Locations are copied when the index is created.
+ *
+ * @param neurons the neurons to index
+ * @param cellSize width of the grid cells, normally the search radius. Increased if needed to keep the number of
+ * cells proportional to the number of neurons.
+ */
+class SpatialIndex(neurons: List<Neuron>, cellSize: Double) {
+
+    val x = DoubleArray(neurons.size) { neurons[it].x }
+
+    val y = DoubleArray(neurons.size) { neurons[it].y }
+
+    val z = DoubleArray(neurons.size) { neurons[it].z }
+
+    private val minX = x.minOrNull() ?: 0.0
+
+    private val minY = y.minOrNull() ?: 0.0
+
+    private val cellSize: Double
+
+    private val columns: Int
+
+    private val rows: Int
+
+    /**
+     * Index into [members] of the first neuron in each cell, followed by the number of neurons.
+     */
+    private val cellStarts: IntArray
+
+    /**
+     * Neuron indices grouped by cell.
+     */
+    private val members = IntArray(neurons.size)
+
+    init {
+        val width = (x.maxOrNull() ?: 0.0) - minX
+        val height = (y.maxOrNull() ?: 0.0) - minY
+        val maxCells = 4.0 * neurons.size + 1
+        var size = if (cellSize > 0 && cellSize.isFinite()) cellSize else Double.POSITIVE_INFINITY
+        if ((width / size + 1) * (height / size + 1) > maxCells) {
+            size = maxOf(sqrt(width * height / maxCells), width / maxCells, height / maxCells)
+        }
+        this.cellSize = size
+        columns = if (size.isInfinite()) 1 else floor(width / size).toInt() + 1
+        rows = if (size.isInfinite()) 1 else floor(height / size).toInt() + 1
+
+        cellStarts = IntArray(columns * rows + 1)
+        val cells = IntArray(neurons.size) { cellOf(x[it], y[it]) }
+        cells.forEach { cellStarts[it + 1]++ }
+        for (c in 0 until columns * rows) {
+            cellStarts[c + 1] += cellStarts[c]
+        }
+        val next = cellStarts.copyOf(columns * rows)
+        cells.forEachIndexed { i, cell -> members[next[cell]++] = i }
+    }
+
+    private fun column(px: Double) = if (cellSize.isInfinite()) 0 else floor((px - minX) / cellSize).toInt()
+
+    private fun row(py: Double) = if (cellSize.isInfinite()) 0 else floor((py - minY) / cellSize).toInt()
+
+    private fun cellOf(px: Double, py: Double) = row(py) * columns + column(px)
+
+    /**
+     * Visit every neuron whose distance from (px, py) in the x-y plane is at most [radius].
+     */
+    fun forEachWithin(px: Double, py: Double, radius: Double, visitor: NeighborVisitor) {
+        val r2 = radius * radius
+        val c0: Int
+        val c1: Int
+        val r0: Int
+        val r1: Int
+        if (radius.isInfinite() || cellSize.isInfinite()) {
+            c0 = 0; c1 = columns - 1; r0 = 0; r1 = rows - 1
+        } else {
+            c0 = maxOf(0, column(px - radius))
+            c1 = minOf(columns - 1, column(px + radius))
+            r0 = maxOf(0, row(py - radius))
+            r1 = minOf(rows - 1, row(py + radius))
+        }
+        for (row in r0..r1) {
+            for (column in c0..c1) {
+                val cell = row * columns + column
+                for (k in cellStarts[cell] until cellStarts[cell + 1]) {
+                    val i = members[k]
+                    val dx = x[i] - px
+                    val dy = y[i] - py
+                    val d2 = dx * dx + dy * dy
+                    if (d2 <= r2) {
+                        visitor.visit(i, d2)
+                    }
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Probability of connecting a pair of neurons found by [connectWithinRadius].
+ */
+fun interface PairProbability {
+    /**
+     * @param source index of the source neuron
+     * @param target index of the target neuron
+     * @param squaredDistance squared distance between them in the x-y plane
+     */
+    fun probability(source: Int, target: Int, squaredDistance: Double): Double
+}
+
+/**
+ * Connect each source neuron to target neurons within [cutoff] of it (in the x-y plane) with the given probability.
+ * Targets are found with a [SpatialIndex], and sources are processed in parallel chunks, each drawing from its own
+ * random stream split from [random], so the result depends only on the state of [random] and not on thread timing.
+ *
+ * @return edges with the default strength, in order of source chunk
+ */
+fun connectWithinRadius(
+    source: List<Neuron>,
+    target: List<Neuron>,
+    cutoff: Double,
+    random: SplittableRandom = SplittableRandom(),
+    probability: PairProbability
+): EdgeList {
+    if (source.isEmpty() || target.isEmpty() || cutoff < 0 || cutoff.isNaN()) {
+        return EdgeList(0)
+    }
+    val index = SpatialIndex(target, cutoff)
+    val sourceX = DoubleArray(source.size) { source[it].x }
+    val sourceY = DoubleArray(source.size) { source[it].y }
+
+    return connectRows(source.size, random) { rows, rowRandom ->
+        for (i in rows) {
+            index.forEachWithin(sourceX[i], sourceY[i], cutoff) { j, d2 ->
+                val p = probability.probability(i, j, d2)
+                if (p > 0 && rowRandom.nextDouble() < p) {
+                    add(i, j)
+                }
+            }
+        }
+    }
+}
+
+/**
+ * Make the connections of [rowCount] rows (normally one per source neuron) with [connect], called on parallel chunks
+ * of rows. Each chunk gets its own random stream split from [random], so the result depends only on the state of
+ * [random] and not on thread timing.
+ *
+ * @return the edges made for each chunk, in order
+ */
+fun connectRows(
+    rowCount: Int,
+    random: SplittableRandom,
+    connect: EdgeList.(rows: IntRange, random: SplittableRandom) -> Unit
+): EdgeList {
+    val chunks = (0 until rowCount step SOURCE_CHUNK_SIZE).map { it until minOf(it + SOURCE_CHUNK_SIZE, rowCount) }
+    val randoms = chunks.map { random.split() }
+    if (chunks.size <= 1) {
+        return EdgeList().apply { chunks.forEachIndexed { c, chunk -> connect(chunk, randoms[c]) } }
+    }
+    val parts = runBlocking {
+        chunks.mapIndexed { c, chunk ->
+            async(Dispatchers.Default) { EdgeList().apply { connect(chunk, randoms[c]) } }
+        }.awaitAll()
+    }
+    return EdgeList.concat(parts)
+}
+
+/**
+ * Smallest distance beyond which a probability that drops off as exp(-(d / lambda)^2), from a peak of [peak], is below
+ * [epsilon].
+ */
+internal fun gaussianCutoff(peak: Double, lambda: Double, epsilon: Double) =
+    if (peak <= epsilon) -1.0 else lambda * sqrt(ln(peak / epsilon))
+
@@ -132,6 +132,12 @@ class Network {
             _isRunning.set(value)
         }
 
+    /**
+     * Held for the whole of each [update]. See [withUpdateLock].
+     */
+    @Transient
+    private var updateLock = Any()
+
     /**
      * Whether this is a discrete or continuous time network.
      */
@@ -214,10 +220,12 @@ class Network {
     fun update() {
 
         // Main update
-        updateManager.actionList.forEach {
-            runBlocking {
-                PerformanceMonitor.record(it, "${this@Network.name}:${it.description}") {
-                    it.run()
+        synchronized(updateLock) {
+            updateManager.actionList.forEach {
+                runBlocking {
+                    PerformanceMonitor.record(it, "${this@Network.name}:${it.description}") {
+                        it.run()
+                    }
                 }
             }
         }
@@ -229,6 +237,12 @@ class Network {
         events.fireUpdateCompleted()
     }
 
+    /**
+     * Run a block while no update is in progress. Code that changes models from another thread, such as a trainer
+     * writing back weights, uses this so as not to change them halfway through an update.
+     */
+    fun <T> withUpdateLock(block: () -> T): T = synchronized(updateLock, block)
+
     /**
      * Update the priority list used for priority based update.
      */
@@ -442,6 +456,20 @@ class Network {
         return getNetworkXStream().fromXML(xmlRepresentation) as Network
     }
 
+    /**
+     * Returns a structural copy of this network made with a [NetworkCloner], which avoids the xml round trip of [copy].
+     * Falls back on [copy] if the network contains models the cloner does not support.
+     *
+     * @return the copied network.
+     */
+    fun deepCopy(): Network {
+        val cloner = NetworkCloner(this)
+        if (!cloner.canClone()) {
+            return copy()
+        }
+        return cloner.clone().also { it.time = time }
+    }
+
     /**
      * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
      */
@@ -449,6 +477,7 @@ class Network {
 
         events = NetworkEvents(this)
         updateCompleted = AtomicBoolean(false)
+        updateLock = Any()
         updatePriorityList();
 
         // Initialize update manager
@@ -0,0 +1,115 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.NetworkModel
+import org.simbrain.network.groups.AbstractNeuronCollection
+import org.simbrain.network.groups.NeuronCollection
+import org.simbrain.network.groups.NeuronGroup
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.network.update_actions.BufferedUpdate
+import org.simbrain.network.update_actions.PriorityUpdate
+import java.util.*
+
+/**
+ * Creates structural copies of a [Network] without an xml round trip. Models are copied in reconstruction order
+ * (see [reconstructionOrder]) and old models are matched to their copies using identity maps, so that synapses,
+ * collections, synapse groups and weight matrices can be re-attached to the copies of their endpoints in constant
+ * time.
+ *
+ * Array state (neuron array activations, weight matrices) is bulk copied rather than copied element by element.
+ *
+ * Not every model type can be copied this way. Use [canClone] to check, or just call [Network.deepCopy] which falls
+ * back on [Network.copy] when needed.
+ */
+class NetworkCloner(private val original: Network) {
+
+    /**
+     * Maps original neurons (free or in groups) to their copies.
+     */
+    private val neuronMap = IdentityHashMap<Neuron, Neuron>()
+
+    /**
+     * Maps original layers (neuron groups, neuron arrays, etc.) to their copies.
+     */
+    private val layerMap = IdentityHashMap<Layer, Layer>()
+
+    /**
+     * Returns true if every model and update action in the original network can be structurally copied.
+     */
+    fun canClone(): Boolean = original.allModels.all { it.isCloneable() } &&
+            original.updateManager.actionList.all { it is BufferedUpdate || it is PriorityUpdate }
+
+    /**
+     * Returns a structural copy of the original network. Throws an [IllegalStateException] if [canClone] is false.
+     */
+    fun clone(): Network {
+        check(canClone()) { "Network contains models that cannot be structurally copied" }
+        neuronMap.clear()
+        layerMap.clear()
+
+        val copy = Network()
+        copy.name = original.name
+        copy.timeStep = original.timeStep
+        copy.updateFreq = original.updateFreq
+
+        copy.updateManager.clear()
+        original.updateManager.actionList.forEach {
+            copy.updateManager.addAction(
+                if (it is PriorityUpdate) PriorityUpdate(copy) else BufferedUpdate(copy)
+            )
+        }
+
+        original.modelsInReconstructionOrder.forEach { model ->
+            copyModel(copy, model)?.let {
+                copy.addNetworkModel(it)
+                it.label = model.label
+            }
+        }
+        copy.updateTimeType()
+        return copy
+    }
+
+    private fun NetworkModel.isCloneable() = when (this) {
+        is Neuron, is Synapse, is NetworkTextObject, is NeuronGroup, is NeuronCollection, is NeuronArray,
+        is SynapseGroup2 -> true
+        is WeightMatrix -> listOf(source, target).all { it is AbstractNeuronCollection || it is NeuronArray }
+        else -> false
+    }
+
+    private fun copyModel(newParent: Network, model: NetworkModel): NetworkModel? = when (model) {
+        is Neuron -> Neuron(newParent, model).also { neuronMap[model] = it }
+        is NeuronGroup -> model.deepCopy(newParent).also { groupCopy ->
+            mapNeurons(model, groupCopy)
+            layerMap[model] = groupCopy
+        }
+        is NeuronCollection -> NeuronCollection(newParent, model.neuronList.map { neuronMap[it]!! }).also {
+            layerMap[model] = it
+        }
+        is NeuronArray -> model.deepCopy(newParent).also { layerMap[model] = it }
+        is WeightMatrix -> model.deepCopy(newParent, layerMap[model.source]!!, layerMap[model.target]!!)
+        is SynapseGroup2 -> copySynapseGroup(model)
+        is Synapse -> Synapse(newParent, neuronMap[model.source], neuronMap[model.target], model)
+        is NetworkTextObject -> NetworkTextObject(newParent, model)
+        else -> null
+    }
+
+    /**
+     * Record the neuron mappings for a copied collection. Copies are index aligned with their originals.
+     */
+    private fun mapNeurons(original: AbstractNeuronCollection, copy: AbstractNeuronCollection) {
+        original.neuronList.forEachIndexed { i, neuron -> neuronMap[neuron] = copy.neuronList[i] }
+    }
+
+    private fun copySynapseGroup(sg: SynapseGroup2): SynapseGroup2 {
+        val src = layerMap[sg.source] as AbstractNeuronCollection
+        val tar = layerMap[sg.target] as AbstractNeuronCollection
+        val syns = ArrayList<Synapse>(sg.synapses.size)
+        sg.synapses.forEach {
+            syns.add(Synapse(src.network, neuronMap[it.source], neuronMap[it.target], it))
+        }
+        return SynapseGroup2(src, tar, sg.connectionSelector.cs.copy(), syns).also {
+            it.displaySynapses = sg.displaySynapses
+        }
+    }
+
+}
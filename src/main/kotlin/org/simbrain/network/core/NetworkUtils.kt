@@ -10,6 +10,7 @@ import org.simbrain.network.groups.SynapseGroup
 import org.simbrain.network.layouts.GridLayout
 import org.simbrain.network.layouts.LineLayout
 import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.trainers.ClassificationDataset
 import org.simbrain.util.DoubleArrayConverter
 import org.simbrain.util.MatrixConverter
 import org.simbrain.util.SimbrainPreferences
@@ -103,6 +104,8 @@ fun getNetworkXStream(): XStream {
     xstream.registerConverter(NetworkModelListConverter())
     xstream.registerConverter(DoubleArrayConverter())
     xstream.registerConverter(MatrixConverter())
+    // Feature vectors were saved as a 2d array before they were stored row-major
+    xstream.aliasField("featureVectors", ClassificationDataset::class.java, "legacyFeatureVectors")
     return xstream
 }
 
@@ -0,0 +1,245 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.util.SpikingScalarData
+
+/**
+ * A [SynapseUpdateRule] that can update many synapses at once from arrays (see [SynapseBatch]), instead of one
+ * [Synapse] at a time.
+ */
+interface BatchedSynapseRule {
+
+    /**
+     * Parameters of the rule. Synapses whose rules are of the same class and have equal keys are updated in one batch,
+     * using the rule of the first of them.
+     */
+    val batchKey: Any
+
+    /**
+     * Create state the rule keeps between updates of a batch, e.g. spike traces. Stored in [SynapseBatch.state].
+     */
+    fun createBatchState(batch: SynapseBatch): Any? = null
+
+    /**
+     * Update the weights of a batch, using [SynapseBatch.setWeight] for those that change.
+     */
+    fun apply(batch: SynapseBatch)
+}
+
+/**
+ * Synapses that share a [BatchedSynapseRule], laid out in arrays so that the rule can update them together. Synapses
+ * are numbered in the order given. The neurons they connect are numbered separately as pre (source) and post (target)
+ * neurons, and [preSynapses] and [postSynapses] list the synapses of each neuron, so that a rule can update just the
+ * rows or columns of the neurons that spiked.
+ *
+ * Before each update strengths and neuron states are copied into the arrays, and afterwards only the strengths the
+ * rule changed are written back to the synapses.
+ */
+class SynapseBatch(synapses: List<Synapse>) {
+
+    private val synapses = synapses.toTypedArray()
+
+    /**
+     * The rule of each synapse when the batch was made, used to check that it is still valid.
+     */
+    private val rules = Array(synapses.size) { synapses[it].learningRule }
+
+    /**
+     * Number of synapses.
+     */
+    val size = synapses.size
+
+    val preNeurons: List<Neuron>
+
+    val postNeurons: List<Neuron>
+
+    /**
+     * Pre neuron index of each synapse.
+     */
+    val pre = IntArray(size)
+
+    /**
+     * Post neuron index of each synapse.
+     */
+    val post = IntArray(size)
+
+    /**
+     * Index into [preSynapses] of the first synapse of each pre neuron, followed by the number of synapses.
+     */
+    val preStarts: IntArray
+
+    /**
+     * Synapse indices grouped by pre neuron.
+     */
+    val preSynapses = IntArray(size)
+
+    /**
+     * Index into [postSynapses] of the first synapse of each post neuron, followed by the number of synapses.
+     */
+    val postStarts: IntArray
+
+    /**
+     * Synapse indices grouped by post neuron.
+     */
+    val postSynapses = IntArray(size)
+
+    val weights = DoubleArray(size)
+
+    val lowerBounds = DoubleArray(size)
+
+    val upperBounds = DoubleArray(size)
+
+    val preActivations: DoubleArray
+
+    val postActivations: DoubleArray
+
+    val preSpikes: BooleanArray
+
+    val postSpikes: BooleanArray
+
+    /**
+     * Whether each pre neuron has a spiking update rule.
+     */
+    val preSpiking: BooleanArray
+
+    var timeStep = 0.0
+        private set
+
+    var time = 0.0
+        private set
+
+    /**
+     * State created by the rule with [BatchedSynapseRule.createBatchState].
+     */
+    var state: Any? = null
+
+    private val changed = BooleanArray(size)
+
+    private val changes = IntArray(size)
+
+    private var changeCount = 0
+
+    init {
+        val preIndices = LinkedHashMap<Neuron, Int>()
+        val postIndices = LinkedHashMap<Neuron, Int>()
+        synapses.forEachIndexed { k, s ->
+            pre[k] = preIndices.getOrPut(s.source) { preIndices.size }
+            post[k] = postIndices.getOrPut(s.target) { postIndices.size }
+        }
+        preNeurons = preIndices.keys.toList()
+        postNeurons = postIndices.keys.toList()
+        preStarts = group(pre, preNeurons.size, preSynapses)
+        postStarts = group(post, postNeurons.size, postSynapses)
+        preActivations = DoubleArray(preNeurons.size)
+        postActivations = DoubleArray(postNeurons.size)
+        preSpikes = BooleanArray(preNeurons.size)
+        postSpikes = BooleanArray(postNeurons.size)
+        preSpiking = BooleanArray(preNeurons.size)
+        gather()
+        state = (rules.firstOrNull() as? BatchedSynapseRule)?.createBatchState(this)
+    }
+
+    /**
+     * Fill [grouped] with synapse indices ordered by neuron and return the start of each neuron's synapses.
+     */
+    private fun group(neuronOf: IntArray, neuronCount: Int, grouped: IntArray): IntArray {
+        val starts = IntArray(neuronCount + 1)
+        neuronOf.forEach { starts[it + 1]++ }
+        for (i in 0 until neuronCount) {
+            starts[i + 1] += starts[i]
+        }
+        val next = starts.copyOf(neuronCount)
+        neuronOf.forEachIndexed { k, i -> grouped[next[i]++] = k }
+        return starts
+    }
+
+    /**
+     * Last spike time of a neuron, or negative infinity if it has not spiked or is not a spiking neuron.
+     */
+    fun lastSpikeTime(neuron: Neuron) =
+        (neuron.dataHolder as? SpikingScalarData)?.lastSpikeTime ?: Double.NEGATIVE_INFINITY
+
+    /**
+     * Set the weight of a synapse, clipped to its bounds. Written back to the synapse after the update.
+     */
+    fun setWeight(synapse: Int, weight: Double) {
+        weights[synapse] = when {
+            weight > upperBounds[synapse] -> upperBounds[synapse]
+            weight < lowerBounds[synapse] -> lowerBounds[synapse]
+            else -> weight
+        }
+        if (!changed[synapse]) {
+            changed[synapse] = true
+            changes[changeCount++] = synapse
+        }
+    }
+
+    /**
+     * False if any synapse has been frozen or given a different rule since the batch was made.
+     */
+    fun isValid(): Boolean {
+        for (k in 0 until size) {
+            if (synapses[k].learningRule !== rules[k] || synapses[k].isFrozen) {
+                return false
+            }
+        }
+        return true
+    }
+
+    private fun gather() {
+        for (k in 0 until size) {
+            val s = synapses[k]
+            weights[k] = s.strength
+            lowerBounds[k] = s.lowerBound
+            upperBounds[k] = s.upperBound
+        }
+        preNeurons.forEachIndexed { j, n ->
+            preActivations[j] = n.activation
+            preSpikes[j] = n.isSpike
+            preSpiking[j] = n.updateRule is SpikingNeuronUpdateRule
+        }
+        postNeurons.forEachIndexed { i, n ->
+            postActivations[i] = n.activation
+            postSpikes[i] = n.isSpike
+        }
+        synapses.firstOrNull()?.network?.let {
+            timeStep = it.timeStep
+            time = it.time
+        }
+    }
+
+    private fun scatter() {
+        for (c in 0 until changeCount) {
+            val k = changes[c]
+            synapses[k].strength = weights[k]
+            changed[k] = false
+        }
+        changeCount = 0
+    }
+
+    /**
+     * Update every synapse in the batch with the rule.
+     */
+    fun update() {
+        gather()
+        (rules[0] as BatchedSynapseRule).apply(this)
+        scatter()
+    }
+}
+
+/**
+ * Divide synapses into batches that can be updated together and the remaining synapses, which must be updated one
+ * at a time: frozen synapses, and those whose rules are not [BatchedSynapseRule]s.
+ */
+fun createSynapseBatches(synapses: List<Synapse>): Pair<List<SynapseBatch>, List<Synapse>> {
+    val batched = LinkedHashMap<Pair<Class<*>, Any>, MutableList<Synapse>>()
+    val unbatched = ArrayList<Synapse>()
+    synapses.forEach {
+        val rule = it.learningRule
+        if (rule is BatchedSynapseRule && !it.isFrozen) {
+            batched.getOrPut(rule.javaClass to rule.batchKey) { ArrayList() }.add(it)
+        } else {
+            unbatched.add(it)
+        }
+    }
+    return batched.values.map { SynapseBatch(it) } to unbatched
+}
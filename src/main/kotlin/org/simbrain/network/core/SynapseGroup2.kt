@@ -12,6 +12,7 @@ import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
 import org.simbrain.workspace.AttributeContainer
 import smile.math.matrix.Matrix
+import java.util.*
 
 /**
  * Lightweight collection of synapses
@@ -87,11 +88,13 @@ class SynapseGroup2 @JvmOverloads constructor(
     fun addSynapse(syn: Synapse) {
         syn.isVisible = displaySynapses
         this.synapses.add(syn)
+        batches = null
         events.fireSynapseAdded(syn)
     }
 
     fun removeSynapse(syn: Synapse) {
         this.synapses.remove(syn)
+        batches = null
         events.fireSynapseRemoved(syn)
     }
 
@@ -99,8 +102,19 @@ class SynapseGroup2 @JvmOverloads constructor(
         return source == target
     }
 
+    /**
+     * Batches of synapses updated together by [BatchedSynapseRule]s, and the synapses updated one at a time. Made on
+     * the first update and again whenever the synapses or their rules change.
+     */
+    @Transient
+    private var batches: Pair<List<SynapseBatch>, List<Synapse>>? = null
+
     override fun update() {
-        this.synapses.forEach { it.update() }
+        val (batched, unbatched) = batches?.takeIf { (batched, unbatched) ->
+            batched.sumOf { it.size } + unbatched.size == synapses.size && batched.all { it.isValid() }
+        } ?: createSynapseBatches(synapses).also { batches = it }
+        batched.forEach { it.update() }
+        unbatched.forEach { it.update() }
     }
 
     fun size(): Int = this.synapses.size
@@ -134,9 +148,9 @@ class SynapseGroup2 @JvmOverloads constructor(
         require(!(source.size() != src.size() || target.size() != tar.size())) { "Size of source and " +
                 "target of this synapse group do not match." }
 
-        val mapping = (source.neuronList + target.neuronList)
-            .zip(src.neuronList + tar.neuronList)
-            .toMap()
+        val mapping = IdentityHashMap<Neuron, Neuron>(source.size() + target.size())
+        source.neuronList.forEachIndexed { i, n -> mapping[n] = src.neuronList[i] }
+        target.neuronList.forEachIndexed { i, n -> mapping[n] = tar.neuronList[i] }
 
         val syns = this.synapses.map{
                 Synapse(it.parentNetwork, mapping[it.source], mapping[it.target], it )
@@ -11,7 +11,10 @@ import java.util.function.Consumer
  */
 class NetworkEvents(network: Network) : Event(PropertyChangeSupport(network)) {
 
-    fun onUpdateCompleted(handler:Runnable) = "UpdateCompleted".event(handler)
+    /**
+     * Returns the listener, so that nodes removed while the network lives on can stop listening.
+     */
+    fun onUpdateCompleted(handler:Runnable) = "UpdateCompleted".removableEvent(handler)
     fun fireUpdateCompleted() = "UpdateCompleted"()
 
     fun onModelAdded(handler: Consumer<NetworkModel>) = "Added".itemAddedEvent(handler)
@@ -22,6 +22,17 @@ class NeuronEvents(val neuron: Neuron) : LocationEvents(neuron) {
     fun onSpiked(handler: Consumer<Boolean>) = "Spiked".itemAddedEvent(handler)
     fun fireSpiked(spiked: Boolean ) = "Spiked"(new = spiked)
 
+    /**
+     * Handle activation changes without their values, e.g. to redraw a node. Unlike [onActivationChange] the handler
+     * is added right away, and the returned listener can be passed to [removeListener].
+     */
+    fun onActivationUpdate(handler: Runnable) = "ActivationChange".removableEvent(handler)
+
+    /**
+     * Handle spikes without their values. Returns a listener that can be passed to [removeListener].
+     */
+    fun onSpikeUpdate(handler: Runnable) = "Spiked".removableEvent(handler)
+
     fun onColorChange(handler: Runnable) = "ColorChange".event(handler)
     fun fireColorChange() = "ColorChange"()
 
@@ -10,7 +10,7 @@ import java.util.function.BiConsumer
  */
 class SynapseEvents(val synapse: Synapse) : NetworkModelEvents(synapse) {
 
-    fun onStrengthUpdate(handler: Runnable) = "StrengthUpdate".event(handler)
+    fun onStrengthUpdate(handler: Runnable) = "StrengthUpdate".removableEvent(handler)
     fun fireStrengthUpdate() = "StrengthUpdate"()
 
     fun onLearningRuleUpdate(handler: BiConsumer<SynapseUpdateRule, SynapseUpdateRule>)
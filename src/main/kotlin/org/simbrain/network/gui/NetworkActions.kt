@@ -121,6 +121,22 @@ class NetworkActions(val networkPanel: NetworkPanel) {
         }
     }
 
+    /**
+     * Should be called from a check box menu item
+     */
+    val toggleFreezeNodesWhileRunning = networkPanel.createAction(
+        name = "Freeze Nodes While Running",
+        description = "Don't update neurons and synapses on screen while the network runs"
+    ) { event ->
+        event.source.let {
+            if (it is JCheckBoxMenuItem) {
+                freezeNodesWhileRunning = it.state
+            } else {
+                freezeNodesWhileRunning = !freezeNodesWhileRunning
+            }
+        }
+    }
+
     val addSmileClassifier = networkPanel.createAction(
         name = "Add Smile Classifier...",
         description = "Create a new Smile classifier",
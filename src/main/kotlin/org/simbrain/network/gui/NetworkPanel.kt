@@ -7,6 +7,7 @@ import kotlinx.coroutines.MainScope
 import kotlinx.coroutines.launch
 import org.piccolo2d.PCamera
 import org.piccolo2d.PCanvas
+import org.piccolo2d.PNode
 import org.piccolo2d.event.PMouseWheelZoomEventHandler
 import org.piccolo2d.util.PBounds
 import org.piccolo2d.util.PPaintContext
@@ -29,6 +30,8 @@ import org.simbrain.network.smile.SmileClassifier
 import org.simbrain.network.subnetworks.*
 import org.simbrain.network.trainers.LMSIterative
 import org.simbrain.network.trainers.TrainingSet
+import org.simbrain.util.CoalescedNotifier
+import org.simbrain.util.SimbrainPreferences
 import org.simbrain.util.complement
 import org.simbrain.util.genericframe.GenericJDialog
 import org.simbrain.util.widgets.EditablePanel
@@ -161,7 +164,47 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
         }
 
     /**
-     * Turn GUI on or off.
+     * If true, neuron and synapse nodes are not updated while the network runs, and catch up when it stops.
+     */
+    var freezeNodesWhileRunning = false
+        set(value) {
+            field = value
+            renderLoop.refresh()
+        }
+
+    /**
+     * Updates neuron and synapse nodes whose models changed, once per frame and only where they are on screen, so
+     * that model events do not repaint the canvas on every change.
+     */
+    val renderLoop = RenderLoop<ScreenElement>(
+        isOnScreen = { it.parent != null && canvas.camera.viewBounds.intersects(it.globalFullBounds) },
+        isFrozen = { !guiOn || (freezeNodesWhileRunning && network.isRunning) }
+    ) { it.render() }
+
+    /**
+     * Neuron groups with more neurons than this, and synapse groups with more synapses than this, are drawn as images
+     * rather than with a node per neuron or synapse.
+     */
+    var aggregateThreshold = SimbrainPreferences.getInt("networkAggregateThreshold")
+
+    /**
+     * View scale at or above which the neurons of aggregated neuron groups that are in view get their own nodes.
+     */
+    var materializeScale = 0.5
+        set(value) {
+            field = value
+            materializer.request()
+        }
+
+    /**
+     * Adds and removes nodes for the neurons of aggregated groups as the view changes.
+     */
+    private val materializer = CoalescedNotifier {
+        filterScreenElements<AbstractNeuronCollectionNode>().forEach { it.updateMaterializedNodes() }
+    }
+
+    /**
+     * Turn GUI on or off. While it is off nodes are not updated.
      */
     var guiOn = true
         set(guiOn) {
@@ -171,6 +214,7 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
                 updateComplete.decrementAndGet()
             }
             field = guiOn
+            renderLoop.refresh()
         }
 
     /** TODO: Javadoc. */
@@ -231,7 +275,7 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
     /**
      * Add a screen element to the network panel and rezoom the page.
      */
-    private inline fun <T : ScreenElement> addScreenElement(block: () -> T) = block().also { node ->
+    private inline fun <T : ScreenElement> addScreenElement(zoom: Boolean = true, block: () -> T) = block().also { node ->
         canvas.layer.addChild(node)
         node.model.events.onSelected {
             if (node is NeuronGroupNode) {
@@ -240,7 +284,9 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
                 selectionManager.add(node)
             }
         }
-        zoomToFitPage()
+        if (zoom) {
+            zoomToFitPage()
+        }
     }
 
     private fun createNode(model: NetworkModel): ScreenElement {
@@ -278,12 +324,65 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
         }
     }
 
+    /**
+     * Create a node for a neuron of an aggregated neuron group. Unlike [createNode] this does not record an undoable
+     * action, select the node or rezoom the page, since these nodes come and go as the view changes.
+     */
+    fun createMaterializedNode(neuron: Neuron) = addScreenElement(zoom = false) {
+        NeuronNode(this, neuron).also {
+            (neuronNodeMapping as HashMap)[neuron] = it
+            it.updateTextVisibility()
+        }
+    }
+
+    /**
+     * Return a node created by [createMaterializedNode] to the canvas.
+     */
+    fun showMaterializedNode(node: NeuronNode) {
+        canvas.layer.addChild(node)
+        (neuronNodeMapping as HashMap)[node.neuron] = node
+        node.pullViewPositionFromModel()
+        node.updateTextVisibility()
+        renderLoop.markDirty(node)
+    }
+
+    /**
+     * Take a node created by [createMaterializedNode] off the canvas. It is brought up to date when it is shown again.
+     */
+    fun hideMaterializedNode(node: NeuronNode) {
+        node.removeFromParent()
+        (neuronNodeMapping as HashMap).remove(node.neuron)
+    }
+
+    /**
+     * Returns the node for a neuron, creating one if the neuron belongs to an aggregated group. Nodes created this way
+     * stay on the canvas, since the caller refers to them.
+     */
+    fun getOrMaterializeNode(neuron: Neuron): NeuronNode = neuronNodeMapping[neuron]
+        ?: filterScreenElements<AbstractNeuronCollectionNode>()
+            .firstOrNull { it.isAggregated && it.model === neuron.parentGroup }
+            ?.materialize(neuron, true)
+        ?: throw IllegalStateException("Neuron node does not exist")
+
     fun createNode(synapse: Synapse) = addScreenElement {
-        val source = neuronNodeMapping[synapse.source] ?: throw IllegalStateException("Neuron node does not exist")
-        val target = neuronNodeMapping[synapse.target] ?: throw IllegalStateException("Neuron node does not exist")
+        val source = getOrMaterializeNode(synapse.source)
+        val target = getOrMaterializeNode(synapse.target)
         SynapseNode(this, source, target, synapse)
     }.also { it.lowerToBottom() }
 
+    /**
+     * Returns true if a neuron group is drawn as an image. See [aggregateThreshold].
+     */
+    fun isAggregated(neuronGroup: AbstractNeuronCollection) = neuronGroup is NeuronGroup
+            && neuronGroup.size() > aggregateThreshold
+
+    /**
+     * Returns true if a synapse group is drawn as a density image, because it is large or connects aggregated
+     * neuron groups.
+     */
+    fun isAggregated(synapseGroup: SynapseGroup2) = synapseGroup.size() > aggregateThreshold
+            || isAggregated(synapseGroup.source) || isAggregated(synapseGroup.target)
+
     fun createNode(neuronGroup: NeuronGroup) = addScreenElement {
 
         fun createNeuronGroupNode() = when (neuronGroup) {
@@ -292,9 +391,17 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
             else -> NeuronGroupNode(this, neuronGroup)
         }
 
-        val neuronNodes = neuronGroup.neuronList.map { neuron -> createNode(neuron) }
-        neuronGroup.applyLayout()
-        createNeuronGroupNode().apply { addNeuronNodes(neuronNodes) }
+        if (isAggregated(neuronGroup)) {
+            neuronGroup.applyLayout()
+            createNeuronGroupNode().apply {
+                aggregate()
+                materializer.request()
+            }
+        } else {
+            val neuronNodes = neuronGroup.neuronList.map { neuron -> createNode(neuron) }
+            neuronGroup.applyLayout()
+            createNeuronGroupNode().apply { addNeuronNodes(neuronNodes) }
+        }
     }
 
     fun createNode(neuronArray: NeuronArray) = addScreenElement { NeuronArrayNode(this, neuronArray) }
@@ -312,14 +419,14 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
     }
 
     fun createNode(neuronCollection: NeuronCollection) = addScreenElement {
-        val neuronNodes = neuronCollection.neuronList.map {
-            neuronNodeMapping[it] ?: throw IllegalStateException("Neuron node does not exist")
-        }
+        val neuronNodes = neuronCollection.neuronList.map { getOrMaterializeNode(it) }
         NeuronCollectionNode(this, neuronCollection).apply { addNeuronNodes(neuronNodes) }
     }
 
     fun createNode(synapseGroup: SynapseGroup2) = addScreenElement {
-        synapseGroup.synapses.map { s -> createNode(s) }
+        if (!isAggregated(synapseGroup)) {
+            synapseGroup.synapses.map { s -> createNode(s) }
+        }
         SynapseGroup2Node(this, synapseGroup)
     }
 
@@ -770,6 +877,13 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
                         it.updateTextVisibility()
                     }
                 }
+                // Nodes scrolled into view may be out of date
+                renderLoop.refresh()
+                materializer.request()
+            }
+            camera.addPropertyChangeListener(PNode.PROPERTY_BOUNDS) {
+                renderLoop.refresh()
+                materializer.request()
             }
         }
 
@@ -161,6 +161,9 @@ val NetworkPanel.viewMenu
                     this.state = it
                 }
             })
+            add(JCheckBoxMenuItem(toggleFreezeNodesWhileRunning).apply {
+                this.state = networkPanel.freezeNodesWhileRunning
+            })
         }
     }
 
@@ -0,0 +1,118 @@
+package org.simbrain.network.gui
+
+import org.simbrain.util.CoalescedNotifier
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Decouples the rate at which screen elements are redrawn from the rate at which their models change.
+ *
+ * Model events only mark an element dirty, which is cheap and safe from the simulation thread. At most once per
+ * frame interval the dirty elements are rendered on the Swing thread, each reading the current state of its model.
+ * However many times a neuron's activation changes between frames, its node is updated once.
+ *
+ * Elements that are not on screen are left dirty and rendered once they come into view; call [refresh] when the
+ * view changes. While the loop is frozen nothing is rendered and dirty elements accumulate, so a fast run is not
+ * slowed by the GUI; everything is brought up to date when it is unfrozen.
+ *
+ * @param frameInterval minimum time between frames in milliseconds
+ * @param isOnScreen returns false for elements that can be skipped because they are not visible
+ * @param isFrozen extra condition under which rendering is suspended, checked every frame
+ * @param render brings an element up to date with its model
+ */
+class RenderLoop<T : Any> @JvmOverloads constructor(
+    frameInterval: Int = DEFAULT_FRAME_INTERVAL,
+    private val isOnScreen: (T) -> Boolean = { true },
+    private val isFrozen: () -> Boolean = { false },
+    private val render: (T) -> Unit
+) {
+
+    private val dirty: MutableSet<T> = ConcurrentHashMap.newKeySet()
+
+    private val notifier = CoalescedNotifier(frameInterval) { frame() }
+
+    /**
+     * If true, elements are not rendered until this is set back to false.
+     */
+    var isPaused = false
+        set(value) {
+            field = value
+            if (!value) {
+                notifier.request()
+            }
+        }
+
+    /**
+     * Minimum time between frames in milliseconds.
+     */
+    var frameInterval: Int
+        get() = notifier.interval
+        set(value) {
+            notifier.interval = value
+        }
+
+    /**
+     * Number of elements waiting to be rendered.
+     */
+    val dirtyCount get() = dirty.size
+
+    /**
+     * Schedule an element to be rendered in the next frame. May be called from any thread.
+     */
+    fun markDirty(element: T) {
+        dirty.add(element)
+        notifier.request()
+    }
+
+    /**
+     * Stop tracking an element, e.g. because it has been removed from the canvas.
+     */
+    fun forget(element: T) {
+        dirty.remove(element)
+    }
+
+    /**
+     * Schedule a frame, so that dirty elements which have come into view are rendered.
+     */
+    fun refresh() {
+        if (dirty.isNotEmpty()) {
+            notifier.request()
+        }
+    }
+
+    /**
+     * Render the dirty elements that are on screen. Called on the Swing thread once per frame interval.
+     *
+     * @return the number of elements rendered
+     */
+    fun frame(): Int {
+        if (isPaused) {
+            return 0
+        }
+        if (isFrozen()) {
+            // Check again next frame, so that the view catches up as soon as the condition clears
+            if (dirty.isNotEmpty()) {
+                notifier.request()
+            }
+            return 0
+        }
+        var rendered = 0
+        val iterator = dirty.iterator()
+        while (iterator.hasNext()) {
+            val element = iterator.next()
+            if (isOnScreen(element)) {
+                // Removed before rendering so that a change made meanwhile marks it dirty again
+                iterator.remove()
+                render(element)
+                rendered++
+            }
+        }
+        return rendered
+    }
+
+    companion object {
+        /**
+         * Default frame interval, about 30 frames per second.
+         */
+        const val DEFAULT_FRAME_INTERVAL = 33
+    }
+}
@@ -43,7 +43,7 @@ fun SmileClassifier.getTrainingDialog(): StandardDialog {
 
         // Data Panels
         val inputs = SimbrainDataViewer(
-            createFromDoubleArray(classifier.trainingData.featureVectors), false
+            createFromDoubleArray(classifier.trainingData.featureRows), false
         ).apply {
             addAction(table.importCsv)
             addAction(table.randomizeAction)
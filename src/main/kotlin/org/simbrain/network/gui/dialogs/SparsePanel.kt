@@ -389,10 +389,17 @@ class SparsePanel(
             } else {
                 val result =
                     connectSparse(source, target, density, allowSelfConnect, equalizeEfferentsChkBx.isSelected)
-                if (result is ConnectionsResult.Add) {
-                    result.connectionsToAdd
-                } else {
-                    java.util.List.of()
+                when (result) {
+                    is ConnectionsResult.Add -> result.connectionsToAdd
+                    is ConnectionsResult.Update -> {
+                        result.connectionsToRemove.forEach { it.delete() }
+                        result.connectionsToAdd
+                    }
+                    is ConnectionsResult.Remove -> {
+                        result.connectionsToRemove.forEach { it.delete() }
+                        java.util.List.of()
+                    }
+                    else -> java.util.List.of()
                 }
             }
         } else null
@@ -0,0 +1,199 @@
+package org.simbrain.network.gui.nodes
+
+import org.piccolo2d.PNode
+import org.piccolo2d.event.PBasicInputEventHandler
+import org.piccolo2d.event.PInputEvent
+import org.piccolo2d.event.PInputEventFilter
+import org.piccolo2d.nodes.PImage
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.groups.AbstractNeuronCollection
+import org.simbrain.util.math.SimbrainMath
+import java.awt.event.InputEvent
+import java.awt.geom.Point2D
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+import java.beans.PropertyChangeListener
+import javax.swing.JDialog
+import javax.swing.JPopupMenu
+import kotlin.math.max
+import kotlin.math.sqrt
+
+/**
+ * Draws every neuron of a large collection as one pixel of a single image, in place of a [NeuronNode] per neuron.
+ * Compare [NeuronArrayNode]. Pixels are placed at the neurons' locations, so the image follows the collection's
+ * layout, and are colored as a [NeuronNode] would be.
+ *
+ * The image is redrawn through the network panel's render loop after each network update, while the node is on the
+ * canvas, and whenever the neurons move. Pressing on a neuron in the image creates a node for it (see [AbstractNeuronCollectionNode.materialize]) and
+ * selects that node.
+ */
+class NeuronCollectionImageNode(val collectionNode: AbstractNeuronCollectionNode) :
+    ScreenElement(collectionNode.networkPanel) {
+
+    private val neuronCollection: AbstractNeuronCollection = collectionNode.model
+
+    private val image = PImage().also { addChild(it) }
+
+    private var pixels = PixelLayout.EMPTY
+
+    private var layoutStale = true
+
+    private val networkEvents = networkPanel.network.events
+
+    /**
+     * Listener for network updates while the node has a parent.
+     */
+    private var updateListener: PropertyChangeListener? = null
+
+    init {
+        pickable = true
+        addInputEventListener(object : PBasicInputEventHandler() {
+            init {
+                eventFilter = PInputEventFilter(InputEvent.BUTTON1_MASK)
+            }
+
+            override fun mousePressed(event: PInputEvent) {
+                if (event.isPopupTrigger || event.clickCount > 1) {
+                    return
+                }
+                val neuron = neuronAt(event.position) ?: return
+                val node = collectionNode.materialize(neuron, false)
+                if (event.isShiftDown) {
+                    networkPanel.selectionManager.toggle(node)
+                } else {
+                    networkPanel.selectionManager.set(node)
+                }
+                event.setHandled(true)
+            }
+        })
+    }
+
+    override fun setParent(newParent: PNode?) {
+        super.setParent(newParent)
+        if (newParent == null) {
+            updateListener?.let { networkEvents.removeListener(it) }
+            updateListener = null
+            networkPanel.renderLoop.forget(this)
+        } else if (updateListener == null) {
+            updateListener = networkEvents.onUpdateCompleted { networkPanel.renderLoop.markDirty(this) }
+        }
+    }
+
+    /**
+     * Recompute where neurons are drawn, e.g. after they have moved or been added.
+     */
+    fun invalidatePixelLayout() {
+        layoutStale = true
+        networkPanel.renderLoop.markDirty(this)
+    }
+
+    override fun render() {
+        val neurons = neuronCollection.neuronList
+        if (layoutStale || pixels.indices.size != neurons.size) {
+            layout(neurons)
+        }
+        val data = (image.image as? BufferedImage ?: return).raster.dataBuffer as DataBufferInt
+        val rgb = data.data
+        val spikingColor = NeuronNode.spikingColor.rgb
+        neurons.forEachIndexed { i, neuron ->
+            rgb[pixels.indices[i]] = if (neuron.isSpike) spikingColor else NeuronNode.activationColor(neuron)
+        }
+        image.invalidatePaint()
+    }
+
+    private fun layout(neurons: List<Neuron>) {
+        layoutStale = false
+        pixels = PixelLayout.compute(
+            neurons.map { it.x }.toDoubleArray(),
+            neurons.map { it.y }.toDoubleArray()
+        )
+        image.image = BufferedImage(pixels.width, pixels.height, BufferedImage.TYPE_INT_ARGB)
+        image.setBounds(pixels.x, pixels.y, pixels.width * pixels.cellSize, pixels.height * pixels.cellSize)
+        collectionNode.outlineChanged()
+    }
+
+    /**
+     * Returns the neuron closest to a point on the canvas, if it is within half a pixel or half a neuron diameter of
+     * the point.
+     */
+    fun neuronAt(point: Point2D): Neuron? {
+        val radius = max(pixels.cellSize, NeuronNode.DIAMETER.toDouble()) / 2
+        return neuronCollection.neuronList
+            .minByOrNull { SimbrainMath.distance(it.location, point) }
+            ?.takeIf { SimbrainMath.distance(it.location, point) <= radius }
+    }
+
+    override fun offset(dx: kotlin.Double, dy: kotlin.Double) {
+        collectionNode.offset(dx, dy)
+    }
+
+    override fun getModel() = neuronCollection
+
+    override fun isSelectable() = true
+
+    override fun isDraggable() = true
+
+    override fun getToolTipText() = collectionNode.interactionBox.toolTipText
+
+    override fun getContextMenu(): JPopupMenu? = collectionNode.interactionBox.contextMenu
+
+    override fun getPropertyDialog(): JDialog? = collectionNode.interactionBox.propertyDialog
+
+    /**
+     * Where each neuron of a collection is drawn in an image with one square cell per neuron.
+     *
+     * @param indices index of each neuron's pixel in the image, in neuron list order
+     * @param x left of the image in canvas coordinates
+     * @param y top of the image in canvas coordinates
+     * @param cellSize width and height of a pixel in canvas coordinates
+     */
+    class PixelLayout(
+        val indices: IntArray,
+        val width: Int,
+        val height: Int,
+        val x: kotlin.Double,
+        val y: kotlin.Double,
+        val cellSize: kotlin.Double
+    ) {
+        companion object {
+
+            /**
+             * Largest width or height of an image, in pixels.
+             */
+            const val MAX_SIDE = 1024
+
+            val EMPTY = PixelLayout(IntArray(0), 1, 1, 0.0, 0.0, 1.0)
+
+            /**
+             * Lay out neurons at the given locations. The cell size is estimated from the density of neurons, so
+             * neurons laid out on a regular grid or line get one pixel each, centered on their locations.
+             */
+            fun compute(xs: DoubleArray, ys: DoubleArray): PixelLayout {
+                val n = xs.size
+                if (n == 0) {
+                    return EMPTY
+                }
+                val minX = xs.minOrNull()!!
+                val minY = ys.minOrNull()!!
+                val w = xs.maxOrNull()!! - minX
+                val h = ys.maxOrNull()!! - minY
+                val spacing = when {
+                    w > 0 && h > 0 -> sqrt(w * h / n)
+                    n > 1 -> max(w, h) / (n - 1)
+                    else -> 0.0
+                }
+                val cellSize = max(max(spacing, max(w, h) / (MAX_SIDE - 1)), 1.0)
+                val width = (w / cellSize + 0.5).toInt() + 1
+                val height = (h / cellSize + 0.5).toInt() + 1
+                val indices = IntArray(n) { i ->
+                    val col = ((xs[i] - minX) / cellSize + 0.5).toInt().coerceIn(0, width - 1)
+                    val row = ((ys[i] - minY) / cellSize + 0.5).toInt().coerceIn(0, height - 1)
+                    row * width + col
+                }
+                return PixelLayout(
+                    indices, width, height, minX - cellSize / 2, minY - cellSize / 2, cellSize
+                )
+            }
+        }
+    }
+}
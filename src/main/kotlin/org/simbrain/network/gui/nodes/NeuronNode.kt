@@ -105,6 +105,12 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
      */
     private var customStrokeColor = false
 
+    /**
+     * Listeners that mark this node for rendering when the neuron changes. Only registered while the node is on the
+     * canvas.
+     */
+    private var renderListeners = listOf<PropertyChangeListener>()
+
     /**
      * Create a new neuron node.
      *
@@ -134,11 +140,6 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
         // Handle events
         val events = neuron.events
         events.onDeleted { n: NetworkModel? -> removeFromParent() }
-        events.onActivationChange { o: kotlin.Double?, n: kotlin.Double? ->
-            updateColor()
-            updateText()
-        }
-        events.onSpiked { updateSpikeColor() }
         events.onColorChange { updateColor() }
         events.onLabelChange { _, _ ->
             updateTextLabel()
@@ -149,6 +150,32 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
         events.onUpdateRuleChange { _, _ -> updateShape() }
     }
 
+    /**
+     * Update color and text to the neuron's current activation and spike state.
+     */
+    override fun render() {
+        updateSpikeColor()
+        updateColor()
+        updateText()
+    }
+
+    override fun setParent(newParent: PNode?) {
+        super.setParent(newParent)
+        renderListeners.forEach { neuron.events.removeListener(it) }
+        if (newParent == null) {
+            renderListeners = listOf()
+            networkPanel.renderLoop.forget(this)
+        } else {
+            val renderLoop = networkPanel.renderLoop
+            renderListeners = listOf(
+                neuron.events.onActivationUpdate { renderLoop.markDirty(this) },
+                neuron.events.onSpikeUpdate { renderLoop.markDirty(this) }
+            )
+            // Catch up with changes made while off the canvas
+            renderLoop.markDirty(this)
+        }
+    }
+
     /**
      * Update the shape (square or circle) of the neuron based on whether it's an activity generator or not.
      */
@@ -279,28 +306,7 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
         if (neuron.isSpike) {
             return
         }
-        val activation = neuron.updateRule.getGraphicalValue(neuron)
-        // Force to blank if 0 (or close to it)
-        val gLow = neuron.updateRule.graphicalLowerBound
-        val gUp = neuron.updateRule.graphicalUpperBound
-
-        // A "graphical zero point" that shows as white
-        var gZeroPoint = 0.0
-        if (NeuronUpdateRule.usesCustomZeroPoint(neuron.updateRule)) {
-            // Current custom choice is between upper and lower bounds.
-            // For example useful to capture whether a biological neuron is
-            // depolarized or hyperpolarized
-            gZeroPoint = (gUp - gLow) / 2 + gLow
-        }
-        if (Math.abs(activation - gZeroPoint) < 0.001) {
-            mainShape.paint = Color.white
-        } else if (activation > gZeroPoint) {
-            val saturation = SimbrainMath.rescale(activation, 0.0, gUp, 0.0, 1.0)
-            mainShape.paint = Color.getHSBColor(hotColor, saturation.toFloat(), 1f)
-        } else if (activation < gZeroPoint) {
-            val saturation = SimbrainMath.rescale(activation, 0.0, gLow, 0.0, 1.0)
-            mainShape.paint = Color.getHSBColor(coolColor, saturation.toFloat(), 1f)
-        }
+        mainShape.paint = Color(activationColor(neuron))
         if (!customStrokeColor) {
             // Color stroke paint based on Polarity
             if (neuron.polarity === SimbrainConstants.Polarity.EXCITATORY) {
@@ -604,6 +610,37 @@ class NeuronNode(net: NetworkPanel?, val neuron: Neuron) : ScreenElement(net), P
          */
         @JvmStatic
         var spikingColor = Color.yellow
+
+        /**
+         * Returns the RGB color that represents a neuron's activation: white near its graphical zero point, shading
+         * to [hotColor] above it and [coolColor] below it.
+         */
+        @JvmStatic
+        fun activationColor(neuron: Neuron): Int {
+            val activation = neuron.updateRule.getGraphicalValue(neuron)
+            // Force to blank if 0 (or close to it)
+            val gLow = neuron.updateRule.graphicalLowerBound
+            val gUp = neuron.updateRule.graphicalUpperBound
+
+            // A "graphical zero point" that shows as white
+            var gZeroPoint = 0.0
+            if (NeuronUpdateRule.usesCustomZeroPoint(neuron.updateRule)) {
+                // Current custom choice is between upper and lower bounds.
+                // For example useful to capture whether a biological neuron is
+                // depolarized or hyperpolarized
+                gZeroPoint = (gUp - gLow) / 2 + gLow
+            }
+            if (Math.abs(activation - gZeroPoint) < 0.001) {
+                return Color.white.rgb
+            } else if (activation > gZeroPoint) {
+                val saturation = SimbrainMath.rescale(activation, 0.0, gUp, 0.0, 1.0)
+                return Color.HSBtoRGB(hotColor, saturation.toFloat(), 1f)
+            } else if (activation < gZeroPoint) {
+                val saturation = SimbrainMath.rescale(activation, 0.0, gLow, 0.0, 1.0)
+                return Color.HSBtoRGB(coolColor, saturation.toFloat(), 1f)
+            }
+            return Color.white.rgb
+        }
     }
 
     private fun updateBounds() {
@@ -18,7 +18,6 @@
  */
 package org.simbrain.network.gui.nodes
 
-import org.simbrain.network.NetworkModel
 import org.simbrain.network.core.SynapseGroup2
 import org.simbrain.network.groups.SynapseGroup
 import org.simbrain.network.gui.NetworkPanel
@@ -41,6 +40,12 @@ class SynapseGroup2Node(networkPanel: NetworkPanel, val synapseGroup: SynapseGro
      */
     private var expandedNode: SynapseGroup2NodeExpanded? = null
 
+    /**
+     * PNode that represents the synapses of a large group as a density image, used in place of [expandedNode] when
+     * [NetworkPanel.isAggregated] is true for the group.
+     */
+    private var densityNode: SynapseGroup2NodeDensity? = null
+
     /**
      * PNode that represents a single one-directional green arrow from
      * one neuron group to another.
@@ -57,51 +62,103 @@ class SynapseGroup2Node(networkPanel: NetworkPanel, val synapseGroup: SynapseGro
      */
     var interactionBox: SynapseGroup2InteractionBox
 
+    /**
+     * True if the synapses have no nodes of their own and are shown as a density image. Recomputed as synapses are
+     * added and removed.
+     */
+    private var isAggregated = networkPanel.isAggregated(synapseGroup)
+
     init {
         // Note the children pnodes to outlined objects are created in
         // networkpanel and added externally to outlined objects
         interactionBox = SynapseGroup2InteractionBox(networkPanel, synapseGroup, this)
         interactionBox.setText(synapseGroup.label)
         addChild(interactionBox)
-        synapseGroup.source.events.onLocationChange { layoutChildren() }
-        synapseGroup.target.events.onLocationChange { layoutChildren() }
+        synapseGroup.source.events.onLocationChange { neuronsMoved() }
+        synapseGroup.target.events.onLocationChange { neuronsMoved() }
 
         // Handle events
         val events = synapseGroup.events
-        events.onDeleted { s: NetworkModel -> removeFromParent() }
+        events.onDeleted {
+            removeFromParent()
+            // Stops the density image listening to the network
+            densityNode?.removeFromParent()
+        }
         events.onLabelChange { o: String, n: String -> updateText() }
         events.onVisibilityChange {
             setVisibility()
         }
         events.onSynapseAdded { s ->
-            this@SynapseGroup2Node.networkPanel.createNode(s)
+            if (!updateAggregation() && !isAggregated) {
+                this@SynapseGroup2Node.networkPanel.createNode(s)
+            }
             refreshVisible()
         }
         events.onSynapseRemoved { s ->
             s.delete()
+            updateAggregation()
             refreshVisible()
         }
         events.onSynapseListChanged() {
+            updateAggregation()
             setVisibility()
             refreshVisible()
         }
         setVisibility()
     }
 
+    private fun neuronsMoved() {
+        densityNode?.invalidate()
+        layoutChildren()
+    }
+
+    /**
+     * Recompute [isAggregated] and, if the group has crossed the aggregation threshold, switch between a node per
+     * synapse and the density image.
+     *
+     * @return true if the representation changed, in which case every synapse in the group has been handled
+     */
+    private fun updateAggregation(): Boolean {
+        val aggregated = networkPanel.isAggregated(synapseGroup)
+        if (aggregated == isAggregated) {
+            return false
+        }
+        isAggregated = aggregated
+        if (aggregated) {
+            val synapses = synapseGroup.synapses.toHashSet()
+            networkPanel.filterScreenElements<SynapseNode>()
+                .filter { it.model in synapses }
+                .forEach { it.removeFromParent() }
+        } else {
+            synapseGroup.synapses.forEach { networkPanel.createNode(it) }
+        }
+        return true
+    }
+
     private fun removeEverythingButInteractionBox() {
         removeChild(directedNode)
         removeChild(expandedNode)
+        removeChild(densityNode)
         removeChild(recurrentNode)
     }
 
     private fun refreshVisible() {
         removeChild(expandedNode)
         expandedNode = null
+        densityNode?.invalidate()
         setVisibility()
     }
 
     fun setVisibility() {
-        if (synapseGroup.displaySynapses) {
+        if (synapseGroup.displaySynapses && isAggregated) {
+            removeEverythingButInteractionBox()
+            if (densityNode == null) {
+                densityNode = SynapseGroup2NodeDensity(this)
+            }
+            addChild(densityNode)
+            interactionBox.raiseAbove(densityNode)
+            currentNode = densityNode
+        } else if (synapseGroup.displaySynapses) {
             removeEverythingButInteractionBox()
             if (expandedNode == null) {
                 expandedNode = SynapseGroup2NodeExpanded(networkPanel, this)
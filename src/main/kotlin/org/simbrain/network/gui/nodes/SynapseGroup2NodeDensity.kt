@@ -0,0 +1,196 @@
+package org.simbrain.network.gui.nodes
+
+import org.piccolo2d.PNode
+import org.piccolo2d.nodes.PImage
+import org.simbrain.util.CoalescedNotifier
+import java.awt.Color
+import java.awt.geom.Rectangle2D
+import java.awt.image.BufferedImage
+import java.beans.PropertyChangeListener
+import kotlin.math.abs
+import kotlin.math.ln
+import kotlin.math.max
+import kotlin.math.roundToInt
+
+/**
+ * Representation of a large synapse group whose synapses are displayed: instead of a [SynapseNode] per synapse, the
+ * lines the synapses would be drawn as are accumulated in a [SynapseDensityRaster] and shown as one translucent
+ * image, denser where more synapses pass and colored by the sign of their mean weight.
+ *
+ * The image is recomputed when either neuron group moves or synapses are added or removed (see [invalidate]) and, at
+ * most a few times a second, after network updates so that learning shows. Network updates are only listened to
+ * while the node is on the canvas.
+ */
+class SynapseGroup2NodeDensity(private val synapseGroupNode: SynapseGroup2Node) : PNode(), SynapseGroup2Node.Arrow {
+
+    private val synapseGroup = synapseGroupNode.synapseGroup
+
+    private val image = PImage().also {
+        it.pickable = false
+        addChild(it)
+    }
+
+    private val redrawer = CoalescedNotifier(REDRAW_INTERVAL) { redraw() }
+
+    private val networkEvents = synapseGroupNode.networkPanel.network.events
+
+    /**
+     * Listener for network updates while the node has a parent.
+     */
+    private var updateListener: PropertyChangeListener? = null
+
+    init {
+        pickable = false
+        redraw()
+    }
+
+    override fun setParent(newParent: PNode?) {
+        super.setParent(newParent)
+        if (newParent == null) {
+            updateListener?.let { networkEvents.removeListener(it) }
+            updateListener = null
+        } else if (updateListener == null) {
+            updateListener = networkEvents.onUpdateCompleted { redrawer.request() }
+        }
+    }
+
+    /**
+     * Schedule the image to be recomputed, after the synapses or the neurons they connect have changed.
+     */
+    fun invalidate() = redrawer.request()
+
+    private fun redraw() {
+        val bounds = synapseGroup.source.bound.createUnion(synapseGroup.target.bound)
+        val raster = SynapseDensityRaster(bounds)
+        synapseGroup.synapses.forEach {
+            raster.add(it.source.x, it.source.y, it.target.x, it.target.y, it.strength)
+        }
+        image.image = raster.toImage(
+            SynapseNode.getExcitatoryColor(),
+            SynapseNode.getInhibitoryColor(),
+            SynapseNode.getZeroWeightColor()
+        )
+        image.setBounds(raster.x, raster.y, raster.width * raster.cellSize, raster.height * raster.cellSize)
+        synapseGroupNode.interactionBox.raiseToTop()
+    }
+
+    override fun layoutChildren() {
+        val source = synapseGroup.source
+        val target = synapseGroup.target
+        synapseGroupNode.interactionBox.centerFullBoundsOnPoint(
+            (source.centerX + target.centerX) / 2,
+            (source.centerY + target.centerY) / 2
+        )
+    }
+
+    companion object {
+        /**
+         * Minimum time between redraws in milliseconds.
+         */
+        const val REDRAW_INTERVAL = 250
+    }
+}
+
+/**
+ * Counts, for each cell of a grid laid over a region of the canvas, the synapse lines that pass through it and the sum
+ * of their weights.
+ *
+ * @param bounds region covered, in canvas coordinates
+ * @param maxSide largest width or height of the grid, in cells
+ */
+class SynapseDensityRaster(bounds: Rectangle2D, maxSide: Int = DEFAULT_MAX_SIDE) {
+
+    /**
+     * Width and height of a cell in canvas coordinates.
+     */
+    val cellSize = max(max(bounds.width, bounds.height) / (maxSide - 1), 1.0)
+
+    val width = (bounds.width / cellSize).toInt() + 1
+
+    val height = (bounds.height / cellSize).toInt() + 1
+
+    /**
+     * Left of the grid in canvas coordinates.
+     */
+    val x = bounds.x - cellSize / 2
+
+    /**
+     * Top of the grid in canvas coordinates.
+     */
+    val y = bounds.y - cellSize / 2
+
+    /**
+     * Number of lines through each cell, row by row.
+     */
+    val counts = IntArray(width * height)
+
+    /**
+     * Sum of the weights of the lines through each cell, row by row.
+     */
+    val weights = DoubleArray(width * height)
+
+    private fun column(canvasX: Double) = ((canvasX - x) / cellSize).toInt().coerceIn(0, width - 1)
+
+    private fun row(canvasY: Double) = ((canvasY - y) / cellSize).toInt().coerceIn(0, height - 1)
+
+    /**
+     * Add a line from a source to a target location. Each cell the line passes through is counted once.
+     */
+    fun add(x0: Double, y0: Double, x1: Double, y1: Double, weight: Double) {
+        val c0 = column(x0)
+        val r0 = row(y0)
+        val c1 = column(x1)
+        val r1 = row(y1)
+        val steps = max(abs(c1 - c0), abs(r1 - r0))
+        var last = -1
+        for (i in 0..steps) {
+            val t = if (steps == 0) 0.0 else i.toDouble() / steps
+            val index = (r0 + t * (r1 - r0)).roundToInt() * width + (c0 + t * (c1 - c0)).roundToInt()
+            if (index != last) {
+                counts[index]++
+                weights[index] += weight
+                last = index
+            }
+        }
+    }
+
+    /**
+     * Returns an image with a pixel per cell. Empty cells are transparent; opacity grows with the logarithm of the
+     * count, and the color is that of the sign of the mean weight.
+     */
+    fun toImage(excitatory: Color, inhibitory: Color, zero: Color): BufferedImage {
+        val maxCount = counts.maxOrNull() ?: 0
+        val image = BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+        if (maxCount == 0) {
+            return image
+        }
+        val logMax = ln(1.0 + maxCount)
+        for (i in counts.indices) {
+            val count = counts[i]
+            if (count == 0) {
+                continue
+            }
+            val alpha = (MIN_ALPHA + (255 - MIN_ALPHA) * ln(1.0 + count) / logMax).toInt()
+            val mean = weights[i] / count
+            val color = when {
+                mean > 0 -> excitatory
+                mean < 0 -> inhibitory
+                else -> zero
+            }
+            image.setRGB(i % width, i / width, (alpha shl 24) or (color.rgb and 0xffffff))
+        }
+        return image
+    }
+
+    companion object {
+        /**
+         * Default largest width or height of the grid, in cells.
+         */
+        const val DEFAULT_MAX_SIDE = 256
+
+        /**
+         * Opacity of a cell with a single line, so that sparse connections remain visible.
+         */
+        const val MIN_ALPHA = 40
+    }
+}
@@ -10,6 +10,7 @@ import org.jetbrains.kotlinx.dl.dataset.OnHeapDataset
 import org.simbrain.network.core.ArrayLayer
 import org.simbrain.network.core.Network
 import org.simbrain.network.events.TrainerEvents
+import org.simbrain.network.trainers.MappedDataset
 import org.simbrain.util.*
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.workspace.AttributeContainer
@@ -139,6 +140,18 @@ class DeepNet(
         testingDataset = test
     }
 
+    /**
+     * Initialize the training and testing datasets from a memory-mapped dataset rather than [inputData] and
+     * [targetData]. Batches are read from the file during training, so the dataset can be larger than the heap.
+     */
+    fun initializeDatasets(dataset: MappedDataset) {
+        require(dataset.numInputs == inputSize()) { "Dataset has ${dataset.numInputs} inputs but the network has " +
+                "${inputSize()}" }
+        val (train, test) = dataset.toKotlinDLDataset().shuffle().split(.7)
+        trainingDataset = train
+        testingDataset = test
+    }
+
     fun train(trainBatchSize: Int = 1, validationBatchSize: Int = 1) {
         // Fixing batch size to 1 to make things simpler
         // TODO: Think about this...
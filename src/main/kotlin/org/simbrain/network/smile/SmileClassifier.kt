@@ -3,6 +3,7 @@ package org.simbrain.network.smile
 import org.simbrain.network.core.ArrayLayer
 import org.simbrain.network.core.Network
 import org.simbrain.network.smile.classifiers.SVMClassifier
+import org.simbrain.network.trainers.MappedDataset
 import org.simbrain.util.UserParameter
 import org.simbrain.util.getOneHot
 import org.simbrain.util.propertyeditor.EditableObject
@@ -56,11 +57,21 @@ class SmileClassifier(
      */
     fun train() {
         classifier.apply {
-            fit(trainingData.featureVectors, trainingData.getIntegerTargets())
+            fit(trainingData.featureRows, trainingData.getIntegerTargets())
         }
         events.fireUpdated()
     }
 
+    /**
+     * Train the classifier on a memory-mapped dataset, whose first target column holds integer class labels. Smile
+     * classifiers fit on in-memory arrays, so the dataset is loaded into the classifier's training data first.
+     */
+    fun train(dataset: MappedDataset) {
+        classifier.trainingData.featureVectors = dataset.inputsToArray()
+        classifier.trainingData.setIntegerTargets(IntArray(dataset.numRows) { dataset.getTarget(it, 0).toInt() })
+        train()
+    }
+
     /**
      * Update the classifier by apply it to inputs and caching the result as output.
      */
@@ -1,7 +1,7 @@
 package org.simbrain.network.trainers
 
 import org.simbrain.util.BiMap
-import org.simbrain.util.getDiagonal2DDoubleArray
+import smile.math.matrix.Matrix
 
 /**
  * Encapsulates a 2d array of feature vectors and a set of String labels used to train a classifier.
@@ -10,7 +10,13 @@ import org.simbrain.util.getDiagonal2DDoubleArray
  * [getIntegerTargets].
  *
  */
-class ClassificationDataset(val numFeatures: Int, val numSamples: Int) {
+class ClassificationDataset(numFeatures: Int, numSamples: Int) {
+
+    var numFeatures = numFeatures
+        private set
+
+    var numSamples = numSamples
+        private set
 
     /**
      * Method of associating string labels to integer indices.
@@ -22,11 +28,84 @@ class ClassificationDataset(val numFeatures: Int, val numSamples: Int) {
     var labelEncoding = LabelEncoding.Integer
 
     /**
-     * A 2d array. Rows correspond to feature vectors
+     * Feature vectors stored row-major in one contiguous array. Defaults to a diagonal matrix.
+     */
+    var featureData = DoubleArray(numSamples * numFeatures).also {
+        for (i in 0 until minOf(numSamples, numFeatures)) it[i * numFeatures + i] = 1.0
+    }
+        private set
+
+    /**
+     * Rows of [featureData] as separate arrays, built when first needed after the features change.
+     */
+    @Transient
+    private var rowCache: Array<DoubleArray>? = null
+
+    /**
+     * Feature vectors saved before they were stored in [featureData]. Only set while loading old workspaces; see
+     * [getNetworkXStream][org.simbrain.network.core.getNetworkXStream].
+     */
+    private var legacyFeatureVectors: Array<DoubleArray>? = null
+
+    /**
+     * A 2d array. Rows correspond to feature vectors. Getting returns a copy of [featureData]; use [featureRows] to
+     * read the rows without copying.
      *
      * Xor example: [[0,0],[1,0],[0,1],[1,1]]
      */
-    var featureVectors: Array<DoubleArray> = getDiagonal2DDoubleArray(numSamples, numFeatures)
+    var featureVectors: Array<DoubleArray>
+        get() = Array(numSamples) { featureData.copyOfRange(it * numFeatures, (it + 1) * numFeatures) }
+        set(value) {
+            numSamples = value.size
+            numFeatures = value.firstOrNull()?.size ?: 0
+            require(value.all { it.size == numFeatures }) { "Feature vectors must all have $numFeatures features" }
+            featureData = DoubleArray(numSamples * numFeatures)
+            value.forEachIndexed { i, row -> row.copyInto(featureData, i * numFeatures) }
+            rowCache = null
+        }
+
+    /**
+     * The feature vectors as rows, for libraries like Smile that fit on 2d arrays. The rows are shared between calls
+     * until the features change, so they must not be modified; use [set] instead.
+     */
+    val featureRows: Array<DoubleArray>
+        get() = rowCache ?: featureVectors.also { rowCache = it }
+
+    operator fun get(sample: Int, feature: Int): Double {
+        checkIndices(sample, feature)
+        return featureData[sample * numFeatures + feature]
+    }
+
+    operator fun set(sample: Int, feature: Int, value: Double) {
+        checkIndices(sample, feature)
+        featureData[sample * numFeatures + feature] = value
+        rowCache?.let { it[sample][feature] = value }
+    }
+
+    private fun checkIndices(sample: Int, feature: Int) {
+        if (sample !in 0 until numSamples || feature !in 0 until numFeatures) {
+            throw IndexOutOfBoundsException("Feature ($sample, $feature) is outside the $numSamples x $numFeatures " +
+                    "dataset")
+        }
+    }
+
+    /**
+     * Returns the feature vectors as a Smile matrix with one row per sample.
+     */
+    fun getFeatureMatrix() = Matrix(numSamples, numFeatures).also { m ->
+        for (i in 0 until numSamples) for (j in 0 until numFeatures) m[i, j] = featureData[i * numFeatures + j]
+    }
+
+    /**
+     * Returns the samples as a [TrainingSet2] whose single target column holds the integer targets.
+     */
+    fun toTrainingSet() = TrainingSet2(numFeatures, 1, numSamples).also { set ->
+        val targets = getIntegerTargets()
+        for (i in 0 until numSamples) {
+            val features = featureData.copyOfRange(i * numFeatures, (i + 1) * numFeatures)
+            set.add(features, doubleArrayOf(targets[i].toDouble()))
+        }
+    }
 
     /**
      * String labels that the user interacts with. Unique labels are automatically associated with integers by the
@@ -74,4 +153,15 @@ class ClassificationDataset(val numFeatures: Int, val numSamples: Int) {
         return targetLabels.map { labelTargetMap[it]!!}.toIntArray()
     }
 
-}
\ No newline at end of file
+    /**
+     * See [org.simbrain.workspace.serialization.WorkspaceComponentDeserializer]
+     */
+    private fun readResolve(): Any {
+        legacyFeatureVectors?.let {
+            featureVectors = it
+            legacyFeatureVectors = null
+        }
+        return this
+    }
+
+}
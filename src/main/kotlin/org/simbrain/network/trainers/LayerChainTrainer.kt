@@ -0,0 +1,438 @@
+package org.simbrain.network.trainers
+
+import kotlinx.coroutines.*
+import org.simbrain.network.core.Network
+import org.simbrain.network.events.TrainerEvents
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.neuron_update_rules.SigmoidalRule
+import org.simbrain.network.util.BiasedMatrixData
+import smile.math.blas.Transpose.NO_TRANSPOSE
+import smile.math.blas.Transpose.TRANSPOSE
+import smile.math.matrix.Matrix
+import java.nio.DoubleBuffer
+import kotlin.coroutines.coroutineContext
+import kotlin.random.Random
+
+/**
+ * Neuron arrays connected one after another by weight matrices, from an input array to an output array. Each array
+ * after the first has exactly one incoming connector.
+ */
+class LayerChain(val layers: List<NeuronArray>, val weightMatrices: List<WeightMatrix>) {
+
+    init {
+        require(layers.size >= 2 && weightMatrices.size == layers.size - 1) {
+            "A layer chain needs at least two layers and one weight matrix between each pair"
+        }
+    }
+
+    val input get() = layers.first()
+
+    val output get() = layers.last()
+
+    companion object {
+
+        /**
+         * Follow weight matrices out of an input array until reaching an array with no outgoing connectors.
+         */
+        @JvmStatic
+        fun from(input: NeuronArray): LayerChain {
+            val layers = arrayListOf(input)
+            val weightMatrices = ArrayList<WeightMatrix>()
+            var layer = input
+            while (layer.outgoingConnectors.isNotEmpty()) {
+                val weightMatrix = layer.outgoingConnectors.singleOrNull() as? WeightMatrix
+                    ?: throw IllegalArgumentException("${layer.id} must have one outgoing weight matrix")
+                val next = weightMatrix.target as? NeuronArray
+                    ?: throw IllegalArgumentException("${weightMatrix.id} must connect to a neuron array")
+                require(next.incomingConnectors.size == 1) { "${next.id} has more than one incoming connector" }
+                require(next !in layers) { "${next.id} is connected in a loop" }
+                layers.add(next)
+                weightMatrices.add(weightMatrix)
+                layer = next
+            }
+            return LayerChain(layers, weightMatrices)
+        }
+
+        /**
+         * Find the chain starting at the only neuron array in a network that has outgoing but no incoming connectors.
+         */
+        @JvmStatic
+        fun from(network: Network): LayerChain {
+            val inputs = network.getModels<NeuronArray>().filter {
+                it.incomingConnectors.isEmpty() && it.outgoingConnectors.isNotEmpty()
+            }
+            require(inputs.size == 1) { "Network must have exactly one input neuron array, but has ${inputs.size}" }
+            return from(inputs.first())
+        }
+    }
+}
+
+/**
+ * Trains the weights and biases of a [LayerChain] by backpropagation of squared error, in mini-batches.
+ *
+ * The trainer keeps its own copy of the parameters in column-major arrays. A mini-batch is held with one column per
+ * row of the training set, so that each layer's forward and backward pass is a single matrix-matrix product. The
+ * weights are read from the chain's [WeightMatrix]es when training starts and written back into the same matrices
+ * (and into the arrays' [BiasedMatrixData]) after each epoch.
+ *
+ * Arrays after the input must use a [LinearRule] or [SigmoidalRule]; their noise is ignored while training. Use
+ * [start] to train on a background thread and stop by cancelling the job. Only one training run should be active at a
+ * time.
+ */
+class LayerChainTrainer(val chain: LayerChain, optimizer: Optimizer = Adam()) {
+
+    val events = TrainerEvents(this)
+
+    /**
+     * Changing the optimizer discards the state of the previous one, e.g. momentum.
+     */
+    var optimizer = optimizer
+        set(value) {
+            field = value
+            createUpdaters()
+        }
+
+    var batchSize = 32
+        set(value) {
+            require(value > 0) { "Batch size must be positive" }
+            field = value
+            workspaces.clear()
+        }
+
+    /**
+     * Used to shuffle the training rows each epoch.
+     */
+    var random: Random = Random.Default
+
+    /**
+     * Number of epochs trained.
+     */
+    @Volatile
+    var epoch = 0
+        private set
+
+    /**
+     * Mean squared error on the training rows in the last epoch.
+     */
+    var error = Double.NaN
+        private set
+
+    /**
+     * Mean squared error on the testing rows after the last epoch, or NaN if there are none.
+     */
+    var validationError = Double.NaN
+        private set
+
+    private val sizes = chain.layers.map { it.size() }
+
+    private val outputSize = sizes.last()
+
+    /**
+     * Weights from layer l to layer l + 1, with one row per target neuron, as in [WeightMatrix].
+     */
+    private val weights = List(sizes.size - 1) { DoubleArray(sizes[it + 1] * sizes[it]) }
+
+    private val weightMatrices = weights.mapIndexed { l, w -> w.asMatrix(sizes[l + 1], sizes[l]) }
+
+    /**
+     * Biases of layer l + 1.
+     */
+    private val biases = List(sizes.size - 1) { DoubleArray(sizes[it + 1]) }
+
+    private val weightGradients = weights.map { DoubleArray(it.size) }
+
+    private val weightGradientMatrices = weightGradients.mapIndexed { l, g -> g.asMatrix(sizes[l + 1], sizes[l]) }
+
+    private val biasGradients = biases.map { DoubleArray(it.size) }
+
+    private lateinit var weightUpdaters: List<ParameterUpdater>
+
+    private lateinit var biasUpdaters: List<ParameterUpdater>
+
+    private var functions = emptyList<LayerFunction>()
+
+    /**
+     * Workspaces by number of columns. A data set needs at most two sizes for training: full and last batches.
+     */
+    private val workspaces = HashMap<Int, Workspace>()
+
+    init {
+        createUpdaters()
+        readWeights()
+    }
+
+    private fun createUpdaters() {
+        weightUpdaters = weights.map { optimizer.createUpdater(it.size) }
+        biasUpdaters = biases.map { optimizer.createUpdater(it.size) }
+    }
+
+    /**
+     * Copy weights, biases and update rules from the chain. Called when training starts.
+     */
+    fun readWeights() {
+        chain.weightMatrices.forEachIndexed { l, weightMatrix ->
+            val matrix = weightMatrix.weightMatrix
+            val rows = sizes[l + 1]
+            for (j in 0 until sizes[l]) for (i in 0 until rows) {
+                weights[l][j * rows + i] = matrix[i, j]
+            }
+        }
+        functions = chain.layers.drop(1).map { layer ->
+            when (val rule = layer.updateRule) {
+                is LinearRule -> LinearFunction(rule)
+                is SigmoidalRule -> SigmoidFunction(rule)
+                else -> throw IllegalArgumentException("${layer.id} has a ${rule.name} rule, which cannot be trained")
+            }
+        }
+        chain.layers.drop(1).forEachIndexed { l, layer -> layer.biasData.biases.copyInto(biases[l]) }
+    }
+
+    /**
+     * Copy the trained weights and biases into the chain's existing matrices and data holders. Holds the network's
+     * update lock (see [Network.withUpdateLock]), so that a running network never computes with half written weights.
+     */
+    fun writeWeights() {
+        chain.input.network.withUpdateLock {
+            chain.weightMatrices.forEachIndexed { l, weightMatrix ->
+                val matrix = weightMatrix.weightMatrix
+                val rows = sizes[l + 1]
+                for (j in 0 until sizes[l]) for (i in 0 until rows) {
+                    matrix[i, j] = weights[l][j * rows + i]
+                }
+            }
+            chain.layers.drop(1).forEachIndexed { l, layer -> biases[l].copyInto(layer.biasData.biases) }
+        }
+        chain.weightMatrices.forEach { it.events.fireUpdated() }
+    }
+
+    private val NeuronArray.biasData
+        get() = dataHolder as? BiasedMatrixData ?: throw IllegalArgumentException("$id has no biases")
+
+    /**
+     * Train for a number of epochs on the training rows of a data set, reporting progress and error after each epoch.
+     * Weights are written back to the chain after each epoch and when training is cancelled.
+     */
+    suspend fun train(data: TrainingSet2, epochs: Int) = withContext(Dispatchers.Default) {
+        require(data.numInputs == sizes.first() && data.numTargets == outputSize) {
+            "Data has ${data.numInputs} inputs and ${data.numTargets} targets but the chain has ${sizes.first()} " +
+                    "inputs and $outputSize outputs"
+        }
+        require(data.trainingSize > 0) { "Data has no training rows" }
+        readWeights()
+        events.fireBeginTraining()
+        try {
+            for (e in 1..epochs) {
+                trainEpoch(data)
+                writeWeights()
+                events.fireErrorUpdated(error)
+                events.fireProgressUpdated("Epoch $epoch: error ${"%.4g".format(error)}", 100 * e / epochs)
+            }
+        } finally {
+            writeWeights()
+            events.fireEndTraining()
+        }
+    }
+
+    /**
+     * Train on a background thread. Cancel the returned job to stop.
+     */
+    @OptIn(DelicateCoroutinesApi::class)
+    fun start(data: TrainingSet2, epochs: Int) = GlobalScope.launch { train(data, epochs) }
+
+    private suspend fun trainEpoch(data: TrainingSet2) {
+        val training = data.trainingSet
+        val rows = IntArray(training.size) { training.row(it) }.apply { shuffle(random) }
+        var squaredError = 0.0
+        for (start in rows.indices step batchSize) {
+            coroutineContext.ensureActive()
+            val workspace = workspace(minOf(batchSize, rows.size - start))
+            workspace.load(data, rows, start)
+            forward(workspace)
+            squaredError += backward(workspace)
+            for (l in weights.indices) {
+                weightUpdaters[l].update(weights[l], weightGradients[l])
+                biasUpdaters[l].update(biases[l], biasGradients[l])
+            }
+        }
+        epoch++
+        error = squaredError / (rows.size * outputSize)
+        validationError = test(data)
+    }
+
+    /**
+     * Mean squared error on the testing rows of a data set, or NaN if there are none.
+     */
+    private fun test(data: TrainingSet2): Double {
+        val testing = data.testingSet
+        if (testing.size == 0) {
+            return Double.NaN
+        }
+        val rows = IntArray(testing.size) { testing.row(it) }
+        var squaredError = 0.0
+        for (start in rows.indices step batchSize) {
+            val workspace = workspace(minOf(batchSize, rows.size - start))
+            workspace.load(data, rows, start)
+            forward(workspace)
+            val outputs = workspace.activations.last()
+            for (k in outputs.indices) {
+                val e = outputs[k] - workspace.targets[k]
+                squaredError += e * e
+            }
+        }
+        return squaredError / (rows.size * outputSize)
+    }
+
+    /**
+     * Output of the chain for an input, using the trainer's current weights.
+     */
+    fun predict(input: DoubleArray): DoubleArray {
+        require(input.size == sizes.first()) { "Input has ${input.size} values but the chain has ${sizes.first()}" }
+        val workspace = workspace(1)
+        input.copyInto(workspace.activations.first())
+        forward(workspace)
+        return workspace.activations.last().copyOf()
+    }
+
+    private fun workspace(count: Int) = workspaces.getOrPut(count) { Workspace(count) }
+
+    private fun forward(workspace: Workspace) = with(workspace) {
+        for (l in weights.indices) {
+            weightMatrices[l].mm(NO_TRANSPOSE, NO_TRANSPOSE, 1.0, activationMatrices[l], 0.0, activationMatrices[l + 1])
+            functions[l].apply(activations[l + 1], derivatives[l + 1], biases[l], count)
+        }
+    }
+
+    /**
+     * Compute the gradients of half the squared error, averaged over the batch, and return the summed squared error.
+     */
+    private fun backward(workspace: Workspace) = with(workspace) {
+        val last = sizes.size - 1
+        val outputs = activations[last]
+        val outputDeltas = deltas[last]
+        val outputDerivatives = derivatives[last]
+        var squaredError = 0.0
+        for (k in outputs.indices) {
+            val e = outputs[k] - targets[k]
+            squaredError += e * e
+            outputDeltas[k] = e * outputDerivatives[k] / count
+        }
+        for (l in last - 1 downTo 0) {
+            deltaMatrices[l + 1].mm(NO_TRANSPOSE, TRANSPOSE, 1.0, activationMatrices[l], 0.0, weightGradientMatrices[l])
+            val n = sizes[l + 1]
+            val layerDeltas = deltas[l + 1]
+            val biasGradient = biasGradients[l]
+            biasGradient.fill(0.0)
+            for (c in 0 until count) for (i in 0 until n) {
+                biasGradient[i] += layerDeltas[c * n + i]
+            }
+            if (l > 0) {
+                weightMatrices[l].mm(TRANSPOSE, NO_TRANSPOSE, 1.0, deltaMatrices[l + 1], 0.0, deltaMatrices[l])
+                val layerDerivatives = derivatives[l]
+                val previousDeltas = deltas[l]
+                for (k in previousDeltas.indices) {
+                    previousDeltas[k] *= layerDerivatives[k]
+                }
+            }
+        }
+        squaredError
+    }
+
+    /**
+     * Arrays for a batch of [count] rows: the activations, derivatives and deltas of each layer, with one column per
+     * row, and the targets.
+     */
+    private inner class Workspace(val count: Int) {
+
+        val activations = sizes.map { DoubleArray(it * count) }
+
+        val derivatives = sizes.map { DoubleArray(it * count) }
+
+        val deltas = sizes.map { DoubleArray(it * count) }
+
+        val targets = DoubleArray(outputSize * count)
+
+        val activationMatrices = activations.mapIndexed { l, a -> a.asMatrix(sizes[l], count) }
+
+        val deltaMatrices = deltas.mapIndexed { l, d -> d.asMatrix(sizes[l], count) }
+
+        /**
+         * Copy data set rows into the input and target columns. Each row is contiguous in both.
+         */
+        fun load(data: TrainingSet2, rows: IntArray, start: Int) {
+            val inputs = activations.first()
+            for (c in 0 until count) {
+                val row = rows[start + c]
+                data.inputData.copyInto(inputs, c * data.numInputs, row * data.numInputs, (row + 1) * data.numInputs)
+                data.targetData.copyInto(targets, c * outputSize, row * outputSize, (row + 1) * outputSize)
+            }
+        }
+    }
+}
+
+/**
+ * A column-major matrix backed by this array, so that products can be written into it.
+ */
+private fun DoubleArray.asMatrix(rows: Int, cols: Int) = Matrix(rows, cols, rows, DoubleBuffer.wrap(this))
+
+/**
+ * The update rule of a trained array, applied to net inputs in place.
+ */
+private sealed class LayerFunction {
+
+    /**
+     * Replace the net inputs in [values], one column per row of a batch, with activations, and store the derivatives
+     * of the activations with respect to the net inputs.
+     */
+    abstract fun apply(values: DoubleArray, derivatives: DoubleArray, biases: DoubleArray, count: Int)
+}
+
+private class LinearFunction(rule: LinearRule) : LayerFunction() {
+
+    private val slope = rule.slope
+    private val clipping = rule.isClipped
+    private val lowerBound = rule.lowerBound
+    private val upperBound = rule.upperBound
+
+    override fun apply(values: DoubleArray, derivatives: DoubleArray, biases: DoubleArray, count: Int) {
+        val n = biases.size
+        for (c in 0 until count) for (i in 0 until n) {
+            val k = c * n + i
+            val value = values[k] * slope + biases[i]
+            when {
+                clipping && value > upperBound -> {
+                    values[k] = upperBound
+                    derivatives[k] = 0.0
+                }
+                clipping && value < lowerBound -> {
+                    values[k] = lowerBound
+                    derivatives[k] = 0.0
+                }
+                else -> {
+                    values[k] = value
+                    derivatives[k] = slope
+                }
+            }
+        }
+    }
+}
+
+private class SigmoidFunction(rule: SigmoidalRule) : LayerFunction() {
+
+    private val function = rule.squashFunctionType
+    private val bias = rule.bias
+    private val slope = rule.slope
+    private val lowerBound = rule.lowerBound
+    private val upperBound = rule.upperBound
+
+    override fun apply(values: DoubleArray, derivatives: DoubleArray, biases: DoubleArray, count: Int) {
+        val n = biases.size
+        for (c in 0 until count) for (i in 0 until n) {
+            val k = c * n + i
+            val input = values[k] + bias + biases[i]
+            values[k] = function.valueOf(input, upperBound, lowerBound, slope)
+            derivatives[k] = function.derivVal(input, upperBound, lowerBound, slope)
+        }
+    }
+}
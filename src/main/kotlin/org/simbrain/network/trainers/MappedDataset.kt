@@ -0,0 +1,292 @@
+package org.simbrain.network.trainers
+
+import org.jetbrains.kotlinx.dl.dataset.DataBatch
+import org.jetbrains.kotlinx.dl.dataset.Dataset
+import org.jetbrains.kotlinx.dl.dataset.OnHeapDataset
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import kotlin.random.Random
+
+/**
+ * A dataset of input and target rows stored in a memory-mapped file, so that datasets larger than the heap can be
+ * iterated in mini-batches. Only the rows of the current batch are ever copied onto the heap.
+ *
+ * File format: a [HEADER_BYTES] byte header (magic, version, precision, row count, input count, target count)
+ * followed by row-major rows, each holding its inputs followed by its targets as big-endian doubles or floats.
+ *
+ * Create new files with [create] or [fromArrays], open existing ones with [open].
+ */
+class MappedDataset private constructor(
+    val file: File,
+    val numRows: Int,
+    val numInputs: Int,
+    val numTargets: Int,
+    val precision: Precision,
+    private val channel: FileChannel,
+    writable: Boolean
+) : Closeable {
+
+    /**
+     * How values are stored in the file.
+     */
+    enum class Precision(val bytes: Int) {
+        Double(8), Float(4)
+    }
+
+    /**
+     * Number of bytes in one row.
+     */
+    private val rowBytes = (numInputs + numTargets) * precision.bytes
+
+    /**
+     * Number of rows held by each mapped segment. A single mapping cannot exceed 2GB, so large files are mapped as
+     * several segments, each holding a whole number of rows.
+     */
+    private val rowsPerSegment = maxOf(1, minOf(numRows, Int.MAX_VALUE / maxOf(1, rowBytes)))
+
+    private val segments: List<MappedByteBuffer> = run {
+        val mode = if (writable) FileChannel.MapMode.READ_WRITE else FileChannel.MapMode.READ_ONLY
+        (0 until numRows step rowsPerSegment).map { firstRow ->
+            val rows = minOf(rowsPerSegment, numRows - firstRow)
+            channel.map(mode, HEADER_BYTES + firstRow.toLong() * rowBytes, rows.toLong() * rowBytes)
+        }
+    }
+
+    /**
+     * Returns the byte offset of a value within its segment.
+     */
+    private fun offset(row: Int, col: Int) = (row % rowsPerSegment) * rowBytes + col * precision.bytes
+
+    private fun segment(row: Int): ByteBuffer {
+        if (row < 0 || row >= numRows) {
+            throw IndexOutOfBoundsException("Row $row out of range for dataset with $numRows rows")
+        }
+        return segments[row / rowsPerSegment]
+    }
+
+    private fun get(row: Int, col: Int): kotlin.Double {
+        val segment = segment(row)
+        val offset = offset(row, col)
+        return when (precision) {
+            Precision.Double -> segment.getDouble(offset)
+            Precision.Float -> segment.getFloat(offset).toDouble()
+        }
+    }
+
+    private fun set(row: Int, col: Int, value: kotlin.Double) {
+        val segment = segment(row)
+        val offset = offset(row, col)
+        when (precision) {
+            Precision.Double -> segment.putDouble(offset, value)
+            Precision.Float -> segment.putFloat(offset, value.toFloat())
+        }
+    }
+
+    fun getInput(row: Int, col: Int) = get(row, col)
+
+    fun getTarget(row: Int, col: Int) = get(row, numInputs + col)
+
+    /**
+     * Copy the inputs of a row into [dest], starting at [destOffset].
+     */
+    fun readInputs(row: Int, dest: DoubleArray, destOffset: Int = 0) {
+        for (i in 0 until numInputs) dest[destOffset + i] = get(row, i)
+    }
+
+    /**
+     * Copy the inputs of a row into a float array, starting at [destOffset].
+     */
+    fun readInputs(row: Int, dest: FloatArray, destOffset: Int = 0) {
+        for (i in 0 until numInputs) dest[destOffset + i] = get(row, i).toFloat()
+    }
+
+    /**
+     * Copy the targets of a row into [dest], starting at [destOffset].
+     */
+    fun readTargets(row: Int, dest: DoubleArray, destOffset: Int = 0) {
+        for (i in 0 until numTargets) dest[destOffset + i] = get(row, numInputs + i)
+    }
+
+    /**
+     * Write the inputs and targets of a row. The dataset must have been created or opened as writable.
+     */
+    fun setRow(row: Int, inputs: DoubleArray, targets: DoubleArray) {
+        require(inputs.size == numInputs && targets.size == numTargets) { "Row size does not match dataset" }
+        inputs.forEachIndexed { i, v -> set(row, i, v) }
+        targets.forEachIndexed { i, v -> set(row, numInputs + i, v) }
+    }
+
+    /**
+     * Returns a permutation of the row indices.
+     */
+    fun shuffledIndices(random: Random = Random.Default) = IntArray(numRows) { it }.apply { shuffle(random) }
+
+    /**
+     * A mini-batch of rows. The arrays are reused from batch to batch, so copy them if they must outlive the
+     * iteration step. Only the first [size] rows are valid.
+     */
+    class MiniBatch(batchSize: Int, numInputs: Int, numTargets: Int) {
+        val inputs = Array(batchSize) { DoubleArray(numInputs) }
+        val targets = Array(batchSize) { DoubleArray(numTargets) }
+        val rows = IntArray(batchSize)
+        var size = 0
+            internal set
+    }
+
+    /**
+     * Iterate over the rows listed in [indices] in mini-batches of [batchSize].
+     */
+    fun batches(batchSize: Int, indices: IntArray = IntArray(numRows) { it }): Sequence<MiniBatch> = sequence {
+        val batch = MiniBatch(batchSize, numInputs, numTargets)
+        for (start in indices.indices step batchSize) {
+            batch.size = minOf(batchSize, indices.size - start)
+            for (i in 0 until batch.size) {
+                val row = indices[start + i]
+                batch.rows[i] = row
+                readInputs(row, batch.inputs[i])
+                readTargets(row, batch.targets[i])
+            }
+            yield(batch)
+        }
+    }
+
+    /**
+     * Returns all inputs as an on-heap array. Only use this for consumers that need the whole dataset in memory.
+     */
+    fun inputsToArray() = Array(numRows) { row -> DoubleArray(numInputs).also { readInputs(row, it) } }
+
+    /**
+     * Returns all targets as an on-heap array. Only use this for consumers that need the whole dataset in memory.
+     */
+    fun targetsToArray() = Array(numRows) { row -> DoubleArray(numTargets).also { readTargets(row, it) } }
+
+    /**
+     * Returns a KotlinDL view of this dataset. The first target column is used as the class label.
+     */
+    fun toKotlinDLDataset(): Dataset = KotlinDLView(this, IntArray(numRows) { it })
+
+    override fun close() {
+        segments.forEach { if (!it.isReadOnly) it.force() }
+        channel.close()
+    }
+
+    /**
+     * KotlinDL dataset over a subset of rows of a [MappedDataset]. Shuffling and splitting only permute or slice the
+     * row indices; batches are read from the mapped file when requested.
+     */
+    private class KotlinDLView(val data: MappedDataset, val indices: IntArray) : Dataset() {
+
+        override fun split(splitRatio: kotlin.Double): Pair<Dataset, Dataset> {
+            val count = (indices.size * splitRatio).toInt()
+            return Pair(
+                KotlinDLView(data, indices.copyOfRange(0, count)),
+                KotlinDLView(data, indices.copyOfRange(count, indices.size))
+            )
+        }
+
+        override fun xSize() = indices.size
+
+        override fun getX(idx: Int) = FloatArray(data.numInputs).also { data.readInputs(indices[idx], it) }
+
+        override fun getY(idx: Int) = data.getTarget(indices[idx], 0).toFloat()
+
+        override fun shuffle(): Dataset {
+            indices.shuffle()
+            return this
+        }
+
+        override fun createDataBatch(batchStart: Int, batchLength: Int): DataBatch {
+            val x = Array(batchLength) { getX(batchStart + it) }
+            val y = FloatArray(batchLength) { getY(batchStart + it) }
+            // DataBatch cannot be constructed outside KotlinDL, so let an on-heap dataset of this one batch make it
+            return OnHeapDataset.create(x, y).batchIterator(batchLength).next()
+        }
+    }
+
+    companion object {
+
+        const val MAGIC = 0x53424453 // "SBDS"
+
+        const val VERSION = 1
+
+        const val HEADER_BYTES = 32
+
+        /**
+         * Create a new, zero-filled dataset file and map it for writing.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun create(
+            file: File,
+            numRows: Int,
+            numInputs: Int,
+            numTargets: Int,
+            precision: Precision = Precision.Double
+        ): MappedDataset {
+            val channel = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE
+            )
+            val header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(precision.ordinal)
+                .putInt(numRows)
+                .putInt(numInputs)
+                .putInt(numTargets)
+            header.rewind()
+            channel.write(header, 0)
+            return MappedDataset(file, numRows, numInputs, numTargets, precision, channel, true)
+        }
+
+        /**
+         * Open an existing dataset file.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun open(file: File, writable: Boolean = false): MappedDataset {
+            val channel = if (writable) {
+                FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+            } else {
+                FileChannel.open(file.toPath(), StandardOpenOption.READ)
+            }
+            val header = ByteBuffer.allocate(HEADER_BYTES)
+            channel.read(header, 0)
+            header.flip()
+            if (header.remaining() < HEADER_BYTES || header.int != MAGIC) {
+                channel.close()
+                throw IOException("$file is not a Simbrain dataset")
+            }
+            val version = header.int
+            if (version != VERSION) {
+                channel.close()
+                throw IOException("Unsupported dataset version $version")
+            }
+            val precision = Precision.values()[header.int]
+            return MappedDataset(file, header.int, header.int, header.int, precision, channel, writable)
+        }
+
+        /**
+         * Write on-heap inputs and targets to a new dataset file.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun fromArrays(
+            file: File,
+            inputs: Array<DoubleArray>,
+            targets: Array<DoubleArray>,
+            precision: Precision = Precision.Double
+        ): MappedDataset {
+            require(inputs.size == targets.size) { "Inputs and targets must have the same number of rows" }
+            return create(file, inputs.size, inputs.firstOrNull()?.size ?: 0, targets.firstOrNull()?.size ?: 0,
+                precision).apply {
+                inputs.indices.forEach { setRow(it, inputs[it], targets[it]) }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.simbrain.network.trainers
+
+import kotlin.math.pow
+import kotlin.math.sqrt
+
+/**
+ * Updates an array of parameters from their gradients, keeping whatever state the optimizer needs between steps.
+ */
+fun interface ParameterUpdater {
+    fun update(parameters: DoubleArray, gradients: DoubleArray)
+}
+
+/**
+ * A gradient descent method. Each parameter array being trained gets its own [ParameterUpdater].
+ */
+sealed class Optimizer {
+
+    abstract var learningRate: Double
+
+    abstract fun createUpdater(size: Int): ParameterUpdater
+}
+
+/**
+ * Plain stochastic gradient descent.
+ */
+class SGD(override var learningRate: Double = .1) : Optimizer() {
+
+    override fun createUpdater(size: Int) = ParameterUpdater { parameters, gradients ->
+        for (i in parameters.indices) {
+            parameters[i] -= learningRate * gradients[i]
+        }
+    }
+}
+
+/**
+ * Gradient descent in which each step adds a fraction of the previous step.
+ */
+class Momentum(override var learningRate: Double = .1, var momentum: Double = .9) : Optimizer() {
+
+    override fun createUpdater(size: Int): ParameterUpdater {
+        val velocities = DoubleArray(size)
+        return ParameterUpdater { parameters, gradients ->
+            for (i in parameters.indices) {
+                velocities[i] = momentum * velocities[i] - learningRate * gradients[i]
+                parameters[i] += velocities[i]
+            }
+        }
+    }
+}
+
+/**
+ * Adam (Kingma and Ba, 2015): steps are scaled by running estimates of the mean and variance of each gradient.
+ */
+class Adam(
+    override var learningRate: Double = .001,
+    var beta1: Double = .9,
+    var beta2: Double = .999,
+    var epsilon: Double = 1e-8
+) : Optimizer() {
+
+    override fun createUpdater(size: Int): ParameterUpdater {
+        val means = DoubleArray(size)
+        val variances = DoubleArray(size)
+        var step = 0
+        return ParameterUpdater { parameters, gradients ->
+            step++
+            // Step size with the bias correction of both estimates folded in
+            val stepSize = learningRate * sqrt(1 - beta2.pow(step)) / (1 - beta1.pow(step))
+            for (i in parameters.indices) {
+                val g = gradients[i]
+                means[i] = beta1 * means[i] + (1 - beta1) * g
+                variances[i] = beta2 * variances[i] + (1 - beta2) * g * g
+                parameters[i] -= stepSize * means[i] / (sqrt(variances[i]) + epsilon)
+            }
+        }
+    }
+}
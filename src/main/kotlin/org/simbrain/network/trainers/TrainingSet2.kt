@@ -1,18 +1,44 @@
 package org.simbrain.network.trainers
 
+import org.jetbrains.kotlinx.dl.dataset.OnHeapDataset
 import org.simbrain.util.clip
-
-class TrainingSet2 {
-
-    private val _allSet: MutableList<Pair<MutableList<Double>, MutableList<Double>>> = ArrayList()
-
-    val allSet: List<Pair<List<Double>, List<Double>>> = _allSet
+import smile.math.matrix.Matrix
+import kotlin.random.Random
+
+/**
+ * A set of input / target pairs stored row-major in two contiguous primitive arrays, so that training steps do not box
+ * or unbox values.
+ *
+ * Rows are split into training and testing subsets using a shuffled permutation of row indices; the rows themselves
+ * never move. Training and testing rows can be iterated as [Batch] views that index into the shared arrays without
+ * copying, and converted to Smile matrices or KotlinDL datasets when a library needs its own copy.
+ */
+class TrainingSet2(val numInputs: Int, val numTargets: Int, initialCapacity: Int = 16) {
+
+    /**
+     * Row-major inputs. Only the first [size] * [numInputs] entries are valid.
+     */
+    var inputData = DoubleArray(initialCapacity * numInputs)
+        private set
+
+    /**
+     * Row-major targets. Only the first [size] * [numTargets] entries are valid.
+     */
+    var targetData = DoubleArray(initialCapacity * numTargets)
+        private set
+
+    /**
+     * Number of rows.
+     */
+    var size = 0
+        private set
+
+    /**
+     * Shuffled row indices. The first [trainingSize] are the training rows, the rest are testing rows.
+     */
+    private var permutation = IntArray(0)
 
     private var shouldResampleIndices = true
-        set(value) {
-            field = value
-            shouldRefreshList = shouldRefreshList || value
-        }
 
     var percentValidation: Double = 0.25
         set(value) {
@@ -20,87 +46,176 @@ class TrainingSet2 {
             shouldResampleIndices = true
         }
 
-    private var shouldRefreshTrainingSetList = true
-    private var shouldRefreshTestingSetList = true
-    private var shouldRefreshList
-        get() = shouldRefreshTrainingSetList && shouldRefreshTestingSetList
-        set(value) {
-            shouldRefreshTrainingSetList = value
-            shouldRefreshTestingSetList = value
+    /**
+     * Number of rows used for training. The remainder are used for testing (validation).
+     */
+    val trainingSize get() = size - (percentValidation * size).toInt()
+
+    /**
+     * Re-shuffle the split between training and testing rows.
+     */
+    fun shuffle(random: Random = Random.Default) {
+        permutation = IntArray(size) { it }.apply { shuffle(random) }
+        shouldResampleIndices = false
+    }
+
+    private fun ensurePermutation() {
+        if (shouldResampleIndices || permutation.size != size) {
+            shuffle()
         }
+    }
 
-    private lateinit var trainingSetIndices: List<Int>
-    private lateinit var _trainingSet: List<Pair<List<Double>, List<Double>>>
-    val trainingSet: List<Pair<List<Double>, List<Double>>>
+    /**
+     * The training rows as a single batch.
+     */
+    val trainingSet: Batch
         get() {
-            if (shouldResampleIndices) {
-                resampleIndices()
-            }
-            if (shouldRefreshTrainingSetList) {
-                _trainingSet = trainingSetIndices.map { allSet[it] }
-                shouldRefreshTestingSetList = false
-            }
-            return _trainingSet
+            ensurePermutation()
+            return Batch(permutation, 0, trainingSize)
         }
 
-    private lateinit var testingSetIndices: List<Int>
-    private lateinit var _testingSet: List<Pair<List<Double>, List<Double>>>
-    val testingSet: List<Pair<List<Double>, List<Double>>>
+    /**
+     * The testing rows as a single batch.
+     */
+    val testingSet: Batch
         get() {
-            if (shouldResampleIndices) {
-                resampleIndices()
-            }
-            if (shouldRefreshTestingSetList) {
-                _testingSet = testingSetIndices.map { allSet[it] }
-                shouldRefreshTestingSetList = false
-            }
-            return _testingSet
+            ensurePermutation()
+            return Batch(permutation, trainingSize, size - trainingSize)
         }
 
-    private fun resampleIndices() {
-        val indices = (0..allSet.lastIndex).shuffled()
-        val count = (percentValidation * indices.size).toInt()
-        trainingSetIndices = indices.take(count)
-        testingSetIndices = indices.takeLast(_allSet.size - count)
-        shouldRefreshList = true
-    }
+    /**
+     * Iterate over the training rows in mini-batches of [batchSize]. Batches are views; no rows are copied.
+     */
+    fun trainingBatches(batchSize: Int) = trainingSet.split(batchSize)
+
+    /**
+     * Iterate over the testing rows in mini-batches of [batchSize].
+     */
+    fun testingBatches(batchSize: Int) = testingSet.split(batchSize)
+
+    /**
+     * A view of a range of entries of an index array over this training set's rows.
+     */
+    inner class Batch(private val indices: IntArray, private val start: Int, val size: Int) {
+
+        /**
+         * Returns the training set row of the i-th row of this batch.
+         */
+        fun row(i: Int) = indices[start + i]
+
+        fun input(i: Int, j: Int) = inputData[row(i) * numInputs + j]
+
+        fun target(i: Int, j: Int) = targetData[row(i) * numTargets + j]
+
+        /**
+         * Offset of the i-th row's inputs in [inputData].
+         */
+        fun inputOffset(i: Int) = row(i) * numInputs
+
+        /**
+         * Offset of the i-th row's targets in [targetData].
+         */
+        fun targetOffset(i: Int) = row(i) * numTargets
+
+        /**
+         * Split this batch into consecutive batches of at most [batchSize] rows.
+         */
+        fun split(batchSize: Int): Sequence<Batch> = (0 until size step batchSize).asSequence().map {
+            Batch(indices, start + it, minOf(batchSize, size - it))
+        }
+
+        /**
+         * Copy the inputs into a Smile matrix with one row per batch row.
+         */
+        fun toInputMatrix() = Matrix(size, numInputs).also { m ->
+            for (i in 0 until size) for (j in 0 until numInputs) m[i, j] = input(i, j)
+        }
+
+        /**
+         * Copy the targets into a Smile matrix with one row per batch row.
+         */
+        fun toTargetMatrix() = Matrix(size, numTargets).also { m ->
+            for (i in 0 until size) for (j in 0 until numTargets) m[i, j] = target(i, j)
+        }
+
+        /**
+         * Copy the inputs into float rows, as used by KotlinDL.
+         */
+        fun toFloatInputs() = Array(size) { i -> FloatArray(numInputs) { j -> input(i, j).toFloat() } }
 
-    operator fun set(index: Int, values: Pair<List<Double>, List<Double>>) {
-        val (input, target) = values
-        _allSet[index] = Pair(ArrayList(input), ArrayList(target))
-        shouldRefreshList = true
+        /**
+         * Copy this batch into a KotlinDL dataset, using the first target column as the label.
+         */
+        fun toKotlinDLDataset(): OnHeapDataset =
+            OnHeapDataset.create(toFloatInputs(), FloatArray(size) { target(it, 0).toFloat() })
     }
 
-    operator fun set(type: Type, index: Int, values: List<Double>) {
-        val (input, target) = _allSet[index]
-        _allSet[index] = when (type) {
-            Type.Input -> Pair(ArrayList(values), target)
-            Type.Target -> Pair(input, ArrayList(values))
+    private fun ensureCapacity(rows: Int) {
+        if (rows * numInputs > inputData.size) {
+            inputData = inputData.copyOf(maxOf(rows, size * 2) * numInputs)
+        }
+        if (rows * numTargets > targetData.size) {
+            targetData = targetData.copyOf(maxOf(rows, size * 2) * numTargets)
         }
-        shouldRefreshList = true
     }
 
-    fun add(pair: Pair<List<Double>, List<Double>>) {
-        val (input, target) = pair
-        _allSet.add(Pair(ArrayList(input), ArrayList(target)))
+    fun getInput(row: Int, col: Int) = inputData[row * numInputs + col]
+
+    fun getTarget(row: Int, col: Int) = targetData[row * numTargets + col]
+
+    /**
+     * Copy the inputs of a row into a new array.
+     */
+    fun getInputs(row: Int) = inputData.copyOfRange(row * numInputs, (row + 1) * numInputs)
+
+    /**
+     * Copy the targets of a row into a new array.
+     */
+    fun getTargets(row: Int) = targetData.copyOfRange(row * numTargets, (row + 1) * numTargets)
+
+    fun add(input: DoubleArray, target: DoubleArray) {
+        require(input.size == numInputs && target.size == numTargets) { "Row size does not match training set" }
+        ensureCapacity(size + 1)
+        input.copyInto(inputData, size * numInputs)
+        target.copyInto(targetData, size * numTargets)
+        size++
+        shouldResampleIndices = true
     }
 
-    fun add(index: Int, pair: Pair<List<Double>, List<Double>>) {
+    fun add(pair: Pair<List<Double>, List<Double>>) {
         val (input, target) = pair
-        _allSet.add(index, Pair(ArrayList(input), ArrayList(target)))
+        add(input.toDoubleArray(), target.toDoubleArray())
     }
 
-    fun addAll(values: List<Pair<List<Double>, List<Double>>>) {
-        values.forEach { add(it) }
+    fun addAll(inputs: Array<DoubleArray>, targets: Array<DoubleArray>) {
+        ensureCapacity(size + inputs.size)
+        (inputs zip targets).forEach { (input, target) -> add(input, target) }
     }
 
     fun addAll(inputs: List<List<Double>>, targets: List<List<Double>>) {
+        ensureCapacity(size + inputs.size)
         (inputs zip targets).forEach { add(it) }
     }
 
+    operator fun set(index: Int, values: Pair<DoubleArray, DoubleArray>) {
+        set(Type.Input, index, values.first)
+        set(Type.Target, index, values.second)
+    }
+
+    operator fun set(type: Type, index: Int, values: DoubleArray) {
+        if (index !in 0 until size) {
+            throw IndexOutOfBoundsException("Row $index is outside the $size rows of the training set")
+        }
+        val rowSize = if (type == Type.Input) numInputs else numTargets
+        require(values.size == rowSize) { "${type.name} row has ${values.size} values but should have $rowSize" }
+        when (type) {
+            Type.Input -> values.copyInto(inputData, index * numInputs, 0, numInputs)
+            Type.Target -> values.copyInto(targetData, index * numTargets, 0, numTargets)
+        }
+    }
+
     enum class Type {
         Input, Target
     }
 
-
-}
\ No newline at end of file
+}
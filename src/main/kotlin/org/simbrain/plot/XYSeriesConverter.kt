@@ -8,21 +8,28 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter
 import org.jfree.data.xy.XYSeries
 import org.simbrain.util.DoubleArrayConverter
 
-class XYSeriesConverter: Converter {
+/**
+ * Writes [XYSeries] and [XYRingBuffer] as a description and arrays of indices and values. Both use the same format,
+ * so plots saved with XYSeries open with ring buffers.
+ *
+ * @param convertsXYSeries false to only convert ring buffers, for models whose saved XYSeries were written field by
+ * field
+ */
+class XYSeriesConverter @JvmOverloads constructor(private val convertsXYSeries: Boolean = true) : Converter {
 
     override fun canConvert(cls: Class<*>): Boolean {
-        return cls == XYSeries::class.java
+        return (convertsXYSeries && cls == XYSeries::class.java) || cls == XYRingBuffer::class.java
     }
 
     override fun marshal(source: Any, writer: HierarchicalStreamWriter, context: MarshallingContext) {
-        source as XYSeries
+        val description = if (source is XYRingBuffer) source.description else (source as XYSeries).description
+        val array = if (source is XYRingBuffer) source.toArray() else (source as XYSeries).toArray()
 
         writer.startNode("description")
-        context.convertAnother(source.description)
+        context.convertAnother(description)
         writer.endNode()
 
         writer.startNode("indices")
-        val array = source.toArray()
         context.convertAnother(array[0])
         writer.endNode()
 
@@ -44,6 +51,11 @@ class XYSeriesConverter: Converter {
         val values = DoubleArrayConverter.stringToArray(reader.value);
         reader.moveUp()
 
+        if (context.requiredType == XYRingBuffer::class.java) {
+            val buffer = XYRingBuffer(description)
+            indices.zip(values).forEach { buffer.add(it.first, it.second) }
+            return buffer
+        }
         var series = XYSeries(description)
         series.description = description
         indices.zip(values).forEach { series.add(it.first, it.second) }
@@ -1,6 +1,8 @@
 package org.simbrain.util
 
 import org.pmw.tinylog.Logger
+import java.beans.PropertyChangeListener
+import java.beans.PropertyChangeListenerProxy
 import java.beans.PropertyChangeSupport
 import java.util.function.BiConsumer
 import java.util.function.Consumer
@@ -71,6 +73,25 @@ open class Event(private val changeSupport: PropertyChangeSupport) {
         event(Runnable { handler() })
     }
 
+    /**
+     * No-argument event handler that returns its listener, which can be passed to [removeListener] when the handler
+     * is no longer needed.
+     */
+    protected fun String.removableEvent(handler: Runnable): PropertyChangeListener {
+        val listener = PropertyChangeListener { handler.run() }
+        changeSupport.addPropertyChangeListener(this, listener)
+        return PropertyChangeListenerProxy(this, listener)
+    }
+
+    /**
+     * Remove a handler, e.g. when the object handling the event is removed before the object firing it.
+     *
+     * @param listener the listener returned when the handler was added
+     */
+    fun removeListener(listener: PropertyChangeListener) {
+        changeSupport.removePropertyChangeListener(listener)
+    }
+
     /**
      * Handle a "new object" event, e.g. adding a neuron.
      */
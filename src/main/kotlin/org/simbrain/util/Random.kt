@@ -2,6 +2,7 @@ package org.simbrain.util
 
 import org.simbrain.util.stats.ProbabilityDistribution
 import smile.math.matrix.Matrix
+import java.util.*
 import kotlin.random.Random
 
 fun Random.nextBoolean(probability: Double) = nextDouble() < probability
@@ -36,4 +37,64 @@ fun <T> Sequence<T>.sampleWithoutReplacement(
     do {
         shuffled(random).forEach { yield(it) }
     } while (restartIfExhausted)
-}
\ No newline at end of file
+}
+
+/**
+ * Return [k] distinct numbers from 0 until [n] in increasing order, chosen uniformly at random with Floyd's algorithm.
+ * Takes time proportional to k rather than n, except that when more than half the numbers are wanted the ones to leave
+ * out are chosen instead.
+ */
+fun SplittableRandom.sampleIndices(n: Long, k: Int): LongArray {
+    require(k in 0..n) { "Cannot choose $k of $n indices" }
+    if (k > n / 2) {
+        val excluded = sampleIndices(n, (n - k).toInt())
+        val result = LongArray(k)
+        var e = 0
+        var count = 0
+        for (i in 0 until n) {
+            if (e < excluded.size && excluded[e] == i) {
+                e++
+            } else {
+                result[count++] = i
+            }
+        }
+        return result
+    }
+    val chosen = IndexSet(k)
+    for (j in n - k until n) {
+        if (!chosen.add(nextLong(j + 1))) {
+            chosen.add(j)
+        }
+    }
+    return chosen.toSortedArray()
+}
+
+/**
+ * Open addressing hash set of non-negative longs, so that [sampleIndices] does not box what it has chosen.
+ */
+private class IndexSet(expectedSize: Int) {
+
+    private val slots = LongArray(Integer.highestOneBit(maxOf(expectedSize, 2) * 2 - 1) * 2).apply { fill(-1) }
+
+    private var size = 0
+
+    fun add(value: Long): Boolean {
+        val mask = slots.size - 1
+        var i = (java.lang.Long.hashCode(value * -0x61c8864680b583ebL)) and mask
+        while (slots[i] != -1L) {
+            if (slots[i] == value) {
+                return false
+            }
+            i = (i + 1) and mask
+        }
+        slots[i] = value
+        size++
+        return true
+    }
+
+    fun toSortedArray() = LongArray(size).also { result ->
+        var count = 0
+        slots.forEach { if (it != -1L) result[count++] = it }
+        result.sort()
+    }
+}
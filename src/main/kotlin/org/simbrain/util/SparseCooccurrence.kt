@@ -0,0 +1,385 @@
+package org.simbrain.util
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import smile.math.matrix.Matrix
+import java.io.Reader
+import java.util.*
+
+/**
+ * Sparse token co-occurrence matrix in compressed sparse row form. Row i holds the contexts of token i: the columns
+ * of its non-zero entries are colIndices[rowPointers[i] until rowPointers[i+1]], in increasing order, and the counts
+ * (or weights) are in the same positions of values.
+ *
+ * Only pairs of tokens that actually co-occur are stored, so memory grows with the corpus rather than with the
+ * square of the vocabulary.
+ */
+class SparseCooccurrenceMatrix(
+    /**
+     * Token for each row (and column).
+     */
+    val tokens: List<String>,
+    private val rowPointers: IntArray,
+    private val colIndices: IntArray,
+    private val values: DoubleArray
+) {
+
+    /**
+     * Number of rows and columns.
+     */
+    val size get() = tokens.size
+
+    /**
+     * Number of stored (non-zero) entries.
+     */
+    val nonZeros get() = values.size
+
+    operator fun get(row: Int, col: Int): Double {
+        val k = Arrays.binarySearch(colIndices, rowPointers[row], rowPointers[row + 1], col)
+        return if (k >= 0) values[k] else 0.0
+    }
+
+    /**
+     * Returns a dense copy of a row.
+     */
+    fun row(i: Int) = DoubleArray(size).also { row ->
+        for (k in rowPointers[i] until rowPointers[i + 1]) {
+            row[colIndices[k]] = values[k]
+        }
+    }
+
+    fun rowSums() = DoubleArray(size) { i -> (rowPointers[i] until rowPointers[i + 1]).sumOf { values[it] } }
+
+    fun colSums() = DoubleArray(size).also { sums ->
+        for (k in values.indices) {
+            sums[colIndices[k]] += values[k]
+        }
+    }
+
+    /**
+     * Sparse version of [manualPPMI]: each count is divided by the count expected if its token and context were
+     * independent. Pairs that never co-occur stay zero.
+     */
+    fun ppmi(positive: Boolean = true): SparseCooccurrenceMatrix {
+        val rowTotals = rowSums()
+        val colTotals = colSums()
+        val total = colTotals.sum()
+        val weighted = DoubleArray(values.size)
+        for (i in 0 until size) {
+            for (k in rowPointers[i] until rowPointers[i + 1]) {
+                val ratio = values[k] * total / (rowTotals[i] * colTotals[colIndices[k]])
+                weighted[k] = if (positive && ratio < 0) 0.0 else ratio
+            }
+        }
+        return SparseCooccurrenceMatrix(tokens, rowPointers, colIndices, weighted)
+    }
+
+    /**
+     * Returns a dense copy. Only practical for small vocabularies.
+     */
+    fun toMatrix() = Matrix(size, size).also { matrix ->
+        for (i in 0 until size) {
+            for (k in rowPointers[i] until rowPointers[i + 1]) {
+                matrix[i, colIndices[k]] = values[k]
+            }
+        }
+    }
+
+    /**
+     * Returns this matrix times a dense matrix.
+     */
+    fun times(dense: Matrix): Matrix {
+        val ret = Matrix(size, dense.ncols())
+        for (j in 0 until dense.ncols()) {
+            for (i in 0 until size) {
+                var sum = 0.0
+                for (k in rowPointers[i] until rowPointers[i + 1]) {
+                    sum += values[k] * dense[colIndices[k], j]
+                }
+                ret[i, j] = sum
+            }
+        }
+        return ret
+    }
+
+    /**
+     * Returns the transpose of this matrix times a dense matrix.
+     */
+    fun transposeTimes(dense: Matrix): Matrix {
+        val ret = Matrix(size, dense.ncols())
+        for (j in 0 until dense.ncols()) {
+            for (i in 0 until size) {
+                val d = dense[i, j]
+                if (d != 0.0) {
+                    for (k in rowPointers[i] until rowPointers[i + 1]) {
+                        ret.add(colIndices[k], j, values[k] * d)
+                    }
+                }
+            }
+        }
+        return ret
+    }
+
+    /**
+     * Returns one embedding per token, as the rows of a matrix.
+     *
+     * If [dimensions] is less than the number of tokens, rows are reduced to that many dimensions with a randomized
+     * truncated SVD (Halko, Martinsson and Tropp, 2011), which only multiplies the sparse matrix by thin dense ones.
+     * Otherwise the rows of the matrix are returned as they are.
+     *
+     * @param dimensions number of dimensions to keep, or 0 to keep all of them
+     * @param powerIterations extra passes over the matrix; more passes give more accurate singular vectors
+     * @param seed seed for the random projection
+     */
+    fun embeddings(dimensions: Int = 0, powerIterations: Int = 2, seed: Long = 42): Matrix {
+        if (dimensions <= 0 || dimensions >= size) {
+            return toMatrix()
+        }
+        // Range finder: an orthonormal basis for the span of A times a random matrix, refined by power iterations
+        val sketchSize = minOf(size, dimensions + 10)
+        val random = Random(seed)
+        val omega = Matrix(size, sketchSize)
+        for (i in 0 until size) {
+            for (j in 0 until sketchSize) {
+                omega[i, j] = random.nextGaussian()
+            }
+        }
+        var q = orthonormalBasis(times(omega))
+        repeat(powerIterations) {
+            q = orthonormalBasis(times(orthonormalBasis(transposeTimes(q))))
+        }
+        // A ~ Q B with B = Q^T A. Decompose B^T = U S W^T, so that A ~ (Q W) S U^T and row embeddings are Q W S.
+        val svd = transposeTimes(q).svd()
+        val ret = Matrix(size, dimensions)
+        for (i in 0 until size) {
+            for (d in 0 until dimensions) {
+                var sum = 0.0
+                for (m in 0 until sketchSize) {
+                    sum += q[i, m] * svd.V[m, d]
+                }
+                ret[i, d] = sum * svd.s[d]
+            }
+        }
+        return ret
+    }
+
+    /**
+     * Returns orthonormal columns spanning the columns of a tall matrix, which is overwritten. The left singular
+     * vectors are used rather than a QR decomposition since they stay orthonormal when the columns are dependent.
+     */
+    private fun orthonormalBasis(tall: Matrix) = tall.svd(true, true).U
+}
+
+/**
+ * Builds a [SparseCooccurrenceMatrix] from a document in a single pass over its sentences. Tokens are interned once
+ * in a hash map, so each sentence becomes an array of token ids and counts are accumulated in primitive
+ * open-addressed tables keyed by (token, context) pairs. Chunks of sentences are counted in parallel and merged.
+ *
+ * See [generateCooccurrenceMatrix] for the meaning of [windowSize] and [skipGram].
+ */
+class CooccurrenceBuilder(
+    val windowSize: Int = 2,
+    val skipGram: Boolean = false,
+    /**
+     * If true, chunks of sentences are counted on separate threads.
+     */
+    val parallel: Boolean = true,
+    /**
+     * Number of sentences counted as one unit of work.
+     */
+    val chunkSize: Int = 512
+) {
+
+    init {
+        if (windowSize <= 0) throw IllegalArgumentException("windowsize must be greater than 0")
+    }
+
+    private val tokenIds = HashMap<String, Int>()
+
+    private val tokens = ArrayList<String>()
+
+    private fun intern(token: String) = tokenIds.getOrPut(token) { tokens.add(token); tokens.size - 1 }
+
+    /**
+     * Counts of the text added since the last build.
+     */
+    private var counts = PairCounts()
+
+    /**
+     * Count co-occurrences in a document. Tokens are numbered in order of first appearance in the document.
+     */
+    fun build(docString: String): SparseCooccurrenceMatrix {
+        reset()
+        add(docString)
+        return toSparseMatrix(counts)
+    }
+
+    /**
+     * Count co-occurrences in a document read in chunks of about [chunkChars] characters, so that the document
+     * never has to be held in memory. Chunks are cut after the last sentence-ending punctuation mark they contain.
+     */
+    fun build(reader: Reader, chunkChars: Int = 1 shl 20): SparseCooccurrenceMatrix {
+        reset()
+        val pending = StringBuilder()
+        val chunk = CharArray(chunkChars)
+        while (true) {
+            val read = reader.read(chunk)
+            if (read < 0) {
+                break
+            }
+            pending.append(chunk, 0, read)
+            val cut = pending.lastIndexOfAny(charArrayOf('.', '!', '?')) + 1
+            if (cut > 0) {
+                add(pending.substring(0, cut))
+                pending.delete(0, cut)
+            }
+        }
+        add(pending.toString())
+        return toSparseMatrix(counts)
+    }
+
+    private fun reset() {
+        tokenIds.clear()
+        tokens.clear()
+        counts = PairCounts()
+    }
+
+    /**
+     * Intern the tokens of some text and add its co-occurrences to the counts.
+     */
+    private fun add(text: String) {
+        val convertedText = text.removeSpecialCharacters()
+        if (convertedText.isEmpty()) {
+            return
+        }
+        convertedText.tokenizeWordsFromSentence().forEach { intern(it) }
+        val sentences = convertedText.tokenizeSentencesFromDoc().map { sentence ->
+            sentence.tokenizeWordsFromSentence().map { intern(it) }.toIntArray()
+        }
+        val chunks = sentences.chunked(chunkSize)
+        val chunkCounts = if (parallel && chunks.size > 1) {
+            runBlocking {
+                chunks.map { async(Dispatchers.Default) { count(it) } }.awaitAll()
+            }
+        } else {
+            chunks.map { count(it) }
+        }
+        chunkCounts.forEach { counts.addAll(it) }
+    }
+
+    private fun count(sentences: List<IntArray>): PairCounts {
+        val counts = PairCounts()
+        for (sentence in sentences) {
+            for (i in sentence.indices) {
+                val from = maxOf(0, i - windowSize)
+                val to = if (skipGram) minOf(sentence.size - 1, i + windowSize) else i
+                for (j in from..to) {
+                    if (j != i) {
+                        counts.add(pairKey(sentence[i], sentence[j]), 1.0)
+                    }
+                }
+            }
+        }
+        return counts
+    }
+
+    private fun toSparseMatrix(counts: PairCounts): SparseCooccurrenceMatrix {
+        val size = tokens.size
+        val rowPointers = IntArray(size + 1)
+        counts.forEach { key, _ -> rowPointers[(key ushr 32).toInt() + 1]++ }
+        for (i in 0 until size) {
+            rowPointers[i + 1] += rowPointers[i]
+        }
+        val colIndices = IntArray(counts.size)
+        val next = rowPointers.copyOf(size)
+        counts.forEach { key, _ -> colIndices[next[(key ushr 32).toInt()]++] = key.toInt() }
+        val values = DoubleArray(counts.size)
+        for (i in 0 until size) {
+            Arrays.sort(colIndices, rowPointers[i], rowPointers[i + 1])
+            for (k in rowPointers[i] until rowPointers[i + 1]) {
+                values[k] = counts[pairKey(i, colIndices[k])]
+            }
+        }
+        return SparseCooccurrenceMatrix(tokens.toList(), rowPointers, colIndices, values)
+    }
+}
+
+private fun pairKey(row: Int, col: Int) = (row.toLong() shl 32) or col.toLong()
+
+/**
+ * Open-addressed hash table from non-negative long keys to double values, with linear probing.
+ */
+private class PairCounts {
+
+    private var keys = LongArray(1024) { EMPTY }
+
+    private var values = DoubleArray(1024)
+
+    var size = 0
+        private set
+
+    private fun slot(key: Long, mask: Int): Int {
+        // Murmur3 finalizer, so that consecutive keys spread over the table
+        var h = key
+        h = (h xor (h ushr 33)) * -0xae502812aa7333L
+        h = (h xor (h ushr 33)) * -0x3b314601e57a13adL
+        return (h xor (h ushr 33)).toInt() and mask
+    }
+
+    fun add(key: Long, value: Double) {
+        if (2 * (size + 1) > keys.size) {
+            grow()
+        }
+        val mask = keys.size - 1
+        var i = slot(key, mask)
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) and mask
+        }
+        if (keys[i] == EMPTY) {
+            keys[i] = key
+            size++
+        }
+        values[i] += value
+    }
+
+    operator fun get(key: Long): Double {
+        val mask = keys.size - 1
+        var i = slot(key, mask)
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                return values[i]
+            }
+            i = (i + 1) and mask
+        }
+        return 0.0
+    }
+
+    inline fun forEach(action: (Long, Double) -> Unit) {
+        for (i in keys.indices) {
+            if (keys[i] != EMPTY) {
+                action(keys[i], values[i])
+            }
+        }
+    }
+
+    fun addAll(other: PairCounts) = other.forEach { key, value -> add(key, value) }
+
+    private fun grow() {
+        val oldKeys = keys
+        val oldValues = values
+        keys = LongArray(oldKeys.size * 2) { EMPTY }
+        values = DoubleArray(oldKeys.size * 2)
+        size = 0
+        for (i in oldKeys.indices) {
+            if (oldKeys[i] != EMPTY) {
+                add(oldKeys[i], oldValues[i])
+            }
+        }
+    }
+
+    companion object {
+        const val EMPTY = -1L
+    }
+}
@@ -105,8 +105,6 @@ fun manualPPMI(cocMatrix: Matrix, positive: Boolean = true): Matrix {
     return adjustedMatrix
 }
 
-// TODO: Return a TokenVectorDictionary
-
 /**
  * Generates co-occurrence matrix from a provided [docString].
  *
@@ -122,53 +120,22 @@ fun manualPPMI(cocMatrix: Matrix, positive: Boolean = true): Matrix {
  */
 fun generateCooccurrenceMatrix(docString: String, windowSize: Int = 2, skipGram: Boolean = false , usePPMI: Boolean = true):
         Pair<List<String>, Matrix> {
-    // println(docString)
-    val convertedDocString = docString.removeSpecialCharacters()
-
-    if (windowSize == 0) throw IllegalArgumentException("windowsize must be greater than 0")
-
-    // get tokens from whole document
-    val tokenizedSentence = convertedDocString.tokenizeWordsFromSentence()
-    val tokens = tokenizedSentence.uniqueTokensFromArray()
-
-    // Split document into sentences
-    val sentences = convertedDocString.tokenizeSentencesFromDoc()
-
-    // Set up matrix
-    val matrixSize = tokens.size
-    val cooccurrenceSmileMatrix = Matrix(matrixSize, matrixSize)
-
-    // cooccurrenceMatrix[0][1] = 2 // cooccurrenceMatrix[target][context]
-
-    // Loop through sentences, through words
-    for (sentence in sentences) {
-        // println(sentence)
-        val tokenizedSentence = sentence.tokenizeWordsFromSentence()
-        for (sentenceIndex in tokenizedSentence.indices) {
-            val maxIndex = tokenizedSentence.size - 1  // used for window range check
-
-            val currentToken = tokenizedSentence[sentenceIndex] // Current iterated token
-
-            val contextLowerLimit = sentenceIndex - windowSize
-            val contextUpperLimit = if (skipGram) (sentenceIndex + windowSize) else (sentenceIndex)
+    val cooccurrenceMatrix = generateSparseCooccurrenceMatrix(docString, windowSize, skipGram, usePPMI)
+    return Pair(cooccurrenceMatrix.tokens, cooccurrenceMatrix.toMatrix())
+}
 
-            for (contextIndex in contextLowerLimit..contextUpperLimit) {
-                if (contextIndex in 0..maxIndex && contextIndex != sentenceIndex) {
-                    val currentContext = tokenizedSentence[contextIndex]
-                    val tokenCoordinate = tokens.indexOf(currentToken)
-                    val contextCoordinate = tokens.indexOf(currentContext)
-                    // print(listOf("Current Token:", currentToken, tokenCoordinate))
-                    // println(listOf("Current Context",currentContext, contextCoordinate))
-                    cooccurrenceSmileMatrix[tokenCoordinate, contextCoordinate] =
-                        cooccurrenceSmileMatrix[tokenCoordinate, contextCoordinate] + 1
-                }
-            }
-        }
-    }
-    if (usePPMI) {
-        return Pair(tokens, manualPPMI(cooccurrenceSmileMatrix, true))
-    }
-    return Pair(tokens, cooccurrenceSmileMatrix)
+/**
+ * Sparse version of [generateCooccurrenceMatrix], which only stores pairs of tokens that co-occur. Use this for large
+ * documents, and [SparseCooccurrenceMatrix.embeddings] to get (optionally reduced) token vectors from it.
+ */
+fun generateSparseCooccurrenceMatrix(
+    docString: String,
+    windowSize: Int = 2,
+    skipGram: Boolean = false,
+    usePPMI: Boolean = true
+): SparseCooccurrenceMatrix {
+    val cooccurrenceMatrix = CooccurrenceBuilder(windowSize, skipGram).build(docString)
+    return if (usePPMI) cooccurrenceMatrix.ppmi(true) else cooccurrenceMatrix
 }
 
 /**
@@ -36,6 +36,12 @@ abstract class DecayFunction(
     // TODO: But note these are not normalized to be probability density functions
     abstract fun getScalingFactor(distance: Double): Double
 
+    /**
+     * Distance beyond which [getScalingFactor] is below [epsilon]. Used to limit the neurons considered when making
+     * connections by distance.
+     */
+    open fun getCutoffDistance(epsilon: Double): Double = Double.POSITIVE_INFINITY
+
     /**
      * Distance from peak.
      *
@@ -1,6 +1,7 @@
 package org.simbrain.util.decayfunctions
 
 import kotlin.math.exp
+import kotlin.math.ln
 
 class ExponentialDecayFunction @JvmOverloads constructor(dispersion: Double = 70.0): DecayFunction() {
 
@@ -24,6 +25,11 @@ class ExponentialDecayFunction @JvmOverloads constructor(dispersion: Double = 70
         return (1/dispersion) * exp((-1/dispersion) * x)
     }
 
+    override fun getCutoffDistance(epsilon: Double): Double {
+        // Solve (1/dispersion) * exp(-x/dispersion) = epsilon for x
+        return peakDistance + dispersion * ln(1 / (dispersion * epsilon)).coerceAtLeast(0.0)
+    }
+
     override fun copy(): ExponentialDecayFunction {
         return ExponentialDecayFunction(dispersion)
             .also {
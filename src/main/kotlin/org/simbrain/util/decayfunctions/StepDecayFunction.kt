@@ -10,6 +10,8 @@ class StepDecayFunction @JvmOverloads constructor(dispersion: Double = 70.0) : D
         }
     }
 
+    override fun getCutoffDistance(epsilon: Double) = peakDistance + dispersion
+
     override fun copy(): StepDecayFunction {
         return StepDecayFunction(dispersion).also {
             it.peakDistance = peakDistance
@@ -0,0 +1,216 @@
+package org.simbrain.util.geneticalgorithms
+
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.neuron_update_rules.SigmoidalRule
+import org.simbrain.network.spikeresponders.NonResponder
+import org.simbrain.network.util.BiasedScalarData
+import org.simbrain.util.math.SquashingFunctionEnum
+
+/**
+ * A network expressed directly from node and connection genes into arrays, for evaluating agents without creating
+ * [Neuron] and [Synapse][org.simbrain.network.core.Synapse] objects. Activations are held in one array, weights in
+ * compressed sparse rows (the incoming weights of each neuron are contiguous), and each neuron's update rule is
+ * reduced to an id and its parameters.
+ *
+ * [update] does what [Network.bufferedUpdate][org.simbrain.network.core.Network.bufferedUpdate] does for a network
+ * built from the same genes. Linear and sigmoidal rules without noise are computed from the arrays; other rules are
+ * applied to a detached neuron copied from the gene's template. Create one in onBuild for headless builds with
+ * [compactNetwork], and express the genes into a real network (with `network { }`) for visible builds, so that only
+ * the winner is materialized. See [evolveXor][org.simbrain.custom_sims.simulations.evolveXor].
+ *
+ * Disabled genes and connections to them are left out. Connections with spike responders or delays are not supported.
+ * Node gene products are not completed, so evaluation code should read activations from this object.
+ */
+class CompactNetwork(nodes: List<NodeGene>, connections: List<ConnectionGene>) {
+
+    /**
+     * Number of neurons.
+     */
+    val size = nodes.size
+
+    private val positions = HashMap<NodeGene, Int>(size * 2).apply {
+        nodes.forEachIndexed { i, node -> this[node] = i }
+    }
+
+    /**
+     * Activation of each neuron, in the order of the node genes.
+     */
+    val activations = DoubleArray(size) { nodes[it].template.activation }
+
+    /**
+     * Input added with [addInput] since the last update.
+     */
+    private val externalInputs = DoubleArray(size)
+
+    private val netInputs = DoubleArray(size)
+
+    private val clamped = BooleanArray(size) { nodes[it].template.isClamped }
+
+    private val ruleIds = ByteArray(size)
+
+    private val slopes = DoubleArray(size)
+
+    private val biases = DoubleArray(size)
+
+    private val lowerBounds = DoubleArray(size)
+
+    private val upperBounds = DoubleArray(size)
+
+    private val clipping = BooleanArray(size)
+
+    private val squashingFunctions = arrayOfNulls<SquashingFunctionEnum>(size)
+
+    /**
+     * Neurons used to apply rules that are not computed from the arrays.
+     */
+    private val detached = arrayOfNulls<Neuron>(size)
+
+    /**
+     * Index into [sources] and [weights] of the first incoming connection of each neuron, followed by the number of
+     * connections.
+     */
+    private val rowStarts = IntArray(size + 1)
+
+    private val sources: IntArray
+
+    /**
+     * Connection strengths, grouped by target neuron.
+     */
+    val weights: DoubleArray
+
+    init {
+        nodes.forEachIndexed { i, node -> compileRule(i, node.template) }
+
+        // As in a network, a later connection between the same two neurons replaces an earlier one
+        val included = connections
+            .filter { !it.disabled && it.source in positions && it.target in positions }
+            .associateBy { it.source to it.target }
+            .values
+        included.forEach {
+            val synapse = it.exportTemplate()
+            require(synapse.spikeResponder is NonResponder && synapse.delay == 0) {
+                "Connections with spike responders or delays cannot be compiled"
+            }
+            rowStarts[positions[it.target]!! + 1]++
+        }
+        for (i in 0 until size) {
+            rowStarts[i + 1] += rowStarts[i]
+        }
+        sources = IntArray(included.size)
+        weights = DoubleArray(included.size)
+        val next = rowStarts.copyOf(size)
+        included.forEach {
+            val synapse = it.exportTemplate()
+            val k = next[positions[it.target]!!]++
+            sources[k] = positions[it.source]!!
+            weights[k] = if (synapse.isEnabled) synapse.strength else 0.0
+        }
+    }
+
+    private fun compileRule(i: Int, template: Neuron) {
+        val rule = template.updateRule
+        val data = template.dataHolder
+        when {
+            rule is LinearRule && !rule.addNoise && data is BiasedScalarData -> {
+                ruleIds[i] = LINEAR
+                slopes[i] = rule.slope
+                biases[i] = data.bias
+                lowerBounds[i] = rule.lowerBound
+                upperBounds[i] = rule.upperBound
+                clipping[i] = rule.isClipped
+            }
+            rule is SigmoidalRule && !rule.addNoise -> {
+                ruleIds[i] = SIGMOID
+                slopes[i] = rule.slope
+                biases[i] = rule.bias
+                lowerBounds[i] = rule.lowerBound
+                upperBounds[i] = rule.upperBound
+                squashingFunctions[i] = rule.squashFunctionType
+            }
+            else -> {
+                ruleIds[i] = DETACHED
+                detached[i] = Neuron(null, template)
+            }
+        }
+    }
+
+    /**
+     * Returns the position of a node gene's neuron in [activations], or -1 if it was not compiled.
+     */
+    fun indexOf(node: NodeGene) = positions[node] ?: -1
+
+    operator fun get(node: NodeGene) = activations[positions[node]!!]
+
+    /**
+     * Set a neuron's activation, whether or not it is clamped.
+     */
+    operator fun set(node: NodeGene, activation: Double) {
+        activations[positions[node]!!] = activation
+    }
+
+    /**
+     * Activations of the given nodes, e.g. a chromosome.
+     */
+    fun activations(nodes: Collection<NodeGene>) = nodes.map { get(it) }
+
+    /**
+     * Add input to a neuron for the next update, like [Neuron.addInputValue].
+     */
+    fun addInput(node: NodeGene, input: Double) {
+        externalInputs[positions[node]!!] += input
+    }
+
+    /**
+     * Update every neuron from the activations of the previous step.
+     */
+    fun update() {
+        for (i in 0 until size) {
+            var sum = externalInputs[i]
+            for (k in rowStarts[i] until rowStarts[i + 1]) {
+                sum += weights[k] * activations[sources[k]]
+            }
+            netInputs[i] = sum
+            externalInputs[i] = 0.0
+        }
+        for (i in 0 until size) {
+            if (clamped[i]) {
+                continue
+            }
+            val input = netInputs[i]
+            activations[i] = when (ruleIds[i]) {
+                LINEAR -> {
+                    val value = input * slopes[i] + biases[i]
+                    when {
+                        !clipping[i] -> value
+                        value > upperBounds[i] -> upperBounds[i]
+                        value < lowerBounds[i] -> lowerBounds[i]
+                        else -> value
+                    }
+                }
+                SIGMOID -> squashingFunctions[i]!!.valueOf(input + biases[i], upperBounds[i], lowerBounds[i], slopes[i])
+                else -> detached[i]!!.let {
+                    it.forceSetActivation(activations[i])
+                    it.addInputValue(input)
+                    it.update()
+                    it.activation
+                }
+            }
+        }
+    }
+
+    private companion object {
+        const val LINEAR: Byte = 0
+        const val SIGMOID: Byte = 1
+        const val DETACHED: Byte = 2
+    }
+}
+
+/**
+ * Compile node and connection chromosomes into a [CompactNetwork]. Node genes from all the chromosomes are numbered in
+ * order.
+ */
+fun compileNetwork(vararg chromosomes: Collection<NetworkGene<*>>): CompactNetwork {
+    val genes = chromosomes.flatMap { it }.filter { !it.disabled }
+    return CompactNetwork(genes.filterIsInstance<NodeGene>(), genes.filterIsInstance<ConnectionGene>())
+}
@@ -0,0 +1,132 @@
+package org.simbrain.util.geneticalgorithms
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.simbrain.network.core.getNetworkXStream
+
+/**
+ * Outcome of evaluating one agent.
+ *
+ * @param isAborted true if the evaluation was stopped early (see [EvaluationContext.reportPartialFitness]) or
+ * failed, in which case [fitness] is only a bound
+ */
+data class EvaluationResult(val fitness: Double, val isAborted: Boolean = false)
+
+/**
+ * Builds and evaluates the agents of a generation for an [Evaluator].
+ */
+interface EvaluationBackend : AutoCloseable {
+
+    /**
+     * Returns the result of evaluating each builder, in order. Called once per generation with the builders whose
+     * fitness is not cached.
+     *
+     * @param eliminationThreshold see [EvaluationContext.eliminationThreshold]
+     */
+    fun evaluate(
+        builders: List<AgentBuilder>,
+        eliminationThreshold: Double?,
+        optimizationMethod: Evaluator.OptimizationMethod
+    ): List<EvaluationResult>
+
+    /**
+     * Release any processes or connections held by the backend.
+     */
+    override fun close() {}
+}
+
+/**
+ * Evaluates agents concurrently in this process.
+ */
+object LocalEvaluationBackend : EvaluationBackend {
+
+    override fun evaluate(
+        builders: List<AgentBuilder>,
+        eliminationThreshold: Double?,
+        optimizationMethod: Evaluator.OptimizationMethod
+    ) = runBlocking {
+        builders.map {
+            async {
+                val agent = it.build()
+                val fitness = agent.eval(eliminationThreshold, optimizationMethod)
+                EvaluationResult(fitness, agent.isAborted)
+            }
+        }.awaitAll()
+    }
+}
+
+/**
+ * Converts the genome of an [AgentBuilder] to xml and back, so that it can be evaluated in another process.
+ *
+ * Every gene must provide a template (see [Gene.exportTemplate]) that XStream can write. Genes are recreated by
+ * calling the gene class's constructor with the template and the recreated [Gene.dependencies], and the agent builder
+ * by running the simulation's builder block with the recreated chromosomes, so the receiving process needs the same
+ * simulation (see [EvolutionTask]).
+ */
+object GenomeCodec {
+
+    /**
+     * A gene's class, template and dependencies, the latter as pairs of chromosome and gene indices.
+     */
+    internal class GeneRecord(
+        val type: String,
+        val template: Any?,
+        val dependencies: IntArray,
+        val disabled: Boolean
+    )
+
+    internal class GenomeRecord(val seed: Int, val chromosomes: List<List<GeneRecord>>)
+
+    private val xstream by lazy { getNetworkXStream() }
+
+    fun encode(builder: AgentBuilder): String {
+        val positions = HashMap<Gene<*>, Pair<Int, Int>>()
+        builder.chromosomes.forEachIndexed { c, chromosome ->
+            chromosome.forEachIndexed { i, gene -> positions[gene] = c to i }
+        }
+        val chromosomes = builder.chromosomes.map { chromosome ->
+            chromosome.map { gene ->
+                val template = gene.exportTemplate()
+                    ?: throw IllegalArgumentException("${gene::class.simpleName} does not export a template")
+                val dependencies = gene.dependencies.flatMap { dependency ->
+                    val (c, i) = positions[dependency]
+                        ?: throw IllegalArgumentException("${gene::class.simpleName} depends on a gene outside the genome")
+                    listOf(c, i)
+                }
+                GeneRecord(gene.javaClass.name, template, dependencies.toIntArray(), gene.disabled)
+            }
+        }
+        return xstream.toXML(GenomeRecord(builder.seed, chromosomes))
+    }
+
+    /**
+     * Recreate a genome encoded with [encode].
+     *
+     * @param simulation a builder for the simulation the genome was evolved in
+     */
+    fun decode(xml: String, simulation: AgentBuilder): AgentBuilder {
+        val record = xstream.fromXML(xml) as GenomeRecord
+        val genes = record.chromosomes.map { arrayOfNulls<Gene<*>>(it.size) }
+
+        fun gene(c: Int, i: Int): Gene<*> = genes[c][i] ?: record.chromosomes[c][i].let { geneRecord ->
+            val dependencies = geneRecord.dependencies.toList().chunked(2).map { (dc, di) -> gene(dc, di) }
+            val arguments = arrayOf(geneRecord.template, *dependencies.toTypedArray())
+            val constructor = Class.forName(geneRecord.type).declaredConstructors.firstOrNull { constructor ->
+                constructor.parameterCount == arguments.size &&
+                        constructor.parameterTypes.zip(arguments).all { (type, argument) -> type.isInstance(argument) }
+            } ?: throw IllegalArgumentException("${geneRecord.type} has no constructor taking its template")
+            constructor.isAccessible = true
+            (constructor.newInstance(*arguments) as Gene<*>).also {
+                it.disabled = geneRecord.disabled
+                genes[c][i] = it
+            }
+        }
+
+        val chromosomes = genes.mapIndexed { c, chromosome ->
+            @Suppress("UNCHECKED_CAST")
+            Chromosome(chromosome.indices.map { i -> gene(c, i) as Gene<Any?> })
+        }
+        return simulation.withGenome(chromosomes, record.seed)
+    }
+}
@@ -4,10 +4,13 @@ import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
 import org.simbrain.workspace.Workspace
 import java.util.*
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.contracts.ExperimentalContracts
 import kotlin.contracts.InvocationKind
 import kotlin.contracts.contract
 import kotlin.experimental.ExperimentalTypeInference
+import kotlin.math.floor
+import kotlin.math.ln
 import kotlin.random.Random
 
 /**
@@ -34,8 +37,40 @@ abstract class Gene<P> {
      */
     var disabled = false
 
+    /**
+     * Identifies the current state of the gene. Kept by copies made with [Chromosome.copy] and replaced when the gene
+     * is mutated, so that an unmutated copy has the same version as its original.
+     */
+    var version: Long = nextGeneVersion()
+        internal set
+
     abstract fun copy(): Gene<P>
 
+    /**
+     * A value that changes whenever the gene does, used to hash chromosomes (see [AgentBuilder.genomeHash]). By
+     * default based on [version]; override to hash the gene's contents so that identical genes from different
+     * lineages also match.
+     */
+    open fun fingerprint(): Long = version * 2 + if (disabled) 1 else 0
+
+    /**
+     * The object this gene expresses copies of. Genes that return one can be sent to evaluation processes (see
+     * [GenomeCodec]), which recreate them with a constructor taking the template followed by the [dependencies].
+     */
+    open fun exportTemplate(): Any? = null
+
+    /**
+     * Genes this gene refers to, e.g. the source and target of a connection.
+     */
+    open val dependencies: List<Gene<*>> get() = emptyList()
+
+    /**
+     * Call this from a subclass's mutate function so that the gene gets a new [version].
+     */
+    protected fun markMutated() {
+        version = nextGeneVersion()
+    }
+
     fun disable() {
         disabled = true
     }
@@ -64,40 +99,147 @@ interface TopLevelGene<T> {
 }
 
 /**
- * A list of genes with utilities for adding and selecting them.
+ * A list of genes with utilities for adding and selecting them. Genes are kept in insertion order in an array, so
+ * indexed access and [selectRandom] are constant time, and a gene can only be added once.
  *
  * Do not instantiate chromosomes directly but create using creation methods in [AgentBuilder].
  */
-class Chromosome<P, G : Gene<P>>(genes: LinkedHashSet<G> = LinkedHashSet()) : MutableSet<G> by genes {
+class Chromosome<P, G : Gene<P>> private constructor(private val genes: ArrayList<G>) : AbstractMutableSet<G>() {
+
+    constructor(genes: Collection<G> = emptyList()) : this(ArrayList(LinkedHashSet(genes)))
 
     /**
-     * Index operator support. Provides indexed access to the LinkedHashSet (which provides fast lookup).
-     * The access provided here is not optimal, but it's better than using an ArrayList.
+     * Position of each gene in [genes], for constant time lookup. Built when first needed, so that copies that are
+     * only built and evaluated, which is most of them, do not pay for it.
      */
-    operator fun get(index: Int) = asSequence().drop(index).first()
+    private var positions: HashMap<G, Int>? = null
+
+    private fun positions() = positions ?: HashMap<G, Int>(genes.size * 2).also { map ->
+        genes.forEachIndexed { i, gene -> map[gene] = i }
+        positions = map
+    }
+
+    override val size get() = genes.size
+
+    override fun contains(element: G) = positions().containsKey(element)
+
+    override fun add(element: G): Boolean {
+        if (contains(element)) {
+            return false
+        }
+        genes.add(element)
+        positions!![element] = genes.size - 1
+        return true
+    }
+
+    /**
+     * Removes a gene. Takes time proportional to the number of genes after it.
+     */
+    override fun remove(element: G): Boolean {
+        val position = positions()[element] ?: return false
+        genes.removeAt(position)
+        positions = null
+        return true
+    }
+
+    override fun clear() {
+        genes.clear()
+        positions = null
+    }
+
+    override fun iterator() = object : MutableIterator<G> {
+        private val iterator = genes.iterator()
+        override fun hasNext() = iterator.hasNext()
+        override fun next() = iterator.next()
+        override fun remove() {
+            iterator.remove()
+            positions = null
+        }
+    }
+
+    /**
+     * Index operator support.
+     */
+    operator fun get(index: Int) = genes[index]
+
+    /**
+     * Returns the position of a gene, or -1 if it is not in this chromosome.
+     */
+    fun indexOf(gene: G) = positions()[gene] ?: -1
 
     /**
      * Returns a random gene from this chromosome.
      */
-    fun selectRandom(): G {
-        return this[Random.nextInt(size)]
+    fun selectRandom(random: Random = Random): G {
+        return genes[random.nextInt(size)]
+    }
+
+    /**
+     * Applies a mutation to each gene independently with the given probability. The gaps between mutated genes are
+     * drawn from a geometric distribution, so the time taken is proportional to the number of genes mutated rather
+     * than to the size of the chromosome.
+     */
+    fun mutateEach(probability: Double, random: Random = Random, mutation: G.() -> Unit) {
+        if (probability >= 1.0) {
+            genes.forEach(mutation)
+            return
+        }
+        if (probability <= 0.0) {
+            return
+        }
+        val logComplement = ln(1.0 - probability)
+        var i = -1
+        while (true) {
+            val gap = floor(ln(1.0 - random.nextDouble()) / logComplement)
+            if (gap >= genes.size - i - 1) {
+                return
+            }
+            i += gap.toInt() + 1
+            genes[i].mutation()
+        }
+    }
+
+    /**
+     * Applies a mutation to [count] distinct genes chosen at random, or to all of them if there are fewer.
+     */
+    fun mutateRandom(count: Int, random: Random = Random, mutation: G.() -> Unit) {
+        if (count >= size) {
+            genes.forEach(mutation)
+        } else if (count > size / 2) {
+            genes.indices.shuffled(random).take(count).forEach { genes[it].mutation() }
+        } else {
+            val chosen = HashSet<Int>(count * 2)
+            while (chosen.size < count) {
+                val i = random.nextInt(size)
+                if (chosen.add(i)) {
+                    genes[i].mutation()
+                }
+            }
+        }
     }
 
     /**
      * Return a list of expressed genes
      */
-    suspend fun getProducts() = map { it.product }.awaitAll()
+    suspend fun getProducts() = genes.map { it.product }.awaitAll()
 
     fun copy(): Chromosome<P, G> {
-        return Chromosome(LinkedHashSet(map { it.copy() as G }))
+        val copies = ArrayList<G>(genes.size)
+        genes.forEach { gene ->
+            @Suppress("UNCHECKED_CAST")
+            copies.add((gene.copy() as G).also { it.version = gene.version })
+        }
+        return Chromosome(copies)
     }
 
     /**
      * Creates a chromosome that is unioned with another.
      */
     operator fun plus(other: Chromosome<P, G>): Chromosome<P, G> {
-        val combinedGenes = this.toMutableSet().apply { addAll(other) }
-        return Chromosome(LinkedHashSet(combinedGenes))
+        val combinedGenes = ArrayList<G>(genes.size + other.size)
+        combinedGenes.addAll(genes)
+        other.genes.filterTo(combinedGenes) { it !in this }
+        return Chromosome(combinedGenes)
     }
 
     operator fun plus(other: G): Chromosome<P, G> {
@@ -113,10 +255,56 @@ class Chromosome<P, G : Gene<P>>(genes: LinkedHashSet<G> = LinkedHashSet()) : Mu
 
 }
 
+private val geneVersions = AtomicLong()
+
+private fun nextGeneVersion() = geneVersions.incrementAndGet()
+
 /**
  * Provides a context for [AgentBuilder.onEval]. "This" in onEval will refer to an instance of this class.
  */
-class EvaluationContext(val evalRand: Random)
+class EvaluationContext(val evalRand: Random) {
+
+    /**
+     * Fitness an agent must beat to survive the current generation, set by the [Evaluator]. Null if the evaluation
+     * should not be terminated early.
+     */
+    var eliminationThreshold: Double? = null
+        internal set
+
+    var optimizationMethod = Evaluator.OptimizationMethod.MAXIMIZE_FITNESS
+        internal set
+
+    /**
+     * True if the evaluation was stopped by [reportPartialFitness].
+     */
+    var isAborted = false
+        private set
+
+    /**
+     * Call this during a long evaluation with the best fitness the agent can still reach, e.g. the fitness gathered
+     * so far plus the most that could be gained in the remaining iterations (or, when minimizing, the error so far).
+     * If that cannot beat the [eliminationThreshold] the evaluation is stopped by throwing an
+     * [EvaluationAbortedException], and the agent is given the reported fitness.
+     */
+    fun reportPartialFitness(bestAchievable: Double) {
+        val threshold = eliminationThreshold ?: return
+        val hopeless = if (optimizationMethod == Evaluator.OptimizationMethod.MAXIMIZE_FITNESS) {
+            bestAchievable < threshold
+        } else {
+            bestAchievable > threshold
+        }
+        if (hopeless) {
+            isAborted = true
+            throw EvaluationAbortedException(bestAchievable)
+        }
+    }
+}
+
+/**
+ * Thrown by [EvaluationContext.reportPartialFitness] to stop an evaluation whose agent cannot survive.
+ */
+class EvaluationAbortedException(val fitness: Double) :
+    RuntimeException("Evaluation stopped early with fitness $fitness")
 
 /**
  * Provides a context for [AgentBuilder.onMutate]. "This" in onMutate will refer to this object.
@@ -137,7 +325,26 @@ class Agent(
     /**
      * A function that returns a double indicating fitness. Used by the [Evaluator] during evolution.
      */
-    suspend fun eval() = evaluationContext.evalFunction()
+    suspend fun eval() = try {
+        evaluationContext.evalFunction()
+    } catch (e: EvaluationAbortedException) {
+        e.fitness
+    }
+
+    /**
+     * Evaluate, stopping early if the agent reports that it cannot beat the elimination threshold. See
+     * [EvaluationContext.reportPartialFitness].
+     */
+    suspend fun eval(eliminationThreshold: Double?, optimizationMethod: Evaluator.OptimizationMethod): Double {
+        evaluationContext.eliminationThreshold = eliminationThreshold
+        evaluationContext.optimizationMethod = optimizationMethod
+        return eval()
+    }
+
+    /**
+     * True if the last evaluation was stopped early.
+     */
+    val isAborted get() = evaluationContext.isAborted
 
     /**
      * A function that can be called after an environment has been built. Useful for getting the "winning" genotype.
@@ -218,11 +425,36 @@ class AgentBuilder private constructor(
 
     private val chromosomeIterator = chromosomeList.iterator()
 
+    /**
+     * Functions that reset and return the objects taken from the worker's pool by [reusable].
+     */
+    private val borrowed = mutableListOf<() -> Unit>()
+
+    /**
+     * The chromosomes created by the builder block, in order.
+     */
+    internal val chromosomes: List<Chromosome<*, *>> get() = chromosomeList
+
+    /**
+     * Returns a builder for this simulation with the given chromosomes, which must match the ones the builder block
+     * creates in number and order. Used to recreate a genome received from another process.
+     */
+    internal fun withGenome(chromosomes: List<Chromosome<*, *>>, seed: Int) =
+        AgentBuilder(LinkedList(chromosomes), block, seed).apply(block)
+
     fun copy(): AgentBuilder {
         val newSeed = random.nextInt()
         return AgentBuilder(LinkedList(chromosomeList.map { it.copy() }), block, newSeed).apply(block)
     }
 
+    /**
+     * Hash of all the chromosomes, which stays the same as long as no gene is mutated, added, removed or disabled.
+     * Used by the [Evaluator] to avoid evaluating the same genome twice.
+     */
+    fun genomeHash(): Long = chromosomeList.fold(17L) { hash, chromosome ->
+        chromosome.fold(hash * 31 + chromosome.size) { geneHash, gene -> geneHash * 31 + gene.fingerprint() }
+    }
+
     /**
      * Use this to describe what happens with each mutation. Can be called multiple times to add more mutation tasks.
      */
@@ -281,6 +513,37 @@ class AgentBuilder private constructor(
         peekFunction = peek
     }
 
+    /**
+     * Use this in place of creating an expensive object, like a workspace, every time the builder block runs (which
+     * is every time the builder is copied). Returns an object from the current thread's pool if one is available,
+     * otherwise a new one made by [create]. When the evaluator is done with an agent built from this builder, it
+     * calls [release], which applies [reset] to the object and returns it to the pool, so that the next copy made on
+     * the same worker thread reconfigures it rather than building a new one.
+     *
+     * @param key identifies the kind of object, e.g. "workspace"
+     */
+    fun <T : Any> reusable(key: String, create: () -> T, reset: T.() -> Unit): T {
+        val pool = workerPools.get().getOrPut(key) { ArrayDeque() }
+        @Suppress("UNCHECKED_CAST")
+        val resource = pool.pollLast() as T? ?: create()
+        borrowed.add { resource.reset(); returnToPool(key, resource) }
+        return resource
+    }
+
+    /**
+     * A workspace that is cleared and reused by later copies of this builder. See [reusable].
+     */
+    fun reusableWorkspace() = reusable("workspace", ::EvolutionWorkspace) { clearWorkspace() }
+
+    /**
+     * Reset the objects obtained with [reusable] and return them to the current thread's pool. The builder and any
+     * agent built from it must not be used afterwards.
+     */
+    fun release() {
+        borrowed.forEach { it() }
+        borrowed.clear()
+    }
+
 
     private inline fun <P, G : Gene<P>> createChromosome(crossinline initializeValue: () -> Chromosome<P, G>): Chromosome<P, G> {
         return if (isInitial) {
@@ -307,7 +570,7 @@ class AgentBuilder private constructor(
     }
 
     fun <P, G : Gene<P>> chromosome(vararg genes: G): Chromosome<P, G> = createChromosome {
-        Chromosome(LinkedHashSet(genes.toSet()))
+        Chromosome(genes.asList())
     }
 
     /**
@@ -332,6 +595,23 @@ class AgentBuilder private constructor(
 
 }
 
+/**
+ * Objects released by [AgentBuilder.release], by key, for each worker thread.
+ */
+private val workerPools = ThreadLocal.withInitial { HashMap<String, ArrayDeque<Any>>() }
+
+/**
+ * Largest number of objects of one kind pooled by a thread.
+ */
+private const val MAX_POOLED = 4
+
+private fun returnToPool(key: String, resource: Any) {
+    val pool = workerPools.get().getOrPut(key) { ArrayDeque() }
+    if (pool.size < MAX_POOLED) {
+        pool.addLast(resource)
+    }
+}
+
 /**
  * Holds an environment builder and fitness value. Used to hold results at each generation.
  */
@@ -375,6 +655,32 @@ class Evaluator(agentBuilder: AgentBuilder) {
         MINIMIZE_FITNESS
     }
 
+    /**
+     * If true, an agent whose genome (see [AgentBuilder.genomeHash]) was evaluated in the previous generation, such as
+     * a survivor, is given its previous fitness instead of being evaluated again. Only turn this on when evaluations
+     * are deterministic, or set [reevaluationInterval] as well, since otherwise a lucky evaluation is kept forever.
+     */
+    var cacheFitness = false
+
+    /**
+     * If positive, cached fitness values are recomputed once they are this many generations old.
+     */
+    var reevaluationInterval = 0
+
+    /**
+     * If true, evaluations that report (with [EvaluationContext.reportPartialFitness]) that they cannot beat the
+     * fitness of the last survivor of the previous generation are stopped.
+     */
+    var earlyTermination = true
+
+    /**
+     * Where agents are built and evaluated. By default in this process; see [ProcessEvaluationBackend] to spread
+     * evaluation over several processes.
+     */
+    var backend: EvaluationBackend = LocalEvaluationBackend
+
+    private class CachedFitness(val fitness: Double, val generation: Int)
+
     /**
      * The initial, immutable list of agents.
      */
@@ -413,22 +719,39 @@ class Evaluator(agentBuilder: AgentBuilder) {
          */
         private var generations = sequence {
             var population = initialPopulation
+            var fitnessCache = mapOf<Long, CachedFitness>()
+            var threshold: Double? = null
             do {
-                val builderFitnessPairs = runBlocking {
-                    population.map {
-                        async {
-                            val build = it.build()
-                            val score = build.eval()
-                            BuilderFitnessPair(it.copy(), score)
-                        }
-                    }.awaitAll()
-                        .sortedBy { if (optimizationMethod == OptimizationMethod.MAXIMIZE_FITNESS) -it.fitness else it.fitness }
+                val genomeHashes = population.map { it.genomeHash() }
+                val results = genomeHashes.map { genomeHash ->
+                    fitnessCache[genomeHash]?.takeIf { cached ->
+                        cacheFitness && (reevaluationInterval <= 0 ||
+                                generation - cached.generation < reevaluationInterval)
+                    }
+                }.toMutableList()
+                val uncached = results.indices.filter { results[it] == null }
+                backend.evaluate(uncached.map { population[it] }, threshold, optimizationMethod)
+                    .forEachIndexed { i, (fitness, isAborted) ->
+                        // An aborted evaluation only gives a bound on the fitness, so it is not cached
+                        results[uncached[i]] = CachedFitness(fitness, if (isAborted) -1 else generation)
+                    }
+                val evaluations = population.mapIndexed { i, builder ->
+                    builder.release()
+                    Triple(BuilderFitnessPair(builder.copy(), results[i]!!.fitness), genomeHashes[i], results[i]!!)
                 }
+                fitnessCache = evaluations
+                    .filter { (_, _, result) -> cacheFitness && result.generation >= 0 }
+                    .associate { (_, genomeHash, result) -> genomeHash to result }
+
+                val builderFitnessPairs = evaluations.map { it.first }
+                    .sortedBy { if (optimizationMethod == OptimizationMethod.MAXIMIZE_FITNESS) -it.fitness else it.fitness }
 
                 val currentFitness = builderFitnessPairs[0].fitness
 
                 val survivors = builderFitnessPairs.take((eliminationRatio * builderFitnessPairs.size).toInt())
 
+                threshold = survivors.lastOrNull()?.fitness?.takeIf { earlyTermination }
+
                 // Concatenate (1) the most-fit survivors and (2) a random sample of mutated offspring of
                 // those survivors to replenish the population
                 population = survivors.map { it.agentBuilder } + (survivors.uniformSample()
@@ -40,6 +40,8 @@ class IntGene(private val template: IntWrapper) : Gene<Int>(), TopLevelGene<Int>
         return IntGene(template.copy())
     }
 
+    override fun exportTemplate() = template
+
     override suspend fun TopLevelBuilderContext.build(): Int {
         template.copy().also { product.complete(it.value) }
         return product.await()
@@ -47,7 +49,10 @@ class IntGene(private val template: IntWrapper) : Gene<Int>(), TopLevelGene<Int>
 
     fun mutate(block: IntWrapper.() -> Unit) {
         template.apply(block)
+        markMutated()
     }
+
+    override fun fingerprint() = template.value * 2L + if (disabled) 1 else 0
 }
 
 /**
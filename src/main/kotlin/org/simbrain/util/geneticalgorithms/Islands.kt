@@ -0,0 +1,232 @@
+package org.simbrain.util.geneticalgorithms
+
+import kotlinx.coroutines.*
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+/**
+ * Runs the evolutionary algorithm as an island model: the population is split into several islands that evolve
+ * independently on a fixed pool of worker threads, one per core by default, and every [migrationInterval]
+ * generations the fittest agents of each island are copied into the next island (in a ring), replacing its least fit.
+ *
+ * Compared to [Evaluator]:
+ *  - Work is spread over a bounded pool, so no more agents are built at once than there are workers, and objects an
+ *  agent obtains with [AgentBuilder.reusable] are reused by later agents on the same worker.
+ *  - Islands only wait for each other when migrating, so one island builds and evaluates its next generation while
+ *  others are still evaluating the current one. Within an island the offspring of a generation are copied and
+ *  mutated on the workers as well.
+ *
+ * Agents that are eliminated or displaced by migrants are released (see [AgentBuilder.release]), so copy the builders
+ * reported by [Result.onEachGeneration] before building them. Generations are reported once an epoch of [migrationInterval] generations has finished on every island, so
+ * evolution may run up to migrationInterval - 1 generations past the stopping condition.
+ */
+class IslandEvaluator(private val agentBuilder: AgentBuilder) {
+
+    /**
+     * Number of islands.
+     */
+    var islandCount: Int = 4
+
+    /**
+     * Number of agents on each island.
+     */
+    var populationSize: Int = 50
+
+    /**
+     * How many agents to eliminate on each island each generation.
+     */
+    var eliminationRatio: Double = 0.5
+
+    /**
+     * Number of worker threads that agents are built and evaluated on.
+     */
+    var workerCount: Int = Runtime.getRuntime().availableProcessors()
+
+    /**
+     * Number of generations between migrations.
+     */
+    var migrationInterval: Int = 5
+
+    /**
+     * Number of agents each island sends to the next at each migration.
+     */
+    var migrantCount: Int = 2
+
+    var optimizationMethod: Evaluator.OptimizationMethod = Evaluator.OptimizationMethod.MAXIMIZE_FITNESS
+
+    private lateinit var stoppingCondition: Evaluator.RunUntilContext.() -> Boolean
+
+    /**
+     * Set the stopping condition. See [Evaluator.runUntil].
+     */
+    fun runUntil(stoppingCondition: Evaluator.RunUntilContext.() -> Boolean) {
+        this.stoppingCondition = stoppingCondition
+    }
+
+    private fun List<BuilderFitnessPair>.sortedByFitness() = sortedBy {
+        if (optimizationMethod == Evaluator.OptimizationMethod.MAXIMIZE_FITNESS) -it.fitness else it.fitness
+    }
+
+    /**
+     * One island's population and the results of its generations in the current epoch.
+     *
+     * @param index position of the island in the ring, which also seeds its random source
+     */
+    private inner class Island(index: Int, var population: List<AgentBuilder>) {
+
+        /**
+         * Random source for choosing parents. Each island has its own, since islands run in parallel.
+         */
+        private val random = Random(agentBuilder.seed + index)
+
+        val epoch = mutableListOf<List<BuilderFitnessPair>>()
+
+        /**
+         * Sorted results of the last generation evaluated. The next generation is bred from these at the start of
+         * the next epoch, after migration.
+         */
+        var ranked = listOf<BuilderFitnessPair>()
+
+        suspend fun runEpoch(dispatcher: CoroutineDispatcher) = coroutineScope {
+            epoch.clear()
+            repeat(migrationInterval) {
+                if (ranked.isNotEmpty()) {
+                    population = nextGeneration(dispatcher)
+                }
+                ranked = population.map { builder ->
+                    async(dispatcher) {
+                        val score = builder.build().eval()
+                        builder.release()
+                        BuilderFitnessPair(builder.copy(), score)
+                    }
+                }.awaitAll().sortedByFitness()
+                epoch.add(ranked)
+            }
+        }
+
+        /**
+         * Keep the fittest of the last generation and fill the rest of the population with their mutated copies.
+         */
+        private suspend fun nextGeneration(dispatcher: CoroutineDispatcher) = coroutineScope {
+            val survivorCount = (eliminationRatio * ranked.size).toInt().coerceAtLeast(1)
+            val survivors = ranked.take(survivorCount)
+            val eliminated = ranked.drop(survivorCount)
+            survivors.map { it.agentBuilder } + List(populationSize - survivorCount) { i ->
+                val parent = survivors[random.nextInt(survivorCount)]
+                async(dispatcher) {
+                    // Hand an eliminated agent's objects to its replacement on the same worker
+                    eliminated.getOrNull(i)?.agentBuilder?.release()
+                    parent.agentBuilder.copy().apply { mutate() }
+                }
+            }.awaitAll()
+        }
+
+        /**
+         * Release the least fit agents of the last generation to make room for migrants.
+         */
+        fun evict(count: Int) {
+            ranked.takeLast(count).forEach { it.agentBuilder.release() }
+            ranked = ranked.dropLast(count)
+        }
+
+        /**
+         * Add migrants, with the fitness they had on their own island, to the last generation.
+         */
+        fun receive(migrants: List<BuilderFitnessPair>) {
+            ranked = (ranked + migrants).sortedByFitness()
+        }
+    }
+
+    /**
+     * Packages the result of a run of [IslandEvaluator]. Works like [Evaluator.Result]; the list of agents reported
+     * for a generation combines all islands.
+     */
+    inner class Result {
+
+        private var generation = 0
+
+        private var generations = sequence {
+            val threadIndex = AtomicInteger()
+            val executor = Executors.newFixedThreadPool(workerCount) { runnable ->
+                Thread(runnable, "evolution-worker-${threadIndex.incrementAndGet()}").apply { isDaemon = true }
+            }
+            val dispatcher = executor.asCoroutineDispatcher()
+            try {
+                val islands = List(islandCount) { index ->
+                    Island(index, generateSequence(agentBuilder.copy()) { it.copy() }.take(populationSize).toList())
+                }
+                var stopped = false
+                while (!stopped) {
+                    runBlocking {
+                        islands.map { launch(dispatcher) { it.runEpoch(dispatcher) } }.joinAll()
+                    }
+                    migrate(islands)
+                    for (index in 0 until migrationInterval) {
+                        val combined = islands.flatMap { it.epoch[index] }.sortedByFitness()
+                        yield(combined)
+                        generation++
+                        if (stoppingCondition(Evaluator.RunUntilContext(generation, combined[0].fitness))) {
+                            stopped = true
+                            break
+                        }
+                    }
+                }
+            } finally {
+                dispatcher.close()
+            }
+        }
+
+        private fun migrate(islands: List<Island>) {
+            if (islands.size < 2 || migrantCount <= 0) {
+                return
+            }
+            // Evict first, so that the emigrants' copies can reuse the evicted agents' objects, and copy all the
+            // emigrants before any island receives them, so that no island passes on agents it has just received
+            islands.forEach { it.evict(migrantCount) }
+            val emigrants = islands.map { island ->
+                island.ranked.take(migrantCount).map { BuilderFitnessPair(it.agentBuilder.copy(), it.fitness) }
+            }
+            islands.forEachIndexed { index, island ->
+                island.receive(emigrants[(index + islands.size - 1) % islands.size])
+            }
+        }
+
+        /**
+         * Returns the winning agent builder and its fitness.
+         */
+        val best: BuilderFitnessPair
+            get() = generations.last().first().let { (builder, fitness) ->
+                BuilderFitnessPair(builder.copy(), fitness)
+            }
+
+        /**
+         * Returns the generation number.
+         */
+        val finalGenerationNumber: Int get() = generation
+
+        /**
+         * Run the provided block at each generation. Context provides the whole population of builders.
+         */
+        fun onEachGeneration(block: (agents: List<BuilderFitnessPair>, generationNumber: Int) -> Unit): Result = this
+            .apply {
+                generations = generations.onEachIndexed { index, list -> block(list, index) }
+            }
+
+        /**
+         * Like [onEachGeneration] but context only provides the (builder for) the fittest agent at each generation.
+         */
+        fun onEachGenerationBest(block: (agent: BuilderFitnessPair, generationNumber: Int) -> Unit): Result = this
+            .apply {
+                generations = generations.onEachIndexed { index, list -> block(list.first(), index) }
+            }
+    }
+
+    fun start() = Result()
+}
+
+/**
+ * Create an island model evaluator.
+ */
+fun islandEvaluator(agentBuilder: AgentBuilder, block: IslandEvaluator.() -> Unit) =
+    IslandEvaluator(agentBuilder).apply(block)
@@ -43,8 +43,11 @@ class NodeGene private constructor(val template: Neuron = Neuron(null)): Network
 
     fun mutate(config: Neuron.() -> Unit) {
         template.apply(config)
+        markMutated()
     }
 
+    override fun exportTemplate() = template
+
     override fun copy(): NodeGene {
         val newGene = NodeGene(template.deepCopy())
         events.fireCopied(newGene)
@@ -79,8 +82,13 @@ class ConnectionGene(private val template: Synapse, val source: NodeGene, val ta
 
     fun mutate(block: Synapse.() -> Unit) {
         template.apply(block)
+        markMutated()
     }
 
+    override fun exportTemplate() = template
+
+    override val dependencies get() = listOf(source, target)
+
     override fun copy(): ConnectionGene {
         return ConnectionGene(Synapse(template), sourceCopy, targetCopy)
     }
@@ -114,8 +122,11 @@ class LayoutGene(private val template: LayoutWrapper) : Gene<Layout>(), TopLevel
         return LayoutGene(template.copy())
     }
 
+    override fun exportTemplate() = template
+
     fun mutate(config: LayoutWrapper.() -> Unit) {
         template.apply(config)
+        markMutated()
     }
 
     override suspend fun TopLevelBuilderContext.build(): Layout = completeWith {
@@ -180,6 +191,38 @@ suspend operator fun Network.invoke(block: suspend NetworkGeneticsContext.() ->
     NetworkGeneticsContext(this@invoke).apply { block() }
 }
 
+/**
+ * Collects the chromosomes expressed by [compactNetwork].
+ */
+class CompactNetworkContext {
+
+    internal val chromosomes = ArrayList<Collection<NetworkGene<*>>>()
+
+    operator fun Collection<NetworkGene<*>>.unaryPlus() {
+        chromosomes.add(this)
+    }
+
+}
+
+/**
+ * Express node and connection chromosomes into a [CompactNetwork] rather than a [Network]. Use this in place of
+ * `network { }` for headless builds whose fitness function only needs activations:
+ *
+ * ```
+ * onBuild { visible ->
+ *     if (visible) {
+ *         network { +nodes; +connections }
+ *     } else {
+ *         compact = compactNetwork { +nodes; +connections }
+ *     }
+ * }
+ * ```
+ */
+fun compactNetwork(block: CompactNetworkContext.() -> Unit): CompactNetwork {
+    val context = CompactNetworkContext().apply(block)
+    return compileNetwork(*context.chromosomes.toTypedArray())
+}
+
 
 /**
  * Helper functions to create genes
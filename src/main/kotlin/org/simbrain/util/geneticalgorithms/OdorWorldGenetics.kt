@@ -49,6 +49,8 @@ class SmellSensorGene(private val template: SmellSensor):
         return SmellSensorGene(template.copy())
     }
 
+    override fun exportTemplate() = template
+
     override fun build(odorWorldEntity: OdorWorldEntity): SmellSensor {
         return template.copy().also { product.complete(it) }
     }
@@ -64,6 +66,8 @@ class ObjectSensorGene(private val template: ObjectSensor):
         return ObjectSensorGene(template.copy())
     }
 
+    override fun exportTemplate() = template
+
     override fun build(odorWorldEntity: OdorWorldEntity): ObjectSensor {
         return template.copy().also { product.complete(it) }
     }
@@ -79,6 +83,8 @@ class TileSensorGene(private val template: TileSensor):
         return TileSensorGene(template.copy())
     }
 
+    override fun exportTemplate() = template
+
     override fun build(odorWorldEntity: OdorWorldEntity): TileSensor {
         return template.copy().also { product.complete(it) }
     }
@@ -94,6 +100,8 @@ class StraightMovementGene(private val template: StraightMovement):
         return StraightMovementGene(template.copy())
     }
 
+    override fun exportTemplate() = template
+
     override fun build(odorWorldEntity: OdorWorldEntity): StraightMovement {
         return StraightMovement(template).also { product.complete(it) }
     }
@@ -109,6 +117,8 @@ class TurningGene(private val template: Turning):
         return TurningGene(template.copy())
     }
 
+    override fun exportTemplate() = template
+
     override fun build(odorWorldEntity: OdorWorldEntity): Turning {
         return Turning(template).also { product.complete(it) }
     }
@@ -0,0 +1,320 @@
+package org.simbrain.util.geneticalgorithms
+
+import kotlinx.coroutines.runBlocking
+import org.pmw.tinylog.Logger
+import java.io.*
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.net.SocketTimeoutException
+import java.nio.file.Paths
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.system.exitProcess
+
+/**
+ * Creates the simulation evaluated by an [EvaluationWorker]. Implementations must be objects or have a public
+ * constructor without arguments, so that worker processes can create them from their class name.
+ */
+fun interface EvolutionTask {
+    fun createSimulation(): AgentBuilder
+}
+
+/**
+ * Evaluates agents in child JVMs launched on this machine, which run [EvaluationWorker] with the classpath of this
+ * process and connect back over a local socket. Each genome is sent to a free worker (see [GenomeCodec]), which
+ * recreates the agent with its own copy of the simulation, made by [task], and returns the fitness.
+ *
+ * A worker that crashes, or exceeds [evaluationTimeout], is killed and replaced, and the agent it was evaluating is
+ * sent to another worker. An agent that has brought down [maxAttempts] workers, or whose evaluation throws an
+ * exception, is given the worst possible fitness. Workers are started on the first evaluation; call [close] when
+ * done to stop them.
+ *
+ * @param task class that creates the simulation being evolved, the same one the coordinating [Evaluator] uses
+ * @param workerCount number of worker processes
+ */
+class ProcessEvaluationBackend @JvmOverloads constructor(
+    private val task: Class<out EvolutionTask>,
+    val workerCount: Int = Runtime.getRuntime().availableProcessors()
+) : EvaluationBackend {
+
+    /**
+     * Extra arguments for the worker JVMs, e.g. "-Xmx1g".
+     */
+    var jvmArguments: List<String> = listOf()
+
+    /**
+     * Longest time an evaluation may take, in milliseconds, before its worker is considered hung. 0 for no limit.
+     */
+    var evaluationTimeout = 0
+
+    /**
+     * Longest time to wait for a new worker to connect, in milliseconds.
+     */
+    var startupTimeout = 60_000
+
+    /**
+     * Number of times an agent is sent to a worker before it is given up on.
+     */
+    var maxAttempts = 2
+
+    /**
+     * Number of times crashed workers are replaced before the backend gives up.
+     */
+    var maxRestarts = 10
+
+    private class Job(
+        val id: Int,
+        val genome: ByteArray,
+        val eliminationThreshold: Double?,
+        val optimizationMethod: Evaluator.OptimizationMethod
+    ) {
+        val result = CompletableFuture<EvaluationResult>()
+        var attempts = 0
+    }
+
+    private val jobs = LinkedBlockingQueue<Job>()
+
+    private val jobIds = AtomicInteger()
+
+    private val workers = mutableListOf<Worker>()
+
+    private val restarts = AtomicInteger()
+
+    private var server: ServerSocket? = null
+
+    @Volatile
+    private var closed = false
+
+    override fun evaluate(
+        builders: List<AgentBuilder>,
+        eliminationThreshold: Double?,
+        optimizationMethod: Evaluator.OptimizationMethod
+    ): List<EvaluationResult> {
+        check(!closed) { "Evaluation backend is closed" }
+        startWorkers()
+        val batch = builders.map {
+            Job(
+                jobIds.incrementAndGet(),
+                GenomeCodec.encode(it).toByteArray(Charsets.UTF_8),
+                eliminationThreshold,
+                optimizationMethod
+            )
+        }
+        jobs.addAll(batch)
+        return batch.map { it.result.join() }
+    }
+
+    @Synchronized
+    private fun startWorkers() {
+        if (server != null) {
+            return
+        }
+        server = ServerSocket(0, workerCount, InetAddress.getLoopbackAddress()).apply { soTimeout = startupTimeout }
+        Runtime.getRuntime().addShutdownHook(Thread { close() })
+        repeat(workerCount) { launchWorker() }
+    }
+
+    /**
+     * Start a worker process and wait for it to connect. Synchronized so that the connection accepted is the one
+     * from the process just started.
+     */
+    @Synchronized
+    private fun launchWorker() {
+        val java = Paths.get(System.getProperty("java.home"), "bin", "java").toString()
+        val command = listOf(java) + jvmArguments + listOf(
+            "-cp", System.getProperty("java.class.path"),
+            EvaluationWorker::class.java.name,
+            server!!.localPort.toString(),
+            task.name
+        )
+        val process = ProcessBuilder(command).inheritIO().start()
+        val socket = try {
+            server!!.accept()
+        } catch (e: IOException) {
+            process.destroyForcibly()
+            throw IllegalStateException("Evaluation worker did not connect", e)
+        }
+        val worker = Worker(process, socket)
+        workers.add(worker)
+        worker.thread.start()
+    }
+
+    /**
+     * The coordinator's end of the connection to a worker process. Takes jobs from the queue until the worker fails.
+     */
+    private inner class Worker(val process: Process, val socket: Socket) {
+
+        private val output = DataOutputStream(BufferedOutputStream(socket.getOutputStream()))
+
+        private val input = DataInputStream(BufferedInputStream(socket.getInputStream()))
+
+        val thread = Thread(this::run, "evaluation-worker-${process.pid()}").apply { isDaemon = true }
+
+        fun run() {
+            socket.soTimeout = evaluationTimeout
+            while (!closed) {
+                val job = try {
+                    jobs.take()
+                } catch (e: InterruptedException) {
+                    return
+                }
+                try {
+                    job.attempts++
+                    send(job)
+                    job.result.complete(receive(job))
+                } catch (e: IOException) {
+                    // Includes SocketTimeoutException, when the worker is hung
+                    fail(job, e)
+                    return
+                }
+            }
+        }
+
+        private fun send(job: Job) {
+            output.writeInt(job.id)
+            output.writeInt(job.genome.size)
+            output.write(job.genome)
+            output.writeDouble(job.eliminationThreshold ?: Double.NaN)
+            output.writeInt(job.optimizationMethod.ordinal)
+            output.flush()
+        }
+
+        private fun receive(job: Job): EvaluationResult {
+            val id = input.readInt()
+            if (id != job.id) {
+                throw IOException("Expected result for job ${job.id} but received $id")
+            }
+            return when (input.readByte().toInt()) {
+                EvaluationWorker.COMPLETED -> EvaluationResult(input.readDouble())
+                EvaluationWorker.ABORTED -> EvaluationResult(input.readDouble(), true)
+                else -> {
+                    Logger.error("Evaluation failed: ${input.readUTF()}")
+                    worstResult(job)
+                }
+            }
+        }
+
+        private fun fail(job: Job, cause: Exception) {
+            process.destroyForcibly()
+            socket.close()
+            synchronized(this@ProcessEvaluationBackend) { workers.remove(this) }
+            if (closed) {
+                return
+            }
+            if (cause is SocketTimeoutException) {
+                Logger.warn("Evaluation worker timed out")
+            } else {
+                Logger.warn(cause, "Evaluation worker failed")
+            }
+            if (job.attempts < maxAttempts) {
+                jobs.add(job)
+            } else {
+                job.result.complete(worstResult(job))
+            }
+            if (restarts.incrementAndGet() <= maxRestarts) {
+                try {
+                    launchWorker()
+                    return
+                } catch (e: IllegalStateException) {
+                    Logger.error(e, "Could not restart evaluation worker")
+                }
+            }
+            if (synchronized(this@ProcessEvaluationBackend) { workers.isEmpty() }) {
+                val error = IllegalStateException("All evaluation workers have failed")
+                generateSequence { jobs.poll() }.forEach { it.result.completeExceptionally(error) }
+            }
+        }
+
+        fun stop() {
+            try {
+                output.writeInt(EvaluationWorker.SHUTDOWN)
+                output.flush()
+            } catch (e: IOException) {
+                // Already gone
+            }
+            socket.close()
+            process.destroy()
+            thread.interrupt()
+        }
+    }
+
+    private fun worstResult(job: Job) = EvaluationResult(
+        if (job.optimizationMethod == Evaluator.OptimizationMethod.MAXIMIZE_FITNESS) {
+            Double.NEGATIVE_INFINITY
+        } else {
+            Double.POSITIVE_INFINITY
+        },
+        true
+    )
+
+    @Synchronized
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        workers.forEach { it.stop() }
+        workers.clear()
+        server?.close()
+        val error = IllegalStateException("Evaluation backend is closed")
+        generateSequence { jobs.poll() }.forEach { it.result.completeExceptionally(error) }
+    }
+}
+
+/**
+ * Entry point of the processes started by [ProcessEvaluationBackend]. Connects to the coordinator, then repeatedly
+ * receives a genome, evaluates it and sends back the fitness.
+ *
+ * Arguments: the coordinator's port and the name of an [EvolutionTask] class.
+ */
+object EvaluationWorker {
+
+    const val SHUTDOWN = -1
+
+    const val COMPLETED = 0
+
+    const val ABORTED = 1
+
+    const val FAILED = 2
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val port = args[0].toInt()
+        val taskClass = Class.forName(args[1])
+        val task = (taskClass.kotlin.objectInstance ?: taskClass.getConstructor().newInstance()) as EvolutionTask
+        val simulation = task.createSimulation()
+        Socket(InetAddress.getLoopbackAddress(), port).use { socket ->
+            val input = DataInputStream(BufferedInputStream(socket.getInputStream()))
+            val output = DataOutputStream(BufferedOutputStream(socket.getOutputStream()))
+            while (true) {
+                val id = try {
+                    input.readInt()
+                } catch (e: EOFException) {
+                    break
+                }
+                if (id == SHUTDOWN) {
+                    break
+                }
+                val genome = ByteArray(input.readInt()).also { input.readFully(it) }.toString(Charsets.UTF_8)
+                val eliminationThreshold = input.readDouble().takeUnless { it.isNaN() }
+                val optimizationMethod = Evaluator.OptimizationMethod.values()[input.readInt()]
+                output.writeInt(id)
+                try {
+                    val builder = GenomeCodec.decode(genome, simulation)
+                    val agent = runBlocking { builder.build() }
+                    val fitness = runBlocking { agent.eval(eliminationThreshold, optimizationMethod) }
+                    builder.release()
+                    output.writeByte(if (agent.isAborted) ABORTED else COMPLETED)
+                    output.writeDouble(fitness)
+                } catch (e: Exception) {
+                    output.writeByte(FAILED)
+                    output.writeUTF(e.toString())
+                }
+                output.flush()
+            }
+        }
+        exitProcess(0)
+    }
+}
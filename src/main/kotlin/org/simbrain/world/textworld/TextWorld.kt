@@ -18,8 +18,10 @@
  */
 package org.simbrain.world.textworld
 
+import org.simbrain.util.CooccurrenceBuilder
+import org.simbrain.util.SparseCooccurrenceMatrix
 import org.simbrain.util.UserParameter
-import org.simbrain.util.generateCooccurrenceMatrix
+import org.simbrain.util.Utils
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.tokenizeWordsFromSentence
 import org.simbrain.util.uniqueTokensFromArray
@@ -28,6 +30,8 @@ import org.simbrain.workspace.Consumable
 import org.simbrain.workspace.Producible
 import smile.math.matrix.Matrix
 import java.awt.Color
+import java.io.File
+import java.nio.file.Files
 import java.util.regex.Matcher
 import java.util.regex.Pattern
 
@@ -63,6 +67,15 @@ class TextWorld : AttributeContainer, EditableObject {
     @UserParameter(label = "Use PPMI", order = 30 )
     var usePPMI = true
 
+    @UserParameter(
+        label = "Embedding dimensions",
+        description = "Number of dimensions co-occurrence embeddings are reduced to. 0, the default, keeps one " +
+                "dimension per token, which stores a dense token by token matrix. Reduce it for large vocabularies.",
+        minimumValue = 0.0,
+        order = 40
+    )
+    var embeddingDimensions = 0
+
     /**
      * Associates string tokens with arrays of doubles and vice-versa
      */
@@ -72,6 +85,7 @@ class TextWorld : AttributeContainer, EditableObject {
     )
         set(value) {
             field = value
+            tokenStream?.tokenVectorMap = value
             events.fireTokenVectorMapChanged()
         }
 
@@ -166,6 +180,30 @@ class TextWorld : AttributeContainer, EditableObject {
     @Transient
     var events = TextWorldEvents(this)
 
+    /**
+     * If set, tokens are read from this stream rather than from [text], and [currentItem] positions are offsets in
+     * the stream. Not saved with the world.
+     */
+    @Transient
+    var tokenStream: TokenStream? = null
+        set(value) {
+            field?.close()
+            field = value
+            currentItem = null
+        }
+
+    /**
+     * True if tokens are read from a [TokenStream] rather than the world text.
+     */
+    val isStreaming get() = tokenStream != null
+
+    /**
+     * Read tokens from a text file rather than the world text, resolving them with the current token vector map.
+     */
+    fun streamFrom(file: File) {
+        tokenStream = TokenStream.open(file, tokenVectorMap)
+    }
+
     /**
      * Returns the double array associated with the currently selected token
      * (character or word). The reader world can produce a vector at any moment
@@ -175,7 +213,7 @@ class TextWorld : AttributeContainer, EditableObject {
      */
     @get:Producible
     val currentVector: DoubleArray
-        get() = currentItem.let {
+        get() = tokenStream?.currentVector ?: currentItem.let {
             if (it == null) {
                 // Zero vector if no current item
                 DoubleArray(tokenVectorMap.size)
@@ -199,7 +237,15 @@ class TextWorld : AttributeContainer, EditableObject {
      * Advance the position in the text, and update the current item.
      */
     fun update() {
-        if (parseStyle == ParseStyle.CHARACTER) {
+        val stream = tokenStream
+        if (stream != null) {
+            // At the end of the stream the current item is cleared and the stream stays at its end
+            currentItem = if (stream.advance()) {
+                TextItem(stream.currentBegin, stream.currentEnd, stream.currentToken!!)
+            } else {
+                null
+            }
+        } else if (parseStyle == ParseStyle.CHARACTER) {
             wrapText()
             val begin = position
             val end = position + 1
@@ -260,7 +306,7 @@ class TextWorld : AttributeContainer, EditableObject {
      */
     private fun selectCurrentToken() {
         currentItem = currentTextItem
-        position = currentTextItem!!.endPosition
+        position = currentTextItem!!.endPosition.toInt()
     }
 
     /**
@@ -364,38 +410,62 @@ class TextWorld : AttributeContainer, EditableObject {
 
     /**
      * Represents the "current item" as String, and includes a representation of
-     * the beginning and ending of the item in the main text.
+     * the beginning and ending of the item in the main text. Positions are Longs
+     * since they are offsets in the stream when reading from a [TokenStream].
      */
     inner class TextItem(
 
         /**
          * Initial position in main text.
          */
-        val beginPosition: Int,
+        val beginPosition: Long,
         /**
          * Final position in main text.
          */
-        val endPosition: Int,
+        val endPosition: Long,
         /**
          * The item text.
          */
         val text: String
     ) {
 
+        constructor(beginPosition: Int, endPosition: Int, text: String) :
+                this(beginPosition.toLong(), endPosition.toLong(), text)
+
         override fun toString(): String {
             return "($beginPosition,$endPosition) $text"
         }
     }
 
+    /**
+     * Build the dictionary from a text file, which is read in chunks for co-occurrence embeddings.
+     */
+    fun loadDictionary(file: File) {
+        if (embeddingType == EmbeddingType.ONE_HOT) {
+            loadDictionary(Utils.readFileContents(file))
+        } else {
+            loadCooccurrenceDictionary { builder -> Files.newBufferedReader(file.toPath()).use { builder.build(it) } }
+        }
+    }
+
     fun loadDictionary(docString: String) {
         if (embeddingType == EmbeddingType.ONE_HOT) {
             val tokens = docString.tokenizeWordsFromSentence().uniqueTokensFromArray()
             tokenVectorMap = TokenVectorMap(tokens, Matrix.eye(tokens.size))
 
         } else {
-            val result = generateCooccurrenceMatrix(docString, windowSize, usePPMI)
-            tokenVectorMap = TokenVectorMap(result.first, result.second)
+            loadCooccurrenceDictionary { it.build(docString) }
         }
     }
+
+    /**
+     * Set the token vector map from co-occurrences counted by [count], applying the PPMI and embedding dimension
+     * settings.
+     */
+    private fun loadCooccurrenceDictionary(count: (CooccurrenceBuilder) -> SparseCooccurrenceMatrix) {
+        val counts = count(CooccurrenceBuilder(windowSize))
+        val cooccurrenceMatrix = if (usePPMI) counts.ppmi(true) else counts
+        tokenVectorMap = TokenVectorMap(cooccurrenceMatrix.tokens, cooccurrenceMatrix.embeddings(embeddingDimensions))
+    }
 }
 
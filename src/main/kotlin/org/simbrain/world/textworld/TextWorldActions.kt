@@ -61,7 +61,7 @@ object TextWorldActions {
                 val chooser = SFileChooser(dictionaryDirectory, "text file", "txt")
                 val theFile = chooser.showOpenDialog()
                 if (theFile != null) {
-                    world.loadDictionary(Utils.readFileContents(theFile))
+                    world.loadDictionary(theFile)
                 }
             }
         }
@@ -124,6 +124,33 @@ object TextWorldActions {
         }
     }
 
+    /**
+     * Action for reading tokens from a text file as a stream, rather than from the text area. Suited to corpora too
+     * large to display.
+     *
+     * @param world the world that should read from the file
+     * @return the action
+     */
+    @JvmStatic
+    fun getStreamFileAction(world: TextWorld): Action {
+        return object : AbstractAction() {
+            // Initialize
+            init {
+                putValue(SMALL_ICON, ResourceManager.getImageIcon("menu_icons/Open.png"))
+                putValue(NAME, "Stream text file...")
+                putValue(SHORT_DESCRIPTION, "Read tokens from a text file without loading it in to the text area")
+            }
+
+            override fun actionPerformed(arg0: ActionEvent) {
+                val chooser = SFileChooser(".", "Text import", "txt")
+                val theFile = chooser.showOpenDialog()
+                if (theFile != null) {
+                    world.streamFrom(theFile)
+                }
+            }
+        }
+    }
+
     /**
      * Action for displaying a default preference dialog. (Not currently used).
      *
@@ -0,0 +1,209 @@
+package org.simbrain.world.textworld
+
+import smile.math.matrix.Matrix
+import java.io.Closeable
+import java.io.File
+import java.io.Reader
+import java.nio.charset.Charset
+import java.nio.file.Files
+import java.util.regex.Pattern
+
+/**
+ * A cursor over text that is read from a [Reader] in chunks, so that book-length corpora can be fed to a network
+ * token by token without being held in memory.
+ *
+ * Tokens are found with a precompiled pattern. When a match reaches the end of the characters read so far, more
+ * are read before the token is accepted, so tokens are never split across chunks. Each token is normalized the way
+ * dictionary tokens are (lowercase, punctuation removed) and resolved to its row in the [TokenVectorMap] as soon as
+ * it is read.
+ *
+ * Positions are character offsets from the start of the stream, which lets a view highlight the current token
+ * without the stream knowing about it.
+ */
+class TokenStream @JvmOverloads constructor(
+    private val reader: Reader,
+    tokenVectorMap: TokenVectorMap,
+    /**
+     * Pattern matching a single token.
+     */
+    pattern: Pattern = WORD_PATTERN,
+    /**
+     * Number of characters read at a time.
+     */
+    private val chunkSize: Int = 1 shl 16
+) : Closeable {
+
+    /**
+     * Characters read but not yet consumed. buffer[0] is at [bufferStart] in the stream.
+     */
+    private val buffer = StringBuilder()
+
+    private var bufferStart = 0L
+
+    /**
+     * Position in the buffer where the next search starts.
+     */
+    private var searchFrom = 0
+
+    private val matcher = pattern.matcher(buffer)
+
+    private val readChunk = CharArray(chunkSize)
+
+    private var endOfInput = false
+
+    /**
+     * Map used to resolve tokens to vectors. Setting it, for example when a dictionary is reloaded, resolves the
+     * current token again; tokens read after that are resolved with the new map.
+     */
+    var tokenVectorMap = tokenVectorMap
+        set(value) {
+            field = value
+            currentToken?.let { currentIndex = value.indexOf(normalize(it)) }
+        }
+
+    /**
+     * The current token as it appears in the text, or null before the first token and after the last one.
+     */
+    var currentToken: String? = null
+        private set
+
+    /**
+     * Row of the current token in the token vector map, or -1 if it has none.
+     */
+    var currentIndex = -1
+        private set
+
+    /**
+     * Stream offset of the first character of the current token.
+     */
+    var currentBegin = 0L
+        private set
+
+    /**
+     * Stream offset just past the last character of the current token.
+     */
+    var currentEnd = 0L
+        private set
+
+    /**
+     * Number of tokens read so far.
+     */
+    var tokenCount = 0L
+        private set
+
+    /**
+     * Read more characters into the buffer, first dropping the characters that have been consumed.
+     *
+     * @return false if there is nothing left to read
+     */
+    private fun fill(): Boolean {
+        buffer.delete(0, searchFrom)
+        bufferStart += searchFrom
+        searchFrom = 0
+        val read = reader.read(readChunk)
+        if (read < 0) {
+            endOfInput = true
+            return false
+        }
+        buffer.append(readChunk, 0, read)
+        return true
+    }
+
+    /**
+     * Move to the next token.
+     *
+     * @return false if the end of the stream has been reached
+     */
+    fun advance(): Boolean {
+        while (true) {
+            matcher.reset(buffer)
+            matcher.region(searchFrom, buffer.length)
+            val found = matcher.find()
+            // A match (or failed search) that ran into the end of the buffer may change with more input
+            if (matcher.hitEnd() && !endOfInput) {
+                fill()
+                continue
+            }
+            if (!found) {
+                currentToken = null
+                currentIndex = -1
+                return false
+            }
+            val token = matcher.group()
+            currentToken = token
+            currentIndex = tokenVectorMap.indexOf(normalize(token))
+            currentBegin = bufferStart + matcher.start()
+            currentEnd = bufferStart + matcher.end()
+            searchFrom = if (matcher.end() > matcher.start()) matcher.end() else matcher.end() + 1
+            tokenCount++
+            return true
+        }
+    }
+
+    /**
+     * Returns the vector of the current token, or a zero vector if it is not in the map.
+     */
+    val currentVector: DoubleArray
+        get() = tokenVectorMap.get(currentIndex)
+
+    /**
+     * Advance over up to dest.size tokens, storing their rows in the token vector map (-1 for unknown tokens).
+     *
+     * @return the number of tokens read, less than dest.size only at the end of the stream
+     */
+    fun nextIndices(dest: IntArray): Int {
+        var n = 0
+        while (n < dest.size && advance()) {
+            dest[n++] = currentIndex
+        }
+        return n
+    }
+
+    /**
+     * Advance over up to [count] tokens and return their vectors as the rows of a matrix. Unknown tokens get zero
+     * rows. Fewer rows are returned at the end of the stream.
+     */
+    fun nextBatch(count: Int): Matrix {
+        val indices = IntArray(count)
+        val n = nextIndices(indices)
+        val vectors = tokenVectorMap.tokenVectorMatrix
+        val batch = Matrix(n, tokenVectorMap.dimension)
+        for (i in 0 until n) {
+            if (indices[i] >= 0) {
+                for (j in 0 until batch.ncols()) {
+                    batch[i, j] = vectors[indices[i], j]
+                }
+            }
+        }
+        return batch
+    }
+
+    override fun close() {
+        reader.close()
+    }
+
+    companion object {
+
+        /**
+         * Whitespace-separated words, as used by [TextWorld] by default.
+         */
+        @JvmField
+        val WORD_PATTERN: Pattern = Pattern.compile("\\S+")
+
+        private val PUNCTUATION = "\\p{Punct}".toRegex()
+
+        /**
+         * Convert a token to the form used in dictionaries built from text.
+         */
+        @JvmStatic
+        fun normalize(token: String) = token.lowercase().replace(PUNCTUATION, "")
+
+        /**
+         * Open a stream over a text file.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun open(file: File, tokenVectorMap: TokenVectorMap, charset: Charset = Charsets.UTF_8) =
+            TokenStream(Files.newBufferedReader(file.toPath(), charset), tokenVectorMap)
+    }
+}
@@ -1,7 +1,8 @@
 package org.simbrain.world.textworld
 
-import org.simbrain.util.projection.DataPoint
-import org.simbrain.util.projection.NTree
+import org.simbrain.util.projection.HnswIndex
+import org.simbrain.util.projection.KdTree
+import org.simbrain.util.projection.NearestNeighborIndex
 import smile.math.matrix.Matrix
 
 /**
@@ -12,7 +13,12 @@ class TokenVectorMap(
     /**
      * Matrix whose rows correspond to vector representations of corresponding tokens.
      */
-    var tokenVectorMatrix: Matrix
+    var tokenVectorMatrix: Matrix,
+    /**
+     * If true, closest words are found with an approximate (HNSW) index, which is much faster for large vocabularies
+     * of high-dimensional embeddings but can occasionally miss the closest word.
+     */
+    approximateLookup: Boolean = false
 ) {
 
     /**
@@ -23,12 +29,20 @@ class TokenVectorMap(
     val size = tokensMap.size
 
     /**
-     * N-Tree (optimized to find vectors near a given vector) associating vectors with tokens.
+     * Number of components of each token vector.
      */
-    private val treeMap = NTree(size).apply {
-        tokensMap.forEach { (token, i) ->
-            add(DataPoint(tokenVectorMatrix.row(i), token))
-        }
+    val dimension get() = tokenVectorMatrix.ncols()
+
+    /**
+     * Tokens by row of the token vector matrix.
+     */
+    private val tokenList = tokens.toList()
+
+    /**
+     * Index used to find vectors near a given vector. Point i of the index is row i of the token vector matrix.
+     */
+    private val index: NearestNeighborIndex = tokenVectorMatrix.toArray().let {
+        if (approximateLookup) HnswIndex(it) else KdTree(tokenVectorMatrix.ncols(), it)
     }
 
     init {
@@ -46,16 +60,27 @@ class TokenVectorMap(
             return tokenVectorMatrix.row(tokenIndex)
         } else {
             // Zero array if no matching token is found
-            return DoubleArray(size)
+            return DoubleArray(dimension)
         }
     }
 
+    /**
+     * Returns the row of the token vector matrix for a token, or -1 if there is none. Resolving a token once and
+     * then using [get] with the index avoids repeated string lookups.
+     */
+    fun indexOf(token: String) = tokensMap[token] ?: -1
+
+    /**
+     * Return the vector at a row of the token vector matrix, or a 0 vector if the index is -1.
+     */
+    fun get(index: Int): DoubleArray = if (index < 0) DoubleArray(dimension) else tokenVectorMatrix.row(index)
+
     /**
      * Finds the closest vector in terms of Euclidean distance, then returns the
      * String associated with it.
      */
     fun getClosestWord(key: DoubleArray): String {
         // TODO: Add a default minimum distance and if above that, return null or zero vector
-        return treeMap.getClosestPoint(DataPoint(key)).label
+        return tokenList[index.nearest(key)]
     }
 }
\ No newline at end of file
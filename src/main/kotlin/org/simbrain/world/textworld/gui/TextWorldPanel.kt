@@ -20,18 +20,20 @@ package org.simbrain.world.textworld.gui
 
 import org.simbrain.world.textworld.TextWorld
 import org.simbrain.world.textworld.TextWorldActions.getExtractDictionaryAction
+import org.simbrain.world.textworld.TextWorldActions.getStreamFileAction
 import org.simbrain.world.textworld.TextWorldActions.showDictionaryEditor
 import java.awt.BorderLayout
 import java.awt.Color
 import java.awt.Dimension
 import java.awt.FlowLayout
 import java.awt.event.*
+import java.util.*
+import java.util.concurrent.atomic.AtomicReference
 import javax.swing.*
 import javax.swing.event.DocumentEvent
 import javax.swing.event.DocumentListener
 import javax.swing.text.BadLocationException
 import javax.swing.text.DefaultHighlighter.DefaultHighlightPainter
-import javax.swing.text.Highlighter
 import javax.swing.text.JTextComponent
 
 /**
@@ -74,6 +76,18 @@ class TextWorldPanel private constructor(
      */
     private var openCloseToolBar: JToolBar? = null
 
+    /**
+     * Painter and tag of the current token highlight, which is moved rather than recreated as the token changes.
+     */
+    private var highlightPainter = MyHighlightPainter(world.highlightColor)
+
+    private var highlightTag: Any? = null
+
+    /**
+     * Latest token waiting to be highlighted on the Swing thread; null if no update is pending.
+     */
+    private val pendingItem = AtomicReference<Optional<TextWorld.TextItem>?>(null)
+
     /**
      * Initialize the panel with an open / close toolbar.
      *
@@ -99,6 +113,7 @@ class TextWorldPanel private constructor(
         val dictionaryToolBar = JToolBar()
         dictionaryToolBar.add(showDictionaryEditor(world))
         dictionaryToolBar.add(getExtractDictionaryAction(world))
+        dictionaryToolBar.add(getStreamFileAction(world))
         topToolbarPanel.add(dictionaryToolBar)
         add(topToolbarPanel, BorderLayout.NORTH)
         val bottomToolbarPanel = JPanel()
@@ -173,10 +188,18 @@ class TextWorldPanel private constructor(
         }
 
         world.events.onCurrentTokenChanged {
-            if (it!!.text.equals("", ignoreCase = true)) {
-                removeHighlights(textArea)
-            } else {
-                highlight(it.beginPosition, it.endPosition)
+            // Only the latest token is highlighted, so bursts of updates cost one repaint
+            val pending = pendingItem.getAndSet(Optional.ofNullable(it)) != null
+            if (!pending) {
+                SwingUtilities.invokeLater {
+                    val item = pendingItem.getAndSet(null)?.orElse(null)
+                    // Stream positions do not refer to the text area
+                    if (item == null || item.text.isEmpty() || world.isStreaming) {
+                        removeHighlights(textArea)
+                    } else {
+                        highlight(item.beginPosition.toInt(), item.endPosition.toInt())
+                    }
+                }
             }
         }
 
@@ -198,12 +221,15 @@ class TextWorldPanel private constructor(
      * @param end   offset of end of highlight
      */
     fun highlight(begin: Int, end: Int) {
-        // An instance of the private subclass of the default highlight painter
-        val myHighlightPainter: Highlighter.HighlightPainter = MyHighlightPainter(world.highlightColor)
-        removeHighlights(textArea)
         try {
-            val hilite = textArea.highlighter
-            hilite.addHighlight(begin, end, myHighlightPainter)
+            val tag = highlightTag
+            if (tag == null || highlightPainter.color != world.highlightColor) {
+                removeHighlights(textArea)
+                highlightPainter = MyHighlightPainter(world.highlightColor)
+                highlightTag = textArea.highlighter.addHighlight(begin, end, highlightPainter)
+            } else {
+                textArea.highlighter.changeHighlight(tag, begin, end)
+            }
         } catch (e: BadLocationException) {
             System.err.checkError()
         }
@@ -222,6 +248,7 @@ class TextWorldPanel private constructor(
                 hilite.removeHighlight(hilites[i])
             }
         }
+        highlightTag = null
     }
 
     /**
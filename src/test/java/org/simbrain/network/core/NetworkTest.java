@@ -12,6 +12,7 @@ import org.simbrain.util.XStreamUtils;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 public class NetworkTest {
@@ -105,6 +106,16 @@ public class NetworkTest {
         assertNotNull(fromXml.getNeuronGroupByLabel("ng2") );
     }
 
+    @Test
+    public void networkSavedWithoutUpdateLockUpdates() {
+        // Files saved before the update lock existed have no element for it
+        String xmlRep = XStreamUtils.getSimbrainXStream().toXML(net);
+        assertFalse(xmlRep.contains("updateLock"));
+        Network fromXml = (Network) XStreamUtils.getSimbrainXStream().fromXML(xmlRep);
+        fromXml.update();
+        assertEquals(1, fromXml.getIterations());
+    }
+
     @Test
     public void testSynapseCounts() {
 
@@ -0,0 +1,153 @@
+package org.simbrain.plot;
+
+import org.jfree.data.Range;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.junit.jupiter.api.Test;
+import org.simbrain.plot.rasterchart.RasterModel;
+import org.simbrain.plot.timeseries.TimeSeriesModel;
+import org.simbrain.plot.timeseries.TimeSeriesPlotComponent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XYRingBufferDatasetTest {
+
+    @Test
+    public void fullBufferOverwritesOldestPoints() {
+        XYRingBuffer buffer = new XYRingBuffer("test");
+        buffer.setMaximumItemCount(5);
+        for (int t = 0; t < 12; t++) {
+            buffer.add(t, t * 10);
+        }
+        assertEquals(5, buffer.getItemCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(7 + i, buffer.getX(i));
+            assertEquals((7 + i) * 10, buffer.getY(i));
+        }
+
+        // Shrinking keeps the newest points
+        buffer.setMaximumItemCount(2);
+        assertArrayEquals(new double[] {10, 11}, buffer.toArray()[0]);
+
+        buffer.removeBefore(11);
+        assertEquals(1, buffer.getItemCount());
+        assertEquals(11, buffer.getX(0));
+    }
+
+    @Test
+    public void decimationKeepsExtremesAndBounds() {
+        XYRingBuffer buffer = new XYRingBuffer("sine");
+        int n = 10_000;
+        for (int t = 0; t < n; t++) {
+            buffer.add(t, Math.sin(t / 100.0) + (t == 4321 ? 5 : 0));
+        }
+        XYRingBufferDataset dataset = new XYRingBufferDataset();
+        dataset.addSeries(buffer);
+        assertEquals(n, dataset.getItemCount(0));
+
+        dataset.setDecimationWidth(100);
+        int count = dataset.getItemCount(0);
+        assertTrue(count <= 200);
+        double max = Double.NEGATIVE_INFINITY;
+        double previousX = -1;
+        for (int i = 0; i < count; i++) {
+            assertTrue(dataset.getXValue(0, i) > previousX);
+            previousX = dataset.getXValue(0, i);
+            max = Math.max(max, dataset.getYValue(0, i));
+        }
+        assertEquals(buffer.getY(4321), max);
+
+        assertEquals(new Range(0, n - 1), dataset.getDomainBounds(false));
+        assertEquals(buffer.getY(4321), dataset.getRangeUpperBound(false));
+        assertEquals(-1, dataset.getRangeLowerBound(false), 1e-6);
+    }
+
+    @Test
+    public void itemsAreReadFromACopy() {
+        XYRingBuffer buffer = new XYRingBuffer("test");
+        buffer.setMaximumItemCount(4);
+        for (int t = 0; t < 4; t++) {
+            buffer.add(t, t);
+        }
+        XYRingBufferDataset dataset = new XYRingBufferDataset();
+        dataset.addSeries(buffer);
+        assertEquals(4, dataset.getItemCount(0));
+        // Points added while the chart iterates do not shift the items it reads
+        buffer.add(4, 4);
+        buffer.removeBefore(3);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, dataset.getXValue(0, i));
+        }
+        assertEquals(2, dataset.getItemCount(0));
+        assertEquals(3, dataset.getXValue(0, 0));
+    }
+
+    @Test
+    public void changesAreCoalesced() {
+        XYRingBufferDataset dataset = new XYRingBufferDataset(60_000);
+        XYRingBuffer buffer = new XYRingBuffer("test");
+        dataset.addSeries(buffer);
+        AtomicInteger events = new AtomicInteger();
+        dataset.addChangeListener(e -> events.incrementAndGet());
+        for (int t = 0; t < 100; t++) {
+            buffer.add(t, t);
+            dataset.seriesChanged();
+        }
+        assertEquals(0, events.get());
+        dataset.flush();
+        assertEquals(1, events.get());
+        dataset.flush();
+        assertEquals(1, events.get());
+    }
+
+    @Test
+    public void timeSeriesRoundTrip() {
+        AtomicInteger time = new AtomicInteger();
+        TimeSeriesModel model = new TimeSeriesModel(time::get);
+        model.setFixedWidth(true);
+        model.setWindowSize(10);
+        for (int t = 0; t < 25; t++) {
+            time.set(t);
+            model.getTimeSeriesList().get(1).setValue(t * 2);
+        }
+        assertEquals(10, model.getDataset().getItemCount(1));
+
+        String xml = TimeSeriesPlotComponent.getTimeSeriesXStream().toXML(model);
+        TimeSeriesModel copy = (TimeSeriesModel) TimeSeriesPlotComponent.getTimeSeriesXStream().fromXML(xml);
+        XYRingBuffer series = copy.getTimeSeriesList().get(1).getSeries();
+        assertEquals(10, series.getItemCount());
+        assertEquals(15, series.getX(0));
+        assertEquals(48, series.getY(9));
+        assertEquals(10, series.getMaximumItemCount());
+    }
+
+    @Test
+    public void rasterPlotsSavedWithXYSeriesOpen() {
+        XYSeriesCollection oldDataset = new XYSeriesCollection();
+        XYSeries spikes = new XYSeries(1);
+        spikes.add(1, 3.0);
+        spikes.add(2, null);
+        spikes.add(2, 5.0);
+        oldDataset.addSeries(spikes);
+        String datasetXml = RasterModel.getXStream().toXML(oldDataset)
+                .replaceFirst("^<org.jfree.data.xy.XYSeriesCollection", "<dataset")
+                .replaceFirst("</org.jfree.data.xy.XYSeriesCollection>$", "</dataset>")
+                // Saved series also held their listeners
+                .replaceFirst("</key>", "</key><listeners serialization=\"custom\"><javax.swing.event.EventListenerList/>"
+                        + "</listeners>");
+        // A raster model as it was saved before ring buffers: the data in a dataset element, no series list
+        String xml = RasterModel.getXStream().toXML(new RasterModel(() -> 0))
+                .replaceFirst("(?s)<seriesList>.*</seriesList>", datasetXml);
+
+        RasterModel model = (RasterModel) RasterModel.getXStream().fromXML(xml);
+        assertEquals(1, model.getDataset().getSeriesCount());
+        XYRingBuffer series = model.getDataset().getSeries(0);
+        assertEquals("1", series.getDescription());
+        assertArrayEquals(new double[] {1, 2, 2}, series.toArray()[0]);
+        assertArrayEquals(new double[] {3, Double.NaN, 5}, series.toArray()[1]);
+        // Saved again with ring buffers
+        assertFalse(RasterModel.getXStream().toXML(model).contains("<dataset"));
+    }
+}
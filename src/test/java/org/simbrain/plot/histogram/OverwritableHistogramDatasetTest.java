@@ -0,0 +1,99 @@
+package org.simbrain.plot.histogram;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OverwritableHistogramDatasetTest {
+
+    /**
+     * Count values into bins from scratch, using the dataset's edges.
+     */
+    private static int[] recount(OverwritableHistogramDataset dataset, double[] values) {
+        int bins = dataset.getItemCount(0);
+        int[] counts = new int[bins];
+        for (double value : values) {
+            for (int i = 0; i < bins; i++) {
+                double start = dataset.getStartX(0, i).doubleValue();
+                double end = dataset.getEndX(0, i).doubleValue();
+                if ((value >= start && value < end) || (i == bins - 1 && value == end)) {
+                    counts[i]++;
+                    break;
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    public void incrementalCountsMatchFullCounts() {
+        Random random = new Random(1);
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian();
+        }
+        OverwritableHistogramDataset dataset = new OverwritableHistogramDataset();
+        dataset.addSeries("a", values, 20);
+        for (int step = 0; step < 50; step++) {
+            for (int j = 0; j < 30; j++) {
+                values[random.nextInt(values.length)] = random.nextGaussian();
+            }
+            dataset.overwriteSeries("a", values, 20);
+            int[] expected = recount(dataset, values);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], dataset.getY(0, i).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void noisyDriftingDataRarelyRebins() {
+        Random random = new Random(2);
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian();
+        }
+        OverwritableHistogramDataset dataset = new OverwritableHistogramDataset();
+        dataset.addSeries("a", values, 20);
+        int rebins = 0;
+        for (int step = 0; step < 500; step++) {
+            // Fresh noise around a slowly moving mean
+            double mean = step * 0.002;
+            for (int j = 0; j < 20; j++) {
+                values[random.nextInt(values.length)] = mean + random.nextGaussian();
+            }
+            double lower = dataset.getStartX(0, 0).doubleValue();
+            double upper = dataset.getEndX(0, 19).doubleValue();
+            dataset.overwriteSeries("a", values, 20);
+            if (lower != dataset.getStartX(0, 0).doubleValue() || upper != dataset.getEndX(0, 19).doubleValue()) {
+                rebins++;
+            }
+        }
+        // Without headroom nearly every new extreme rebins, about one step in six
+        assertTrue(rebins <= 25, rebins + " rebins");
+    }
+
+    @Test
+    public void valuesOutsideTheEdgesCauseARebin() {
+        OverwritableHistogramDataset dataset = new OverwritableHistogramDataset();
+        double[] values = {0, 1, 2, 3, 4};
+        dataset.addSeries("a", values, 4);
+        // The edges leave a tenth of the data's range on either side
+        assertEquals(-0.4, dataset.getStartX(0, 0).doubleValue(), 1e-9);
+        assertEquals(4.4, dataset.getEndX(0, 3).doubleValue(), 1e-9);
+
+        values[4] = 8;
+        dataset.addSeries("a", values, 4);
+        assertEquals(8.8, dataset.getEndX(0, 3).doubleValue(), 1e-9);
+        assertArrayEquals(new int[] {2, 2, 0, 1}, recount(dataset, values));
+        assertEquals(2, dataset.getY(0, 0).intValue());
+        // The caller's array is not sorted or otherwise changed
+        assertArrayEquals(new double[] {0, 1, 2, 3, 8}, values);
+
+        // Data shrinking to a small part of the range also rebins
+        dataset.addSeries("a", new double[] {0, 0.5, 1, 0.25, 0.75}, 4);
+        assertEquals(1.1, dataset.getEndX(0, 3).doubleValue(), 1e-9);
+    }
+}
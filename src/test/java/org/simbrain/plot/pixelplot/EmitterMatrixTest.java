@@ -0,0 +1,29 @@
+package org.simbrain.plot.pixelplot;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmitterMatrixTest {
+
+    @Test
+    public void onlyChangedPixelsAreMarkedDirty() {
+        EmitterMatrix emitter = new EmitterMatrix();
+        emitter.setSize(4, 3);
+        emitter.takeDirtyRegion();
+
+        double[] values = new double[12];
+        values[5] = 1;
+        values[10] = 0.5;
+        emitter.setBrightness(values);
+        assertEquals(new Rectangle(1, 1, 2, 2), emitter.takeDirtyRegion());
+        assertEquals(0xFFFFFF, emitter.getImage().getRGB(1, 1) & 0xFFFFFF);
+        assertEquals(0x7F7F7F, emitter.getImage().getRGB(2, 2) & 0xFFFFFF);
+
+        // Same values again: nothing to repaint
+        emitter.setBrightness(values);
+        assertNull(emitter.takeDirtyRegion());
+    }
+}
@@ -3,7 +3,9 @@ package org.simbrain.util.projection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class DatasetTest {
 
@@ -34,6 +36,129 @@ public class DatasetTest {
         assertEquals(0.0, data.getLastAddedPoint().get(1),0 );
     }
 
+    @Test
+    public void nearestNeighborsExcludeQueryPoint() {
+        data.addPoint(new DataPoint(new double[]{5, 0}));
+        data.addPoint(new DataPoint(new double[]{2, 0}));
+        DataPoint last = new DataPoint(new double[]{3, 0});
+        data.addPoint(last);
+        assertArrayEquals(new int[]{2, 1}, data.getKNearestNeighbors(2, last));
+        assertEquals(0, data.getClosestIndex(new DataPoint(new double[]{0, 0})));
+    }
+
+    @Test
+    public void nearestNeighborsHoldOnlyPointsFound() {
+        data.addPoint(new DataPoint(new double[]{6, 0}));
+        DataPoint last = new DataPoint(new double[]{3, 0});
+        data.addPoint(last);
+        // Every other point, with no padding
+        assertArrayEquals(new int[]{0, 1}, data.getKNearestNeighbors(2, last));
+        // A copy of a point is not the point itself, so it is found
+        assertArrayEquals(new int[]{2, 0}, data.getKNearestNeighbors(2, new DataPoint(new double[]{3, 0})));
+    }
+
+    @Test
+    public void toleranceAfterSetPoint() {
+        data.setPoint(0, new DataPoint(new double[]{10, 10}));
+        // The old location is free again
+        assertNull(data.addPoint(new DataPoint(new double[]{1, 0}), .5));
+        assertNotNull(data.addPoint(new DataPoint(new double[]{10, 10.1}), .5));
+        assertEquals(2, data.getNumPoints());
+    }
+
+    /**
+     * Checks the distance statistics against a brute force computation.
+     */
+    private static void assertDistanceStatistics(Dataset dataset) {
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = 0;
+        for (int i = 0; i < dataset.getNumPoints(); i++) {
+            for (int j = 0; j < i; j++) {
+                double d = dataset.getDistance(dataset.getPoint(i), dataset.getPoint(j));
+                assertEquals(d, dataset.getDistance(i, j), 1e-6);
+                sum += d;
+                min = Math.min(min, d);
+                max = Math.max(max, d);
+            }
+        }
+        assertEquals(sum, dataset.getSumDistances(), 1e-6 * Math.max(1, sum));
+        assertEquals(min, dataset.getMinimumDistance(), 1e-6);
+        assertEquals(max, dataset.getMaximumDistance(), 1e-6);
+    }
+
+    private static Dataset randomDataset(int numPoints) {
+        Random random = new Random(7);
+        Dataset dataset = new Dataset(3);
+        for (int i = 0; i < numPoints; i++) {
+            dataset.addPoint(new DataPoint(new double[]{random.nextDouble(), random.nextDouble(),
+                    random.nextDouble()}));
+        }
+        return dataset;
+    }
+
+    @Test
+    public void distancesFollowAppendsAndChanges() {
+        Dataset dataset = randomDataset(50);
+        assertDistanceStatistics(dataset);
+        dataset.addPoint(new DataPoint(new double[]{5, 5, 5}));
+        assertDistanceStatistics(dataset);
+        // Move the point that defines the maximum
+        dataset.getPoint(50).setData(new double[]{.5, .5, .5});
+        assertDistanceStatistics(dataset);
+        dataset.setPoint(3, new DataPoint(new double[]{-2, 0, 0}));
+        assertDistanceStatistics(dataset);
+    }
+
+    @Test
+    public void packedDistancesMatchSquareMatrix() {
+        Dataset dataset = randomDataset(20);
+        double[][] square = dataset.getDistances();
+        double[] packed = dataset.getPackedDistances(null);
+        assertEquals(190, packed.length);
+        assertEquals(square[7][3], packed[Dataset.getPackedIndex(7, 3)]);
+        assertEquals(square[3][7], packed[Dataset.getPackedIndex(3, 7)]);
+        assertSame(packed, dataset.getPackedDistances(packed));
+    }
+
+    @Test
+    public void distancesBeyondMemoryCap() {
+        Dataset dataset = randomDataset(300);
+        dataset.setDistanceMemoryCap(1000);
+        assertDistanceStatistics(dataset);
+        dataset.getPoint(0).setData(new double[]{9, 9, 9});
+        assertDistanceStatistics(dataset);
+    }
+
+    @Test
+    public void singlePrecisionDistances() {
+        Dataset dataset = randomDataset(100);
+        dataset.setSinglePrecisionDistances(true);
+        assertDistanceStatistics(dataset);
+    }
+
+    @Test
+    public void largeHighDimensionalDatasetsFindNeighbors() {
+        Random random = new Random(8);
+        Dataset dataset = new Dataset(20);
+        for (int i = 0; i < 1500; i++) {
+            double[] vector = new double[20];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = random.nextGaussian();
+            }
+            dataset.addPoint(new DataPoint(vector));
+        }
+        DataPoint point = dataset.getPoint(700);
+        assertEquals(700, dataset.getClosestIndex(new DataPoint(point.getVector().clone())));
+        dataset.setPoint(700, new DataPoint(new double[20]));
+        assertEquals(700, dataset.getClosestIndex(new DataPoint(new double[20])));
+        // Adding keeps the index up to date
+        double[] far = new double[20];
+        far[0] = 100;
+        dataset.addPoint(new DataPoint(far));
+        assertEquals(1500, dataset.getClosestIndex(new DataPoint(far.clone())));
+    }
+
     // @Test
     // public void testND4JArray() {
     //     data = new Dataset(3);
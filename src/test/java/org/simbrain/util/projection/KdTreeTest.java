@@ -0,0 +1,148 @@
+package org.simbrain.util.projection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KdTreeTest {
+
+    private static double[][] randomPoints(int n, int dims, long seed) {
+        Random random = new Random(seed);
+        double[][] points = new double[n][dims];
+        for (double[] point : points) {
+            for (int j = 0; j < dims; j++) {
+                // Coarse values so that ties occur
+                point[j] = random.nextInt(20);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Distances to the k closest points by brute force.
+     */
+    private static double[] bruteForce(double[][] points, double[] query, int k) {
+        return Arrays.stream(points)
+                .mapToDouble(p -> distance(p, query))
+                .sorted()
+                .limit(k)
+                .toArray();
+    }
+
+    private static double distance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (a[i] - b[i]) * (a[i] - b[i]);
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static double[] distances(double[][] points, int[] found, double[] query) {
+        return Arrays.stream(found).mapToDouble(i -> distance(points[i], query)).toArray();
+    }
+
+    @Test
+    public void bulkBuildMatchesBruteForce() {
+        double[][] points = randomPoints(2000, 3, 1);
+        KdTree tree = new KdTree(points);
+        for (double[] query : randomPoints(50, 3, 2)) {
+            int[] found = tree.nearest(query, 7);
+            assertEquals(7, found.length);
+            assertArrayEquals(bruteForce(points, query, 7), distances(points, found, query), 1e-12);
+        }
+    }
+
+    @Test
+    public void incrementalAddsMatchBruteForce() {
+        double[][] points = randomPoints(1000, 4, 3);
+        // Sorted input makes naive insertion degenerate, which should trigger rebuilds
+        Arrays.sort(points, Comparator.comparingDouble(p -> p[0]));
+        KdTree tree = new KdTree(4);
+        for (double[] point : points) {
+            tree.add(point);
+        }
+        assertEquals(1000, tree.size());
+        for (double[] query : randomPoints(50, 4, 4)) {
+            int[] found = tree.nearest(query, 5);
+            assertArrayEquals(bruteForce(points, query, 5), distances(points, found, query), 1e-12);
+        }
+    }
+
+    @Test
+    public void excludedPointIsSkipped() {
+        KdTree tree = new KdTree(new double[][]{{0, 0}, {1, 0}, {3, 0}});
+        assertArrayEquals(new int[]{0, 1}, tree.nearest(new double[]{0, 0}, 2));
+        assertArrayEquals(new int[]{1, 2}, tree.nearest(new double[]{0, 0}, 2, 0));
+        assertEquals(3, tree.nearest(new double[]{0, 0}, 10).length);
+    }
+
+    @Test
+    public void setMovesPoint() {
+        KdTree tree = new KdTree(new double[][]{{0, 0}, {1, 0}, {3, 0}});
+        tree.set(2, new double[]{-1, 0});
+        assertEquals(2, tree.nearest(new double[]{-2, 0}));
+        assertEquals(-1, tree.findWithin(new double[]{3, 0}, .5));
+        assertEquals(1, tree.findWithin(new double[]{1.2, 0}, .5));
+    }
+
+    @Test
+    public void hnswFindsMostTrueNeighbors() {
+        int dims = 50;
+        Random random = new Random(5);
+        double[][] points = new double[3000][dims];
+        for (double[] point : points) {
+            for (int j = 0; j < dims; j++) {
+                point[j] = random.nextGaussian();
+            }
+        }
+        HnswIndex hnsw = new HnswIndex(points);
+        KdTree exact = new KdTree(points);
+        int hits = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            double[] query = points[random.nextInt(points.length)].clone();
+            query[0] += .1;
+            int[] truth = exact.nearest(query, 10);
+            int[] approx = hnsw.nearest(query, 10);
+            hits += (int) IntStream.of(approx).filter(i -> IntStream.of(truth).anyMatch(t -> t == i)).count();
+        }
+        assertTrue(hits > queries * 10 * .9, "recall too low: " + hits);
+    }
+
+    @Test
+    public void hnswSetMovesPoints() {
+        int dims = 20;
+        Random random = new Random(6);
+        double[][] points = new double[2000][dims];
+        for (double[] point : points) {
+            for (int j = 0; j < dims; j++) {
+                point[j] = random.nextGaussian();
+            }
+        }
+        HnswIndex hnsw = new HnswIndex(points);
+        // Move a tenth of the points, including whichever is the entry point
+        for (int i = 0; i < points.length; i += 10) {
+            for (int j = 0; j < dims; j++) {
+                points[i][j] = random.nextGaussian();
+            }
+            hnsw.set(i, points[i]);
+            assertEquals(i, hnsw.nearest(points[i]));
+        }
+        KdTree exact = new KdTree(points);
+        int hits = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            double[] query = points[random.nextInt(points.length)].clone();
+            query[0] += .1;
+            int[] truth = exact.nearest(query, 10);
+            int[] approx = hnsw.nearest(query, 10);
+            hits += (int) IntStream.of(approx).filter(i -> IntStream.of(truth).anyMatch(t -> t == i)).count();
+        }
+        assertTrue(hits > queries * 10 * .9, "recall too low: " + hits);
+    }
+}
@@ -0,0 +1,64 @@
+package org.simbrain.util.projection;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.util.math.SimbrainMath;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectIncrementalPCATest {
+
+    @Test
+    public void smallDatasetsMatchExactPCA() {
+        Projector proj = new Projector(3);
+        proj.setUseColorManager(false);
+        proj.setProjectionMethod("Incremental PCA");
+        assertTrue(proj.getProjectionMethod() instanceof ProjectIncrementalPCA);
+
+        proj.addDatapoint(new DataPoint(new double[]{-1, -1, 1}));
+        proj.addDatapoint(new DataPoint(new double[]{-2, -1, 2}));
+        proj.addDatapoint(new DataPoint(new double[]{-3, -2, 1}));
+
+        double[][] downstairs = proj.getDownstairs().getDoubleArray();
+        double[] interpointDistances = {
+                SimbrainMath.distance(downstairs[0], downstairs[1]),
+                SimbrainMath.distance(downstairs[1], downstairs[2]),
+                SimbrainMath.distance(downstairs[0], downstairs[2])};
+        Arrays.sort(interpointDistances);
+        assertEquals(1.4142135623730954, interpointDistances[0], 0.01);
+        assertEquals(1.7320508075688776, interpointDistances[1], 0.01);
+        assertEquals(2.2360679774997894, interpointDistances[2], 0.01);
+    }
+
+    @Test
+    public void componentsTrackStreamingData() {
+        Projector proj = new Projector(5);
+        proj.setUseColorManager(false);
+        proj.setTolerance(-1);
+        proj.setProjectionMethod("Incremental PCA");
+        ProjectIncrementalPCA pca = (ProjectIncrementalPCA) proj.getProjectionMethod();
+        pca.setReprojectionInterval(500);
+
+        // Most variance along dimension 2, then dimension 4
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            double[] x = new double[5];
+            for (int j = 0; j < 5; j++) {
+                x[j] = random.nextGaussian() * .1;
+            }
+            x[2] += random.nextGaussian() * 5;
+            x[4] += random.nextGaussian() * 2;
+            proj.addDatapoint(new DataPoint(x));
+        }
+        assertEquals(2000, proj.getNumPoints());
+        assertEquals(0.99, Math.abs(pca.getComponent(0)[2]), 0.02);
+        assertEquals(0.99, Math.abs(pca.getComponent(1)[4]), 0.02);
+
+        // Incrementally placed points lie along the current components
+        DataPoint last = proj.getUpstairs().getPoint(1999);
+        double[] lowD = proj.getDownstairs().getPoint(1999).getVector();
+        assertEquals(Math.abs(last.get(2)), Math.abs(lowD[0]), .5);
+    }
+}
@@ -0,0 +1,84 @@
+package org.simbrain.util.projection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProjectSampledSammonTest {
+
+    private Projector createProjector(int numPoints) {
+        Projector proj = new Projector(4);
+        proj.setUseColorManager(false);
+        proj.setTolerance(-1);
+        proj.setProjectionMethod("Incremental PCA");
+        // Two well separated clusters
+        addPoints(proj, numPoints, i -> i % 2);
+        proj.setProjectionMethod("Sampled Sammon Map");
+        return proj;
+    }
+
+    private void addPoints(Projector proj, int numPoints, IntUnaryOperator cluster) {
+        Random random = new Random(3);
+        for (int i = 0; i < numPoints; i++) {
+            double[] x = new double[4];
+            double offset = 10 * cluster.applyAsInt(i);
+            for (int j = 0; j < 4; j++) {
+                x[j] = offset + random.nextGaussian();
+            }
+            proj.addDatapoint(new DataPoint(x));
+        }
+    }
+
+    @Test
+    public void stressDecreases() {
+        Projector proj = createProjector(2000);
+        ProjectSampledSammon sammon = (ProjectSampledSammon) proj.getProjectionMethod();
+        proj.randomize(100);
+        proj.iterate();
+        double initialError = sammon.getError();
+        for (int i = 0; i < 100; i++) {
+            proj.iterate();
+        }
+        assertTrue(sammon.getError() < initialError / 2,
+                "error " + sammon.getError() + " not below half of " + initialError);
+    }
+
+    @Test
+    public void neighborsStayInOwnCluster() {
+        Projector proj = createProjector(400);
+        ProjectSampledSammon sammon = (ProjectSampledSammon) proj.getProjectionMethod();
+        for (int i = 0; i < 50; i++) {
+            proj.iterate();
+        }
+        for (int i = 0; i < 400; i++) {
+            for (int j : sammon.getNeighbors(i)) {
+                assertTrue(j >= 0);
+                assertEquals(i % 2, j % 2);
+            }
+        }
+    }
+
+    @Test
+    public void neighborsAreFoundAgainWhenPointsAreReplaced() {
+        Projector proj = createProjector(400);
+        ProjectSampledSammon sammon = (ProjectSampledSammon) proj.getProjectionMethod();
+        for (int i = 0; i < 20; i++) {
+            proj.iterate();
+        }
+        // Same number of points, clustered by the first and second half
+        proj.reset();
+        addPoints(proj, 400, i -> i < 200 ? 0 : 1);
+        for (int i = 0; i < 50; i++) {
+            proj.iterate();
+        }
+        for (int i = 0; i < 400; i++) {
+            for (int j : sammon.getNeighbors(i)) {
+                assertTrue(j >= 0);
+                assertEquals(i < 200, j < 200);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.simbrain.world.imageworld;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageAlbumTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Write images whose top left pixel encodes their index.
+     */
+    private File[] writeImages(int count) throws IOException {
+        File[] files = new File[count];
+        for (int i = 0; i < count; i++) {
+            BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, i);
+            files[i] = directory.resolve("frame" + i + ".png").toFile();
+            ImageIO.write(image, "png", files[i]);
+        }
+        return files;
+    }
+
+    private static int frameNumber(BufferedImage image) {
+        return image.getRGB(0, 0) & 0xFFFFFF;
+    }
+
+    @Test
+    public void framesAreDecodedOnDemand() throws IOException {
+        ImageAlbum album = new ImageAlbum();
+        album.setCacheSize(3);
+        album.setPrefetchCount(2);
+        album.loadImages(writeImages(10));
+        assertEquals(10, album.getNumFrames());
+        assertEquals(0, frameNumber(album.getCurrentImage()));
+        for (int i = 1; i < 25; i++) {
+            album.nextFrame();
+            assertEquals(i % 10, frameNumber(album.getCurrentImage()));
+        }
+        album.previousFrame();
+        assertEquals(3, frameNumber(album.getCurrentImage()));
+        album.setFrame(7);
+        assertEquals(7, album.getFrameIndex());
+        assertEquals(7, frameNumber(album.getCurrentImage()));
+    }
+
+    @Test
+    public void addedImagesFollowFileFrames() throws IOException {
+        ImageAlbum album = new ImageAlbum();
+        album.loadImages(writeImages(2));
+        BufferedImage added = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+        added.setRGB(0, 0, 42);
+        album.addImage(added);
+        assertEquals(3, album.getNumFrames());
+        album.nextFrame();
+        assertEquals(0, frameNumber(album.getCurrentImage()));
+        album.setFrame(2);
+        assertEquals(42, frameNumber(album.getCurrentImage()));
+    }
+
+    @Test
+    public void albumsAreSavedByReference() throws IOException {
+        ImageWorld world = new ImageWorld();
+        File[] files = writeImages(3);
+        world.loadImages(files);
+        world.nextFrame();
+        String xml = ImageWorldComponent.getXStream().toXML(world);
+        assertTrue(xml.contains(files[2].getAbsolutePath()));
+
+        ImageWorld copy = (ImageWorld) ImageWorldComponent.getXStream().fromXML(xml);
+        assertEquals(3, copy.getNumImages());
+        copy.nextFrame();
+        assertEquals(2, frameNumber(copy.getCurrentImage()));
+    }
+}
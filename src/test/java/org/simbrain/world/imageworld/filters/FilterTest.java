@@ -0,0 +1,81 @@
+package org.simbrain.world.imageworld.filters;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.world.imageworld.ImageAlbum;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FilterTest {
+
+    private static BufferedImage randomImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Colors as the filter computed them before the fast path: new images for
+     * each step and a getRGB call per pixel.
+     */
+    private static int[] referenceColors(BufferedImage source, ImageOperation<?> op, int width, int height) {
+        BufferedImageOp scaleOp = FilterUtils.createScaleOp(
+                (width - 0.1f) / source.getWidth(), (height - 0.1f) / source.getHeight(), true);
+        BufferedImage image = op.getOp().filter(scaleOp.filter(source, null), null);
+        int[] colors = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                colors[y * width + x] = image.getRGB(x, y);
+            }
+        }
+        return colors;
+    }
+
+    @Test
+    public void colorsMatchReference() {
+        BufferedImage source = randomImage(60, 40, BufferedImage.TYPE_INT_RGB);
+        ImageAlbum album = new ImageAlbum("test", source);
+        for (ImageOperation<?> op : new ImageOperation<?>[]{new IdentityOp(), new ThresholdOp(.4), new GrayOp()}) {
+            Filter filter = new Filter("test", album, op, 25, 15);
+            int[] expected = referenceColors(source, op, 25, 15);
+            assertArrayEquals(expected, filter.getRGBColor());
+            // A second update gives the same result without changing the image handed out before
+            BufferedImage first = (BufferedImage) filter.getFilteredImage();
+            int[] firstPixels = first.getRGB(0, 0, 25, 15, null, 0, 25);
+            filter.updateFilter();
+            assertArrayEquals(expected, filter.getRGBColor());
+            assertNotSame(first, filter.getFilteredImage());
+            assertArrayEquals(firstPixels, first.getRGB(0, 0, 25, 15, null, 0, 25));
+        }
+    }
+
+    @Test
+    public void channelsAreComputedOnDemand() {
+        BufferedImage source = randomImage(300, 300, BufferedImage.TYPE_3BYTE_BGR);
+        ImageAlbum album = new ImageAlbum("test", source);
+        Filter filter = new Filter("test", album, new IdentityOp(), 300, 250);
+        int[] colors = filter.getRGBColor();
+        assertArrayEquals(referenceColors(source, new IdentityOp(), 300, 250), colors);
+        double[] brightness = filter.getBrightness();
+        double[] flattened = filter.getFlattenedRGB();
+        int n = colors.length;
+        for (int i = 0; i < n; i += 97) {
+            double red = ((colors[i] >>> 16) & 0xFF) / 255.0;
+            double green = ((colors[i] >>> 8) & 0xFF) / 255.0;
+            double blue = (colors[i] & 0xFF) / 255.0;
+            assertEquals(red * 0.2126 + green * 0.7152 + blue * 0.0722, brightness[i], 1e-12);
+            assertEquals(brightness[i], flattened[i]);
+            assertEquals(red, flattened[n + i]);
+            assertEquals(green, flattened[2 * n + i]);
+            assertEquals(blue, flattened[3 * n + i]);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package org.simbrain.network.connections
 
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.util.point
+import java.util.*
+import kotlin.math.abs
 
 class FixedDegreeTest {
 
@@ -71,4 +74,23 @@ class FixedDegreeTest {
         assertEquals(2, n1.fanIn.size)
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `each of many neurons gets the fixed degree`() {
+        val neurons = List(700) { Neuron(net).apply { location = point(it * 10, 0) } }
+        val syns = connectFixedDegree(neurons, neurons, 5, random = SplittableRandom(1))
+        assertEquals(3500, syns.size)
+        assertTrue(neurons.all { it.fanIn.size == 5 })
+        assertTrue(syns.none { it.source == it.target })
+    }
+
+    @Test
+    fun `fixed degree in a radius only connects neighbors`() {
+        val neurons = List(700) { Neuron(net).apply { location = point(it * 10, 0) } }
+        val syns = connectFixedDegreeInRadius(neurons, neurons, 3, 25.0, Direction.OUT, random = SplittableRandom(1))
+        // Ends of the line have only two neighbors within 25 pixels
+        assertEquals(698 * 3 + 2 * 2, syns.size)
+        assertTrue(syns.all { abs(it.source.x - it.target.x) in 1.0..20.0 })
+    }
+
+}
+
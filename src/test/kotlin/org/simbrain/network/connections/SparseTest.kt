@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
+import java.util.*
 
 class SparseTest {
 
@@ -78,4 +79,51 @@ class SparseTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `equalized connections give every source the same number of targets`() {
+        sparse.connectionDensity = .5
+        sparse.equalizeEfferents = true
+        val neurons = net.freeNeurons.toList()
+        val syns = sparse.connectNeurons(net, neurons, neurons)
+        // 9 possible targets per source, rounded up
+        assertEquals(50, syns.size)
+        assertTrue(neurons.all { it.fanOut.size == 5 })
+        assertTrue(syns.none { it.source == it.target })
+
+        // Lowering density removes only the excess synapses
+        sparse.connectionDensity = .2
+        sparse.connectNeurons(net, neurons, neurons)
+        assertTrue(neurons.all { it.fanOut.size == 2 })
+        assertTrue(net.freeSynapses.all { it in syns })
+    }
+
+    @Test
+    fun `large sparse networks get the exact number of new connections`() {
+        val source = List(1000) { Neuron(net) }
+        val target = List(800) { Neuron(net) }
+        val first = connectSparse(source, target, .01, random = SplittableRandom(1)) as ConnectionsResult.Add
+        assertEquals(8000, first.connectionsToAdd.size)
+        net.addNetworkModels(first.connectionsToAdd)
+
+        val second = connectSparse(source, target, .015, random = SplittableRandom(2)) as ConnectionsResult.Add
+        assertEquals(4000, second.connectionsToAdd.size)
+        net.addNetworkModels(second.connectionsToAdd)
+        // New connections never duplicate existing ones
+        assertEquals(12000, source.sumOf { it.fanOut.size })
+
+        val third = connectSparse(source, target, .005, random = SplittableRandom(3)) as ConnectionsResult.Remove
+        assertEquals(8000, third.connectionsToRemove.toSet().size)
+    }
+
+    @Test
+    fun `sparse connections depend only on the random seed`() {
+        // Synapses are attached to their neurons when created, so each run gets its own neurons
+        val pairs = { seed: Long ->
+            val neurons = List(600) { Neuron(net) }
+            (connectSparse(neurons, neurons, .05, random = SplittableRandom(seed)) as ConnectionsResult.Add)
+                .connectionsToAdd.map { neurons.indexOf(it.source) to neurons.indexOf(it.target) }
+        }
+        assertEquals(pairs(4), pairs(4))
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.simbrain.network.connections
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.util.SimnetUtils.getEuclideanDist
+import org.simbrain.util.SimbrainConstants.Polarity
+import org.simbrain.util.decayfunctions.StepDecayFunction
+import org.simbrain.util.point
+import java.util.*
+
+class SpatialConnectionsTest {
+
+    var net = Network()
+    lateinit var neurons: List<Neuron>
+
+    @BeforeEach
+    fun setUp() {
+        // More neurons than one parallel chunk, scattered over a 1000 x 1000 square
+        val random = Random(1)
+        neurons = List(600) {
+            Neuron(net).apply { location = point(random.nextDouble() * 1000, random.nextDouble() * 1000) }
+        }
+        net.addNetworkModels(neurons)
+    }
+
+    private fun EdgeList.pairs() = (0 until size).map { source(it) to target(it) }
+
+    @Test
+    fun `spatial index finds the same neurons as checking every neuron`() {
+        val index = SpatialIndex(neurons, 40.0)
+        for (radius in listOf(0.0, 25.0, 40.0, 130.0, Double.POSITIVE_INFINITY)) {
+            for (center in neurons.take(20)) {
+                val found = mutableListOf<Int>()
+                index.forEachWithin(center.x, center.y, radius) { i, _ -> found.add(i) }
+                val expected = neurons.indices.filter { getEuclideanDist(center, neurons[it]) <= radius }
+                assertEquals(expected, found.sorted())
+            }
+        }
+    }
+
+    @Test
+    fun `connections depend only on the random seed`() {
+        val first = radialNoPolarityEdges(neurons, neurons, 0.5, 50.0, random = SplittableRandom(7))
+        val second = radialNoPolarityEdges(neurons, neurons, 0.5, 50.0, random = SplittableRandom(7))
+        assertTrue(first.size > 0)
+        assertEquals(first.pairs(), second.pairs())
+    }
+
+    @Test
+    fun `no connections beyond the cutoff distance`() {
+        val epsilon = 1e-3
+        val edges = radialNoPolarityEdges(neurons, neurons, 1.0, 50.0, epsilon, SplittableRandom(3))
+        val cutoff = gaussianCutoff(1.0, 50.0, epsilon)
+        edges.pairs().forEach { (i, j) ->
+            assertTrue(i != j)
+            assertTrue(getEuclideanDist(neurons[i], neurons[j]) <= cutoff)
+        }
+    }
+
+    @Test
+    fun `polarized connections from inhibitory neurons are negative`() {
+        neurons.forEachIndexed { i, n -> n.polarity = if (i % 2 == 0) Polarity.EXCITATORY else Polarity.INHIBITORY }
+        val syns = connectRadialPolarized(neurons, neurons, lambda = 80.0, random = SplittableRandom(5))
+        assertTrue(syns.isNotEmpty())
+        syns.forEach {
+            val expected = if (it.source.polarity == Polarity.INHIBITORY) -1.0 else 1.0
+            assertEquals(expected, it.strength)
+        }
+    }
+
+    @Test
+    fun `step decay connects every other neuron within its dispersion`() {
+        val decay = StepDecayFunction().apply { dispersion = 60.0 }
+        val edges = radialEdges(neurons, neurons, decay, random = SplittableRandom(2))
+        val expected = neurons.indices.flatMap { i ->
+            neurons.indices.filter { j -> i != j && getEuclideanDist(neurons[i], neurons[j]) <= 60.0 }.map { i to it }
+        }
+        assertEquals(expected.toSet(), edges.pairs().toSet())
+        assertEquals(expected.size, edges.size)
+    }
+
+    @Test
+    fun `probabilistic connections are made strictly within the radius`() {
+        val syns = connectProbabilistically(neurons, neurons, 1.0, 45.0, random = SplittableRandom(4))
+        val expected = neurons.sumOf { n -> neurons.count { it != n && getEuclideanDist(n, it) < 45.0 } }
+        assertEquals(expected, syns.size)
+    }
+
+    @Test
+    fun `edge list converts to a sparse matrix with later duplicates replacing earlier ones`() {
+        val edges = EdgeList().apply {
+            add(0, 1, 2.0)
+            add(2, 0, 3.0)
+            add(0, 1, 4.0)
+            add(1, 1, 5.0)
+        }
+        val matrix = edges.toSparseMatrix(2, 3)
+        assertEquals(3, matrix.size())
+        assertEquals(4.0, matrix.get(1, 0))
+        assertEquals(3.0, matrix.get(0, 2))
+        assertEquals(5.0, matrix.get(1, 1))
+        assertEquals(0.0, matrix.get(0, 0))
+    }
+
+    @Test
+    fun `edge list converts to synapses`() {
+        val edges = EdgeList().apply {
+            add(0, 1, 2.0)
+            add(1, 2)
+        }
+        val syns = edges.toSynapses(neurons, neurons)
+        assertEquals(neurons[0], syns[0].source)
+        assertEquals(neurons[1], syns[0].target)
+        assertEquals(2.0, syns[0].strength)
+        assertEquals(1.0, syns[1].strength)
+    }
+}
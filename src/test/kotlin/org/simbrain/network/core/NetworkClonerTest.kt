@@ -0,0 +1,88 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.groups.NeuronGroup
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import smile.math.matrix.Matrix
+
+class NetworkClonerTest {
+
+    val net = Network()
+    val n1 = Neuron(net)
+    val n2 = Neuron(net)
+    val s1: Synapse
+    val ng1 = NeuronGroup(net, 3)
+    val ng2 = NeuronGroup(net, 2)
+    val sg: SynapseGroup2
+    val na1 = NeuronArray(net, 2)
+    val na2 = NeuronArray(net, 2)
+    val wm: WeightMatrix
+
+    init {
+        net.addNetworkModels(n1, n2, ng1, ng2, na1, na2)
+        s1 = net.addSynapse(n1, n2) { strength = .5 }
+        sg = SynapseGroup2(ng1, ng2)
+        net.addNetworkModel(sg)
+        wm = WeightMatrix(net, na1, na2)
+        net.addNetworkModel(wm)
+        n1.activation = .3
+        na1.setActivations(doubleArrayOf(1.0, -1.0))
+        wm.setWeights(arrayOf(doubleArrayOf(1.0, 2.0), doubleArrayOf(3.0, 4.0)))
+    }
+
+    @Test
+    fun `copy has same structure`() {
+        val copy = net.deepCopy()
+        assertEquals(2, copy.freeNeurons.size)
+        assertEquals(1, copy.freeSynapses.size)
+        assertEquals(2, copy.getModels<NeuronGroup>().size)
+        assertEquals(1, copy.getModels<SynapseGroup2>().size)
+        assertEquals(6, copy.getModels<SynapseGroup2>().first().size())
+        assertEquals(2, copy.getModels<NeuronArray>().size)
+        assertEquals(1, copy.getModels<WeightMatrix>().size)
+    }
+
+    @Test
+    fun `copied models refer to copied models`() {
+        val copy = net.deepCopy()
+        val copiedNeurons = copy.freeNeurons.toList()
+        val copiedSynapse = copy.freeSynapses.first()
+        assertSame(copiedNeurons[0], copiedSynapse.source)
+        assertSame(copiedNeurons[1], copiedSynapse.target)
+        assertEquals(.5, copiedSynapse.strength)
+        assertEquals(.3, copiedNeurons[0].activation)
+        assertSame(copy, copiedNeurons[0].network)
+
+        val copiedSg = copy.getModels<SynapseGroup2>().first()
+        val copiedGroups = copy.getModels<NeuronGroup>().toList()
+        assertSame(copiedGroups[0], copiedSg.source)
+        assertTrue(copiedSg.synapses.all { it.source in copiedGroups[0].neuronList })
+        assertTrue(copiedGroups.flatMap { it.neuronList }.all { it.network === copy })
+
+        val copiedWm = copy.getModels<WeightMatrix>().first()
+        assertNotSame(wm.weightMatrix, copiedWm.weightMatrix)
+        assertArrayEquals(wm.weights, copiedWm.weights)
+    }
+
+    @Test
+    fun `copies do not share array state`() {
+        val copy = net.deepCopy()
+        val copiedArray = copy.getModels<NeuronArray>().first()
+        assertArrayEquals(doubleArrayOf(1.0, -1.0), copiedArray.activationArray)
+        na1.activations = Matrix(doubleArrayOf(5.0, 5.0))
+        assertArrayEquals(doubleArrayOf(1.0, -1.0), copiedArray.activationArray)
+        wm.hardClear()
+        assertArrayEquals(doubleArrayOf(1.0, 2.0, 3.0, 4.0), copy.getModels<WeightMatrix>().first().weights)
+    }
+
+    @Test
+    fun `copied network updates like the original`() {
+        val copy = net.deepCopy()
+        net.update()
+        copy.update()
+        assertEquals(n2.activation, copy.freeNeurons.toList()[1].activation)
+        assertArrayEquals(na2.activationArray, copy.getModels<NeuronArray>().toList()[1].activationArray, 1e-12)
+    }
+}
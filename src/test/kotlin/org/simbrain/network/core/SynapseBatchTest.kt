@@ -0,0 +1,118 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.groups.NeuronGroup
+import org.simbrain.network.synapse_update_rules.*
+import kotlin.math.exp
+import kotlin.random.Random
+
+class SynapseBatchTest {
+
+    /**
+     * Two neuron groups connected all to all, with the same random activations and weights for a given seed.
+     */
+    private fun connectedGroups(rule: SynapseUpdateRule, seed: Int): SynapseGroup2 {
+        val net = Network()
+        val random = Random(seed)
+        val source = NeuronGroup(net, 6)
+        val target = NeuronGroup(net, 4)
+        net.addNetworkModels(listOf(source, target))
+        val sg = SynapseGroup2(source, target)
+        net.addNetworkModel(sg)
+        sg.synapses.forEach {
+            it.learningRule = rule
+            it.lowerBound = -2.0
+            it.upperBound = 2.0
+            it.strength = random.nextDouble(-1.0, 1.0)
+        }
+        (source.neuronList + target.neuronList).forEach {
+            // Some inactive neurons, which batched rules skip
+            it.forceSetActivation(if (random.nextBoolean()) random.nextDouble(-1.0, 1.0) else 0.0)
+        }
+        return sg
+    }
+
+    private fun assertBatchedMatchesPerSynapse(rule: SynapseUpdateRule) {
+        val batched = connectedGroups(rule, 1)
+        val perSynapse = connectedGroups(rule, 1)
+        repeat(3) {
+            batched.update()
+            perSynapse.synapses.forEach { it.update() }
+        }
+        batched.synapses.zip(perSynapse.synapses).forEach { (b, s) ->
+            assertEquals(s.strength, b.strength, 1e-12)
+        }
+    }
+
+    @Test
+    fun `batched hebbian rule matches the per synapse rule`() {
+        assertBatchedMatchesPerSynapse(HebbianRule().apply { learningRate = .3 })
+    }
+
+    @Test
+    fun `batched oja rule matches the per synapse rule`() {
+        assertBatchedMatchesPerSynapse(OjaRule().apply { learningRate = .2; normalizationFactor = 1.5 })
+    }
+
+    @Test
+    fun `batched short term plasticity matches the per synapse rule`() {
+        assertBatchedMatchesPerSynapse(ShortTermPlasticityRule().apply { bumpRate = .3; decayRate = .1 })
+    }
+
+    @Test
+    fun `stdp potentiates when the pre synaptic neuron spikes first`() {
+        val net = Network()
+        val pre = Neuron(net)
+        val post = Neuron(net)
+        net.addNetworkModels(listOf(pre, post))
+        val rule = STDPRule(10.0, 10.0, 30.0, 60.0, .01, false)
+        val synapse = Synapse(pre, post, 1.0).apply { learningRule = rule; upperBound = 10.0 }
+        val batch = SynapseBatch(listOf(synapse))
+
+        pre.isSpike = true
+        batch.update()
+        pre.isSpike = false
+        repeat(4) {
+            net.updateTime()
+            batch.update()
+        }
+        assertEquals(1.0, synapse.strength)
+        net.updateTime()
+        post.isSpike = true
+        batch.update()
+
+        val elapsed = 5 * net.timeStep
+        assertEquals(1.0 + 10.0 * exp(-elapsed / 30.0) * .01 * net.timeStep, synapse.strength, 1e-12)
+    }
+
+    @Test
+    fun `stdp depresses when the post synaptic neuron spikes first`() {
+        val net = Network()
+        val pre = Neuron(net)
+        val post = Neuron(net)
+        net.addNetworkModels(listOf(pre, post))
+        val rule = STDPRule(10.0, 10.0, 30.0, 60.0, .01, false)
+        val synapse = Synapse(pre, post, 1.0).apply { learningRule = rule }
+        val batch = SynapseBatch(listOf(synapse))
+
+        post.isSpike = true
+        batch.update()
+        post.isSpike = false
+        net.updateTime()
+        pre.isSpike = true
+        batch.update()
+
+        assertEquals(1.0 - 10.0 * exp(-net.timeStep / 60.0) * .01 * net.timeStep, synapse.strength, 1e-12)
+    }
+
+    @Test
+    fun `synapses whose rule changes are updated with the new rule`() {
+        val sg = connectedGroups(HebbianRule().apply { learningRate = .3 }, 2)
+        sg.update()
+        val strengths = sg.synapses.map { it.strength }
+        sg.synapses.forEach { it.learningRule = StaticSynapseRule() }
+        sg.update()
+        assertEquals(strengths, sg.synapses.map { it.strength })
+    }
+}
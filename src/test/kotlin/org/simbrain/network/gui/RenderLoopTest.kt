@@ -0,0 +1,49 @@
+package org.simbrain.network.gui
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+class RenderLoopTest {
+
+    @Test
+    fun `many changes render once per frame`() {
+        val rendered = mutableListOf<String>()
+        val loop = RenderLoop<String>(frameInterval = 60_000) { rendered.add(it) }
+        repeat(100) {
+            loop.markDirty("a")
+            loop.markDirty("b")
+        }
+        assertEquals(2, loop.frame())
+        assertEquals(listOf("a", "b"), rendered.sorted())
+        assertEquals(0, loop.frame())
+    }
+
+    @Test
+    fun `off screen elements wait until they are visible`() {
+        val visible = mutableSetOf("a")
+        val rendered = mutableListOf<String>()
+        val loop = RenderLoop<String>(60_000, { it in visible }) { rendered.add(it) }
+        loop.markDirty("a")
+        loop.markDirty("b")
+        assertEquals(1, loop.frame())
+        assertEquals(1, loop.dirtyCount)
+        visible.add("b")
+        assertEquals(1, loop.frame())
+        assertEquals(listOf("a", "b"), rendered)
+    }
+
+    @Test
+    fun `frozen loop catches up when released`() {
+        var running = true
+        val rendered = mutableListOf<String>()
+        val loop = RenderLoop<String>(60_000, isFrozen = { running }) { rendered.add(it) }
+        loop.markDirty("a")
+        assertEquals(0, loop.frame())
+        loop.isPaused = true
+        running = false
+        assertEquals(0, loop.frame())
+        loop.isPaused = false
+        assertEquals(1, loop.frame())
+        assertEquals(listOf("a"), rendered)
+    }
+}
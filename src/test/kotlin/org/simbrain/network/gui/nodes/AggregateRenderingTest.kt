@@ -0,0 +1,55 @@
+package org.simbrain.network.gui.nodes
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.awt.Color
+import java.awt.geom.Rectangle2D
+
+class AggregateRenderingTest {
+
+    @Test
+    fun `grid of neurons gets one pixel each`() {
+        val columns = 40
+        val rows = 25
+        val xs = DoubleArray(columns * rows) { 100.0 + (it % columns) * 50 }
+        val ys = DoubleArray(columns * rows) { -30.0 + (it / columns) * 50 }
+        val layout = NeuronCollectionImageNode.PixelLayout.compute(xs, ys)
+        assertEquals(columns * rows, layout.indices.distinct().size)
+        assertTrue(layout.indices.all { it in 0 until layout.width * layout.height })
+        // The image covers the neurons, with each neuron inside its own pixel
+        for (i in xs.indices) {
+            val column = layout.indices[i] % layout.width
+            val row = layout.indices[i] / layout.width
+            assertEquals(column, ((xs[i] - layout.x) / layout.cellSize).toInt())
+            assertEquals(row, ((ys[i] - layout.y) / layout.cellSize).toInt())
+        }
+    }
+
+    @Test
+    fun `large layouts are capped in size`() {
+        val xs = DoubleArray(100_000) { it * 10.0 }
+        val ys = DoubleArray(100_000)
+        val layout = NeuronCollectionImageNode.PixelLayout.compute(xs, ys)
+        assertTrue(layout.width <= NeuronCollectionImageNode.PixelLayout.MAX_SIDE)
+        assertEquals(1, layout.height)
+    }
+
+    @Test
+    fun `density counts each cell a line passes through once`() {
+        val raster = SynapseDensityRaster(Rectangle2D.Double(0.0, 0.0, 99.0, 99.0), maxSide = 100)
+        assertEquals(1.0, raster.cellSize)
+        raster.add(0.0, 0.0, 99.0, 0.0, 1.0)
+        raster.add(0.0, 0.0, 0.0, 99.0, -2.0)
+        assertEquals(200, raster.counts.sum())
+        assertEquals(2, raster.counts[0])
+        assertEquals(-1.0, raster.weights[0])
+
+        val image = raster.toImage(Color.red, Color.blue, Color.gray)
+        assertEquals(0, image.getRGB(50, 50))
+        assertEquals(Color.red.rgb and 0xffffff, image.getRGB(50, 0) and 0xffffff)
+        assertEquals(Color.blue.rgb and 0xffffff, image.getRGB(0, 50) and 0xffffff)
+        assertEquals(255, image.getRGB(0, 0) ushr 24)
+        assertTrue(image.getRGB(50, 0) ushr 24 < 255)
+    }
+}
@@ -0,0 +1,176 @@
+package org.simbrain.network.trainers
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.simbrain.network.core.Network
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.neuron_update_rules.SigmoidalRule
+import org.simbrain.network.util.BiasedMatrixData
+import org.simbrain.util.math.SquashingFunctionEnum
+import smile.math.matrix.Matrix
+import kotlin.random.Random
+
+class LayerChainTrainerTest {
+
+    val net = Network()
+
+    val xor = TrainingSet2(2, 1).apply {
+        addAll(
+            arrayOf(doubleArrayOf(0.0, 0.0), doubleArrayOf(1.0, 0.0), doubleArrayOf(0.0, 1.0), doubleArrayOf(1.0, 1.0)),
+            arrayOf(doubleArrayOf(0.0), doubleArrayOf(1.0), doubleArrayOf(1.0), doubleArrayOf(0.0))
+        )
+        percentValidation = 0.0
+    }
+
+    private fun array(size: Int) = NeuronArray(net, size).also { net.addNetworkModel(it) }
+
+    private fun connect(source: NeuronArray, target: NeuronArray, random: Random) =
+        WeightMatrix(net, source, target).also {
+            it.setWeights(Array(target.size()) { DoubleArray(source.size()) { random.nextDouble(-1.0, 1.0) } })
+            net.addNetworkModel(it)
+        }
+
+    private fun unclippedLinear() = LinearRule().apply { isClipped = false }
+
+    @Test
+    fun `chain is found from the input array of a network`() {
+        val random = Random(1)
+        val input = array(2)
+        val hidden = array(3)
+        val output = array(1)
+        val first = connect(input, hidden, random)
+        val second = connect(hidden, output, random)
+        val chain = LayerChain.from(net)
+        assertEquals(listOf(input, hidden, output), chain.layers)
+        assertEquals(listOf(first, second), chain.weightMatrices)
+    }
+
+    @Test
+    fun `branching networks are not chains`() {
+        val random = Random(1)
+        val input = array(2)
+        connect(input, array(3), random)
+        connect(input, array(3), random)
+        assertThrows<IllegalArgumentException> { LayerChain.from(input) }
+    }
+
+    @Test
+    fun `sgd step on a linear unit`() {
+        val input = array(1)
+        val output = array(1).apply { updateRule = unclippedLinear() }
+        val weightMatrix = WeightMatrix(net, input, output).apply { setWeights(doubleArrayOf(.5)) }
+        val data = TrainingSet2(1, 1).apply {
+            add(doubleArrayOf(1.0), doubleArrayOf(1.0))
+            percentValidation = 0.0
+        }
+        val trainer = LayerChainTrainer(LayerChain.from(input), SGD(.1))
+        runBlocking { trainer.train(data, 1) }
+
+        // Output .5 for target 1, so both the weight and bias gradients are -.5
+        assertEquals(.55, weightMatrix.weightMatrix[0, 0], 1e-12)
+        assertEquals(.05, (output.dataHolder as BiasedMatrixData).biases[0], 1e-12)
+        assertEquals(.25, trainer.error, 1e-12)
+    }
+
+    @Test
+    fun `full batch is the average of single row steps`() {
+        val data = TrainingSet2(2, 1).apply {
+            add(doubleArrayOf(1.0, 2.0), doubleArrayOf(1.0))
+            add(doubleArrayOf(-1.0, 0.5), doubleArrayOf(0.0))
+            percentValidation = 0.0
+        }
+        val input = array(2)
+        val output = array(1).apply { updateRule = unclippedLinear() }
+        val weightMatrix = WeightMatrix(net, input, output).apply { setWeights(doubleArrayOf(.5, -.5)) }
+        val trainer = LayerChainTrainer(LayerChain.from(input), SGD(.1)).apply { batchSize = 2 }
+        runBlocking { trainer.train(data, 1) }
+
+        // Errors are -1.5 and -.75, giving gradients (-1.5 * (1, 2) - .75 * (-1, .5)) / 2
+        assertEquals(.5 + .1 * .375, weightMatrix.weightMatrix[0, 0], 1e-12)
+        assertEquals(-.5 + .1 * 1.6875, weightMatrix.weightMatrix[0, 1], 1e-12)
+    }
+
+    @Test
+    fun `adam learns xor and the network computes what the trainer learned`() {
+        val random = Random(3)
+        val input = array(2)
+        val hidden = array(4).apply { updateRule = SigmoidalRule(SquashingFunctionEnum.TANH) }
+        val output = array(1).apply { updateRule = unclippedLinear() }
+        val first = connect(input, hidden, random)
+        connect(hidden, output, random)
+        val matrix = first.weightMatrix
+
+        val trainer = LayerChainTrainer(LayerChain.from(net), Adam(.05)).apply {
+            batchSize = 4
+            this.random = Random(1)
+        }
+        runBlocking { trainer.train(xor, 500) }
+        assertEquals(500, trainer.epoch)
+        assertTrue(trainer.error < 1e-3, "error ${trainer.error}")
+        assertSame(matrix, first.weightMatrix)
+
+        for (row in 0 until xor.size) {
+            input.activations = Matrix(xor.getInputs(row))
+            listOf(hidden, output).forEach {
+                it.updateInputs()
+                it.update()
+            }
+            assertArrayEquals(trainer.predict(xor.getInputs(row)), output.activationArray, 1e-9)
+            assertEquals(xor.getTarget(row, 0), output.activationArray[0], .1)
+        }
+    }
+
+    @Test
+    fun `weights are not written back during a network update`() {
+        val input = array(1)
+        val output = array(1).apply { updateRule = unclippedLinear() }
+        val weightMatrix = WeightMatrix(net, input, output).apply { setWeights(doubleArrayOf(.5)) }
+        val data = TrainingSet2(1, 1).apply {
+            add(doubleArrayOf(1.0), doubleArrayOf(1.0))
+            percentValidation = 0.0
+        }
+        val trainer = LayerChainTrainer(LayerChain.from(input), SGD(.1))
+        val job = net.withUpdateLock {
+            val job = trainer.start(data, 1)
+            while (trainer.epoch < 1) {
+                Thread.sleep(1)
+            }
+            Thread.sleep(20)
+            assertEquals(.5, weightMatrix.weightMatrix[0, 0])
+            job
+        }
+        runBlocking { job.join() }
+        assertEquals(.55, weightMatrix.weightMatrix[0, 0], 1e-12)
+    }
+
+    @Test
+    fun `background training reports progress and can be cancelled`() {
+        val random = Random(2)
+        val input = array(2)
+        val output = array(1).apply { updateRule = unclippedLinear() }
+        connect(input, output, random)
+        val trainer = LayerChainTrainer(LayerChain.from(input), Momentum(.01))
+        val progress = mutableListOf<Int>()
+        var ended = false
+        trainer.events.onProgressUpdated { progress.add(it.second) }
+        trainer.events.onEndTraining { ended = true }
+
+        runBlocking { trainer.start(xor, 4).join() }
+        assertEquals(listOf(25, 50, 75, 100), progress)
+        assertTrue(ended)
+
+        runBlocking {
+            val job = trainer.start(xor, Int.MAX_VALUE)
+            while (trainer.epoch < 10) {
+                Thread.sleep(1)
+            }
+            job.cancel()
+            job.join()
+        }
+        assertTrue(trainer.epoch < Int.MAX_VALUE)
+    }
+}
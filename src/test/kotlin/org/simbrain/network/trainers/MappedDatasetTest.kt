@@ -0,0 +1,71 @@
+package org.simbrain.network.trainers
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+
+class MappedDatasetTest {
+
+    @TempDir
+    lateinit var tempDir: File
+
+    val inputs = arrayOf(doubleArrayOf(0.0, 0.0), doubleArrayOf(1.0, 0.0), doubleArrayOf(0.0, 1.0),
+        doubleArrayOf(1.0, 1.0), doubleArrayOf(.5, .5))
+    val targets = arrayOf(doubleArrayOf(0.0), doubleArrayOf(1.0), doubleArrayOf(1.0), doubleArrayOf(0.0),
+        doubleArrayOf(1.0))
+
+    @Test
+    fun `write and reopen`() {
+        val file = File(tempDir, "xor.sbds")
+        MappedDataset.fromArrays(file, inputs, targets).close()
+        MappedDataset.open(file).use {
+            assertEquals(5, it.numRows)
+            assertEquals(2, it.numInputs)
+            assertEquals(1, it.numTargets)
+            assertEquals(1.0, it.getInput(2, 1))
+            assertEquals(1.0, it.getTarget(4, 0))
+            assertArrayEquals(inputs, it.inputsToArray())
+        }
+    }
+
+    @Test
+    fun `float precision`() {
+        val file = File(tempDir, "xor.sbds")
+        MappedDataset.fromArrays(file, inputs, targets, MappedDataset.Precision.Float).close()
+        MappedDataset.open(file).use {
+            assertEquals(MappedDataset.Precision.Float, it.precision)
+            assertEquals(.5, it.getInput(4, 0))
+        }
+    }
+
+    @Test
+    fun `batches cover every row once`() {
+        MappedDataset.fromArrays(File(tempDir, "xor.sbds"), inputs, targets).use { data ->
+            val indices = data.shuffledIndices()
+            val seen = mutableListOf<Int>()
+            val sizes = mutableListOf<Int>()
+            data.batches(2, indices).forEach { batch ->
+                sizes.add(batch.size)
+                (0 until batch.size).forEach { i ->
+                    seen.add(batch.rows[i])
+                    assertArrayEquals(inputs[batch.rows[i]], batch.inputs[i])
+                    assertArrayEquals(targets[batch.rows[i]], batch.targets[i])
+                }
+            }
+            assertEquals(listOf(2, 2, 1), sizes)
+            assertEquals((0..4).toList(), seen.sorted())
+        }
+    }
+
+    @Test
+    fun `kotlin dl view splits without copying rows`() {
+        MappedDataset.fromArrays(File(tempDir, "xor.sbds"), inputs, targets).use { data ->
+            val (train, test) = data.toKotlinDLDataset().split(.6)
+            assertEquals(3, train.xSize())
+            assertEquals(2, test.xSize())
+            assertArrayEquals(floatArrayOf(1f, 1f), test.getX(0))
+            assertEquals(0f, test.getY(0))
+        }
+    }
+}
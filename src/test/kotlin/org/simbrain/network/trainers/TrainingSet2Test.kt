@@ -0,0 +1,104 @@
+package org.simbrain.network.trainers
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.simbrain.network.core.getNetworkXStream
+import kotlin.random.Random
+
+class TrainingSet2Test {
+
+    val set = TrainingSet2(2, 1).apply {
+        addAll(
+            arrayOf(doubleArrayOf(0.0, 0.0), doubleArrayOf(1.0, 0.0), doubleArrayOf(0.0, 1.0), doubleArrayOf(1.0, 1.0)),
+            arrayOf(doubleArrayOf(0.0), doubleArrayOf(1.0), doubleArrayOf(1.0), doubleArrayOf(0.0))
+        )
+    }
+
+    @Test
+    fun `rows are stored contiguously`() {
+        assertEquals(4, set.size)
+        assertArrayEquals(doubleArrayOf(0.0, 1.0), set.getInputs(2))
+        assertEquals(1.0, set.getTarget(1, 0))
+        assertArrayEquals(doubleArrayOf(0.0, 0.0, 1.0, 0.0, 0.0, 1.0, 1.0, 1.0), set.inputData.copyOf(8))
+    }
+
+    @Test
+    fun `training and testing split covers all rows`() {
+        set.percentValidation = .25
+        set.shuffle(Random(1))
+        assertEquals(3, set.trainingSet.size)
+        assertEquals(1, set.testingSet.size)
+        val rows = (0 until 3).map { set.trainingSet.row(it) } + set.testingSet.row(0)
+        assertEquals((0..3).toList(), rows.sorted())
+    }
+
+    @Test
+    fun `batches are views on the shared data`() {
+        set.percentValidation = 0.0
+        val batches = set.trainingBatches(3).toList()
+        assertEquals(listOf(3, 1), batches.map { it.size })
+        val batch = batches[0]
+        assertEquals(set.getInput(batch.row(1), 1), batch.input(1, 1))
+        assertEquals(batch.row(1) * 2, batch.inputOffset(1))
+        set[TrainingSet2.Type.Input, batch.row(1)] = doubleArrayOf(5.0, 6.0)
+        assertEquals(6.0, batch.input(1, 1))
+    }
+
+    @Test
+    fun `adapters copy batch contents`() {
+        set.percentValidation = 0.0
+        val batch = set.trainingSet
+        val matrix = batch.toInputMatrix()
+        assertEquals(4, matrix.nrows())
+        assertEquals(batch.input(2, 0), matrix[2, 0])
+        val dataset = batch.toKotlinDLDataset()
+        assertEquals(batch.target(3, 0).toFloat(), dataset.getY(3))
+    }
+
+    @Test
+    fun `classification dataset is backed by contiguous data`() {
+        val data = ClassificationDataset(2, 4)
+        data.featureVectors = arrayOf(doubleArrayOf(1.0, 2.0), doubleArrayOf(3.0, 4.0), doubleArrayOf(5.0, 6.0))
+        data.setIntegerTargets(intArrayOf(0, 1, 0))
+        assertEquals(3, data.numSamples)
+        assertArrayEquals(doubleArrayOf(1.0, 2.0, 3.0, 4.0, 5.0, 6.0), data.featureData)
+        assertEquals(4.0, data.getFeatureMatrix()[1, 1])
+        assertEquals(2, data.toTrainingSet().getInput(0, 1).toInt())
+    }
+
+    @Test
+    fun `setting rows checks the row and its size`() {
+        assertThrows<IndexOutOfBoundsException> { set[TrainingSet2.Type.Input, 4] = doubleArrayOf(1.0, 1.0) }
+        assertThrows<IllegalArgumentException> { set[TrainingSet2.Type.Target, 0] = doubleArrayOf(1.0, 1.0) }
+    }
+
+    @Test
+    fun `classification dataset rows are shared until the features change`() {
+        val data = ClassificationDataset(2, 2)
+        val rows = data.featureRows
+        assertSame(rows, data.featureRows)
+        data[1, 0] = 5.0
+        assertEquals(5.0, data.featureRows[1][0])
+        assertEquals(5.0, data[1, 0])
+        assertThrows<IndexOutOfBoundsException> { data[2, 0] = 1.0 }
+        assertThrows<IndexOutOfBoundsException> { data[0, 2] }
+        data.featureVectors = arrayOf(doubleArrayOf(1.0, 2.0))
+        assertNotSame(rows, data.featureRows)
+    }
+
+    @Test
+    fun `classification datasets saved as 2d arrays load`() {
+        val xstream = getNetworkXStream()
+        val data = ClassificationDataset(2, 2).apply { setIntegerTargets(intArrayOf(0, 1)) }
+        // Replace the row-major data with the 2d array that used to be saved
+        val vectors = arrayOf(doubleArrayOf(1.0, 2.0), doubleArrayOf(3.0, 4.0), doubleArrayOf(5.0, 6.0))
+        val legacyVectors = xstream.toXML(vectors).replace("double-array-array>", "featureVectors>")
+        val featureData = Regex("<featureData>.*</featureData>", RegexOption.DOT_MATCHES_ALL)
+        val xml = xstream.toXML(data).replace(featureData, legacyVectors)
+        val loaded = xstream.fromXML(xml) as ClassificationDataset
+        assertEquals(3, loaded.numSamples)
+        assertEquals(2, loaded.numFeatures)
+        assertArrayEquals(doubleArrayOf(1.0, 2.0, 3.0, 4.0, 5.0, 6.0), loaded.featureData)
+    }
+}
@@ -0,0 +1,68 @@
+package org.simbrain.network.util
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.core.Network
+import org.simbrain.network.groups.NeuronGroup
+import java.io.File
+
+class ActivationRecorderTest {
+
+    @TempDir
+    lateinit var tempDir: File
+
+    val net = Network()
+    val ng = NeuronGroup(net, 3).also { net.addNetworkModel(it) }
+
+    private fun record(file: File, compress: Boolean) {
+        ng.activationRecorder.startRecording(file, true, compress)
+        repeat(3) { step ->
+            ng.neuronList.forEachIndexed { i, n -> n.forceSetActivation(step * 10.0 + i) }
+            ng.activationRecorder.writeActsToFile()
+        }
+        ng.activationRecorder.stopRecording()
+    }
+
+    @Test
+    fun `binary activations round trip`() {
+        val file = File(tempDir, "acts.sbrec")
+        record(file, false)
+        val reader = ActivationRecordingReader(file)
+        assertFalse(reader.isSpikes)
+        assertEquals(ng.neuronList.map { it.id }, reader.neuronIds)
+        assertEquals(3, reader.activations.size)
+        assertArrayEquals(doubleArrayOf(20.0, 21.0, 22.0), reader.activations[2])
+    }
+
+    @Test
+    fun `compressed recording round trip`() {
+        val file = File(tempDir, "acts.sbrec")
+        record(file, true)
+        val table = ActivationRecordingReader(file).toNumericTable()
+        assertEquals(3, table.rowCount)
+        assertEquals(4, table.logicalColumnCount)
+        assertEquals(11.0, table.getLogicalValueAt(1, 2))
+    }
+
+    @Test
+    fun `binary writer records spike indices`() {
+        val file = File(tempDir, "spikes.sbrec")
+        BinaryActivationWriter(file, true, .1, listOf("a", "b", "c"), false).use {
+            it.beginFrame(0.0)
+            it.putSpike(1)
+            it.endFrame()
+            it.beginFrame(0.1)
+            it.endFrame()
+            it.beginFrame(0.2)
+            it.putSpike(0)
+            it.putSpike(2)
+            it.endFrame()
+        }
+        val reader = ActivationRecordingReader(file)
+        assertTrue(reader.isSpikes)
+        assertArrayEquals(intArrayOf(1, 0, 2), reader.spikeIndices)
+        assertArrayEquals(doubleArrayOf(0.0, 0.2, 0.2), reader.times)
+        assertEquals(3, reader.toDataFrame().rowCount)
+    }
+}
@@ -0,0 +1,31 @@
+package org.simbrain.util
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.*
+
+class RandomTest {
+
+    @Test
+    fun `sampled indices are distinct, sorted and in range`() {
+        val random = SplittableRandom(1)
+        for ((n, k) in listOf(0L to 0, 10L to 0, 10L to 3, 10L to 7, 10L to 10, 5_000_000_000L to 1000)) {
+            val indices = random.sampleIndices(n, k)
+            assertEquals(k, indices.size)
+            assertTrue((1 until k).all { indices[it - 1] < indices[it] })
+            assertTrue(indices.all { it in 0 until n })
+        }
+        assertArrayEquals(LongArray(10) { it.toLong() }, random.sampleIndices(10, 10))
+    }
+
+    @Test
+    fun `sampled indices are roughly uniform`() {
+        val random = SplittableRandom(2)
+        val counts = IntArray(20)
+        repeat(10_000) { random.sampleIndices(20, 5).forEach { counts[it.toInt()]++ } }
+        // Each index is expected 2500 times
+        assertTrue(counts.all { it in 2300..2700 }, counts.joinToString())
+    }
+}
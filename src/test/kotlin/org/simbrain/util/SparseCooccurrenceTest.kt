@@ -0,0 +1,91 @@
+package org.simbrain.util
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import smile.math.matrix.Matrix
+
+class SparseCooccurrenceTest {
+
+    val text = "The cat can run. The dog can run. The cat eats food. The dog eats food. Please bring lunch to the table."
+
+    /**
+     * Dense reference count, as generateCooccurrenceMatrix used to compute it.
+     */
+    private fun denseCounts(docString: String, windowSize: Int, skipGram: Boolean): Pair<List<String>, Matrix> {
+        val doc = docString.removeSpecialCharacters()
+        val tokens = doc.tokenizeWordsFromSentence().uniqueTokensFromArray()
+        val matrix = Matrix(tokens.size, tokens.size)
+        for (sentence in doc.tokenizeSentencesFromDoc()) {
+            val words = sentence.tokenizeWordsFromSentence()
+            for (i in words.indices) {
+                val upper = if (skipGram) i + windowSize else i
+                for (j in i - windowSize..upper) {
+                    if (j in words.indices && j != i) {
+                        matrix.add(tokens.indexOf(words[i]), tokens.indexOf(words[j]), 1.0)
+                    }
+                }
+            }
+        }
+        return Pair(tokens, matrix)
+    }
+
+    @Test
+    fun `sparse counts match dense counts`() {
+        for (skipGram in listOf(true, false)) {
+            val (tokens, dense) = denseCounts(text, 2, skipGram)
+            val sparse = CooccurrenceBuilder(2, skipGram).build(text)
+            assertEquals(tokens, sparse.tokens)
+            for (i in tokens.indices) {
+                assertArrayEquals(dense.row(i), sparse.row(i), 0.0)
+            }
+        }
+    }
+
+    @Test
+    fun `parallel chunks give the same counts`() {
+        val serial = CooccurrenceBuilder(2, true, parallel = false).build(text)
+        val parallel = CooccurrenceBuilder(2, true, parallel = true, chunkSize = 1).build(text)
+        assertEquals(serial.nonZeros, parallel.nonZeros)
+        for (i in 0 until serial.size) {
+            assertArrayEquals(serial.row(i), parallel.row(i), 0.0)
+        }
+    }
+
+    @Test
+    fun `sparse PPMI matches dense PPMI`() {
+        val sparse = CooccurrenceBuilder(2, true).build(text)
+        val dense = manualPPMI(sparse.toMatrix())
+        val ppmi = sparse.ppmi()
+        for (i in 0 until sparse.size) {
+            for (j in 0 until sparse.size) {
+                assertEquals(dense[i, j], ppmi[i, j], 1e-12)
+            }
+        }
+    }
+
+    @Test
+    fun `reduced embeddings keep similar tokens similar`() {
+        val matrix = generateSparseCooccurrenceMatrix(text, 2, true)
+        val embeddings = matrix.embeddings(5)
+        assertEquals(matrix.size, embeddings.nrows())
+        assertEquals(5, embeddings.ncols())
+        val cat = embeddings.row(matrix.tokens.indexOf("cat"))
+        val dog = embeddings.row(matrix.tokens.indexOf("dog"))
+        val table = embeddings.row(matrix.tokens.indexOf("table"))
+        assert(embeddingSimilarity(cat, dog) > embeddingSimilarity(dog, table))
+    }
+
+    @Test
+    fun `full rank embeddings reproduce row norms`() {
+        val matrix = generateSparseCooccurrenceMatrix(text, 2, true)
+        // "cat" and "dog" have the same contexts, so the rank is at most size - 1 and nothing is lost
+        val embeddings = matrix.embeddings(matrix.size - 1, powerIterations = 4)
+        val dense = matrix.toMatrix()
+        for (i in 0 until matrix.size) {
+            val expected = dense.row(i).sumOf { it * it }
+            val actual = embeddings.row(i).sumOf { it * it }
+            assertEquals(expected, actual, 1e-6 * (1 + expected))
+        }
+    }
+}
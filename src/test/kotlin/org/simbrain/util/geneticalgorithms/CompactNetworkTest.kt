@@ -0,0 +1,104 @@
+package org.simbrain.util.geneticalgorithms
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.core.activations
+import org.simbrain.network.neuron_update_rules.DecayRule
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.neuron_update_rules.SigmoidalRule
+import org.simbrain.network.util.BiasedScalarData
+import kotlin.random.Random
+
+class CompactNetworkTest {
+
+    private val random = Random(1)
+
+    private val nodes = Chromosome<Neuron, NodeGene>(List(6) { i ->
+        nodeGene {
+            when (i % 3) {
+                0 -> (dataHolder as BiasedScalarData).bias = 0.1 * i
+                1 -> updateRule = SigmoidalRule()
+                else -> updateRule = DecayRule()
+            }
+            activation = random.nextDouble(-1.0, 1.0)
+        }
+    })
+
+    private val connections = Chromosome<Synapse, ConnectionGene>(
+        List(15) {
+            connectionGene(nodes.selectRandom(random), nodes.selectRandom(random)) {
+                strength = random.nextDouble(-2.0, 2.0)
+            }
+        }
+    )
+
+    @Test
+    fun `compact network updates like a network built from the same genes`() {
+        nodes[0].template.isClamped = true
+        nodes[1].disable()
+        val network = Network()
+        runBlocking {
+            network {
+                +nodes.filter { !it.disabled }.let { Chromosome<Neuron, NodeGene>(it) }
+                +connections.filter { !it.source.disabled && !it.target.disabled }
+                    .let { Chromosome<Synapse, ConnectionGene>(it) }
+            }
+        }
+        val compact = compileNetwork(nodes, connections)
+        assertEquals(5, compact.size)
+        repeat(20) {
+            network.bufferedUpdate()
+            compact.update()
+            assertArrayEquals(
+                network.flatNeuronList.activations.toDoubleArray(),
+                compact.activations,
+                1e-9
+            )
+        }
+    }
+
+    @Test
+    fun `external input is added once`() {
+        val node = nodeGene { (updateRule as LinearRule).setClipped(false) }
+        val compact = compileNetwork(Chromosome(listOf(node)))
+        compact.addInput(node, 2.0)
+        compact.update()
+        assertEquals(2.0, compact[node])
+        compact.update()
+        assertEquals(0.0, compact[node])
+    }
+
+    @Test
+    fun `headless builds can be evaluated on a compact network`() {
+        val sim = evolutionarySimulation(1) {
+            val input = chromosome(1) { nodeGene { isClamped = true } }
+            val output = chromosome(1) { nodeGene { (updateRule as LinearRule).setClipped(false) } }
+            val weights = chromosome(1) { connectionGene(input[0], output[0]) { strength = 0.5 } }
+            var compact: CompactNetwork? = null
+            onBuild { visible ->
+                if (!visible) {
+                    compact = compactNetwork {
+                        +input
+                        +output
+                        +weights
+                    }
+                }
+            }
+            onEval {
+                compact!!.let {
+                    it[input[0]] = 2.0
+                    it.update()
+                    it[output[0]]
+                }
+            }
+        }
+        val fitness = runBlocking { sim.build().eval() }
+        assertEquals(1.0, fitness)
+        assertEquals(false, sim.chromosomes[1][0].product.isCompleted)
+    }
+}
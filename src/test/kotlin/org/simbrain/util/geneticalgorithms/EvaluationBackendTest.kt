@@ -0,0 +1,85 @@
+package org.simbrain.util.geneticalgorithms
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Synapse
+import java.io.File
+import kotlin.math.abs
+
+/**
+ * Evolves five integers that sum to 10. Used by worker processes, so it must be a top-level class.
+ */
+class IntSumTask : EvolutionTask {
+    override fun createSimulation() = evolutionarySimulation(1) {
+        val intChromosome = chromosome(5) { intGene() }
+        onMutate {
+            intChromosome.forEach { it.mutate { value += random.nextInt(-5, 5) } }
+        }
+        onBuild {
+            +intChromosome
+        }
+        onEval {
+            // Crash the worker once, to check that the coordinator recovers
+            System.getProperty("crashMarker")?.let { File(it) }?.takeIf { it.delete() }?.let {
+                Runtime.getRuntime().halt(1)
+            }
+            abs(intChromosome.getProducts().sum() - 10.0)
+        }
+    }
+}
+
+class EvaluationBackendTest {
+
+    @Test
+    fun `network genome survives encoding`() {
+        val sim = evolutionarySimulation(1) {
+            val network = Network()
+            val nodes = chromosome(3) { nodeGene { activation = it * 0.25 } }
+            val connections = chromosome<Synapse, ConnectionGene>()
+            onMutate {
+                connections += connectionGene(nodes[0], nodes[2]) { strength = 0.5 }
+            }
+            onBuild {
+                network {
+                    +nodes
+                    +connections
+                }
+            }
+            onEval {
+                val (synapse) = connections.getProducts()
+                assertSame(nodes[0].product.await(), synapse.source)
+                assertSame(nodes[2].product.await(), synapse.target)
+                nodes.getProducts().sumOf { it.activation } + synapse.strength
+            }
+        }
+        val mutated = sim.copy().apply { mutate() }
+        val decoded = GenomeCodec.decode(GenomeCodec.encode(mutated), sim)
+        assertEquals(1.25, runBlocking { decoded.build().eval() }, 1e-9)
+    }
+
+    @Test
+    fun `worker processes evolve integers that sum to 10`() {
+        ProcessEvaluationBackend(IntSumTask::class.java, 2).use { processes ->
+            val result = evaluator(IntSumTask().createSimulation()) {
+                backend = processes
+                optimizationMethod = Evaluator.OptimizationMethod.MINIMIZE_FITNESS
+                runUntil { generation == 200 || fitness < .2 }
+            }.start()
+            assertEquals(0.0, result.best.fitness, .001)
+        }
+    }
+
+    @Test
+    fun `evaluation continues after a worker crashes`() {
+        val marker = File.createTempFile("crash", ".marker")
+        ProcessEvaluationBackend(IntSumTask::class.java, 2).use { processes ->
+            processes.jvmArguments = listOf("-DcrashMarker=${marker.absolutePath}")
+            val builders = List(20) { IntSumTask().createSimulation() }
+            val results = processes.evaluate(builders, null, Evaluator.OptimizationMethod.MINIMIZE_FITNESS)
+            assertFalse(marker.exists())
+            assertEquals(List(20) { EvaluationResult(10.0) }, results)
+        }
+    }
+}
@@ -322,4 +322,110 @@ class GeneticsTest {
 
         runBlocking { build.eval() }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `genome hash is kept by copies and changed by mutation`() {
+        val sim = evolutionarySimulation(1) {
+            val nodes = chromosome(3) { nodeGene() }
+            onMutate {
+                nodes.first().mutate { activation += 1.0 }
+            }
+        }
+        val copy = sim.copy()
+        assertEquals(sim.genomeHash(), copy.genomeHash())
+        copy.mutate()
+        assertNotEquals(sim.genomeHash(), copy.genomeHash())
+    }
+
+    @Test
+    fun `survivors are not evaluated again`() {
+        var evaluations = 0
+        val sim = evolutionarySimulation(1) {
+            val intChromosome = chromosome(2) { intGene() }
+            onMutate {
+                intChromosome.forEach { it.mutate { value += random.nextInt(1, 5) } }
+            }
+            onBuild {
+                +intChromosome
+            }
+            onEval {
+                evaluations++
+                intChromosome.getProducts().sum().toDouble()
+            }
+        }
+        evaluator(sim) {
+            populationSize = 100
+            cacheFitness = true
+            runUntil { generation == 3 }
+        }.start().best
+        // After the first generation only the 50 mutated offspring are evaluated
+        assertTrue(evaluations <= 100 + 50 + 50)
+    }
+
+    @Test
+    fun `evaluations that cannot beat the survivors are stopped`() {
+        var started = 0
+        var completed = 0
+        val sim = evolutionarySimulation(1) {
+            val intChromosome = chromosome(1) { intGene() }
+            onMutate {
+                intChromosome.forEach { it.mutate { value = random.nextInt(0, 100) } }
+            }
+            onBuild {
+                +intChromosome
+            }
+            onEval {
+                val (value) = intChromosome.getProducts()
+                // Fitness is at most value, the amount gained over 10 steps
+                started++
+                var fitness = 0.0
+                repeat(10) {
+                    reportPartialFitness(fitness + value * (10 - it) / 10.0)
+                    fitness += value / 10.0
+                }
+                completed++
+                fitness
+            }
+        }
+        val best = evaluator(sim) {
+            populationSize = 100
+            runUntil { generation == 5 }
+        }.start().best
+        assertEquals(500, started)
+        assertTrue(completed < started)
+        assertTrue(best.fitness > 90)
+    }
+
+    @Test
+    fun `chromosome keeps genes in order and only once`() {
+        val genes = List(5) { intGene { value = it } }
+        val chromosome = Chromosome<Int, IntGene>(genes)
+        chromosome.add(genes[2])
+        assertEquals(5, chromosome.size)
+        assertEquals(genes, chromosome.toList())
+        assertEquals(3, chromosome.indexOf(genes[3]))
+        chromosome.remove(genes[1])
+        assertEquals(genes[2], chromosome[1])
+        assertEquals(1, chromosome.indexOf(genes[2]))
+        assertFalse(genes[1] in chromosome)
+        val copy = chromosome.copy()
+        assertEquals(chromosome.map { it.version }, copy.map { it.version })
+        assertEquals(chromosome.map { it.fingerprint() }, copy.map { it.fingerprint() })
+    }
+
+    @Test
+    fun `batched mutation operators mutate the expected number of genes`() {
+        val chromosome = Chromosome<Int, IntGene>(List(10_000) { intGene() })
+        val random = kotlin.random.Random(1)
+        var mutated = 0
+        chromosome.mutateEach(0.01, random) { mutated++ }
+        assertTrue(mutated in 50..150, "mutated $mutated genes")
+
+        chromosome.mutateRandom(20, random) { mutate { value = 1 } }
+        assertEquals(20, chromosome.count { it.fingerprint() == 2L })
+
+        mutated = 0
+        chromosome.mutateEach(1.0, random) { mutated++ }
+        assertEquals(10_000, mutated)
+    }
+}
@@ -0,0 +1,77 @@
+package org.simbrain.util.geneticalgorithms
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.abs
+
+class IslandEvaluatorTest {
+
+    private fun intSumSimulation(created: AtomicInteger, resets: AtomicInteger) = evolutionarySimulation(1) {
+
+        val intChromosome = chromosome(5) { intGene() }
+
+        val buffer = reusable("buffer", { created.incrementAndGet(); DoubleArray(5) }) {
+            resets.incrementAndGet()
+            fill(0.0)
+        }
+
+        onMutate {
+            intChromosome.forEach {
+                it.mutate {
+                    value += random.nextInt(-5, 5)
+                }
+            }
+        }
+
+        onBuild {
+            +intChromosome
+        }
+
+        onEval {
+            intChromosome.getProducts().forEachIndexed { i, value -> buffer[i] = value.toDouble() }
+            abs(buffer.sum() - 10)
+        }
+    }
+
+    @Test
+    fun `islands evolve integers that sum to 10`() {
+        val created = AtomicInteger()
+        val resets = AtomicInteger()
+        val result = islandEvaluator(intSumSimulation(created, resets)) {
+            islandCount = 3
+            populationSize = 30
+            workerCount = 2
+            migrationInterval = 3
+            optimizationMethod = Evaluator.OptimizationMethod.MINIMIZE_FITNESS
+            runUntil { generation == 1000 || fitness < .2 }
+        }.start()
+        assertEquals(0.0, result.best.fitness, .001)
+    }
+
+    @Test
+    fun `reusable objects are shared between agents on a worker`() {
+        val created = AtomicInteger()
+        val resets = AtomicInteger()
+        val result = islandEvaluator(intSumSimulation(created, resets)) {
+            islandCount = 2
+            populationSize = 20
+            workerCount = 2
+            migrationInterval = 2
+            optimizationMethod = Evaluator.OptimizationMethod.MINIMIZE_FITNESS
+            runUntil { generation == 4 }
+        }.start()
+        var generations = 0
+        result.onEachGeneration { agents, _ ->
+            assertEquals(40, agents.size)
+            generations++
+        }.best
+        assertEquals(4, generations)
+        assertEquals(4, result.finalGenerationNumber)
+        // 160 agents were evaluated, each releasing its buffer
+        assertTrue(resets.get() >= 160)
+        // Only the initial population needs new buffers; agents built on the workers reuse released ones
+        assertTrue(created.get() < 60, "created ${created.get()} buffers")
+    }
+}
@@ -0,0 +1,77 @@
+package org.simbrain.world.textworld
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Test
+import org.simbrain.util.CooccurrenceBuilder
+import smile.math.matrix.Matrix
+import java.io.StringReader
+
+class TokenStreamTest {
+
+    private val map = TokenVectorMap(listOf("the", "cat", "dog", "ran"), Matrix.eye(4))
+
+    private val text = "The cat ran.  The  dog, ran!\nThe bird ran."
+
+    @Test
+    fun `tokens are not split across chunks`() {
+        val stream = TokenStream(StringReader(text), map, chunkSize = 3)
+        val tokens = mutableListOf<String>()
+        while (stream.advance()) {
+            tokens.add(stream.currentToken!!)
+            assertEquals(stream.currentToken, text.substring(stream.currentBegin.toInt(), stream.currentEnd.toInt()))
+        }
+        assertEquals("The cat ran. The dog, ran! The bird ran.".split(" "), tokens)
+        assertFalse(stream.advance())
+    }
+
+    @Test
+    fun `tokens are resolved to vector indices`() {
+        val stream = TokenStream(StringReader(text), map, chunkSize = 5)
+        val indices = IntArray(20)
+        val n = stream.nextIndices(indices)
+        assertEquals(9, n)
+        assertArrayEquals(intArrayOf(0, 1, 3, 0, 2, 3, 0, -1, 3), indices.copyOf(n))
+    }
+
+    @Test
+    fun `batches hold one vector per token`() {
+        val stream = TokenStream(StringReader(text), map, chunkSize = 4)
+        val first = stream.nextBatch(4)
+        assertEquals(4, first.nrows())
+        assertArrayEquals(map.get("cat"), first.row(1), 0.0)
+        val rest = stream.nextBatch(10)
+        assertEquals(5, rest.nrows())
+        // "bird" is not in the map
+        assertArrayEquals(DoubleArray(4), rest.row(3), 0.0)
+    }
+
+    @Test
+    fun `reloading the dictionary resolves tokens with the new map`() {
+        val world = TextWorld()
+        world.tokenVectorMap = map
+        val stream = TokenStream(StringReader(text), world.tokenVectorMap)
+        world.tokenStream = stream
+        world.update()
+        assertEquals(0, stream.currentIndex)
+        assertEquals(3L, world.currentItem!!.endPosition)
+
+        world.tokenVectorMap = TokenVectorMap(listOf("ran", "cat", "the"), Matrix.eye(3))
+        assertEquals(2, stream.currentIndex)
+        world.update()
+        assertEquals(1, stream.currentIndex)
+        assertArrayEquals(doubleArrayOf(0.0, 1.0, 0.0), world.currentVector, 0.0)
+    }
+
+    @Test
+    fun `co-occurrences read in chunks match those of the whole text`() {
+        val builder = CooccurrenceBuilder(2, true)
+        val whole = builder.build(text)
+        val chunked = builder.build(StringReader(text), chunkChars = 7)
+        assertEquals(whole.tokens, chunked.tokens)
+        for (i in 0 until whole.size) {
+            assertArrayEquals(whole.row(i), chunked.row(i), 0.0)
+        }
+    }
+}
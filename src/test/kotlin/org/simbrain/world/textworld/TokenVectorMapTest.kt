@@ -0,0 +1,23 @@
+package org.simbrain.world.textworld
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import smile.math.matrix.Matrix
+
+class TokenVectorMapTest {
+
+    private val tokens = listOf("cat", "dog", "fish")
+
+    @Test
+    fun `closest word is found exactly`() {
+        val map = TokenVectorMap(tokens, Matrix.eye(3))
+        assertEquals("dog", map.getClosestWord(doubleArrayOf(.1, .8, .2)))
+        assertEquals("fish", map.getClosestWord(doubleArrayOf(0.0, 0.0, 2.0)))
+    }
+
+    @Test
+    fun `closest word is found with approximate lookup`() {
+        val map = TokenVectorMap(tokens, Matrix.eye(3), approximateLookup = true)
+        assertEquals("cat", map.getClosestWord(doubleArrayOf(.9, .1, 0.0)))
+    }
+}